@@ -13,6 +13,8 @@ public class AttendanceRecord {
     private int courseId;
     private LocalDate date;
     private boolean present;
+    // Set by the store on every write; 0 until the record is stored
+    private int version;
 
     /**
      * Default constructor
@@ -61,6 +63,14 @@ public class AttendanceRecord {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public int getStudentId() {
         return studentId;
     }
@@ -140,6 +150,7 @@ public class AttendanceRecord {
                 ", courseId=" + courseId +
                 ", date=" + date +
                 ", present=" + present +
+                ", version=" + version +
                 '}';
     }
 
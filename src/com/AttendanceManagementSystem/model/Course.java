@@ -8,6 +8,8 @@ public class Course {
     private int id;
     private String name;
     private String instructor;
+    // Set by the store on every write; 0 until the course is stored
+    private int version;
 
     /**
      * Default constructor
@@ -37,6 +39,14 @@ public class Course {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -59,6 +69,7 @@ public class Course {
                 "id=" + id +
                 ", name='" + name + '\'' +
                 ", instructor='" + instructor + '\'' +
+                ", version=" + version +
                 '}';
     }
 
@@ -1,23 +1,35 @@
 package com.AttendanceManagementSystem.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.IntConsumer;
 
 /**
  * Student entity representing a student in the attendance management system.
  * Contains student information and their registered courses.
+ *
+ * Registered courses are kept as a sorted array of distinct course IDs:
+ * 4 bytes per course, no boxing, and membership checks by binary search.
+ * The array is replaced rather than modified, so a reader iterating it
+ * never sees a half-applied change.
  */
 public class Student {
+    private static final int[] NO_COURSES = new int[0];
+
     private int id;
     private String fullName;
     private String email;
-    private List<Integer> registeredCourses;
+    private volatile int[] registeredCourses;
+    // Set by the store on every write; 0 until the student is stored
+    private int version;
 
     /**
      * Default constructor
      */
     public Student() {
-        this.registeredCourses = new ArrayList<>();
+        this.registeredCourses = NO_COURSES;
     }
 
     /**
@@ -31,7 +43,7 @@ public class Student {
         this.id = id;
         this.fullName = fullName;
         this.email = email;
-        this.registeredCourses = new ArrayList<>();
+        this.registeredCourses = NO_COURSES;
     }
 
     /**
@@ -46,7 +58,7 @@ public class Student {
         this.id = id;
         this.fullName = fullName;
         this.email = email;
-        this.registeredCourses = registeredCourses != null ? new ArrayList<>(registeredCourses) : new ArrayList<>();
+        this.registeredCourses = toCourseSet(registeredCourses);
     }
 
     // Getters and Setters
@@ -58,6 +70,14 @@ public class Student {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public String getFullName() {
         return fullName;
     }
@@ -75,11 +95,41 @@ public class Student {
     }
 
     public List<Integer> getRegisteredCourses() {
-        return new ArrayList<>(registeredCourses); // Return copy to prevent external modification
+        int[] courses = registeredCourses;
+        List<Integer> copy = new ArrayList<>(courses.length); // Return copy to prevent external modification
+        for (int courseId : courses) {
+            copy.add(courseId);
+        }
+        return copy;
     }
 
     public void setRegisteredCourses(List<Integer> registeredCourses) {
-        this.registeredCourses = registeredCourses != null ? new ArrayList<>(registeredCourses) : new ArrayList<>();
+        this.registeredCourses = toCourseSet(registeredCourses);
+    }
+
+    /**
+     * @return Registered course IDs in ascending order (a copy, without boxing)
+     */
+    public int[] getRegisteredCourseIds() {
+        return registeredCourses.clone();
+    }
+
+    /**
+     * @return Number of registered courses
+     */
+    public int getRegisteredCourseCount() {
+        return registeredCourses.length;
+    }
+
+    /**
+     * Visit every registered course ID in ascending order without copying
+     * 
+     * @param action Called with each course ID
+     */
+    public void forEachRegisteredCourse(IntConsumer action) {
+        for (int courseId : registeredCourses) {
+            action.accept(courseId);
+        }
     }
 
     /**
@@ -88,12 +138,19 @@ public class Student {
      * @param courseId The ID of the course to add
      * @return true if the course was added, false if already registered
      */
-    public boolean addCourse(int courseId) {
-        if (!registeredCourses.contains(courseId)) {
-            registeredCourses.add(courseId);
-            return true;
+    public synchronized boolean addCourse(int courseId) {
+        int[] courses = registeredCourses;
+        int index = Arrays.binarySearch(courses, courseId);
+        if (index >= 0) {
+            return false;
         }
-        return false;
+        int insertAt = -index - 1;
+        int[] updated = new int[courses.length + 1];
+        System.arraycopy(courses, 0, updated, 0, insertAt);
+        updated[insertAt] = courseId;
+        System.arraycopy(courses, insertAt, updated, insertAt + 1, courses.length - insertAt);
+        registeredCourses = updated;
+        return true;
     }
 
     /**
@@ -102,8 +159,17 @@ public class Student {
      * @param courseId The ID of the course to remove
      * @return true if the course was removed, false if not found
      */
-    public boolean removeCourse(int courseId) {
-        return registeredCourses.remove(Integer.valueOf(courseId));
+    public synchronized boolean removeCourse(int courseId) {
+        int[] courses = registeredCourses;
+        int index = Arrays.binarySearch(courses, courseId);
+        if (index < 0) {
+            return false;
+        }
+        int[] updated = new int[courses.length - 1];
+        System.arraycopy(courses, 0, updated, 0, index);
+        System.arraycopy(courses, index + 1, updated, index, courses.length - index - 1);
+        registeredCourses = updated;
+        return true;
     }
 
     /**
@@ -113,7 +179,46 @@ public class Student {
      * @return true if registered, false otherwise
      */
     public boolean isRegisteredForCourse(int courseId) {
-        return registeredCourses.contains(courseId);
+        return Arrays.binarySearch(registeredCourses, courseId) >= 0;
+    }
+
+    /**
+     * Normalise an email address for comparison: trimmed and lower-cased,
+     * so "Maria.Ele@Email.com " and "maria.ele@email.com" are the same
+     * 
+     * @param email Email address (may be null)
+     * @return Normalised address, or null if email is null or blank
+     */
+    public static String normalizeEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        String trimmed = email.trim();
+        return trimmed.isEmpty() ? null : trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Sort and de-duplicate course IDs (null entries are skipped)
+     */
+    private static int[] toCourseSet(List<Integer> courseIds) {
+        if (courseIds == null || courseIds.isEmpty()) {
+            return NO_COURSES;
+        }
+        int[] courses = new int[courseIds.size()];
+        int count = 0;
+        for (Integer courseId : courseIds) {
+            if (courseId != null) {
+                courses[count++] = courseId;
+            }
+        }
+        Arrays.sort(courses, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || courses[i] != courses[distinct - 1]) {
+                courses[distinct++] = courses[i];
+            }
+        }
+        return distinct == courses.length ? courses : Arrays.copyOf(courses, distinct);
     }
 
     @Override
@@ -122,7 +227,8 @@ public class Student {
                 "id=" + id +
                 ", fullName='" + fullName + '\'' +
                 ", email='" + email + '\'' +
-                ", registeredCourses=" + registeredCourses +
+                ", registeredCourses=" + Arrays.toString(registeredCourses) +
+                ", version=" + version +
                 '}';
     }
 
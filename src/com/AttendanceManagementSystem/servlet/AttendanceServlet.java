@@ -1,7 +1,11 @@
 package com.AttendanceManagementSystem.servlet;
 
 import com.AttendanceManagementSystem.model.AttendanceRecord;
-import com.AttendanceManagementSystem.storage.DataStore;
+import com.AttendanceManagementSystem.storage.AttendanceStats;
+import com.AttendanceManagementSystem.storage.ConstraintViolationException;
+import com.AttendanceManagementSystem.storage.StorageBackend;
+import com.AttendanceManagementSystem.storage.StorageFactory;
+import com.AttendanceManagementSystem.storage.VersionConflictException;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -13,6 +17,8 @@ import java.io.PrintWriter;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -24,25 +30,40 @@ import java.util.List;
  * GET /attendance?studentId=1 - Get attendance for specific student
  * GET /attendance?courseId=2 - Get attendance for specific course
  * GET /attendance?studentId=1&courseId=2 - Get attendance for student in course
+ * GET /attendance?from=2024-01-01&to=2024-01-07 - Get attendance within a date range
+ *     (from/to are inclusive, optional, and combine with studentId/courseId)
+ * GET /attendance/presence?courseId=2&date=2024-01-01 - Present/absent students and counts
+ *     (add countOnly=true to leave out the student ID lists)
+ * GET /attendance/absentees?date=2024-01-01 - Students absent from every class they had that day
+ * GET /attendance/absentees?date=2024-01-01&courseIds=1,2 - Students absent from all listed courses
+ * GET /attendance/stats?studentId=1&courseId=2 - Present/total counts and attendance percentage
+ *     (studentId and courseId are optional; without either, every record counts)
  * POST /attendance - Add new attendance record
+ *     (a JSON array of records adds them all in one batch; 409 if a student
+ *     already has a record for the course and date)
+ * PUT /attendance?studentId=1&courseId=2&date=2024-01-01 - Add or update the
+ *     record for that student, course and date (body: {"present":true})
  * GET /attendance/{id} - Get attendance record by ID
- * PUT /attendance/{id} - Update attendance record
+ * PUT /attendance/{id} - Update attendance record (If-Match: "version" optional, 412 if stale)
  * DELETE /attendance/{id} - Delete attendance record
  */
 public class AttendanceServlet extends HttpServlet {
 
-    private DataStore dataStore;
+    private StorageBackend dataStore;
 
     @Override
     public void init() throws ServletException {
         super.init();
-        dataStore = DataStore.getInstance();
-        System.out.println("AttendanceServlet initialized successfully for Tomcat");
+        long start = System.nanoTime();
+        dataStore = StorageFactory.getBackend(getServletContext()::getInitParameter);
+        System.out.println("AttendanceServlet initialized successfully for Tomcat in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        System.out.println(dataStore.getStartupReport());
     }
 
     /**
      * Handle GET requests
-     * Supports query parameters: studentId, courseId
+     * Supports query parameters: studentId, courseId, from, to
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
@@ -63,6 +84,18 @@ public class AttendanceServlet extends HttpServlet {
                 // Call method to handle getting all attendance records
                 getAllAttendanceRecords(request, response, out);
 
+            } else if (pathInfo.equals("/presence")) {
+                // GET /attendance/presence?courseId=..&date=.. - Present/absent students
+                getPresence(request, response, out);
+
+            } else if (pathInfo.equals("/absentees")) {
+                // GET /attendance/absentees?date=.. - Students absent from all classes
+                getAbsentees(request, response, out);
+
+            } else if (pathInfo.equals("/stats")) {
+                // GET /attendance/stats?studentId=..&courseId=.. - Attendance counts and rate
+                getStats(request, response, out);
+
             } else {
                 // GET /attendance/{id} - Get attendance record by ID
 
@@ -87,6 +120,7 @@ public class AttendanceServlet extends HttpServlet {
     /**
      * Handle POST requests
      * POST /attendance - Add new attendance record
+     *     (a JSON array of records adds them all in one batch)
      */
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
@@ -115,6 +149,12 @@ public class AttendanceServlet extends HttpServlet {
                 return;
             }
 
+            // A JSON array adds several records in one batch
+            if (jsonInput.trim().startsWith("[")) {
+                addAttendanceRecords(jsonInput, response, out);
+                return;
+            }
+
             // Parse JSON to AttendanceRecord object manually
             AttendanceRecord newRecord = parseAttendanceRecordFromJson(jsonInput);
 
@@ -124,35 +164,11 @@ public class AttendanceServlet extends HttpServlet {
                 return;
             }
 
-            // Validate required fields
-            if (newRecord.getStudentId() <= 0) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                out.print("{\"error\":\"Valid student ID is required\"}");
-                return;
-            }
-
-            if (newRecord.getCourseId() <= 0) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                out.print("{\"error\":\"Valid course ID is required\"}");
-                return;
-            }
-
-            if (newRecord.getDate() == null) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                out.print("{\"error\":\"Date is required\"}");
-                return;
-            }
-
-            // Validate that student and course exist
-            if (!dataStore.studentExists(newRecord.getStudentId())) {
+            // Validate required fields and that student and course exist
+            String validationError = validateNewRecord(newRecord);
+            if (validationError != null) {
                 response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                out.print("{\"error\":\"Student not found with ID: " + newRecord.getStudentId() + "\"}");
-                return;
-            }
-
-            if (!dataStore.courseExists(newRecord.getCourseId())) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                out.print("{\"error\":\"Course not found with ID: " + newRecord.getCourseId() + "\"}");
+                out.print("{\"error\":\"" + validationError + "\"}");
                 return;
             }
 
@@ -160,12 +176,17 @@ public class AttendanceServlet extends HttpServlet {
             AttendanceRecord savedRecord = dataStore.addAttendanceRecord(newRecord);
 
             // Return created attendance record
-            String jsonResponse = attendanceRecordToJson(savedRecord);
+            String jsonResponse = EntityJson.attendanceRecordToJson(savedRecord);
             response.setStatus(HttpServletResponse.SC_CREATED);
             out.print(jsonResponse);
 
             System.out.println("POST /attendance - Created attendance record with ID: " + savedRecord.getId());
 
+        } catch (ConstraintViolationException e) {
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            out.print("{\"error\":\"" + e.getMessage() + "\"}");
+
+            System.out.println("POST /attendance - Conflict: " + e.getMessage());
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             out.print("{\"error\":\"Invalid JSON format: " + e.getMessage() + "\"}");
@@ -176,8 +197,77 @@ public class AttendanceServlet extends HttpServlet {
         }
     }
 
+    /**
+     * POST /attendance with a JSON array - Add several attendance records.
+     * Every record is validated first; if any is invalid nothing is added.
+     */
+    private void addAttendanceRecords(String jsonInput, HttpServletResponse response, PrintWriter out) {
+        List<AttendanceRecord> newRecords = new ArrayList<>();
+        // Attendance objects have no nested objects, so each {...} is one record
+        int start = jsonInput.indexOf('{');
+        while (start >= 0) {
+            int end = jsonInput.indexOf('}', start);
+            if (end < 0) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Invalid JSON format\"}");
+                return;
+            }
+            AttendanceRecord newRecord = parseAttendanceRecordFromJson(jsonInput.substring(start, end + 1));
+            if (newRecord == null) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Invalid JSON format in record " + newRecords.size() + "\"}");
+                return;
+            }
+            String validationError = validateNewRecord(newRecord);
+            if (validationError != null) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Record " + newRecords.size() + ": " + validationError + "\"}");
+                return;
+            }
+            newRecords.add(newRecord);
+            start = jsonInput.indexOf('{', end);
+        }
+
+        if (newRecords.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"Request body contains no attendance records\"}");
+            return;
+        }
+
+        List<AttendanceRecord> savedRecords = dataStore.addAttendanceRecords(newRecords);
+        response.setStatus(HttpServletResponse.SC_CREATED);
+        out.print(EntityJson.attendanceRecordsToJson(savedRecords));
+
+        System.out.println("POST /attendance - Created " + savedRecords.size() + " attendance records");
+    }
+
+    /**
+     * Check a record about to be created
+     * 
+     * @return Error message, or null if the record is valid
+     */
+    private String validateNewRecord(AttendanceRecord record) {
+        if (record.getStudentId() <= 0) {
+            return "Valid student ID is required";
+        }
+        if (record.getCourseId() <= 0) {
+            return "Valid course ID is required";
+        }
+        if (record.getDate() == null) {
+            return "Date is required";
+        }
+        if (!dataStore.studentExists(record.getStudentId())) {
+            return "Student not found with ID: " + record.getStudentId();
+        }
+        if (!dataStore.courseExists(record.getCourseId())) {
+            return "Course not found with ID: " + record.getCourseId();
+        }
+        return null;
+    }
+
     /**
      * PUT /attendance/{id} - Update attendance record
+     * PUT /attendance?studentId=&courseId=&date= - Add or update by student, course and date
      */
     @Override
     protected void doPut(HttpServletRequest request, HttpServletResponse response)
@@ -191,6 +281,10 @@ public class AttendanceServlet extends HttpServlet {
 
         try {
             if (pathInfo == null || pathInfo.equals("/")) {
+                if (request.getParameter("studentId") != null || request.getParameter("courseId") != null) {
+                    upsertAttendanceRecord(request, response, out);
+                    return;
+                }
                 response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 out.print("{\"error\":\"Attendance record ID is required for update\"}");
                 return;
@@ -280,16 +374,46 @@ public class AttendanceServlet extends HttpServlet {
                 return;
             }
 
-            // Update attendance record in datastore
-            AttendanceRecord savedRecord = dataStore.updateAttendanceRecord(updatedRecord);
+            int expectedVersion;
+            try {
+                expectedVersion = EntityTags.parseIfMatch(request.getHeader("If-Match"), () -> {
+                    AttendanceRecord stored = dataStore.getAttendanceRecordById(recordId);
+                    return stored != null ? stored.getVersion() : 0;
+                });
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"" + EntityJson.escapeJson(e.getMessage()) + "\"}");
+                return;
+            }
+
+            // Update attendance record in datastore, only if it is still at the version the client saw
+            AttendanceRecord savedRecord = dataStore.updateAttendanceRecord(updatedRecord, expectedVersion);
+
+            if (savedRecord == null) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print("{\"error\":\"Attendance record not found with ID: " + recordId + "\"}");
+                return;
+            }
 
             // Return updated attendance record
-            String jsonResponse = attendanceRecordToJson(savedRecord);
+            String jsonResponse = EntityJson.attendanceRecordToJson(savedRecord);
             response.setStatus(HttpServletResponse.SC_OK);
+            response.setHeader("ETag", EntityTags.etag(savedRecord.getVersion()));
             out.print(jsonResponse);
 
             System.out.println("PUT /attendance/" + recordId + " - Attendance record updated successfully");
 
+        } catch (ConstraintViolationException e) {
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            out.print("{\"error\":\"" + e.getMessage() + "\"}");
+
+            System.out.println("PUT /attendance - Conflict: " + e.getMessage());
+        } catch (VersionConflictException e) {
+            response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+            response.setHeader("ETag", EntityTags.etag(e.getCurrentVersion()));
+            out.print("{\"error\":\"" + e.getMessage() + "\"}");
+
+            System.out.println("PUT /attendance - Precondition failed: " + e.getMessage());
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             out.print("{\"error\":\"Invalid JSON format: " + e.getMessage() + "\"}");
@@ -368,10 +492,14 @@ public class AttendanceServlet extends HttpServlet {
         try {
             int studentId = -1;
             int courseId = -1;
+            LocalDate from = null;
+            LocalDate to = null;
 
             // Parse query parameters
             String studentIdParam = request.getParameter("studentId");
             String courseIdParam = request.getParameter("courseId");
+            String fromParam = request.getParameter("from");
+            String toParam = request.getParameter("to");
 
             if (studentIdParam != null) {
                 try {
@@ -393,6 +521,32 @@ public class AttendanceServlet extends HttpServlet {
                 }
             }
 
+            if (fromParam != null) {
+                try {
+                    from = LocalDate.parse(fromParam, DateTimeFormatter.ISO_LOCAL_DATE);
+                } catch (DateTimeParseException e) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.print("{\"error\":\"Invalid from parameter format, expected yyyy-MM-dd\"}");
+                    return;
+                }
+            }
+
+            if (toParam != null) {
+                try {
+                    to = LocalDate.parse(toParam, DateTimeFormatter.ISO_LOCAL_DATE);
+                } catch (DateTimeParseException e) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.print("{\"error\":\"Invalid to parameter format, expected yyyy-MM-dd\"}");
+                    return;
+                }
+            }
+
+            if (from != null && to != null && from.isAfter(to)) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"from date must not be after to date\"}");
+                return;
+            }
+
             // Validate that referenced entities exist
             if (studentId > 0 && !dataStore.studentExists(studentId)) {
                 response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -407,15 +561,17 @@ public class AttendanceServlet extends HttpServlet {
             }
 
             // Get filtered attendance records
-            List<AttendanceRecord> records = dataStore.getAttendanceRecords(studentId, courseId);
-            String jsonResponse = attendanceRecordsToJson(records);
+            Collection<AttendanceRecord> records = dataStore.getAttendanceRecords(studentId, courseId, from, to);
+            String jsonResponse = EntityJson.attendanceRecordsToJson(records);
 
             response.setStatus(HttpServletResponse.SC_OK);
             out.print(jsonResponse);
 
             System.out.println("GET /attendance - Returned " + records.size() + " attendance records" +
                     (studentId > 0 ? " for student " + studentId : "") +
-                    (courseId > 0 ? " for course " + courseId : ""));
+                    (courseId > 0 ? " for course " + courseId : "") +
+                    (from != null ? " from " + from : "") +
+                    (to != null ? " to " + to : ""));
 
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -424,6 +580,272 @@ public class AttendanceServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Get present and absent students of a course on a date
+     */
+    private void getPresence(HttpServletRequest request, HttpServletResponse response, PrintWriter out) {
+        String courseIdParam = request.getParameter("courseId");
+        if (courseIdParam == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"courseId parameter is required\"}");
+            return;
+        }
+        int courseId;
+        try {
+            courseId = Integer.parseInt(courseIdParam);
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"Invalid courseId parameter format\"}");
+            return;
+        }
+        LocalDate date = parseRequiredDate(request, response, out);
+        if (date == null) {
+            return;
+        }
+        if (!dataStore.courseExists(courseId)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            out.print("{\"error\":\"Course not found with ID: " + courseId + "\"}");
+            return;
+        }
+
+        boolean countOnly = Boolean.parseBoolean(request.getParameter("countOnly"));
+        StringBuilder json = new StringBuilder();
+        json.append("{\"courseId\":").append(courseId);
+        json.append(",\"date\":\"").append(date.format(DateTimeFormatter.ISO_LOCAL_DATE)).append("\"");
+        int presentCount;
+        int absentCount;
+        if (countOnly) {
+            presentCount = dataStore.countByPresence(courseId, date, true);
+            absentCount = dataStore.countByPresence(courseId, date, false);
+            json.append(",\"presentCount\":").append(presentCount);
+            json.append(",\"absentCount\":").append(absentCount);
+        } else {
+            int[] present = dataStore.getStudentIdsByPresence(courseId, date, true);
+            int[] absent = dataStore.getStudentIdsByPresence(courseId, date, false);
+            presentCount = present.length;
+            absentCount = absent.length;
+            json.append(",\"presentCount\":").append(presentCount);
+            json.append(",\"absentCount\":").append(absentCount);
+            json.append(",\"present\":").append(idsToJson(present));
+            json.append(",\"absent\":").append(idsToJson(absent));
+        }
+        json.append("}");
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        out.print(json.toString());
+
+        System.out.println("GET /attendance/presence - Course " + courseId + " on " + date + ": "
+                + presentCount + " present, " + absentCount + " absent");
+    }
+
+    /**
+     * Get a student's, a course's or a student's attendance counts in a
+     * course from the counters the store keeps, without reading any records
+     */
+    private void getStats(HttpServletRequest request, HttpServletResponse response, PrintWriter out) {
+        int studentId = -1;
+        int courseId = -1;
+
+        String studentIdParam = request.getParameter("studentId");
+        String courseIdParam = request.getParameter("courseId");
+
+        if (studentIdParam != null) {
+            try {
+                studentId = Integer.parseInt(studentIdParam);
+            } catch (NumberFormatException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Invalid studentId parameter format\"}");
+                return;
+            }
+            if (!dataStore.studentExists(studentId)) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print("{\"error\":\"Student not found with ID: " + studentId + "\"}");
+                return;
+            }
+        }
+
+        if (courseIdParam != null) {
+            try {
+                courseId = Integer.parseInt(courseIdParam);
+            } catch (NumberFormatException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Invalid courseId parameter format\"}");
+                return;
+            }
+            if (!dataStore.courseExists(courseId)) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print("{\"error\":\"Course not found with ID: " + courseId + "\"}");
+                return;
+            }
+        }
+
+        AttendanceStats stats = dataStore.getAttendanceStats(studentId, courseId);
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        if (studentId != -1) {
+            json.append("\"studentId\":").append(studentId).append(",");
+        }
+        if (courseId != -1) {
+            json.append("\"courseId\":").append(courseId).append(",");
+        }
+        json.append("\"present\":").append(stats.getPresent()).append(",");
+        json.append("\"absent\":").append(stats.getAbsent()).append(",");
+        json.append("\"total\":").append(stats.getTotal()).append(",");
+        // One decimal place, e.g. 66.7
+        json.append("\"percentage\":").append(Math.round(stats.getRate() * 1000) / 10.0);
+        json.append("}");
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        out.print(json.toString());
+
+        System.out.println("GET /attendance/stats - Student " + studentId + ", course " + courseId + ": "
+                + stats.getPresent() + "/" + stats.getTotal() + " present");
+    }
+
+    /**
+     * Get students absent from all (or all listed) classes on a date
+     */
+    private void getAbsentees(HttpServletRequest request, HttpServletResponse response, PrintWriter out) {
+        LocalDate date = parseRequiredDate(request, response, out);
+        if (date == null) {
+            return;
+        }
+        int[] courseIds = null;
+        String courseIdsParam = request.getParameter("courseIds");
+        if (courseIdsParam != null && !courseIdsParam.trim().isEmpty()) {
+            String[] parts = courseIdsParam.split(",");
+            courseIds = new int[parts.length];
+            try {
+                for (int i = 0; i < parts.length; i++) {
+                    courseIds[i] = Integer.parseInt(parts[i].trim());
+                }
+            } catch (NumberFormatException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Invalid courseIds parameter format, expected e.g. 1,2,3\"}");
+                return;
+            }
+        }
+
+        int[] studentIds = dataStore.getStudentsAbsentFromAll(date, courseIds);
+        StringBuilder json = new StringBuilder();
+        json.append("{\"date\":\"").append(date.format(DateTimeFormatter.ISO_LOCAL_DATE)).append("\"");
+        if (courseIds != null) {
+            json.append(",\"courseIds\":").append(idsToJson(courseIds));
+        }
+        json.append(",\"count\":").append(studentIds.length);
+        json.append(",\"studentIds\":").append(idsToJson(studentIds));
+        json.append("}");
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        out.print(json.toString());
+
+        System.out.println("GET /attendance/absentees - " + studentIds.length + " students absent on " + date
+                + (courseIds != null ? " from courses " + courseIdsParam : ""));
+    }
+
+    /**
+     * PUT /attendance?studentId=&courseId=&date= - Store the record for that
+     * student, course and date, replacing the existing one if there is one.
+     * Responds 201 when a record was created and 200 when one was updated.
+     */
+    private void upsertAttendanceRecord(HttpServletRequest request, HttpServletResponse response, PrintWriter out)
+            throws IOException {
+        int studentId;
+        int courseId;
+        try {
+            studentId = Integer.parseInt(request.getParameter("studentId"));
+            courseId = Integer.parseInt(request.getParameter("courseId"));
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"Valid studentId and courseId parameters are required\"}");
+            return;
+        }
+        LocalDate date = parseRequiredDate(request, response, out);
+        if (date == null) {
+            return;
+        }
+
+        // Read JSON from request body
+        StringBuilder jsonBuffer = new StringBuilder();
+        String line;
+        BufferedReader reader = request.getReader();
+
+        while ((line = reader.readLine()) != null) {
+            jsonBuffer.append(line);
+        }
+
+        String jsonInput = jsonBuffer.toString();
+
+        if (jsonInput.trim().isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"Request body is empty\"}");
+            return;
+        }
+
+        AttendanceRecord record = parseAttendanceRecordFromJson(jsonInput);
+        if (record == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"Invalid JSON format\"}");
+            return;
+        }
+
+        // The query parameters identify the record; only "present" comes from the body
+        record.setId(0);
+        record.setStudentId(studentId);
+        record.setCourseId(courseId);
+        record.setDate(date);
+
+        String validationError = validateNewRecord(record);
+        if (validationError != null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"" + validationError + "\"}");
+            return;
+        }
+
+        AttendanceRecord replaced = dataStore.upsertAttendanceRecord(record);
+        response.setStatus(replaced == null ? HttpServletResponse.SC_CREATED : HttpServletResponse.SC_OK);
+        response.setHeader("ETag", EntityTags.etag(record.getVersion()));
+        out.print(EntityJson.attendanceRecordToJson(record));
+
+        System.out.println("PUT /attendance - " + (replaced == null ? "Created" : "Updated")
+                + " attendance record with ID: " + record.getId());
+    }
+
+    /**
+     * Parse the required date parameter, writing a 400 response if it is missing or invalid
+     * 
+     * @return Date, or null if an error response was written
+     */
+    private LocalDate parseRequiredDate(HttpServletRequest request, HttpServletResponse response, PrintWriter out) {
+        String dateParam = request.getParameter("date");
+        if (dateParam == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"date parameter is required\"}");
+            return null;
+        }
+        try {
+            return LocalDate.parse(dateParam, DateTimeFormatter.ISO_LOCAL_DATE);
+        } catch (DateTimeParseException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"Invalid date parameter format, expected yyyy-MM-dd\"}");
+            return null;
+        }
+    }
+
+    /**
+     * Convert array of IDs to JSON array string
+     */
+    private String idsToJson(int[] ids) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append(ids[i]);
+        }
+        return json.append("]").toString();
+    }
+
     /**
      * Get attendance record by ID
      */
@@ -436,8 +858,9 @@ public class AttendanceServlet extends HttpServlet {
                     AttendanceRecord record = dataStore.getAttendanceRecordById(recordId);
 
                     if (record != null) {
-                        String jsonResponse = attendanceRecordToJson(record);
+                        String jsonResponse = EntityJson.attendanceRecordToJson(record);
                         response.setStatus(HttpServletResponse.SC_OK);
+                        response.setHeader("ETag", EntityTags.etag(record.getVersion()));
                         out.print(jsonResponse);
 
                         System.out.println("GET /attendance/" + recordId + " - Attendance record found");
@@ -464,39 +887,6 @@ public class AttendanceServlet extends HttpServlet {
         }
     }
 
-    /**
-     * Convert AttendanceRecord object to JSON string
-     */
-    private String attendanceRecordToJson(AttendanceRecord record) {
-        StringBuilder json = new StringBuilder();
-        json.append("{");
-        json.append("\"id\":").append(record.getId()).append(",");
-        json.append("\"studentId\":").append(record.getStudentId()).append(",");
-        json.append("\"courseId\":").append(record.getCourseId()).append(",");
-        json.append("\"date\":\"").append(record.getDate().format(DateTimeFormatter.ISO_LOCAL_DATE)).append("\",");
-        json.append("\"present\":").append(record.isPresent());
-        json.append("}");
-        return json.toString();
-    }
-
-    /**
-     * Convert list of AttendanceRecords to JSON array string
-     */
-    private String attendanceRecordsToJson(List<AttendanceRecord> records) {
-        StringBuilder json = new StringBuilder();
-        json.append("[");
-
-        for (int i = 0; i < records.size(); i++) {
-            json.append(attendanceRecordToJson(records.get(i)));
-            if (i < records.size() - 1) {
-                json.append(",");
-            }
-        }
-
-        json.append("]");
-        return json.toString();
-    }
-
     /**
      * Parse JSON string to AttendanceRecord object
      */
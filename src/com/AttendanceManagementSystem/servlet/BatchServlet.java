@@ -0,0 +1,405 @@
+package com.AttendanceManagementSystem.servlet;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+import com.AttendanceManagementSystem.model.Course;
+import com.AttendanceManagementSystem.model.Student;
+import com.AttendanceManagementSystem.storage.BatchOperation;
+import com.AttendanceManagementSystem.storage.ConstraintViolationException;
+import com.AttendanceManagementSystem.storage.StorageBackend;
+import com.AttendanceManagementSystem.storage.StorageFactory;
+import com.AttendanceManagementSystem.storage.VersionConflictException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BatchServlet - Applies writes to students, courses and attendance as one
+ * transaction.
+ * 
+ * Supported endpoints:
+ * POST   /batch          - Apply a JSON array of operations, all or nothing
+ * 
+ * Each operation is an object with an "op" field and the fields of the
+ * entity it writes, e.g.
+ * [{"op":"addCourse","name":"Maths","instructor":"Smith"},
+ *  {"op":"updateStudent","id":3,"fullName":"Ann","email":"ann@x","registeredCourses":[1,2],"version":4},
+ *  {"op":"upsertAttendance","studentId":3,"courseId":1,"date":"2024-01-15","present":true},
+ *  {"op":"deleteAttendance","id":9}]
+ * "version" is optional on updates and works like If-Match on a PUT.
+ * Operations see the writes of the ones before them, but IDs generated in
+ * a batch are only known once it commits, so a batch cannot refer to them.
+ */
+public class BatchServlet extends HttpServlet {
+
+    private static final int MAX_OPERATIONS = 1000;
+
+    private StorageBackend dataStore;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        long start = System.nanoTime();
+        dataStore = StorageFactory.getBackend(getServletContext()::getInitParameter);
+        System.out.println("BatchServlet initialized successfully for Tomcat in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * POST /batch - Apply every operation or none of them
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        String pathInfo = request.getPathInfo();
+        PrintWriter out = response.getWriter();
+
+        try {
+            if (pathInfo != null && !pathInfo.equals("/")) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Invalid URL format\"}");
+                return;
+            }
+
+            // Read JSON from request body
+            StringBuilder jsonBuffer = new StringBuilder();
+            String line;
+            BufferedReader reader = request.getReader();
+
+            while ((line = reader.readLine()) != null) {
+                jsonBuffer.append(line);
+            }
+
+            String jsonInput = jsonBuffer.toString().trim();
+
+            if (!jsonInput.startsWith("[") || !jsonInput.endsWith("]")) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Request body must be a JSON array of operations\"}");
+                return;
+            }
+
+            List<String> objects = splitObjects(jsonInput.substring(1, jsonInput.length() - 1));
+            if (objects == null) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Invalid JSON format\"}");
+                return;
+            }
+            if (objects.isEmpty()) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Request body contains no operations\"}");
+                return;
+            }
+            if (objects.size() > MAX_OPERATIONS) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"A batch can hold at most " + MAX_OPERATIONS + " operations\"}");
+                return;
+            }
+
+            // Parse and validate every operation before anything is written
+            List<BatchOperation> operations = new ArrayList<>();
+            for (String object : objects) {
+                Map<String, String> fields = parseFields(object);
+                BatchOperation operation;
+                try {
+                    operation = fields != null ? parseOperation(fields) : null;
+                } catch (IllegalArgumentException e) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.print("{\"error\":\"Operation " + operations.size() + ": " + EntityJson.escapeJson(e.getMessage()) + "\"}");
+                    return;
+                }
+                if (operation == null) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.print("{\"error\":\"Invalid JSON format in operation " + operations.size() + "\"}");
+                    return;
+                }
+                operations.add(operation);
+            }
+
+            dataStore.executeBatch(operations);
+
+            response.setStatus(HttpServletResponse.SC_OK);
+            out.print(resultsToJson(operations));
+
+            System.out.println("POST /batch - Applied " + operations.size() + " operations");
+
+        } catch (ConstraintViolationException e) {
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            out.print("{\"error\":\"" + EntityJson.escapeJson(e.getMessage()) + "\"}");
+
+            System.out.println("POST /batch - Conflict: " + e.getMessage());
+        } catch (VersionConflictException e) {
+            response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+            out.print("{\"error\":\"" + EntityJson.escapeJson(e.getMessage()) + "\"}");
+
+            System.out.println("POST /batch - Precondition failed: " + e.getMessage());
+        } catch (Exception e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"Invalid JSON format: " + EntityJson.escapeJson(e.getMessage()) + "\"}");
+
+            System.out.println("POST /batch - Error: " + e.getMessage());
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * Build one operation from its fields
+     * 
+     * @return The operation, or null if a field has the wrong format
+     * @throws IllegalArgumentException if the op is unknown or a required
+     *                                  field is missing
+     */
+    private BatchOperation parseOperation(Map<String, String> fields) {
+        String op = fields.get("op");
+        if (op == null) {
+            throw new IllegalArgumentException("op is required");
+        }
+        try {
+            int version = fields.containsKey("version")
+                    ? Integer.parseInt(fields.get("version")) : StorageBackend.ANY_VERSION;
+            switch (op) {
+                case "addStudent":
+                    return BatchOperation.addStudent(parseStudent(fields, 0));
+                case "updateStudent":
+                    return BatchOperation.updateStudent(parseStudent(fields, requiredId(fields)), version);
+                case "deleteStudent":
+                    return BatchOperation.deleteStudent(requiredId(fields));
+                case "addCourse":
+                    return BatchOperation.addCourse(parseCourse(fields, 0));
+                case "updateCourse":
+                    return BatchOperation.updateCourse(parseCourse(fields, requiredId(fields)), version);
+                case "deleteCourse":
+                    return BatchOperation.deleteCourse(requiredId(fields));
+                case "addAttendance":
+                    return BatchOperation.addAttendanceRecord(parseAttendanceRecord(fields, 0));
+                case "updateAttendance":
+                    return BatchOperation.updateAttendanceRecord(
+                            parseAttendanceRecord(fields, requiredId(fields)), version);
+                case "upsertAttendance":
+                    return BatchOperation.upsertAttendanceRecord(parseAttendanceRecord(fields, 0));
+                case "deleteAttendance":
+                    return BatchOperation.deleteAttendanceRecord(requiredId(fields));
+                default:
+                    throw new IllegalArgumentException("Unknown op: " + op);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            System.out.println("Error parsing operation: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private int requiredId(Map<String, String> fields) {
+        String id = fields.get("id");
+        if (id == null || id.equals("null")) {
+            throw new IllegalArgumentException("id is required");
+        }
+        return Integer.parseInt(id);
+    }
+
+    private Student parseStudent(Map<String, String> fields, int id) {
+        String fullName = fields.get("fullName");
+        String email = fields.get("email");
+        if (fullName == null || fullName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Full name is required");
+        }
+        if (email == null || email.trim().isEmpty()) {
+            throw new IllegalArgumentException("Email is required");
+        }
+        if (EntityJson.tooLong(fullName) || EntityJson.tooLong(email)) {
+            throw new IllegalArgumentException(
+                    "Full name and email can have at most " + EntityJson.MAX_TEXT_LENGTH + " characters");
+        }
+        List<Integer> courses = new ArrayList<>();
+        String registeredCourses = fields.get("registeredCourses");
+        if (registeredCourses != null) {
+            if (!registeredCourses.startsWith("[") || !registeredCourses.endsWith("]")) {
+                throw new NumberFormatException("registeredCourses must be an array");
+            }
+            String arrayContent = registeredCourses.substring(1, registeredCourses.length() - 1);
+            if (!arrayContent.trim().isEmpty()) {
+                for (String courseId : arrayContent.split(",")) {
+                    courses.add(Integer.parseInt(courseId.trim()));
+                }
+            }
+        }
+        return new Student(id, fullName, email, courses);
+    }
+
+    private Course parseCourse(Map<String, String> fields, int id) {
+        String name = fields.get("name");
+        String instructor = fields.get("instructor");
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Course name is required");
+        }
+        if (instructor == null || instructor.trim().isEmpty()) {
+            throw new IllegalArgumentException("Instructor is required");
+        }
+        if (EntityJson.tooLong(name) || EntityJson.tooLong(instructor)) {
+            throw new IllegalArgumentException(
+                    "Course name and instructor can have at most " + EntityJson.MAX_TEXT_LENGTH + " characters");
+        }
+        return new Course(id, name, instructor);
+    }
+
+    private AttendanceRecord parseAttendanceRecord(Map<String, String> fields, int id) {
+        String studentId = fields.get("studentId");
+        String courseId = fields.get("courseId");
+        String date = fields.get("date");
+        if (studentId == null || Integer.parseInt(studentId) <= 0) {
+            throw new IllegalArgumentException("Valid student ID is required");
+        }
+        if (courseId == null || Integer.parseInt(courseId) <= 0) {
+            throw new IllegalArgumentException("Valid course ID is required");
+        }
+        if (date == null) {
+            throw new IllegalArgumentException("Date is required");
+        }
+        return new AttendanceRecord(id, Integer.parseInt(studentId), Integer.parseInt(courseId),
+                LocalDate.parse(date, DateTimeFormatter.ISO_LOCAL_DATE), Boolean.parseBoolean(fields.get("present")));
+    }
+
+    /**
+     * Split the contents of a JSON array into its top-level objects
+     * 
+     * @return The objects including their braces, or null if the text is not
+     *         a list of objects
+     */
+    private List<String> splitObjects(String json) {
+        List<String> objects = new ArrayList<>();
+        int depth = 0;
+        int start = -1;
+        boolean inString = false;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                if (depth++ == 0) {
+                    start = i;
+                }
+            } else if (c == '}') {
+                if (--depth < 0) {
+                    return null;
+                }
+                if (depth == 0) {
+                    objects.add(json.substring(start, i + 1));
+                }
+            } else if (depth == 0 && c != ',' && !Character.isWhitespace(c)) {
+                return null;
+            }
+        }
+        return depth == 0 && !inString ? objects : null;
+    }
+
+    /**
+     * Parse a flat JSON object into its fields. Unlike the split-on-commas
+     * parsers of the other servlets this skips commas inside strings and
+     * arrays, so registeredCourses can hold several IDs.
+     * 
+     * @return Field values with strings unquoted and unescaped, or null if
+     *         the object is malformed
+     */
+    private Map<String, String> parseFields(String json) {
+        Map<String, String> fields = new HashMap<>();
+        String body = json.substring(1, json.length() - 1);
+        List<String> pairs = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        boolean inString = false;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '[' || c == '{') {
+                depth++;
+            } else if (c == ']' || c == '}') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                pairs.add(body.substring(start, i));
+                start = i + 1;
+            }
+        }
+        pairs.add(body.substring(start));
+
+        for (String pair : pairs) {
+            if (pair.trim().isEmpty()) {
+                continue;
+            }
+            String key = pair.trim();
+            if (!key.startsWith("\"")) {
+                return null;
+            }
+            int keyEnd = key.indexOf('"', 1);
+            int colon = keyEnd < 0 ? -1 : key.indexOf(':', keyEnd);
+            if (colon < 0) {
+                return null;
+            }
+            String value = key.substring(colon + 1).trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = EntityJson.unescapeJson(value.substring(1, value.length() - 1));
+            }
+            fields.put(key.substring(1, keyEnd), value);
+        }
+        return fields;
+    }
+
+    /**
+     * Describe what each operation wrote, in order: the stored entity, or
+     * the ID for a delete
+     */
+    private String resultsToJson(List<BatchOperation> operations) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"results\":[");
+
+        String separator = "";
+        for (BatchOperation operation : operations) {
+            json.append(separator);
+            if (operation.getStudent() != null) {
+                json.append(EntityJson.studentToJson(operation.getStudent()));
+            } else if (operation.getCourse() != null) {
+                json.append(EntityJson.courseToJson(operation.getCourse()));
+            } else if (operation.getAttendanceRecord() != null) {
+                json.append(EntityJson.attendanceRecordToJson(operation.getAttendanceRecord()));
+            } else {
+                json.append("{\"id\":").append(operation.getId()).append(",\"deleted\":true}");
+            }
+            separator = ",";
+        }
+
+        json.append("]}");
+        return json.toString();
+    }
+
+    @Override
+    public void destroy() {
+        System.out.println("BatchServlet destroyed");
+        super.destroy();
+    }
+}
@@ -0,0 +1,302 @@
+package com.AttendanceManagementSystem.servlet;
+
+import com.AttendanceManagementSystem.storage.ChangeEvent;
+import com.AttendanceManagementSystem.storage.ChangeFeed;
+import com.AttendanceManagementSystem.storage.StorageBackend;
+import com.AttendanceManagementSystem.storage.StorageFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ChangeStreamServlet - Pushes every committed change to subscribers as
+ * Server-Sent Events, so clients can keep their lists current instead of
+ * re-reading them.
+ * 
+ * Supported endpoints:
+ * GET    /changes                  - Stream changes from now on
+ * GET    /changes?lastEventId=ID   - Resume after the event with that ID
+ *                                    (EventSource sends it as the
+ *                                    Last-Event-ID header on reconnect)
+ * 
+ * The stream starts with a "ready" event, or a "reset" event if the changes
+ * since the given ID are no longer known (after a restart, or when they are
+ * too many); a client receiving "reset" reloads everything. Each change is
+ * then a "change" event such as
+ * id: 1718000000000-42
+ * event: change
+ * data: {"sequence":42,"entity":"attendance","action":"put","id":7,"data":{...}}
+ * Deletes carry no data; deleting a student or course also deletes its
+ * attendance records, and "clear" (entity "all") deletes everything.
+ * Deleting a course also withdraws the students registered for it, so the
+ * course's delete event is followed by a student put event (with the new
+ * version) for each of them.
+ * 
+ * Streams use Servlet async I/O and never block a request thread. Events
+ * are only written while the connection can take them; a subscriber that
+ * falls too far behind gets a "reset" event and continues from there.
+ * A stream ends after STREAM_TIMEOUT_MILLIS and the client reconnects.
+ */
+public class ChangeStreamServlet extends HttpServlet {
+
+    // Streams are ended after this long; EventSource reconnects and resumes
+    private static final long STREAM_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    // Reconnect delay suggested to EventSource clients
+    private static final int RETRY_MILLIS = 2000;
+
+    private StorageBackend dataStore;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        long start = System.nanoTime();
+        dataStore = StorageFactory.getBackend(getServletContext()::getInitParameter);
+        System.out.println("ChangeStreamServlet initialized successfully for Tomcat in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * GET /changes - Open an event stream
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        String pathInfo = request.getPathInfo();
+        if (pathInfo != null && !pathInfo.equals("/")) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid URL format");
+            return;
+        }
+
+        ChangeFeed feed = dataStore.getChangeFeed();
+        String lastEventId = request.getHeader("Last-Event-ID");
+        if (lastEventId == null) {
+            lastEventId = request.getParameter("lastEventId");
+        }
+        long afterSequence = parseLastEventId(lastEventId, feed);
+        if (afterSequence == Long.MIN_VALUE) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid event ID: " + lastEventId);
+            return;
+        }
+
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+
+        AsyncContext async = request.startAsync();
+        async.setTimeout(STREAM_TIMEOUT_MILLIS);
+        EventStream stream = new EventStream(async, response.getOutputStream(), feed);
+        async.addListener(stream);
+        stream.start(afterSequence);
+    }
+
+    /**
+     * Parse an event ID of the form epoch-sequence
+     * 
+     * @return The sequence to resume after: -1 if no ID was given, or
+     *         Long.MAX_VALUE (which makes the feed reset) if the ID is from
+     *         another epoch; Long.MIN_VALUE if the ID is malformed
+     */
+    private long parseLastEventId(String lastEventId, ChangeFeed feed) {
+        if (lastEventId == null || lastEventId.trim().isEmpty()) {
+            return -1;
+        }
+        String[] parts = lastEventId.trim().split("-");
+        if (parts.length != 2) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            long epoch = Long.parseLong(parts[0]);
+            long sequence = Long.parseLong(parts[1]);
+            if (sequence < 0) {
+                return Long.MIN_VALUE;
+            }
+            return epoch == feed.getEpoch() ? sequence : Long.MAX_VALUE;
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * One subscriber's connection. Events are pulled from the subscription
+     * only while the container says the connection can take more, so the
+     * only buffer a slow client fills is the feed's own ring.
+     */
+    private final class EventStream implements WriteListener, AsyncListener {
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private final ChangeFeed feed;
+        private ChangeFeed.Subscription subscription;
+        // Set while a drain is queued on a container thread
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Event the connection could not take yet
+        private byte[] pending;
+        private boolean started;
+        private boolean finished;
+
+        EventStream(AsyncContext async, ServletOutputStream out, ChangeFeed feed) {
+            this.async = async;
+            this.out = out;
+            this.feed = feed;
+        }
+
+        void start(long afterSequence) {
+            // Runs on the writing thread, under the store's locks: only queue a drain
+            subscription = feed.subscribe(afterSequence, () -> {
+                if (scheduled.compareAndSet(false, true)) {
+                    try {
+                        async.start(this::drain);
+                    } catch (IllegalStateException e) {
+                        // Already completed
+                    }
+                }
+            });
+            out.setWriteListener(this);
+        }
+
+        @Override
+        public void onWritePossible() {
+            drain();
+        }
+
+        /**
+         * Write events until there are none left or the connection is full;
+         * in the latter case the container calls onWritePossible() later
+         */
+        private synchronized void drain() {
+            scheduled.set(false);
+            if (finished) {
+                return;
+            }
+            try {
+                boolean wrote = false;
+                while (out.isReady()) {
+                    if (pending == null) {
+                        pending = nextEvent();
+                    }
+                    if (pending == null) {
+                        if (wrote) {
+                            out.flush();
+                        }
+                        return;
+                    }
+                    out.write(pending);
+                    pending = null;
+                    wrote = true;
+                }
+            } catch (IOException e) {
+                finish();
+            }
+        }
+
+        /**
+         * @return The next event in wire format, or null if there is none
+         */
+        private byte[] nextEvent() {
+            String event;
+            if (!started) {
+                started = true;
+                String name = subscription.takeReset() ? "reset" : "ready";
+                long position = subscription.getPosition();
+                event = "retry: " + RETRY_MILLIS + "\n"
+                        + frame(position, name, "{\"sequence\":" + position + "}");
+            } else if (subscription.takeReset()) {
+                long position = subscription.getPosition();
+                event = frame(position, "reset", "{\"sequence\":" + position + "}");
+            } else {
+                ChangeEvent change = subscription.poll();
+                if (change == null) {
+                    return null;
+                }
+                event = frame(change.getSequence(), "change", changeToJson(change));
+            }
+            return event.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private String frame(long sequence, String name, String data) {
+            return "id: " + feed.getEpoch() + "-" + sequence + "\nevent: " + name + "\ndata: " + data + "\n\n";
+        }
+
+        private synchronized void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            subscription.close();
+            try {
+                async.complete();
+            } catch (IllegalStateException e) {
+                // Already completed
+            }
+        }
+
+        @Override
+        public void onError(Throwable failure) {
+            finish();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            subscription.close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            finish();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            finish();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Not restarted
+        }
+    }
+
+    private String changeToJson(ChangeEvent change) {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"sequence\":").append(change.getSequence()).append(",");
+        json.append("\"entity\":\"").append(change.getEntity().name().toLowerCase()).append("\",");
+        json.append("\"action\":\"").append(change.getAction().name().toLowerCase()).append("\",");
+        json.append("\"id\":").append(change.getId());
+        if (change.getStudent() != null) {
+            json.append(",\"data\":").append(EntityJson.studentToJson(change.getStudent()));
+        } else if (change.getCourse() != null) {
+            json.append(",\"data\":").append(EntityJson.courseToJson(change.getCourse()));
+        } else if (change.getAttendanceRecord() != null) {
+            json.append(",\"data\":").append(EntityJson.attendanceRecordToJson(change.getAttendanceRecord()));
+        }
+        json.append("}");
+        return json.toString();
+    }
+
+    private void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter out = response.getWriter();
+        out.print("{\"error\":\"" + EntityJson.escapeJson(message) + "\"}");
+        out.flush();
+    }
+
+    @Override
+    public void destroy() {
+        System.out.println("ChangeStreamServlet destroyed");
+        super.destroy();
+    }
+}
@@ -1,7 +1,10 @@
 package com.AttendanceManagementSystem.servlet;
 
 import com.AttendanceManagementSystem.model.Course;
-import com.AttendanceManagementSystem.storage.DataStore;
+import com.AttendanceManagementSystem.model.Student;
+import com.AttendanceManagementSystem.storage.StorageBackend;
+import com.AttendanceManagementSystem.storage.StorageFactory;
+import com.AttendanceManagementSystem.storage.VersionConflictException;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -10,6 +13,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -17,25 +21,35 @@ import java.util.List;
  * 
  * Supported endpoints:
  * GET    /courses        - List all courses
+ * GET    /courses?q=mat&limit=10 - Search courses by name or instructor (type-ahead)
  * POST   /courses        - Add new course
  * GET    /courses/{id}   - Get course by ID
- * PUT    /courses/{id}   - Update course
+ * GET    /courses/{id}/students - List students registered for the course
+ * PUT    /courses/{id}   - Update course (If-Match: "version" optional, 412 if stale)
  * DELETE /courses/{id}   - Delete course
  */
 public class CourseServlet extends HttpServlet {
+
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 100;
     
-    private DataStore dataStore;
+    private StorageBackend dataStore;
 
     @Override
     public void init() throws ServletException {
         super.init();
-        dataStore = DataStore.getInstance();
-        System.out.println("CourseServlet initialized successfully for Tomcat");
+        long start = System.nanoTime();
+        dataStore = StorageFactory.getBackend(getServletContext()::getInitParameter);
+        System.out.println("CourseServlet initialized successfully for Tomcat in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        System.out.println(dataStore.getStartupReport());
     }
 
     /**
      * GET /courses - List all courses
+     * GET /courses?q=mat&limit=10 - Search courses by name or instructor
      * GET /courses/{id} - Get course by ID
+     * GET /courses/{id}/students - List students registered for the course
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
@@ -48,10 +62,25 @@ public class CourseServlet extends HttpServlet {
         PrintWriter out = response.getWriter();
         
         try {
-            if (pathInfo == null || pathInfo.equals("/")) {
+            if ((pathInfo == null || pathInfo.equals("/")) && request.getParameter("q") != null) {
+                // GET /courses?q=mat&limit=10 - Search through the trigram index
+                int limit = parseLimit(request.getParameter("limit"));
+                if (limit < 0) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.print("{\"error\":\"limit must be a number between 1 and " + MAX_SEARCH_LIMIT + "\"}");
+                    return;
+                }
+                List<Course> courses = dataStore.searchCourses(request.getParameter("q"), limit);
+
+                response.setStatus(HttpServletResponse.SC_OK);
+                out.print(EntityJson.coursesToJson(courses));
+
+                System.out.println("GET /courses?q - Returned " + courses.size() + " courses");
+
+            } else if (pathInfo == null || pathInfo.equals("/")) {
                 // GET /courses - List all courses
-                List<Course> courses = dataStore.getAllCourses();
-                String jsonResponse = coursesToJson(courses);
+                Collection<Course> courses = dataStore.getAllCourses();
+                String jsonResponse = EntityJson.coursesToJson(courses);
                 
                 response.setStatus(HttpServletResponse.SC_OK);
                 out.print(jsonResponse);
@@ -67,8 +96,9 @@ public class CourseServlet extends HttpServlet {
                         Course course = dataStore.getCourseById(courseId);
                         
                         if (course != null) {
-                            String jsonResponse = courseToJson(course);
+                            String jsonResponse = EntityJson.courseToJson(course);
                             response.setStatus(HttpServletResponse.SC_OK);
+                            response.setHeader("ETag", EntityTags.etag(course.getVersion()));
                             out.print(jsonResponse);
                             
                             System.out.println("GET /courses/" + courseId + " - Course found");
@@ -82,6 +112,29 @@ public class CourseServlet extends HttpServlet {
                         response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                         out.print("{\"error\":\"Invalid course ID format\"}");
                         
+                        System.out.println("GET /courses - Invalid ID format: " + pathParts[1]);
+                    }
+                } else if (pathParts.length == 3 && pathParts[2].equals("students")) {
+                    // GET /courses/{id}/students - Served from the enrollment index
+                    try {
+                        int courseId = Integer.parseInt(pathParts[1]);
+                        if (!dataStore.courseExists(courseId)) {
+                            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                            out.print("{\"error\":\"Course not found with ID: " + courseId + "\"}");
+
+                            System.out.println("GET /courses/" + courseId + "/students - Course not found");
+                            return;
+                        }
+                        List<Student> students = dataStore.getStudentsByCourse(courseId);
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        out.print(EntityJson.studentsToJson(students));
+
+                        System.out.println("GET /courses/" + courseId + "/students - Returned " + students.size()
+                                + " students");
+                    } catch (NumberFormatException e) {
+                        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                        out.print("{\"error\":\"Invalid course ID format\"}");
+
                         System.out.println("GET /courses - Invalid ID format: " + pathParts[1]);
                     }
                 } else {
@@ -150,11 +203,18 @@ public class CourseServlet extends HttpServlet {
                 return;
             }
             
+            if (EntityJson.tooLong(newCourse.getName()) || EntityJson.tooLong(newCourse.getInstructor())) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Course name and instructor can have at most " + EntityJson.MAX_TEXT_LENGTH
+                        + " characters\"}");
+                return;
+            }
+            
             // Add course to datastore (ID will be auto-generated)
             Course savedCourse = dataStore.addCourse(newCourse);
             
             // Return created course
-            String jsonResponse = courseToJson(savedCourse);
+            String jsonResponse = EntityJson.courseToJson(savedCourse);
             response.setStatus(HttpServletResponse.SC_CREATED);
             out.print(jsonResponse);
             
@@ -255,16 +315,48 @@ public class CourseServlet extends HttpServlet {
                 return;
             }
             
-            // Update course in datastore
-            Course savedCourse = dataStore.updateCourse(updatedCourse);
+            if (EntityJson.tooLong(updatedCourse.getName()) || EntityJson.tooLong(updatedCourse.getInstructor())) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Course name and instructor can have at most " + EntityJson.MAX_TEXT_LENGTH
+                        + " characters\"}");
+                return;
+            }
+            
+            int expectedVersion;
+            try {
+                expectedVersion = EntityTags.parseIfMatch(request.getHeader("If-Match"), () -> {
+                    Course stored = dataStore.getCourseById(courseId);
+                    return stored != null ? stored.getVersion() : 0;
+                });
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"" + EntityJson.escapeJson(e.getMessage()) + "\"}");
+                return;
+            }
+
+            // Update course in datastore, only if it is still at the version the client saw
+            Course savedCourse = dataStore.updateCourse(updatedCourse, expectedVersion);
+            
+            if (savedCourse == null) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print("{\"error\":\"Course not found with ID: " + courseId + "\"}");
+                return;
+            }
             
             // Return updated course
-            String jsonResponse = courseToJson(savedCourse);
+            String jsonResponse = EntityJson.courseToJson(savedCourse);
             response.setStatus(HttpServletResponse.SC_OK);
+            response.setHeader("ETag", EntityTags.etag(savedCourse.getVersion()));
             out.print(jsonResponse);
             
             System.out.println("PUT /courses/" + courseId + " - Course updated successfully");
             
+        } catch (VersionConflictException e) {
+            response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+            response.setHeader("ETag", EntityTags.etag(e.getCurrentVersion()));
+            out.print("{\"error\":\"" + EntityJson.escapeJson(e.getMessage()) + "\"}");
+            
+            System.out.println("PUT /courses - Precondition failed: " + e.getMessage());
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             out.print("{\"error\":\"Invalid JSON format: " + e.getMessage() + "\"}");
@@ -337,34 +429,20 @@ public class CourseServlet extends HttpServlet {
     }
 
     /**
-     * Convert Course object to JSON string
-     */
-    private String courseToJson(Course course) {
-        StringBuilder json = new StringBuilder();
-        json.append("{");
-        json.append("\"id\":").append(course.getId()).append(",");
-        json.append("\"name\":\"").append(escapeJson(course.getName())).append("\",");
-        json.append("\"instructor\":\"").append(escapeJson(course.getInstructor())).append("\"");
-        json.append("}");
-        return json.toString();
-    }
-
-    /**
-     * Convert list of Courses to JSON array string
+     * Parse the optional search limit
+     * 
+     * @return Limit, DEFAULT_SEARCH_LIMIT if absent, or -1 if invalid
      */
-    private String coursesToJson(List<Course> courses) {
-        StringBuilder json = new StringBuilder();
-        json.append("[");
-        
-        for (int i = 0; i < courses.size(); i++) {
-            json.append(courseToJson(courses.get(i)));
-            if (i < courses.size() - 1) {
-                json.append(",");
-            }
+    private int parseLimit(String limitParam) {
+        if (limitParam == null) {
+            return DEFAULT_SEARCH_LIMIT;
+        }
+        try {
+            int limit = Integer.parseInt(limitParam);
+            return limit >= 1 && limit <= MAX_SEARCH_LIMIT ? limit : -1;
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        
-        json.append("]");
-        return json.toString();
     }
 
     /**
@@ -395,10 +473,10 @@ public class CourseServlet extends HttpServlet {
                             }
                             break;
                         case "name":
-                            course.setName(unescapeJson(value.replace("\"", "")));
+                            course.setName(EntityJson.unescapeJson(value.replace("\"", "")));
                             break;
                         case "instructor":
-                            course.setInstructor(unescapeJson(value.replace("\"", "")));
+                            course.setInstructor(EntityJson.unescapeJson(value.replace("\"", "")));
                             break;
                     }
                 }
@@ -412,30 +490,6 @@ public class CourseServlet extends HttpServlet {
         }
     }
 
-    /**
-     * Escape special characters for JSON
-     */
-    private String escapeJson(String str) {
-        if (str == null) return "";
-        return str.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
-    }
-
-    /**
-     * Unescape JSON special characters
-     */
-    private String unescapeJson(String str) {
-        if (str == null) return "";
-        return str.replace("\\\"", "\"")
-                  .replace("\\\\", "\\")
-                  .replace("\\n", "\n")
-                  .replace("\\r", "\r")
-                  .replace("\\t", "\t");
-    }
-
     @Override
     public void destroy() {
         System.out.println("CourseServlet destroyed");
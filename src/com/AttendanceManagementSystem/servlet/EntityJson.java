@@ -0,0 +1,151 @@
+package com.AttendanceManagementSystem.servlet;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+import com.AttendanceManagementSystem.model.Course;
+import com.AttendanceManagementSystem.model.Student;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+
+/**
+ * EntityJson - Writes students, courses and attendance records in the one
+ * JSON shape every endpoint returns them in, alone, in arrays or embedded
+ * in a larger document (batch results, change stream events), and escapes
+ * strings for the servlets' hand-written JSON.
+ */
+final class EntityJson {
+
+    // Longest name, email or instructor accepted, in characters
+    static final int MAX_TEXT_LENGTH = 1000;
+
+    private EntityJson() {
+    }
+
+    /**
+     * @return Whether a text field is longer than MAX_TEXT_LENGTH
+     */
+    static boolean tooLong(String value) {
+        return value != null && value.length() > MAX_TEXT_LENGTH;
+    }
+
+    static String studentToJson(Student student) {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"id\":").append(student.getId()).append(",");
+        json.append("\"fullName\":\"").append(escapeJson(student.getFullName())).append("\",");
+        json.append("\"email\":\"").append(escapeJson(student.getEmail())).append("\",");
+        json.append("\"registeredCourses\":[");
+
+        String[] separator = { "" };
+        student.forEachRegisteredCourse(courseId -> {
+            json.append(separator[0]).append(courseId);
+            separator[0] = ",";
+        });
+
+        json.append("],\"version\":").append(student.getVersion()).append("}");
+        return json.toString();
+    }
+
+    /**
+     * Convert Students to a JSON array string
+     */
+    static String studentsToJson(Collection<Student> students) {
+        StringBuilder json = new StringBuilder();
+        json.append("[");
+
+        String separator = "";
+        for (Student student : students) {
+            json.append(separator).append(studentToJson(student));
+            separator = ",";
+        }
+
+        json.append("]");
+        return json.toString();
+    }
+
+    static String courseToJson(Course course) {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"id\":").append(course.getId()).append(",");
+        json.append("\"name\":\"").append(escapeJson(course.getName())).append("\",");
+        json.append("\"instructor\":\"").append(escapeJson(course.getInstructor())).append("\",");
+        json.append("\"version\":").append(course.getVersion());
+        json.append("}");
+        return json.toString();
+    }
+
+    /**
+     * Convert Courses to a JSON array string
+     */
+    static String coursesToJson(Collection<Course> courses) {
+        StringBuilder json = new StringBuilder();
+        json.append("[");
+
+        String separator = "";
+        for (Course course : courses) {
+            json.append(separator).append(courseToJson(course));
+            separator = ",";
+        }
+
+        json.append("]");
+        return json.toString();
+    }
+
+    static String attendanceRecordToJson(AttendanceRecord record) {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"id\":").append(record.getId()).append(",");
+        json.append("\"studentId\":").append(record.getStudentId()).append(",");
+        json.append("\"courseId\":").append(record.getCourseId()).append(",");
+        if (record.getDate() != null) {
+            json.append("\"date\":\"").append(record.getDate().format(DateTimeFormatter.ISO_LOCAL_DATE)).append("\",");
+        } else {
+            json.append("\"date\":null,");
+        }
+        json.append("\"present\":").append(record.isPresent()).append(",");
+        json.append("\"version\":").append(record.getVersion());
+        json.append("}");
+        return json.toString();
+    }
+
+    /**
+     * Convert AttendanceRecords to a JSON array string
+     */
+    static String attendanceRecordsToJson(Collection<AttendanceRecord> records) {
+        StringBuilder json = new StringBuilder();
+        json.append("[");
+
+        String separator = "";
+        for (AttendanceRecord record : records) {
+            json.append(separator).append(attendanceRecordToJson(record));
+            separator = ",";
+        }
+
+        json.append("]");
+        return json.toString();
+    }
+
+    /**
+     * Escape special characters for JSON
+     */
+    static String escapeJson(String str) {
+        if (str == null) return "";
+        return str.replace("\\", "\\\\")
+                  .replace("\"", "\\\"")
+                  .replace("\n", "\\n")
+                  .replace("\r", "\\r")
+                  .replace("\t", "\\t");
+    }
+
+    /**
+     * Unescape JSON special characters
+     */
+    static String unescapeJson(String str) {
+        if (str == null) return "";
+        return str.replace("\\\"", "\"")
+                  .replace("\\\\", "\\")
+                  .replace("\\n", "\n")
+                  .replace("\\r", "\r")
+                  .replace("\\t", "\t");
+    }
+}
@@ -0,0 +1,71 @@
+package com.AttendanceManagementSystem.servlet;
+
+import com.AttendanceManagementSystem.storage.StorageBackend;
+
+import java.util.function.IntSupplier;
+
+/**
+ * EntityTags - ETag and If-Match handling for the servlets that update
+ * versioned entities. An entity's ETag is its version in quotes.
+ */
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    /**
+     * Format a version as a strong ETag
+     */
+    static String etag(int version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Parse the optional If-Match header of a PUT. A weak tag (W/"3") is
+     * compared by its version like a strong one, and a list ("3", "4")
+     * matches if the stored version is any of them.
+     *
+     * @param ifMatch        Header value, or null
+     * @param currentVersion Reads the stored version (0 if there is none);
+     *                       only called for a list
+     * @return Version the entity must be at, ANY_VERSION if the header is
+     *         absent or "*", or 0 (matches nothing) for tags we never issued
+     * @throws IllegalArgumentException if the header is neither "*" nor a
+     *                                  list of quoted tags
+     */
+    static int parseIfMatch(String ifMatch, IntSupplier currentVersion) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return StorageBackend.ANY_VERSION;
+        }
+        String[] tags = ifMatch.split(",");
+        int[] versions = new int[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            versions[i] = parseTag(tags[i].trim(), ifMatch);
+        }
+        if (versions.length == 1) {
+            return versions[0];
+        }
+        // The store compares one version atomically, so pass the stored one if it is listed
+        int current = currentVersion.getAsInt();
+        for (int version : versions) {
+            if (version == current) {
+                return current;
+            }
+        }
+        return versions[0];
+    }
+
+    private static int parseTag(String tag, String header) {
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new IllegalArgumentException("Malformed If-Match header: " + header);
+        }
+        try {
+            return Math.max(0, Integer.parseInt(tag.substring(1, tag.length() - 1)));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
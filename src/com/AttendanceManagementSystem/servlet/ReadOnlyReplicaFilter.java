@@ -0,0 +1,61 @@
+package com.AttendanceManagementSystem.servlet;
+
+import com.AttendanceManagementSystem.storage.StorageConfig.ReplicationRole;
+import com.AttendanceManagementSystem.storage.StorageFactory;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * ReadOnlyReplicaFilter - On a replication follower, turns away every
+ * request that could write before it reaches a servlet, so clients get a
+ * clear 405 instead of a failed write.
+ * 
+ * GET, HEAD and OPTIONS pass through; anything else is answered with
+ * 405 Method Not Allowed and {"error":"..."}. On a leader or a standalone
+ * instance the filter passes every request through.
+ */
+public class ReadOnlyReplicaFilter implements Filter {
+
+    private boolean readOnly;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        readOnly = StorageFactory.getBackend(filterConfig.getServletContext()::getInitParameter)
+                .getReplicationStatus().getRole() == ReplicationRole.FOLLOWER;
+        System.out.println("ReadOnlyReplicaFilter initialized" + (readOnly ? ": rejecting writes on this replica" : ""));
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        String method = ((HttpServletRequest) request).getMethod();
+        if (!readOnly || method.equals("GET") || method.equals("HEAD") || method.equals("OPTIONS")) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        httpResponse.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+        httpResponse.setHeader("Allow", "GET, HEAD, OPTIONS");
+        httpResponse.setContentType("application/json");
+        httpResponse.setCharacterEncoding("UTF-8");
+        PrintWriter out = httpResponse.getWriter();
+        out.print("{\"error\":\"This instance is a read-only replica; send writes to the leader\"}");
+        out.flush();
+    }
+
+    @Override
+    public void destroy() {
+        System.out.println("ReadOnlyReplicaFilter destroyed");
+    }
+}
@@ -0,0 +1,110 @@
+package com.AttendanceManagementSystem.servlet;
+
+import com.AttendanceManagementSystem.storage.ReplicationStatus;
+import com.AttendanceManagementSystem.storage.StorageBackend;
+import com.AttendanceManagementSystem.storage.StorageFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * ReplicationServlet - Reports this instance's part in replication and its
+ * replication lag.
+ * 
+ * Supported endpoints:
+ * GET    /replication    - Replication status
+ * 
+ * A follower reports e.g.
+ * {"role":"follower","state":"streaming","connected":true,"appliedSequence":42,
+ *  "leaderSequence":42,"lagMutations":0,"lagMillis":0}
+ * and a leader lists its followers with the last mutation sent to each and
+ * the last one each reported as applied (lagMutations counts from the
+ * leader's latest):
+ * {"role":"leader","appliedSequence":42,"leaderSequence":42,"lagMutations":0,"lagMillis":0,
+ *  "followers":[{"address":"/127.0.0.1:51234","streaming":true,"sentSequence":42,
+ *  "appliedSequence":41,"lagMutations":1}]}
+ */
+public class ReplicationServlet extends HttpServlet {
+
+    private StorageBackend dataStore;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        long start = System.nanoTime();
+        dataStore = StorageFactory.getBackend(getServletContext()::getInitParameter);
+        System.out.println("ReplicationServlet initialized successfully for Tomcat in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * GET /replication - Get the replication status
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        String pathInfo = request.getPathInfo();
+        PrintWriter out = response.getWriter();
+
+        if (pathInfo != null && !pathInfo.equals("/")) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"Invalid URL format\"}");
+            out.flush();
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        out.print(statusToJson(dataStore.getReplicationStatus()));
+        out.flush();
+    }
+
+    private String statusToJson(ReplicationStatus status) {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"role\":\"").append(status.getRole().name().toLowerCase()).append("\",");
+        if (status.getState() != null) {
+            json.append("\"state\":\"").append(EntityJson.escapeJson(status.getState())).append("\",");
+            json.append("\"connected\":").append(status.isConnected()).append(",");
+        }
+        json.append("\"appliedSequence\":").append(status.getAppliedSequence()).append(",");
+        json.append("\"leaderSequence\":").append(status.getLeaderSequence()).append(",");
+        json.append("\"lagMutations\":").append(status.getLagMutations()).append(",");
+        json.append("\"lagMillis\":").append(status.getLagMillis());
+        if (!status.getFollowers().isEmpty()) {
+            json.append(",\"followers\":[");
+            for (int i = 0; i < status.getFollowers().size(); i++) {
+                if (i > 0) json.append(",");
+                json.append(followerToJson(status.getFollowers().get(i), status.getLeaderSequence()));
+            }
+            json.append("]");
+        }
+        json.append("}");
+        return json.toString();
+    }
+
+    private String followerToJson(ReplicationStatus.Follower follower, long leaderSequence) {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"address\":\"").append(EntityJson.escapeJson(follower.getAddress())).append("\",");
+        json.append("\"streaming\":").append(follower.isStreaming()).append(",");
+        json.append("\"sentSequence\":").append(follower.getSentSequence()).append(",");
+        json.append("\"appliedSequence\":").append(follower.getAppliedSequence()).append(",");
+        json.append("\"lagMutations\":").append(leaderSequence - follower.getAppliedSequence());
+        json.append("}");
+        return json.toString();
+    }
+
+    @Override
+    public void destroy() {
+        System.out.println("ReplicationServlet destroyed");
+        super.destroy();
+    }
+}
@@ -0,0 +1,364 @@
+package com.AttendanceManagementSystem.servlet;
+
+import com.AttendanceManagementSystem.storage.AbsenceDistribution;
+import com.AttendanceManagementSystem.storage.AttendanceStats;
+import com.AttendanceManagementSystem.storage.ReportDimension;
+import com.AttendanceManagementSystem.storage.ReportRow;
+import com.AttendanceManagementSystem.storage.StorageBackend;
+import com.AttendanceManagementSystem.storage.StorageFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * ReportServlet - Attendance reports rolled up from the store's
+ * (student, course, week) cube instead of scanned from records.
+ *
+ * Supported endpoints:
+ * GET    /reports/attendance?groupBy=course,week            - Attendance by course and ISO week
+ * GET    /reports/attendance?groupBy=instructor,month       - Attendance by instructor and month
+ * GET    /reports/attendance?groupBy=student,term           - Attendance by student and term
+ *
+ * groupBy takes any of student, course, instructor, week, month and term
+ * (none gives one total row). Drill down by filtering on a group's values
+ * with studentId, courseId, instructor, week (2025-W07), month (2025-03)
+ * or term (2024-T2) and grouping by something finer, e.g.
+ * GET /reports/attendance?groupBy=course,week&instructor=Dr.%20Smith&month=2025-03
+ *
+ * Response: {"groupBy":["instructor","month"],"rows":[{"instructor":"Dr. Smith",
+ *  "month":"2025-03","present":40,"absent":8,"total":48,"percentage":83.3}]}
+ *
+ * Term-end reports scan every record in the range in parallel instead:
+ * GET    /reports/absentees?from=2025-02-01&to=2025-06-30&minAbsencePercent=20&minRecords=5
+ *        - Students absent from at least 20% of their classes across all courses
+ * GET    /reports/absence-distribution?from=2025-02-01&to=2025-06-30
+ *        - Per course, how many students missed 0-10%, 10-20%, ... of their classes
+ *
+ * These scans never hold back writes, so they are weakly consistent: one
+ * that keeps overlapping POST /batch requests may count part of a batch,
+ * which /batch otherwise guarantees is seen all or nothing. Counts are off
+ * by at most what the overlapping batches wrote.
+ */
+public class ReportServlet extends HttpServlet {
+
+    private static final Pattern WEEK = Pattern.compile("\\d{4}-W\\d{2}");
+    private static final Pattern MONTH = Pattern.compile("\\d{4}-\\d{2}");
+    private static final Pattern TERM = Pattern.compile("\\d{4}-T\\d+");
+
+    private StorageBackend dataStore;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        long start = System.nanoTime();
+        dataStore = StorageFactory.getBackend(getServletContext()::getInitParameter);
+        System.out.println("ReportServlet initialized successfully for Tomcat in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * GET /reports/attendance - Get an attendance report
+     * GET /reports/absentees - Get chronic absentees
+     * GET /reports/absence-distribution - Get each course's absence distribution
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        String pathInfo = request.getPathInfo();
+        PrintWriter out = response.getWriter();
+
+        if ("/attendance".equals(pathInfo)) {
+            getAttendanceReport(request, response, out);
+        } else if ("/absentees".equals(pathInfo)) {
+            getChronicAbsentees(request, response, out);
+        } else if ("/absence-distribution".equals(pathInfo)) {
+            getAbsenceDistribution(request, response, out);
+        } else {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            out.print("{\"error\":\"Unknown report, expected /reports/attendance, /reports/absentees"
+                    + " or /reports/absence-distribution\"}");
+        }
+        out.flush();
+    }
+
+    /**
+     * Roll attendance up from the cube by the requested dimensions
+     */
+    private void getAttendanceReport(HttpServletRequest request, HttpServletResponse response, PrintWriter out) {
+        List<ReportDimension> groupBy = new ArrayList<>();
+        String groupByParam = request.getParameter("groupBy");
+        if (groupByParam != null && !groupByParam.trim().isEmpty()) {
+            for (String name : groupByParam.split(",")) {
+                ReportDimension dimension = parseDimension(name.trim());
+                if (dimension == null || groupBy.contains(dimension)) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.print("{\"error\":\"Invalid groupBy parameter: " + EntityJson.escapeJson(groupByParam)
+                            + ", expected distinct values from student, course, instructor, week, month, term\"}");
+                    return;
+                }
+                groupBy.add(dimension);
+            }
+        }
+
+        Map<ReportDimension, String> filters = new EnumMap<>(ReportDimension.class);
+        if (!addIdFilter(request, response, out, filters, ReportDimension.STUDENT, "studentId")
+                || !addIdFilter(request, response, out, filters, ReportDimension.COURSE, "courseId")
+                || !addFilter(request, response, out, filters, ReportDimension.WEEK, "week", WEEK, "yyyy-Www")
+                || !addFilter(request, response, out, filters, ReportDimension.MONTH, "month", MONTH, "yyyy-MM")
+                || !addFilter(request, response, out, filters, ReportDimension.TERM, "term", TERM, "yyyy-Tn")) {
+            return;
+        }
+        String instructor = request.getParameter("instructor");
+        if (instructor != null) {
+            filters.put(ReportDimension.INSTRUCTOR, instructor);
+        }
+
+        long start = System.nanoTime();
+        List<ReportRow> rows = dataStore.getAttendanceReport(groupBy, filters);
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        out.print(reportToJson(groupBy, rows));
+
+        System.out.println("GET /reports/attendance - groupBy " + groupBy + ", filters " + filters + ": "
+                + rows.size() + " rows in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * List students absent from at least minAbsencePercent of their classes
+     * (default 20) in the date range, among those with at least minRecords
+     * records in it (default 5)
+     */
+    private void getChronicAbsentees(HttpServletRequest request, HttpServletResponse response, PrintWriter out) {
+        LocalDate[] range = parseRange(request, response, out);
+        if (range == null) {
+            return;
+        }
+        int minAbsencePercent;
+        int minRecords;
+        try {
+            String percentParam = request.getParameter("minAbsencePercent");
+            String recordsParam = request.getParameter("minRecords");
+            minAbsencePercent = percentParam != null ? Integer.parseInt(percentParam.trim()) : 20;
+            minRecords = recordsParam != null ? Integer.parseInt(recordsParam.trim()) : 5;
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"Invalid minAbsencePercent or minRecords parameter format\"}");
+            return;
+        }
+        if (minAbsencePercent < 0 || minAbsencePercent > 100 || minRecords < 0) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"minAbsencePercent must be between 0 and 100 and minRecords must not be negative\"}");
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<ReportRow> rows = dataStore.getChronicAbsentees(range[0], range[1], minAbsencePercent / 100.0, minRecords);
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"minAbsencePercent\":").append(minAbsencePercent).append(",");
+        json.append("\"minRecords\":").append(minRecords).append(",");
+        json.append("\"students\":[");
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) json.append(",");
+            json.append("{\"studentId\":").append(rows.get(i).getKeys().get(0)).append(",");
+            appendStats(json, rows.get(i).getStats());
+            json.append("}");
+        }
+        json.append("]}");
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        out.print(json.toString());
+
+        System.out.println("GET /reports/absentees - " + range[0] + " to " + range[1] + ", " + minAbsencePercent
+                + "% absent: " + rows.size() + " students in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * For each course, count its students in each 10% band of absence rate
+     * over the date range
+     */
+    private void getAbsenceDistribution(HttpServletRequest request, HttpServletResponse response, PrintWriter out) {
+        LocalDate[] range = parseRange(request, response, out);
+        if (range == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<AbsenceDistribution> courses = dataStore.getAbsenceDistribution(range[0], range[1]);
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"courses\":[");
+        for (int i = 0; i < courses.size(); i++) {
+            AbsenceDistribution course = courses.get(i);
+            if (i > 0) json.append(",");
+            json.append("{\"courseId\":").append(course.getCourseId()).append(",");
+            json.append("\"students\":").append(course.getStudents()).append(",");
+            json.append("\"studentsByAbsenceDecile\":[");
+            int[] deciles = course.getStudentsByDecile();
+            for (int d = 0; d < deciles.length; d++) {
+                if (d > 0) json.append(",");
+                json.append(deciles[d]);
+            }
+            json.append("],");
+            appendStats(json, course.getStats());
+            json.append("}");
+        }
+        json.append("]}");
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        out.print(json.toString());
+
+        System.out.println("GET /reports/absence-distribution - " + range[0] + " to " + range[1] + ": "
+                + courses.size() + " courses in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Parse the optional, inclusive from and to parameters
+     *
+     * @return {from, to}, either null when not given; null if invalid (400 already written)
+     */
+    private LocalDate[] parseRange(HttpServletRequest request, HttpServletResponse response, PrintWriter out) {
+        LocalDate[] range = new LocalDate[2];
+        String[] names = {"from", "to"};
+        for (int i = 0; i < names.length; i++) {
+            String value = request.getParameter(names[i]);
+            if (value != null) {
+                try {
+                    range[i] = LocalDate.parse(value.trim(), DateTimeFormatter.ISO_LOCAL_DATE);
+                } catch (DateTimeParseException e) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.print("{\"error\":\"Invalid " + names[i] + " parameter format, expected yyyy-MM-dd\"}");
+                    return null;
+                }
+            }
+        }
+        if (range[0] != null && range[1] != null && range[0].isAfter(range[1])) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"from date must not be after to date\"}");
+            return null;
+        }
+        return range;
+    }
+
+    private static ReportDimension parseDimension(String name) {
+        for (ReportDimension dimension : ReportDimension.values()) {
+            if (dimension.name().equalsIgnoreCase(name)) {
+                return dimension;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add a student or course ID filter if the parameter is present
+     *
+     * @return false if the parameter is not a number (400 already written)
+     */
+    private boolean addIdFilter(HttpServletRequest request, HttpServletResponse response, PrintWriter out,
+            Map<ReportDimension, String> filters, ReportDimension dimension, String parameter) {
+        String value = request.getParameter(parameter);
+        if (value == null) {
+            return true;
+        }
+        try {
+            // Normalised, so e.g. 007 matches course 7
+            filters.put(dimension, String.valueOf(Integer.parseInt(value.trim())));
+            return true;
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"Invalid " + parameter + " parameter format\"}");
+            return false;
+        }
+    }
+
+    /**
+     * Add a period filter if the parameter is present
+     *
+     * @return false if the parameter does not match the format (400 already written)
+     */
+    private boolean addFilter(HttpServletRequest request, HttpServletResponse response, PrintWriter out,
+            Map<ReportDimension, String> filters, ReportDimension dimension, String parameter, Pattern format,
+            String formatName) {
+        String value = request.getParameter(parameter);
+        if (value == null) {
+            return true;
+        }
+        if (!format.matcher(value.trim()).matches()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\":\"Invalid " + parameter + " parameter format. Use " + formatName + "\"}");
+            return false;
+        }
+        filters.put(dimension, value.trim());
+        return true;
+    }
+
+    private String reportToJson(List<ReportDimension> groupBy, List<ReportRow> rows) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"groupBy\":[");
+        for (int i = 0; i < groupBy.size(); i++) {
+            if (i > 0) json.append(",");
+            json.append("\"").append(groupBy.get(i).name().toLowerCase()).append("\"");
+        }
+        json.append("],\"rows\":[");
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) json.append(",");
+            json.append(rowToJson(groupBy, rows.get(i)));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private String rowToJson(List<ReportDimension> groupBy, ReportRow row) {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        for (int i = 0; i < groupBy.size(); i++) {
+            String key = row.getKeys().get(i);
+            switch (groupBy.get(i)) {
+                case STUDENT:
+                    json.append("\"studentId\":").append(key);
+                    break;
+                case COURSE:
+                    json.append("\"courseId\":").append(key);
+                    break;
+                default:
+                    json.append("\"").append(groupBy.get(i).name().toLowerCase()).append("\":\"")
+                            .append(EntityJson.escapeJson(key)).append("\"");
+                    break;
+            }
+            json.append(",");
+        }
+        appendStats(json, row.getStats());
+        json.append("}");
+        return json.toString();
+    }
+
+    private void appendStats(StringBuilder json, AttendanceStats stats) {
+        json.append("\"present\":").append(stats.getPresent()).append(",");
+        json.append("\"absent\":").append(stats.getAbsent()).append(",");
+        json.append("\"total\":").append(stats.getTotal()).append(",");
+        // One decimal place, e.g. 66.7
+        json.append("\"percentage\":").append(Math.round(stats.getRate() * 1000) / 10.0);
+    }
+
+    @Override
+    public void destroy() {
+        System.out.println("ReportServlet destroyed");
+        super.destroy();
+    }
+}
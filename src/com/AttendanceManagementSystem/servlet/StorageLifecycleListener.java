@@ -0,0 +1,25 @@
+package com.AttendanceManagementSystem.servlet;
+
+import com.AttendanceManagementSystem.storage.StorageFactory;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * StorageLifecycleListener - Flushes and closes the storage backend when the
+ * web application is stopped or undeployed, so logged writes are not lost
+ * and file handles and database connections are released.
+ */
+public class StorageLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        // The backend is created lazily by the first servlet's init()
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        StorageFactory.shutdown();
+        System.out.println("StorageLifecycleListener - Storage backend closed");
+    }
+}
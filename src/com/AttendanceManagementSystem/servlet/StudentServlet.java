@@ -1,7 +1,10 @@
 package com.AttendanceManagementSystem.servlet;
 
 import com.AttendanceManagementSystem.model.Student;
-import com.AttendanceManagementSystem.storage.DataStore;
+import com.AttendanceManagementSystem.storage.ConstraintViolationException;
+import com.AttendanceManagementSystem.storage.StorageBackend;
+import com.AttendanceManagementSystem.storage.StorageFactory;
+import com.AttendanceManagementSystem.storage.VersionConflictException;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -10,6 +13,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Collection;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -18,24 +22,34 @@ import java.util.ArrayList;
  * 
  * Supported endpoints:
  * GET /students - List all students
- * POST /students - Add new student
+ * GET /students?email=x - Get student by email (case-insensitive)
+ * GET /students?q=mar&limit=10 - Search students by name (type-ahead)
+ * POST /students - Add new student (409 if the email is taken)
  * GET /students/{id} - Get student by ID
- * PUT /students/{id} - Update student
+ * PUT /students/{id} - Update student (If-Match: "version" optional, 412 if stale)
  * DELETE /students/{id} - Delete student
  */
 public class StudentServlet extends HttpServlet {
 
-    private DataStore dataStore;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 100;
+
+    private StorageBackend dataStore;
 
     @Override
     public void init() throws ServletException {
         super.init();
-        dataStore = DataStore.getInstance();
-        System.out.println("StudentServlet initialized successfully for Tomcat");
+        long start = System.nanoTime();
+        dataStore = StorageFactory.getBackend(getServletContext()::getInitParameter);
+        System.out.println("StudentServlet initialized successfully for Tomcat in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        System.out.println(dataStore.getStartupReport());
     }
 
     /**
      * GET /students - List all students
+     * GET /students?email=x - Get student by email
+     * GET /students?q=mar&limit=10 - Search students by name
      * GET /students/{id} - Get student by ID
      */
     @Override
@@ -54,13 +68,49 @@ public class StudentServlet extends HttpServlet {
         // Start error handling block
         try {
             // Check if path does not include any ID
-            if (pathInfo == null || pathInfo.equals("/")) {
+            if ((pathInfo == null || pathInfo.equals("/")) && request.getParameter("email") != null) {
+                // GET /students?email=x - Get student by email from the email index
+                String email = request.getParameter("email");
+                Student student = dataStore.getStudentByEmail(email);
+
+                if (student != null) {
+                    // Set HTTP status to 200 OK and send the student
+                    response.setStatus(HttpServletResponse.SC_OK);
+                    out.print(EntityJson.studentToJson(student));
+
+                    System.out.println("GET /students?email - Student found with ID: " + student.getId());
+                } else {
+                    // Set HTTP status to 404 Not Found
+                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    out.print("{\"error\":\"Student not found with email: " + EntityJson.escapeJson(email) + "\"}");
+
+                    System.out.println("GET /students?email - Student not found");
+                }
+
+            } else if ((pathInfo == null || pathInfo.equals("/")) && request.getParameter("q") != null) {
+                // GET /students?q=mar&limit=10 - Search names through the trigram index
+                int limit = parseLimit(request.getParameter("limit"));
+                if (limit < 0) {
+                    // Set HTTP status to 400 Bad Request
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.print("{\"error\":\"limit must be a number between 1 and " + MAX_SEARCH_LIMIT + "\"}");
+                    return;
+                }
+                List<Student> students = dataStore.searchStudents(request.getParameter("q"), limit);
+
+                // Set HTTP status to 200 OK and send the matches
+                response.setStatus(HttpServletResponse.SC_OK);
+                out.print(EntityJson.studentsToJson(students));
+
+                System.out.println("GET /students?q - Returned " + students.size() + " students");
+
+            } else if (pathInfo == null || pathInfo.equals("/")) {
                 // GET /students - List all students
 
                 // Get all students from the data store
-                List<Student> students = dataStore.getAllStudents();
+                Collection<Student> students = dataStore.getAllStudents();
                 // Convert the list of students to JSON format
-                String jsonResponse = studentsToJson(students);
+                String jsonResponse = EntityJson.studentsToJson(students);
 
                 // Set HTTP status to 200 OK
                 response.setStatus(HttpServletResponse.SC_OK);
@@ -87,9 +137,11 @@ public class StudentServlet extends HttpServlet {
                         // Check if student was found
                         if (student != null) {
                             // Convert the single student to JSON format
-                            String jsonResponse = studentToJson(student);
+                            String jsonResponse = EntityJson.studentToJson(student);
                             // Set HTTP status to 200 OK
                             response.setStatus(HttpServletResponse.SC_OK);
+                            // Tag the response with the version, for a later If-Match
+                            response.setHeader("ETag", EntityTags.etag(student.getVersion()));
                             // Send the JSON response to the client
                             out.print(jsonResponse);
 
@@ -201,17 +253,31 @@ public class StudentServlet extends HttpServlet {
                 // Exit the method early
                 return;
             }
+            // Reject fields too long to be a name or an email
+            if (EntityJson.tooLong(newStudent.getFullName()) || EntityJson.tooLong(newStudent.getEmail())) {
+                // Set HTTP status to 400 Bad Request
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Full name and email can have at most " + EntityJson.MAX_TEXT_LENGTH
+                        + " characters\"}");
+                return;
+            }
             // Add student to datastore (ID will be auto-generated)
             // Save the new student to the data store and get back the saved version with ID
             Student savedStudent = dataStore.addStudent(newStudent);
             // Convert the saved student to JSON format
-            String jsonResponse = studentToJson(savedStudent);
+            String jsonResponse = EntityJson.studentToJson(savedStudent);
             // Set HTTP status to 201 Created
             response.setStatus(HttpServletResponse.SC_CREATED);
             // Send the JSON response with the created student data
             out.print(jsonResponse);
             // Log the successful student creation
             System.out.println("POST /students - Created student with ID: " + savedStudent.getId());
+            // Another student already has this email
+        } catch (ConstraintViolationException e) {
+            // Set HTTP status to 409 Conflict
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            out.print("{\"error\":\"" + EntityJson.escapeJson(e.getMessage()) + "\"}");
+            System.out.println("POST /students - Conflict: " + e.getMessage());
             // Handle any errors that occur during processing
         } catch (Exception e) {
             // Set HTTP status to 400 Bad Request
@@ -312,16 +378,54 @@ public class StudentServlet extends HttpServlet {
                 return;
             }
 
-            // Update student in datastore
-            Student savedStudent = dataStore.updateStudent(updatedStudent);
+            if (EntityJson.tooLong(updatedStudent.getFullName()) || EntityJson.tooLong(updatedStudent.getEmail())) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"Full name and email can have at most " + EntityJson.MAX_TEXT_LENGTH
+                        + " characters\"}");
+                return;
+            }
+
+            int expectedVersion;
+            try {
+                expectedVersion = EntityTags.parseIfMatch(request.getHeader("If-Match"), () -> {
+                    Student stored = dataStore.getStudentById(studentId);
+                    return stored != null ? stored.getVersion() : 0;
+                });
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\":\"" + EntityJson.escapeJson(e.getMessage()) + "\"}");
+                return;
+            }
+
+            // Update student in datastore, only if it is still at the version the client saw
+            Student savedStudent = dataStore.updateStudent(updatedStudent, expectedVersion);
+
+            if (savedStudent == null) {
+                // Deleted between the existence check and the update
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print("{\"error\":\"Student not found with ID: " + studentId + "\"}");
+                return;
+            }
 
             // Return updated student
-            String jsonResponse = studentToJson(savedStudent);
+            String jsonResponse = EntityJson.studentToJson(savedStudent);
             response.setStatus(HttpServletResponse.SC_OK);
+            response.setHeader("ETag", EntityTags.etag(savedStudent.getVersion()));
             out.print(jsonResponse);
 
             System.out.println("PUT /students/" + studentId + " - Student updated successfully");
 
+        } catch (ConstraintViolationException e) {
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            out.print("{\"error\":\"" + EntityJson.escapeJson(e.getMessage()) + "\"}");
+
+            System.out.println("PUT /students - Conflict: " + e.getMessage());
+        } catch (VersionConflictException e) {
+            response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+            response.setHeader("ETag", EntityTags.etag(e.getCurrentVersion()));
+            out.print("{\"error\":\"" + EntityJson.escapeJson(e.getMessage()) + "\"}");
+
+            System.out.println("PUT /students - Precondition failed: " + e.getMessage());
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             out.print("{\"error\":\"Invalid JSON format: " + e.getMessage() + "\"}");
@@ -394,44 +498,20 @@ public class StudentServlet extends HttpServlet {
     }
 
     /**
-     * Convert Student object to JSON string
+     * Parse the optional search limit
+     * 
+     * @return Limit, DEFAULT_SEARCH_LIMIT if absent, or -1 if invalid
      */
-    private String studentToJson(Student student) {
-        StringBuilder json = new StringBuilder();
-        json.append("{");
-        json.append("\"id\":").append(student.getId()).append(",");
-        json.append("\"fullName\":\"").append(escapeJson(student.getFullName())).append("\",");
-        json.append("\"email\":\"").append(escapeJson(student.getEmail())).append("\",");
-        json.append("\"registeredCourses\":[");
-
-        List<Integer> courses = student.getRegisteredCourses();
-        for (int i = 0; i < courses.size(); i++) {
-            json.append(courses.get(i));
-            if (i < courses.size() - 1) {
-                json.append(",");
-            }
+    private int parseLimit(String limitParam) {
+        if (limitParam == null) {
+            return DEFAULT_SEARCH_LIMIT;
         }
-
-        json.append("]}");
-        return json.toString();
-    }
-
-    /**
-     * Convert list of Students to JSON array string
-     */
-    private String studentsToJson(List<Student> students) {
-        StringBuilder json = new StringBuilder();
-        json.append("[");
-
-        for (int i = 0; i < students.size(); i++) {
-            json.append(studentToJson(students.get(i)));
-            if (i < students.size() - 1) {
-                json.append(",");
-            }
+        try {
+            int limit = Integer.parseInt(limitParam);
+            return limit >= 1 && limit <= MAX_SEARCH_LIMIT ? limit : -1;
+        } catch (NumberFormatException e) {
+            return -1;
         }
-
-        json.append("]");
-        return json.toString();
     }
 
     /**
@@ -464,10 +544,10 @@ public class StudentServlet extends HttpServlet {
                             }
                             break;
                         case "fullName":
-                            student.setFullName(unescapeJson(value.replace("\"", "")));
+                            student.setFullName(EntityJson.unescapeJson(value.replace("\"", "")));
                             break;
                         case "email":
-                            student.setEmail(unescapeJson(value.replace("\"", "")));
+                            student.setEmail(EntityJson.unescapeJson(value.replace("\"", "")));
                             break;
                         case "registeredCourses":
                             // Parse array of course IDs
@@ -495,32 +575,6 @@ public class StudentServlet extends HttpServlet {
         }
     }
 
-    /**
-     * Escape special characters for JSON
-     */
-    private String escapeJson(String str) {
-        if (str == null)
-            return "";
-        return str.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
-    }
-
-    /**
-     * Unescape JSON special characters
-     */
-    private String unescapeJson(String str) {
-        if (str == null)
-            return "";
-        return str.replace("\\\"", "\"")
-                .replace("\\\\", "\\")
-                .replace("\\n", "\n")
-                .replace("\\r", "\r")
-                .replace("\\t", "\t");
-    }
-
     @Override
     public void destroy() {
         System.out.println("StudentServlet destroyed");
@@ -0,0 +1,55 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.util.Arrays;
+
+/**
+ * How a course's students spread over absence rates: how many missed
+ * 0-10% of their classes, 10-20%, and so on up to 90-100%.
+ */
+public final class AbsenceDistribution {
+    private final int courseId;
+    private final int[] studentsByDecile;
+    private final AttendanceStats stats;
+
+    AbsenceDistribution(int courseId, int[] studentsByDecile, AttendanceStats stats) {
+        this.courseId = courseId;
+        this.studentsByDecile = studentsByDecile;
+        this.stats = stats;
+    }
+
+    public int getCourseId() {
+        return courseId;
+    }
+
+    /**
+     * @return Ten student counts; entry i counts students absent from at
+     *         least i * 10% (and, but for the last, under (i + 1) * 10%) of
+     *         their records in the course
+     */
+    public int[] getStudentsByDecile() {
+        return studentsByDecile.clone();
+    }
+
+    /**
+     * @return Number of students with records in the course
+     */
+    public int getStudents() {
+        return Arrays.stream(studentsByDecile).sum();
+    }
+
+    /**
+     * @return Present and total counts of every record in the course
+     */
+    public AttendanceStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return "AbsenceDistribution{" +
+                "courseId=" + courseId +
+                ", studentsByDecile=" + Arrays.toString(studentsByDecile) +
+                ", stats=" + stats +
+                '}';
+    }
+}
@@ -0,0 +1,681 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cold tier of the attendance table: records older than the archive cutoff,
+ * moved out of memory into compressed, read-only segment files.
+ *
+ * A segment holds one calendar month of records sorted by ID, stored column
+ * by column (IDs and dates delta-encoded) and deflated. In memory a segment
+ * keeps only its record IDs, the distinct students and courses it mentions
+ * and its date range, which is enough to tell whether a lookup has to open
+ * it. Opened segments are decompressed into primitive columns and kept in a
+ * small LRU cache.
+ *
+ * Segment files never change once written. A record updated or deleted
+ * after it was archived is marked dead in its segment (an update then lives
+ * in the attendance table again). The dead IDs are saved with each
+ * snapshot, which also names the segments it needs; files no snapshot
+ * names are deleted.
+ *
+ * Segments are published and dropped under every DataStore lock; records
+ * are marked dead under their partition's lock. Readers never lock, apart
+ * from the cache.
+ */
+final class AttendanceArchive {
+    private static final int MAGIC = 0x41544152; // "ATAR"
+    private static final int VERSION = 1;
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".seg";
+
+    /**
+     * What stays in memory for one segment file
+     */
+    static final class Segment {
+        final String name;
+        final long firstDay;
+        final long lastDay;
+        final int[] ids;        // ascending, one per row
+        final int[] studentIds; // distinct, ascending
+        final int[] courseIds;  // distinct, ascending
+        final Set<Integer> dead = ConcurrentHashMap.newKeySet();
+
+        private Segment(String name, Rows rows) {
+            this.name = name;
+            this.ids = rows.ids;
+            this.studentIds = distinct(rows.studentIds);
+            this.courseIds = distinct(rows.courseIds);
+            this.firstDay = rows.epochDays[rows.byDay[0]];
+            this.lastDay = rows.epochDays[rows.byDay[rows.size() - 1]];
+        }
+
+        /**
+         * @return true if the segment has a live record with this ID
+         */
+        boolean holds(int id) {
+            return id >= ids[0] && id <= ids[ids.length - 1] && Arrays.binarySearch(ids, id) >= 0
+                    && !dead.contains(id);
+        }
+
+        int live() {
+            return ids.length - dead.size();
+        }
+
+        /**
+         * @return false if no record in the segment can match the filters
+         */
+        boolean mayMatch(int studentId, int courseId, long fromDay, long toDay) {
+            return firstDay <= toDay && lastDay >= fromDay
+                    && (studentId == -1 || Arrays.binarySearch(studentIds, studentId) >= 0)
+                    && (courseId == -1 || Arrays.binarySearch(courseIds, courseId) >= 0);
+        }
+
+        private static int[] distinct(int[] values) {
+            return Arrays.stream(values).distinct().sorted().toArray();
+        }
+    }
+
+    /**
+     * A decompressed segment: one primitive column per field, rows by ID
+     */
+    private static final class Rows {
+        final int[] ids;
+        final int[] studentIds;
+        final int[] courseIds;
+        final long[] epochDays;
+        final boolean[] present;
+        final int[] versions;
+        final int[] byDay; // row numbers in ascending date order
+
+        Rows(int size) {
+            ids = new int[size];
+            studentIds = new int[size];
+            courseIds = new int[size];
+            epochDays = new long[size];
+            present = new boolean[size];
+            versions = new int[size];
+            byDay = new int[size];
+        }
+
+        /**
+         * @param records Records with dates, sorted by ID
+         */
+        Rows(List<AttendanceRecord> records) {
+            this(records.size());
+            for (int row = 0; row < records.size(); row++) {
+                AttendanceRecord record = records.get(row);
+                ids[row] = record.getId();
+                studentIds[row] = record.getStudentId();
+                courseIds[row] = record.getCourseId();
+                epochDays[row] = record.getDate().toEpochDay();
+                present[row] = record.isPresent();
+                versions[row] = record.getVersion();
+            }
+            sortByDay();
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        int row(int id) {
+            return Arrays.binarySearch(ids, id);
+        }
+
+        AttendanceRecord record(int row) {
+            AttendanceRecord record = new AttendanceRecord(ids[row], studentIds[row], courseIds[row],
+                    LocalDate.ofEpochDay(epochDays[row]), present[row]);
+            record.setVersion(versions[row]);
+            return record;
+        }
+
+        /**
+         * @return Position in byDay of the first row dated on or after the day
+         */
+        int firstOnOrAfter(long epochDay) {
+            int low = 0;
+            int high = byDay.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (epochDays[byDay[middle]] < epochDay) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private void sortByDay() {
+            // A segment spans one month, so (day offset, row) packs into a long
+            long firstDay = Arrays.stream(epochDays).min().orElse(0);
+            long[] keys = new long[size()];
+            for (int row = 0; row < keys.length; row++) {
+                keys[row] = ((epochDays[row] - firstDay) << 32) | row;
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < keys.length; i++) {
+                byDay[i] = (int) keys[i];
+            }
+        }
+    }
+
+    private final File directory;
+    private final int cacheSegments;
+    private final AtomicLong nextSequence;
+    // Published segments; replaced wholesale, so readers iterate a stable list
+    private volatile List<Segment> segments = Collections.emptyList();
+    // Decompressed segments, least recently used first
+    private final Map<Segment, Rows> cache;
+
+    /**
+     * @param directory     Directory holding the segment files
+     * @param cacheSegments Number of decompressed segments kept in memory
+     */
+    AttendanceArchive(File directory, int cacheSegments) {
+        this.directory = directory;
+        this.cacheSegments = cacheSegments;
+        this.cache = new LinkedHashMap<Segment, Rows>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Segment, Rows> eldest) {
+                return size() > AttendanceArchive.this.cacheSegments;
+            }
+        };
+        long lastSequence = 0;
+        for (File file : list()) {
+            lastSequence = Math.max(lastSequence, sequenceOf(file));
+        }
+        nextSequence = new AtomicLong(lastSequence + 1);
+    }
+
+    /**
+     * Write records to new segment files, one per calendar month. The
+     * segments stay invisible until they are published.
+     * 
+     * @param records Records to archive (all with a date)
+     * @return The written segments
+     * @throws IOException if a file cannot be written
+     */
+    List<Segment> write(Collection<AttendanceRecord> records) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create archive directory: " + directory);
+        }
+        Map<YearMonth, List<AttendanceRecord>> months = new TreeMap<>();
+        for (AttendanceRecord record : records) {
+            months.computeIfAbsent(YearMonth.from(record.getDate()), month -> new ArrayList<>()).add(record);
+        }
+        List<Segment> written = new ArrayList<>();
+        for (List<AttendanceRecord> month : months.values()) {
+            month.sort(Comparator.comparingInt(AttendanceRecord::getId));
+            Rows rows = new Rows(month);
+            File file = new File(directory, String.format("%s%016d%s", PREFIX, nextSequence.getAndIncrement(), SUFFIX));
+            writeFile(file, rows);
+            written.add(new Segment(file.getName(), rows));
+        }
+        return written;
+    }
+
+    /**
+     * Make written segments visible, and drop every segment whose records
+     * are all dead. Call holding every DataStore lock.
+     * 
+     * @param added Segments returned by write()
+     * @param stale IDs of written records that changed while their segment
+     *              was being written; they are marked dead
+     */
+    void publish(List<Segment> added, Collection<Integer> stale) {
+        for (int id : stale) {
+            for (Segment segment : added) {
+                if (segment.holds(id)) {
+                    segment.dead.add(id);
+                }
+            }
+        }
+        List<Segment> updated = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.live() > 0) {
+                updated.add(segment);
+            }
+        }
+        for (Segment segment : added) {
+            if (segment.live() > 0) {
+                updated.add(segment);
+            }
+        }
+        segments = Collections.unmodifiableList(updated);
+        synchronized (cache) {
+            cache.keySet().retainAll(updated);
+        }
+    }
+
+    /**
+     * Publish a segment named by a snapshot. Called at startup only.
+     * 
+     * @param name Segment file name
+     * @param dead IDs of its dead records
+     * @param live Receives every live record
+     * @throws IOException if the file is missing or unreadable
+     */
+    void open(String name, int[] dead, Consumer<AttendanceRecord> live) throws IOException {
+        Rows rows = readFile(new File(directory, name));
+        Segment segment = new Segment(name, rows);
+        for (int id : dead) {
+            segment.dead.add(id);
+        }
+        for (int row = 0; row < rows.size(); row++) {
+            if (!segment.dead.contains(rows.ids[row])) {
+                live.accept(rows.record(row));
+            }
+        }
+        List<Segment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        segments = Collections.unmodifiableList(updated);
+        cache(segment, rows);
+    }
+
+    /**
+     * @return true if nothing is archived
+     */
+    boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * @return Number of live archived records
+     */
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.live();
+        }
+        return size;
+    }
+
+    /**
+     * @return Number of published segments
+     */
+    int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Get a live archived record by ID
+     * 
+     * @param id Attendance record ID
+     * @return The record, or null if it is not archived or is dead
+     */
+    AttendanceRecord get(int id) {
+        for (Segment segment : segments) {
+            if (segment.holds(id)) {
+                Rows rows = rows(segment);
+                return rows.record(rows.row(id));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Mark an archived record dead. Call under the record's partition lock.
+     * 
+     * @param id Attendance record ID
+     * @return The record as it was archived, or null if it was not live here
+     */
+    AttendanceRecord remove(int id) {
+        for (Segment segment : segments) {
+            if (segment.holds(id)) {
+                Rows rows = rows(segment);
+                AttendanceRecord record = rows.record(rows.row(id));
+                segment.dead.add(id);
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Mark every live record of a student or a course dead. Call under the
+     * partition locks of the deletion.
+     * 
+     * @param studentId Student ID (-1 to match any)
+     * @param courseId  Course ID (-1 to match any)
+     * @return The records as they were archived
+     */
+    List<AttendanceRecord> removeAll(int studentId, int courseId) {
+        List<AttendanceRecord> removed = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!segment.mayMatch(studentId, courseId, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                continue;
+            }
+            Rows rows = rows(segment);
+            for (int row = 0; row < rows.size(); row++) {
+                if ((studentId == -1 || rows.studentIds[row] == studentId)
+                        && (courseId == -1 || rows.courseIds[row] == courseId)
+                        && segment.dead.add(rows.ids[row])) {
+                    removed.add(rows.record(row));
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Find the live archived record holding a (student, course, date) key
+     * 
+     * @return Record ID, or -1 if no archived record holds the key
+     */
+    int find(int studentId, int courseId, LocalDate date) {
+        long epochDay = date.toEpochDay();
+        for (Segment segment : segments) {
+            if (!segment.mayMatch(studentId, courseId, epochDay, epochDay)) {
+                continue;
+            }
+            Rows rows = rows(segment);
+            for (int i = rows.firstOnOrAfter(epochDay); i < rows.size() && rows.epochDays[rows.byDay[i]] == epochDay; i++) {
+                int row = rows.byDay[i];
+                if (rows.studentIds[row] == studentId && rows.courseIds[row] == courseId
+                        && !segment.dead.contains(rows.ids[row])) {
+                    return rows.ids[row];
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Visit the live archived records matching the filters. Only segments
+     * that can hold a match are opened, so a query about the current term
+     * opens none.
+     * 
+     * @param studentId Student ID (use -1 to ignore)
+     * @param courseId  Course ID (use -1 to ignore)
+     * @param from      First date, inclusive (null for no lower bound)
+     * @param to        Last date, inclusive (null for no upper bound)
+     * @param action    Receives each matching record
+     */
+    void scan(int studentId, int courseId, LocalDate from, LocalDate to, Consumer<AttendanceRecord> action) {
+        long fromDay = from != null ? from.toEpochDay() : Long.MIN_VALUE;
+        long toDay = to != null ? to.toEpochDay() : Long.MAX_VALUE;
+        for (Segment segment : segments) {
+            if (!segment.mayMatch(studentId, courseId, fromDay, toDay)) {
+                continue;
+            }
+            Rows rows = rows(segment);
+            for (int i = rows.firstOnOrAfter(fromDay); i < rows.size() && rows.epochDays[rows.byDay[i]] <= toDay; i++) {
+                int row = rows.byDay[i];
+                if ((studentId == -1 || rows.studentIds[row] == studentId)
+                        && (courseId == -1 || rows.courseIds[row] == courseId)
+                        && !segment.dead.contains(rows.ids[row])) {
+                    action.accept(rows.record(row));
+                }
+            }
+        }
+    }
+
+    /**
+     * Split a scan of the live archived records dated within a range into
+     * one part per segment that can hold any, for scanning in parallel.
+     * A segment that is not cached is decompressed without being cached,
+     * so a report over every month does not evict the segments lookups use.
+     * 
+     * @param fromDay First epoch day, inclusive
+     * @param toDay   Last epoch day, inclusive
+     * @return One part per segment overlapping the range
+     */
+    List<AttendanceTable.RowScan> split(long fromDay, long toDay) {
+        List<AttendanceTable.RowScan> scans = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!segment.mayMatch(-1, -1, fromDay, toDay)) {
+                continue;
+            }
+            scans.add(visitor -> {
+                Rows rows;
+                synchronized (cache) {
+                    rows = cache.get(segment);
+                }
+                if (rows == null) {
+                    try {
+                        rows = readFile(new File(directory, segment.name));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Cannot read archive segment " + segment.name, e);
+                    }
+                }
+                for (int row = 0; row < rows.size(); row++) {
+                    if (!segment.dead.contains(rows.ids[row])) {
+                        visitor.visit(rows.ids[row], rows.studentIds[row], rows.courseIds[row],
+                                rows.epochDays[row], rows.present[row], rows.versions[row]);
+                    }
+                }
+            });
+        }
+        return scans;
+    }
+
+    /**
+     * Describe the published segments for a snapshot
+     * 
+     * @return Segment file name -> IDs of its dead records, in publish order
+     */
+    Map<String, int[]> state() {
+        Map<String, int[]> state = new LinkedHashMap<>();
+        for (Segment segment : segments) {
+            int[] dead = new int[segment.dead.size()];
+            int count = 0;
+            for (int id : segment.dead) {
+                if (count == dead.length) {
+                    dead = Arrays.copyOf(dead, count * 2 + 1);
+                }
+                dead[count++] = id;
+            }
+            dead = Arrays.copyOf(dead, count);
+            Arrays.sort(dead);
+            state.put(segment.name, dead);
+        }
+        return state;
+    }
+
+    /**
+     * Forget every segment. The files go once no snapshot names them.
+     */
+    void clear() {
+        segments = Collections.emptyList();
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Delete segment files that are neither published nor named by the
+     * latest snapshot, including ones left half-written by a crash
+     * 
+     * @param referenced Segment file names the latest snapshot relies on
+     */
+    void deleteUnreferenced(Collection<String> referenced) {
+        Set<String> keep = new HashSet<>(referenced);
+        for (Segment segment : segments) {
+            keep.add(segment.name);
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(PREFIX) && !keep.contains(file.getName()) && !file.delete()) {
+                System.out.println("AttendanceArchive - Could not delete unused segment " + file);
+            }
+        }
+    }
+
+    private Rows rows(Segment segment) {
+        synchronized (cache) {
+            Rows rows = cache.get(segment);
+            if (rows != null) {
+                return rows;
+            }
+        }
+        // Decompress outside the lock; two readers may both do it once
+        Rows rows;
+        try {
+            rows = readFile(new File(directory, segment.name));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read archive segment " + segment.name, e);
+        }
+        cache(segment, rows);
+        return rows;
+    }
+
+    private void cache(Segment segment, Rows rows) {
+        if (cacheSegments > 0) {
+            synchronized (cache) {
+                cache.put(segment, rows);
+            }
+        }
+    }
+
+    /**
+     * Write a segment atomically (temp file, fsync, rename):
+     * magic, version and row count, then the deflated columns
+     */
+    private static void writeFile(File file, Rows rows) throws IOException {
+        File temp = new File(directory(file), file.getName() + ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            DataOutputStream header = new DataOutputStream(fileOut);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt(rows.size());
+            DeflaterOutputStream deflated = new DeflaterOutputStream(fileOut, deflater, 1 << 16);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(deflated, 1 << 16));
+            int previousId = 0;
+            for (int id : rows.ids) {
+                out.writeInt(id - previousId);
+                previousId = id;
+            }
+            for (int studentId : rows.studentIds) {
+                out.writeInt(studentId);
+            }
+            for (int courseId : rows.courseIds) {
+                out.writeInt(courseId);
+            }
+            long previousDay = 0;
+            for (long epochDay : rows.epochDays) {
+                out.writeLong(epochDay - previousDay);
+                previousDay = epochDay;
+            }
+            for (boolean present : rows.present) {
+                out.writeBoolean(present);
+            }
+            for (int version : rows.versions) {
+                out.writeInt(version);
+            }
+            out.flush();
+            deflated.finish();
+            fileOut.getFD().sync();
+        } finally {
+            deflater.end();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Rows readFile(File file) throws IOException {
+        Inflater inflater = new Inflater();
+        try (FileInputStream fileIn = new FileInputStream(file)) {
+            DataInputStream header = new DataInputStream(fileIn);
+            if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+                throw new IOException("Not an archive segment: " + file);
+            }
+            int size = header.readInt();
+            if (size <= 0) {
+                throw new IOException("Empty archive segment: " + file);
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new InflaterInputStream(fileIn, inflater, 1 << 16), 1 << 16));
+            Rows rows = new Rows(size);
+            int id = 0;
+            for (int row = 0; row < size; row++) {
+                id += in.readInt();
+                rows.ids[row] = id;
+            }
+            for (int row = 0; row < size; row++) {
+                rows.studentIds[row] = in.readInt();
+            }
+            for (int row = 0; row < size; row++) {
+                rows.courseIds[row] = in.readInt();
+            }
+            long epochDay = 0;
+            for (int row = 0; row < size; row++) {
+                epochDay += in.readLong();
+                rows.epochDays[row] = epochDay;
+            }
+            for (int row = 0; row < size; row++) {
+                rows.present[row] = in.readBoolean();
+            }
+            for (int row = 0; row < size; row++) {
+                rows.versions[row] = in.readInt();
+            }
+            rows.sortByDay();
+            return rows;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static File directory(File file) {
+        return file.getAbsoluteFile().getParentFile();
+    }
+
+    private List<File> list() {
+        List<File> files = new ArrayList<>();
+        File[] candidates = directory.listFiles();
+        if (candidates != null) {
+            for (File file : candidates) {
+                if (file.getName().startsWith(PREFIX) && file.getName().endsWith(SUFFIX) && sequenceOf(file) >= 0) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static long sequenceOf(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
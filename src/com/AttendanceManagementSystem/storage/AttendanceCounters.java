@@ -0,0 +1,91 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Present and total attendance counts per student, per course, per
+ * student-course pair and overall, kept up to date by every write so an
+ * attendance rate is a single lookup instead of a scan over records.
+ *
+ * Each count pair is packed into one long, present in the upper and total
+ * in the lower 32 bits. Packed pairs add like plain numbers, so adding a
+ * record adds PRESENT + 1 (or just 1) and removing it subtracts the same.
+ * One student's records are written under different course partitions at
+ * the same time, so entries are updated with ConcurrentHashMap.merge; an
+ * entry that drops to zero is removed.
+ */
+final class AttendanceCounters {
+    private static final long PRESENT = 1L << 32;
+    private static final long TOTAL_MASK = 0xffffffffL;
+
+    private final ConcurrentHashMap<Integer, Long> byStudent = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Long> byCourse = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> byStudentAndCourse = new ConcurrentHashMap<>();
+    private final AtomicLong overall = new AtomicLong();
+
+    /**
+     * Count a stored record
+     *
+     * @param record Attendance record
+     */
+    void add(AttendanceRecord record) {
+        update(record, record.isPresent() ? PRESENT + 1 : 1);
+    }
+
+    /**
+     * Stop counting a replaced or deleted record
+     *
+     * @param record Record as it was stored
+     */
+    void remove(AttendanceRecord record) {
+        update(record, -(record.isPresent() ? PRESENT + 1 : 1));
+    }
+
+    void clear() {
+        byStudent.clear();
+        byCourse.clear();
+        byStudentAndCourse.clear();
+        overall.set(0);
+    }
+
+    /**
+     * @param studentId Student ID, or -1 for every student
+     * @param courseId  Course ID, or -1 for every course
+     * @return Counts of the matching records
+     */
+    AttendanceStats get(int studentId, int courseId) {
+        Long counts;
+        if (studentId != -1 && courseId != -1) {
+            counts = byStudentAndCourse.get(key(studentId, courseId));
+        } else if (studentId != -1) {
+            counts = byStudent.get(studentId);
+        } else if (courseId != -1) {
+            counts = byCourse.get(courseId);
+        } else {
+            counts = overall.get();
+        }
+        if (counts == null || counts == 0) {
+            return AttendanceStats.EMPTY;
+        }
+        return new AttendanceStats((int) (counts >>> 32), (int) (counts & TOTAL_MASK));
+    }
+
+    private void update(AttendanceRecord record, long delta) {
+        byStudent.merge(record.getStudentId(), delta, AttendanceCounters::sum);
+        byCourse.merge(record.getCourseId(), delta, AttendanceCounters::sum);
+        byStudentAndCourse.merge(key(record.getStudentId(), record.getCourseId()), delta, AttendanceCounters::sum);
+        overall.addAndGet(delta);
+    }
+
+    private static Long sum(Long counts, Long delta) {
+        long result = counts + delta;
+        return result != 0 ? result : null;
+    }
+
+    private static long key(int studentId, int courseId) {
+        return ((long) studentId << 32) | (courseId & 0xffffffffL);
+    }
+}
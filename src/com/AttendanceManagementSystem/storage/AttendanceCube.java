@@ -0,0 +1,256 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * Present and total attendance counts per (student, course, week) cell,
+ * kept up to date by every write, so reports grouped by student, course,
+ * instructor, week, month or term add up cells instead of scanning
+ * records.
+ *
+ * A cell's period is an ISO week, cut in two where a month starts inside
+ * it, so every cell lies in exactly one week, one month and one term and
+ * every roll-up is exact. Instructors are looked up when a report is run,
+ * so a course's history follows it to a new instructor. Records without a
+ * date are not counted.
+ *
+ * Counts are packed as in AttendanceCounters and updated with
+ * ConcurrentHashMap.merge; a cell that drops to zero is removed.
+ */
+final class AttendanceCube {
+    private static final long PRESENT = 1L << 32;
+    private static final long TOTAL_MASK = 0xffffffffL;
+
+    /**
+     * One student in one course over one period
+     */
+    private static final class Cell {
+        final int studentId;
+        final int courseId;
+        final int period; // epoch day the period starts on
+
+        Cell(int studentId, int courseId, int period) {
+            this.studentId = studentId;
+            this.courseId = courseId;
+            this.period = period;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Cell)) return false;
+            Cell cell = (Cell) o;
+            return studentId == cell.studentId && courseId == cell.courseId && period == cell.period;
+        }
+
+        @Override
+        public int hashCode() {
+            return (studentId * 31 + courseId) * 31 + period;
+        }
+    }
+
+    /**
+     * Labels of the week, month and term a period belongs to
+     */
+    private static final class Labels {
+        final String week;
+        final String month;
+        final String term;
+
+        Labels(String week, String month, String term) {
+            this.week = week;
+            this.month = month;
+            this.term = term;
+        }
+    }
+
+    private final ConcurrentHashMap<Cell, Long> cells = new ConcurrentHashMap<>();
+    // A few dozen periods a year, so labels are worked out once per period
+    private final ConcurrentHashMap<Integer, Labels> labels = new ConcurrentHashMap<>();
+    private final int[] termStartMonths;
+
+    /**
+     * @param termStartMonths Months (1-12) in which terms start
+     */
+    AttendanceCube(int[] termStartMonths) {
+        this.termStartMonths = termStartMonths.clone();
+        Arrays.sort(this.termStartMonths);
+    }
+
+    /**
+     * Count a stored record
+     *
+     * @param record Attendance record
+     */
+    void add(AttendanceRecord record) {
+        update(record, record.isPresent() ? PRESENT + 1 : 1);
+    }
+
+    /**
+     * Stop counting a replaced or deleted record
+     *
+     * @param record Record as it was stored
+     */
+    void remove(AttendanceRecord record) {
+        update(record, -(record.isPresent() ? PRESENT + 1 : 1));
+    }
+
+    void clear() {
+        cells.clear();
+    }
+
+    /**
+     * Add up the cells matching every filter, grouped by the given dimensions
+     *
+     * @param groupBy     Dimensions to group by, in key order; none gives one total row
+     * @param filters     Value each matching cell must have, per dimension
+     * @param instructors Looks up a course's instructor; null if the course is gone
+     * @return One row per group that has records, sorted by key
+     */
+    List<ReportRow> rollUp(List<ReportDimension> groupBy, Map<ReportDimension, String> filters,
+            IntFunction<String> instructors) {
+        Map<List<String>, Long> groups = new HashMap<>();
+        for (Map.Entry<Cell, Long> entry : cells.entrySet()) {
+            Cell cell = entry.getKey();
+            if (!matches(cell, filters, instructors)) {
+                continue;
+            }
+            List<String> key = new ArrayList<>(groupBy.size());
+            for (ReportDimension dimension : groupBy) {
+                key.add(value(cell, dimension, instructors));
+            }
+            groups.merge(key, entry.getValue(), Long::sum);
+        }
+
+        List<ReportRow> rows = new ArrayList<>(groups.size());
+        for (Map.Entry<List<String>, Long> group : groups.entrySet()) {
+            long counts = group.getValue();
+            rows.add(new ReportRow(group.getKey(),
+                    new AttendanceStats((int) (counts >>> 32), (int) (counts & TOTAL_MASK))));
+        }
+        rows.sort(byKeys(groupBy));
+        return rows;
+    }
+
+    private void update(AttendanceRecord record, long delta) {
+        if (record.getDate() == null) {
+            return;
+        }
+        cells.merge(new Cell(record.getStudentId(), record.getCourseId(), period(record.getDate())), delta,
+                AttendanceCube::sum);
+    }
+
+    private boolean matches(Cell cell, Map<ReportDimension, String> filters, IntFunction<String> instructors) {
+        for (Map.Entry<ReportDimension, String> filter : filters.entrySet()) {
+            if (!filter.getValue().equals(value(cell, filter.getKey(), instructors))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String value(Cell cell, ReportDimension dimension, IntFunction<String> instructors) {
+        switch (dimension) {
+            case STUDENT:
+                return String.valueOf(cell.studentId);
+            case COURSE:
+                return String.valueOf(cell.courseId);
+            case INSTRUCTOR:
+                String instructor = instructors.apply(cell.courseId);
+                return instructor != null ? instructor : "";
+            case WEEK:
+                return labels(cell.period).week;
+            case MONTH:
+                return labels(cell.period).month;
+            case TERM:
+            default:
+                return labels(cell.period).term;
+        }
+    }
+
+    private Labels labels(int period) {
+        Labels cached = labels.get(period);
+        if (cached != null) {
+            return cached;
+        }
+        LocalDate start = LocalDate.ofEpochDay(period);
+        YearMonth month = YearMonth.from(start);
+        Labels computed = new Labels(
+                String.format("%d-W%02d", start.get(IsoFields.WEEK_BASED_YEAR),
+                        start.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR)),
+                month.toString(),
+                term(month));
+        labels.putIfAbsent(period, computed);
+        return computed;
+    }
+
+    /**
+     * Label of the term a month falls in: the year the term started and its
+     * number within that year, e.g. 2024-T2 for January 2025 when terms start
+     * in February and September
+     */
+    private String term(YearMonth month) {
+        int year = month.getYear();
+        int index = -1;
+        for (int i = 0; i < termStartMonths.length; i++) {
+            if (termStartMonths[i] <= month.getMonthValue()) {
+                index = i;
+            }
+        }
+        if (index == -1) {
+            year--;
+            index = termStartMonths.length - 1;
+        }
+        return year + "-T" + (index + 1);
+    }
+
+    /**
+     * First day of the date's period: the Monday of its week, or the first of
+     * the month if the month started later that week
+     */
+    private static int period(LocalDate date) {
+        LocalDate monday = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate firstOfMonth = date.withDayOfMonth(1);
+        return (int) (monday.isAfter(firstOfMonth) ? monday : firstOfMonth).toEpochDay();
+    }
+
+    /**
+     * Order rows by key, comparing student and course IDs as numbers; period
+     * labels sort chronologically as text
+     */
+    private static Comparator<ReportRow> byKeys(List<ReportDimension> groupBy) {
+        return (a, b) -> {
+            for (int i = 0; i < groupBy.size(); i++) {
+                String x = a.getKeys().get(i);
+                String y = b.getKeys().get(i);
+                ReportDimension dimension = groupBy.get(i);
+                int result = dimension == ReportDimension.STUDENT || dimension == ReportDimension.COURSE
+                        ? Integer.compare(Integer.parseInt(x), Integer.parseInt(y))
+                        : x.compareTo(y);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private static Long sum(Long counts, Long delta) {
+        long result = counts + delta;
+        return result != 0 ? result : null;
+    }
+}
@@ -0,0 +1,299 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Secondary indexes over attendance records.
+ * Maps student ID, course ID and the (student, course) pair to the IDs of
+ * the attendance records that reference them, and keeps a sorted
+ * epoch-day index for date ranges, so filtered lookups cost time
+ * proportional to the result instead of the whole table.
+ *
+ * A hash index on (student, course, date) backs the uniqueness constraint:
+ * it holds the one record allowed per key, so a duplicate check is a
+ * single hash lookup. Records without a date are not constrained.
+ *
+ * Not synchronized on its own: DataStore keeps one instance per course
+ * partition (see AttendancePartitions) and calls the mutators while
+ * holding that partition's lock, so the indexes always change together
+ * with the record map.
+ */
+class AttendanceIndex {
+    private static final IntBucket EMPTY = new IntBucket();
+
+    private final ConcurrentHashMap<Integer, IntBucket> byStudent = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, IntBucket> byCourse = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, IntBucket> byStudentAndCourse = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, IntBucket> byEpochDay = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<AttendanceKey, Integer> byKey = new ConcurrentHashMap<>();
+
+    /**
+     * Add a record to every index
+     *
+     * @param record Attendance record (must already have its ID)
+     * @return ID of another record already holding the same student, course
+     *         and date (the new record is then indexed but does not take the
+     *         key), or -1
+     */
+    int add(AttendanceRecord record) {
+        int id = record.getId();
+        bucket(byStudent, record.getStudentId()).add(id);
+        bucket(byCourse, record.getCourseId()).add(id);
+        bucket(byStudentAndCourse, pairKey(record.getStudentId(), record.getCourseId())).add(id);
+        if (record.getDate() != null) {
+            bucket(byEpochDay, record.getDate().toEpochDay()).add(id);
+        }
+        return claimKey(record);
+    }
+
+    /**
+     * Remove a record from every index
+     *
+     * @param record Attendance record as it is currently indexed
+     */
+    void remove(AttendanceRecord record) {
+        int id = record.getId();
+        unbucket(byStudent, record.getStudentId(), id);
+        unbucket(byCourse, record.getCourseId(), id);
+        unbucket(byStudentAndCourse, pairKey(record.getStudentId(), record.getCourseId()), id);
+        if (record.getDate() != null) {
+            unbucket(byEpochDay, record.getDate().toEpochDay(), id);
+        }
+        releaseKey(record);
+    }
+
+    /**
+     * Remove many records at once. Each affected bucket is filtered in a
+     * single pass, instead of once per record as repeated remove() calls
+     * would, so dropping a whole student or course costs time linear in
+     * the buckets it touches.
+     *
+     * @param records Attendance records as they are currently indexed
+     */
+    void removeAll(Collection<AttendanceRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        int[] ids = new int[records.size()];
+        Set<Integer> students = new HashSet<>();
+        Set<Integer> courses = new HashSet<>();
+        Set<Long> pairs = new HashSet<>();
+        Set<Long> days = new HashSet<>();
+        int count = 0;
+        for (AttendanceRecord record : records) {
+            releaseKey(record);
+            ids[count++] = record.getId();
+            students.add(record.getStudentId());
+            courses.add(record.getCourseId());
+            pairs.add(pairKey(record.getStudentId(), record.getCourseId()));
+            if (record.getDate() != null) {
+                days.add(record.getDate().toEpochDay());
+            }
+        }
+        Arrays.sort(ids);
+        IntPredicate doomed = id -> Arrays.binarySearch(ids, id) >= 0;
+        for (Integer studentId : students) {
+            unbucketAll(byStudent, studentId, doomed);
+        }
+        for (Integer courseId : courses) {
+            unbucketAll(byCourse, courseId, doomed);
+        }
+        for (Long pair : pairs) {
+            unbucketAll(byStudentAndCourse, pair, doomed);
+        }
+        for (Long day : days) {
+            unbucketAll(byEpochDay, day, doomed);
+        }
+    }
+
+    /**
+     * Move a record between buckets, touching only the keys that changed
+     * (a present/absent correction leaves every index alone)
+     *
+     * @param previous Record as it is currently indexed
+     * @param record   Replacement with the same ID
+     * @return ID of another record already holding the replacement's
+     *         student, course and date, or -1
+     */
+    int update(AttendanceRecord previous, AttendanceRecord record) {
+        int id = record.getId();
+        int oldStudent = previous.getStudentId();
+        int oldCourse = previous.getCourseId();
+        if (oldStudent != record.getStudentId()) {
+            unbucket(byStudent, oldStudent, id);
+            bucket(byStudent, record.getStudentId()).add(id);
+        }
+        if (oldCourse != record.getCourseId()) {
+            unbucket(byCourse, oldCourse, id);
+            bucket(byCourse, record.getCourseId()).add(id);
+        }
+        if (oldStudent != record.getStudentId() || oldCourse != record.getCourseId()) {
+            unbucket(byStudentAndCourse, pairKey(oldStudent, oldCourse), id);
+            bucket(byStudentAndCourse, pairKey(record.getStudentId(), record.getCourseId())).add(id);
+        }
+        if (!Objects.equals(previous.getDate(), record.getDate())) {
+            if (previous.getDate() != null) {
+                unbucket(byEpochDay, previous.getDate().toEpochDay(), id);
+            }
+            if (record.getDate() != null) {
+                bucket(byEpochDay, record.getDate().toEpochDay()).add(id);
+            }
+        }
+        if (!Objects.equals(AttendanceKey.of(previous), AttendanceKey.of(record))) {
+            releaseKey(previous);
+            return claimKey(record);
+        }
+        return -1;
+    }
+
+    /**
+     * Find the record holding a (student, course, date) key in O(1)
+     *
+     * @return Record ID, or -1 if the key is free
+     */
+    int find(int studentId, int courseId, LocalDate date) {
+        Integer id = byKey.get(new AttendanceKey(studentId, courseId, date));
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Make the record the holder of its key if the key is free
+     *
+     * @return ID of the record already holding the key, or -1 if claimed
+     *         (or if the record has no date)
+     */
+    int claimKey(AttendanceRecord record) {
+        AttendanceKey key = AttendanceKey.of(record);
+        if (key == null) {
+            return -1;
+        }
+        Integer holder = byKey.putIfAbsent(key, record.getId());
+        return holder == null || holder == record.getId() ? -1 : holder;
+    }
+
+    private void releaseKey(AttendanceRecord record) {
+        AttendanceKey key = AttendanceKey.of(record);
+        if (key != null) {
+            byKey.remove(key, record.getId());
+        }
+    }
+
+    /**
+     * Get candidate record IDs for the given filters.
+     * Picks whichever index yields the fewest candidates; the result may
+     * still contain records outside the other filters, so callers re-check.
+     *
+     * @param studentId Student ID (use -1 to ignore)
+     * @param courseId  Course ID (use -1 to ignore)
+     * @param from      First date, inclusive (null for no lower bound)
+     * @param to        Last date, inclusive (null for no upper bound)
+     * @return Buckets of candidate record IDs, or null when no filter is set
+     */
+    Collection<IntBucket> lookup(int studentId, int courseId, LocalDate from, LocalDate to) {
+        IntBucket ids = null;
+        if (studentId != -1 && courseId != -1) {
+            ids = orEmpty(byStudentAndCourse.get(pairKey(studentId, courseId)));
+        } else if (studentId != -1) {
+            ids = orEmpty(byStudent.get(studentId));
+        } else if (courseId != -1) {
+            ids = orEmpty(byCourse.get(courseId));
+        }
+
+        if (from == null && to == null) {
+            return ids != null ? Collections.singletonList(ids) : null;
+        }
+
+        // Collect the date buckets, giving up as soon as they outgrow the ID bucket
+        int limit = ids != null ? ids.size() : Integer.MAX_VALUE;
+        List<IntBucket> days = new ArrayList<>();
+        int total = 0;
+        for (IntBucket day : dateRange(from, to).values()) {
+            total += day.size();
+            if (total > limit) {
+                return Collections.singletonList(ids);
+            }
+            days.add(day);
+        }
+        return days;
+    }
+
+    /**
+     * @return IDs of the students that have at least one record (live view)
+     */
+    Set<Integer> studentIds() {
+        return byStudent.keySet();
+    }
+
+    /**
+     * @return IDs of the courses that have at least one record (live view)
+     */
+    Set<Integer> courseIds() {
+        return byCourse.keySet();
+    }
+
+    /**
+     * Drop every index entry
+     */
+    void clear() {
+        byStudent.clear();
+        byCourse.clear();
+        byStudentAndCourse.clear();
+        byEpochDay.clear();
+        byKey.clear();
+    }
+
+    private Map<Long, IntBucket> dateRange(LocalDate from, LocalDate to) {
+        if (from == null) {
+            return byEpochDay.headMap(to.toEpochDay(), true);
+        }
+        if (to == null) {
+            return byEpochDay.tailMap(from.toEpochDay(), true);
+        }
+        if (from.isAfter(to)) {
+            return Collections.emptyMap();
+        }
+        return byEpochDay.subMap(from.toEpochDay(), true, to.toEpochDay(), true);
+    }
+
+    private static IntBucket orEmpty(IntBucket ids) {
+        return ids != null ? ids : EMPTY;
+    }
+
+    private static long pairKey(int studentId, int courseId) {
+        return ((long) studentId << 32) | (courseId & 0xFFFFFFFFL);
+    }
+
+    private static <K> IntBucket bucket(ConcurrentMap<K, IntBucket> index, K key) {
+        return index.computeIfAbsent(key, k -> new IntBucket());
+    }
+
+    private static <K> void unbucketAll(ConcurrentMap<K, IntBucket> index, K key, IntPredicate doomed) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.removeIf(doomed);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private static <K> void unbucket(ConcurrentMap<K, IntBucket> index, K key, int id) {
+        // Remove the bucket once empty so deleted students/courses don't leak
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
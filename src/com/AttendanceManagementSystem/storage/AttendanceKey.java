@@ -0,0 +1,53 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+
+import java.time.LocalDate;
+
+/**
+ * The (student, course, date) triple that identifies one attendance entry.
+ * Used as a hash key for the uniqueness constraint; records without a date
+ * have no key and are not constrained.
+ */
+final class AttendanceKey {
+    private final int studentId;
+    private final int courseId;
+    private final long epochDay;
+
+    AttendanceKey(int studentId, int courseId, LocalDate date) {
+        this.studentId = studentId;
+        this.courseId = courseId;
+        this.epochDay = date.toEpochDay();
+    }
+
+    /**
+     * @return Key of the record, or null if it has no date
+     */
+    static AttendanceKey of(AttendanceRecord record) {
+        return record.getDate() != null
+                ? new AttendanceKey(record.getStudentId(), record.getCourseId(), record.getDate())
+                : null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        AttendanceKey other = (AttendanceKey) obj;
+        return studentId == other.studentId && courseId == other.courseId && epochDay == other.epochDay;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = studentId;
+        hash = 31 * hash + courseId;
+        return 31 * hash + Long.hashCode(epochDay);
+    }
+
+    @Override
+    public String toString() {
+        return "student " + studentId + ", course " + courseId + ", " + LocalDate.ofEpochDay(epochDay);
+    }
+}
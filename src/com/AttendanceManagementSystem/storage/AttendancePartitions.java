@@ -0,0 +1,131 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Attendance sharded by course ID. Each partition owns the secondary
+ * indexes of the courses that hash to it and a lock that serializes the
+ * writes to those courses, so roll calls for different courses run in
+ * parallel while everything that touches one course (validate, check the
+ * key, insert, index) happens atomically under a single lock.
+ *
+ * Locks are always taken in ascending partition order, which is what
+ * makes it safe for one operation to hold several of them (a batch that
+ * spans courses, a record moved to another course, a student delete that
+ * holds them all).
+ */
+class AttendancePartitions {
+    private final AttendanceIndex[] indexes;
+    private final ReentrantLock[] locks;
+
+    /**
+     * @param count Number of partitions (at least 1)
+     */
+    AttendancePartitions(int count) {
+        indexes = new AttendanceIndex[Math.max(1, count)];
+        locks = new ReentrantLock[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = new AttendanceIndex();
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * @return Number of partitions
+     */
+    int count() {
+        return indexes.length;
+    }
+
+    /**
+     * Get the partition a course belongs to
+     *
+     * @param courseId Course ID
+     * @return Partition number
+     */
+    int of(int courseId) {
+        return Math.floorMod(courseId, indexes.length);
+    }
+
+    /**
+     * Get the indexes of the partition a course belongs to
+     *
+     * @param courseId Course ID
+     * @return Attendance index holding the course's records
+     */
+    AttendanceIndex index(int courseId) {
+        return indexes[of(courseId)];
+    }
+
+    /**
+     * Get the indexes of one partition
+     *
+     * @param partition Partition number
+     * @return Attendance index of the partition
+     */
+    AttendanceIndex indexAt(int partition) {
+        return indexes[partition];
+    }
+
+    /**
+     * Drop every index entry in every partition
+     */
+    void clear() {
+        for (AttendanceIndex index : indexes) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Lock the partitions of the given courses, in ascending order
+     *
+     * @param courseIds Course IDs (duplicates and shared partitions are fine)
+     * @return Locked partition numbers, to pass to unlock()
+     */
+    int[] lock(int... courseIds) {
+        int[] partitions = new int[courseIds.length];
+        for (int i = 0; i < courseIds.length; i++) {
+            partitions[i] = of(courseIds[i]);
+        }
+        Arrays.sort(partitions);
+        int distinct = 0;
+        for (int i = 0; i < partitions.length; i++) {
+            if (distinct == 0 || partitions[i] != partitions[distinct - 1]) {
+                partitions[distinct++] = partitions[i];
+            }
+        }
+        return lockPartitions(Arrays.copyOf(partitions, distinct));
+    }
+
+    /**
+     * Lock every partition, in ascending order
+     *
+     * @return Locked partition numbers, to pass to unlock()
+     */
+    int[] lockAll() {
+        int[] partitions = new int[locks.length];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = i;
+        }
+        return lockPartitions(partitions);
+    }
+
+    /**
+     * Release partitions locked by lock() or lockAll()
+     *
+     * @param partitions Partition numbers returned by the lock call
+     */
+    void unlock(int[] partitions) {
+        for (int i = partitions.length - 1; i >= 0; i--) {
+            locks[partitions[i]].unlock();
+        }
+    }
+
+    private int[] lockPartitions(int[] partitions) {
+        for (int partition : partitions) {
+            locks[partition].lock();
+        }
+        return partitions;
+    }
+}
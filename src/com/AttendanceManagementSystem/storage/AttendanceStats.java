@@ -0,0 +1,53 @@
+package com.AttendanceManagementSystem.storage;
+
+/**
+ * How many attendance records a student, a course, a student in a course,
+ * or the whole store has, and how many of them are marked present.
+ */
+public final class AttendanceStats {
+    static final AttendanceStats EMPTY = new AttendanceStats(0, 0);
+
+    private final int present;
+    private final int total;
+
+    AttendanceStats(int present, int total) {
+        this.present = present;
+        this.total = total;
+    }
+
+    /**
+     * @return Records marked present
+     */
+    public int getPresent() {
+        return present;
+    }
+
+    /**
+     * @return Records marked absent
+     */
+    public int getAbsent() {
+        return total - present;
+    }
+
+    /**
+     * @return Number of records
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return Share of records marked present, from 0 to 1 (0 without records)
+     */
+    public double getRate() {
+        return total == 0 ? 0 : (double) present / total;
+    }
+
+    @Override
+    public String toString() {
+        return "AttendanceStats{" +
+                "present=" + present +
+                ", total=" + total +
+                '}';
+    }
+}
@@ -0,0 +1,97 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Primary storage for attendance records, keyed by record ID.
+ * DataStore owns the ID counter, the secondary indexes and the locks;
+ * implementations only decide how rows are laid out in memory.
+ *
+ * Writes are always made by one thread at a time (under the DataStore
+ * table lock, held per row); reads may run concurrently with them.
+ */
+interface AttendanceTable {
+
+    // epochDay passed to RowVisitor for records without a date
+    long NO_DATE = Long.MIN_VALUE;
+
+    /**
+     * Callback for scanning rows without materialising AttendanceRecord objects
+     */
+    interface RowVisitor {
+        void visit(int id, int studentId, int courseId, long epochDay, boolean present, int version);
+    }
+
+    /**
+     * One part of a scan split for running in parallel
+     */
+    interface RowScan {
+        void forEach(RowVisitor visitor);
+    }
+
+    /**
+     * Get record by ID
+     * 
+     * @param id Attendance record ID
+     * @return AttendanceRecord if found, null otherwise
+     */
+    AttendanceRecord get(int id);
+
+    /**
+     * Insert or replace the record stored under record.getId()
+     * 
+     * @param record Attendance record with its ID set
+     * @return The record previously stored under that ID, or null
+     */
+    AttendanceRecord put(AttendanceRecord record);
+
+    /**
+     * Remove record by ID
+     * 
+     * @param id Attendance record ID
+     * @return The removed record, or null if not found
+     */
+    AttendanceRecord remove(int id);
+
+    /**
+     * @return Number of stored records
+     */
+    int size();
+
+    /**
+     * Get every stored record, in no particular order.
+     * The heap engine returns an O(1) read-only view of a point-in-time
+     * snapshot; the columnar and off-heap engines have no object form of
+     * their rows and copy them out, so their result may mix old and new
+     * rows if writes land during the copy.
+     * 
+     * @return Every stored record
+     */
+    Collection<AttendanceRecord> values();
+
+    /**
+     * Visit every stored row
+     * 
+     * @param visitor Row callback
+     */
+    void forEach(RowVisitor visitor);
+
+    /**
+     * Split a scan of every row into disjoint parts that can run on
+     * different threads. The parts are fixed when split() is called: rows
+     * added later are not visited, with the same consistency as forEach().
+     * 
+     * @param parts Number of parts wanted
+     * @return Parts that together visit every row once; fewer than asked
+     *         for if the table is small
+     */
+    List<RowScan> split(int parts);
+
+    /**
+     * Remove every record
+     */
+    void clear();
+}
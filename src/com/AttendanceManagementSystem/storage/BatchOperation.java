@@ -0,0 +1,153 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+import com.AttendanceManagementSystem.model.Course;
+import com.AttendanceManagementSystem.model.Student;
+
+/**
+ * One write in a batch passed to StorageBackend.executeBatch.
+ * Each factory mirrors the single-entity StorageBackend method of the same
+ * name. Like those methods, the batch sets IDs and versions on the entities
+ * it was given, so they can be read back once it has committed.
+ */
+public final class BatchOperation {
+
+    /**
+     * Kind of write
+     */
+    public enum Type {
+        ADD_STUDENT,
+        UPDATE_STUDENT,
+        DELETE_STUDENT,
+        ADD_COURSE,
+        UPDATE_COURSE,
+        DELETE_COURSE,
+        ADD_ATTENDANCE,
+        UPDATE_ATTENDANCE,
+        UPSERT_ATTENDANCE,
+        DELETE_ATTENDANCE
+    }
+
+    final Type type;
+    final int id;
+    final int expectedVersion;
+    final Student student;
+    final Course course;
+    final AttendanceRecord attendanceRecord;
+
+    private BatchOperation(Type type, int id, int expectedVersion, Student student, Course course,
+            AttendanceRecord attendanceRecord) {
+        this.type = type;
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.student = student;
+        this.course = course;
+        this.attendanceRecord = attendanceRecord;
+    }
+
+    public static BatchOperation addStudent(Student student) {
+        return new BatchOperation(Type.ADD_STUDENT, 0, StorageBackend.ANY_VERSION, student, null, null);
+    }
+
+    public static BatchOperation updateStudent(Student student, int expectedVersion) {
+        return new BatchOperation(Type.UPDATE_STUDENT, student.getId(), expectedVersion, student, null, null);
+    }
+
+    public static BatchOperation deleteStudent(int id) {
+        return new BatchOperation(Type.DELETE_STUDENT, id, StorageBackend.ANY_VERSION, null, null, null);
+    }
+
+    public static BatchOperation addCourse(Course course) {
+        return new BatchOperation(Type.ADD_COURSE, 0, StorageBackend.ANY_VERSION, null, course, null);
+    }
+
+    public static BatchOperation updateCourse(Course course, int expectedVersion) {
+        return new BatchOperation(Type.UPDATE_COURSE, course.getId(), expectedVersion, null, course, null);
+    }
+
+    public static BatchOperation deleteCourse(int id) {
+        return new BatchOperation(Type.DELETE_COURSE, id, StorageBackend.ANY_VERSION, null, null, null);
+    }
+
+    public static BatchOperation addAttendanceRecord(AttendanceRecord record) {
+        return new BatchOperation(Type.ADD_ATTENDANCE, 0, StorageBackend.ANY_VERSION, null, null, record);
+    }
+
+    public static BatchOperation updateAttendanceRecord(AttendanceRecord record, int expectedVersion) {
+        return new BatchOperation(Type.UPDATE_ATTENDANCE, record.getId(), expectedVersion, null, null, record);
+    }
+
+    public static BatchOperation upsertAttendanceRecord(AttendanceRecord record) {
+        return new BatchOperation(Type.UPSERT_ATTENDANCE, 0, StorageBackend.ANY_VERSION, null, null, record);
+    }
+
+    public static BatchOperation deleteAttendanceRecord(int id) {
+        return new BatchOperation(Type.DELETE_ATTENDANCE, id, StorageBackend.ANY_VERSION, null, null, null);
+    }
+
+    /**
+     * @return Kind of write
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return ID of the entity the operation targets (0 for adds and upserts
+     *         until the batch has run; read the entity's ID instead)
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return Student written by the operation, or null
+     */
+    public Student getStudent() {
+        return student;
+    }
+
+    /**
+     * @return Course written by the operation, or null
+     */
+    public Course getCourse() {
+        return course;
+    }
+
+    /**
+     * @return Attendance record written by the operation, or null
+     */
+    public AttendanceRecord getAttendanceRecord() {
+        return attendanceRecord;
+    }
+
+    /**
+     * Re-throw a failure of one operation with its position in the batch
+     * prepended, keeping the exception type so callers map it as usual
+     * 
+     * @param index   Position of the failed operation
+     * @param failure What went wrong
+     * @return Exception to throw
+     */
+    static RuntimeException failedAt(int index, RuntimeException failure) {
+        String message = "Operation " + index + ": " + failure.getMessage();
+        if (failure instanceof VersionConflictException) {
+            return new VersionConflictException(message, ((VersionConflictException) failure).getCurrentVersion());
+        }
+        if (failure instanceof ConstraintViolationException) {
+            return new ConstraintViolationException(message, ((ConstraintViolationException) failure).getConflictingId());
+        }
+        if (failure instanceof IllegalArgumentException) {
+            return new IllegalArgumentException(message, failure);
+        }
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchOperation{" +
+                "type=" + type +
+                ", id=" + id +
+                '}';
+    }
+}
@@ -0,0 +1,122 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+import com.AttendanceManagementSystem.model.Course;
+import com.AttendanceManagementSystem.model.Student;
+
+/**
+ * One committed change, as published on a ChangeFeed.
+ * Puts carry the entity as it was written (with its new version), deletes
+ * only the ID. Deleting a student or a course also deletes its attendance
+ * records; no separate events are published for them.
+ */
+public final class ChangeEvent {
+
+    /**
+     * What was changed
+     */
+    public enum Entity {
+        STUDENT,
+        COURSE,
+        ATTENDANCE,
+        // Every entity, for CLEAR
+        ALL
+    }
+
+    /**
+     * How it was changed
+     */
+    public enum Action {
+        PUT,
+        DELETE,
+        CLEAR
+    }
+
+    private final Entity entity;
+    private final Action action;
+    private final int id;
+    private final Object value;
+    // Assigned by the feed when the event is published
+    long sequence;
+
+    private ChangeEvent(Entity entity, Action action, int id, Object value) {
+        this.entity = entity;
+        this.action = action;
+        this.id = id;
+        this.value = value;
+    }
+
+    static ChangeEvent put(Student student) {
+        return new ChangeEvent(Entity.STUDENT, Action.PUT, student.getId(), student);
+    }
+
+    static ChangeEvent put(Course course) {
+        return new ChangeEvent(Entity.COURSE, Action.PUT, course.getId(), course);
+    }
+
+    static ChangeEvent put(AttendanceRecord record) {
+        return new ChangeEvent(Entity.ATTENDANCE, Action.PUT, record.getId(), record);
+    }
+
+    static ChangeEvent delete(Entity entity, int id) {
+        return new ChangeEvent(entity, Action.DELETE, id, null);
+    }
+
+    static ChangeEvent clear() {
+        return new ChangeEvent(Entity.ALL, Action.CLEAR, 0, null);
+    }
+
+    /**
+     * @return Position of the change on its feed; consecutive changes have
+     *         consecutive numbers
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Entity getEntity() {
+        return entity;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * @return ID of the changed entity (0 for CLEAR)
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return The student written by a student PUT, or null
+     */
+    public Student getStudent() {
+        return entity == Entity.STUDENT ? (Student) value : null;
+    }
+
+    /**
+     * @return The course written by a course PUT, or null
+     */
+    public Course getCourse() {
+        return entity == Entity.COURSE ? (Course) value : null;
+    }
+
+    /**
+     * @return The record written by an attendance PUT, or null
+     */
+    public AttendanceRecord getAttendanceRecord() {
+        return entity == Entity.ATTENDANCE ? (AttendanceRecord) value : null;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{" +
+                "sequence=" + sequence +
+                ", entity=" + entity +
+                ", action=" + action +
+                ", id=" + id +
+                '}';
+    }
+}
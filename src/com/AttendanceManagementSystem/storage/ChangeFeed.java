@@ -0,0 +1,191 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stream of committed changes, numbered in the order they were published.
+ *
+ * The latest events are kept in a fixed-size ring, which is the only
+ * buffer: a subscription is just a cursor into it, so a subscriber costs
+ * the same memory however far behind it is. A subscriber that falls more
+ * than the ring's size behind (or resumes from a sequence the ring no
+ * longer holds) is told to reset, i.e. to reload everything, and carries
+ * on from the latest event.
+ *
+ * Sequence numbers restart with the feed, so they are only comparable
+ * within one epoch (the time the feed was created).
+ */
+public final class ChangeFeed {
+    public static final int DEFAULT_RETAINED = 4096;
+
+    private final long epoch = System.currentTimeMillis();
+    private final ChangeEvent[] ring;
+    // Sequence of the newest published event (0 before the first)
+    private long lastSequence;
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    /**
+     * Create a feed that keeps DEFAULT_RETAINED events
+     */
+    public ChangeFeed() {
+        this(DEFAULT_RETAINED);
+    }
+
+    /**
+     * @param retained Number of latest events kept for subscribers to catch up on
+     */
+    public ChangeFeed(int retained) {
+        if (retained <= 0) {
+            throw new IllegalArgumentException("A change feed must retain at least one event");
+        }
+        this.ring = new ChangeEvent[retained];
+    }
+
+    /**
+     * Number the events and make them visible to every subscription, in
+     * order and without any other event between them. Subscribers are
+     * notified after the feed is released.
+     * 
+     * @param events Events of one committed change
+     */
+    void publish(List<ChangeEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Subscription[] listeners;
+        synchronized (this) {
+            for (ChangeEvent event : events) {
+                event.sequence = ++lastSequence;
+                ring[(int) (lastSequence % ring.length)] = event;
+            }
+            listeners = subscriptions.toArray(new Subscription[0]);
+        }
+        for (Subscription subscription : listeners) {
+            subscription.listener.run();
+        }
+    }
+
+    void publish(ChangeEvent event) {
+        List<ChangeEvent> events = new ArrayList<>(1);
+        events.add(event);
+        publish(events);
+    }
+
+    /**
+     * @return When the feed was created; sequences from another epoch
+     *         cannot be resumed from
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return Sequence of the newest event (0 if none was published)
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Follow the feed
+     * 
+     * @param afterSequence Last sequence the subscriber has seen, or -1 to
+     *                      start with the next event. A sequence the feed no
+     *                      longer holds, or has not reached, starts with a reset.
+     * @param listener      Called, on the publishing thread, whenever events
+     *                      are published; must be quick and must not block
+     * @return The subscription; close it when done
+     */
+    public synchronized Subscription subscribe(long afterSequence, Runnable listener) {
+        Subscription subscription;
+        if (afterSequence < 0) {
+            subscription = new Subscription(lastSequence + 1, false, listener);
+        } else if (afterSequence > lastSequence || afterSequence < oldestSequence() - 1) {
+            subscription = new Subscription(lastSequence + 1, true, listener);
+        } else {
+            subscription = new Subscription(afterSequence + 1, false, listener);
+        }
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * @return Sequence of the oldest event still in the ring
+     */
+    private long oldestSequence() {
+        return Math.max(1, lastSequence - ring.length + 1);
+    }
+
+    /**
+     * A subscriber's position in the feed. Meant to be drained by one
+     * thread at a time.
+     */
+    public final class Subscription {
+        private final Runnable listener;
+        // Sequence of the next event to hand out
+        private long next;
+        private boolean reset;
+        private volatile boolean closed;
+
+        private Subscription(long next, boolean reset, Runnable listener) {
+            this.next = next;
+            this.reset = reset;
+            this.listener = listener;
+        }
+
+        /**
+         * Check whether the subscriber has missed events, either because it
+         * resumed from a sequence the feed does not hold or because it fell
+         * behind by more than the feed retains. Once reported, the
+         * subscription carries on from the next published event.
+         * 
+         * @return true if the subscriber must reload its state
+         */
+        public boolean takeReset() {
+            synchronized (ChangeFeed.this) {
+                if (next < oldestSequence()) {
+                    reset = true;
+                    next = lastSequence + 1;
+                }
+                boolean taken = reset;
+                reset = false;
+                return taken;
+            }
+        }
+
+        /**
+         * Take the next event. Call takeReset() first: after falling behind
+         * this returns null until the reset has been taken.
+         * 
+         * @return The next event, or null if there is none yet
+         */
+        public ChangeEvent poll() {
+            synchronized (ChangeFeed.this) {
+                if (closed || next > lastSequence || next < oldestSequence()) {
+                    return null;
+                }
+                return ring[(int) (next++ % ring.length)];
+            }
+        }
+
+        /**
+         * @return Sequence of the last event handed out (or skipped by a reset)
+         */
+        public long getPosition() {
+            synchronized (ChangeFeed.this) {
+                return next - 1;
+            }
+        }
+
+        /**
+         * Stop following the feed
+         */
+        public void close() {
+            closed = true;
+            synchronized (ChangeFeed.this) {
+                subscriptions.remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Attendance table that stores each field in its own primitive column.
+ * Record IDs come from a dense counter, so the ID is used directly as the
+ * row number: studentId, courseId, epochDay and version live in int arrays
+ * and the present/live flags in packed bitsets. That is about 16 bytes per row
+ * instead of a boxed key, a record object and a LocalDate.
+ *
+ * AttendanceRecord objects are only created when a row is read through
+ * get()/values(); scans via forEach() touch the arrays directly.
+ *
+ * The single writer holds a StampedLock's write lock while it changes a
+ * row. get() reads under an optimistic stamp and only takes the read lock
+ * if the stamp did not validate, so a row is never seen half-written.
+ * Scans are weakly consistent, like ConcurrentHashMap iteration.
+ */
+class ColumnarAttendanceTable implements AttendanceTable {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+    // Largest array most VMs will allocate
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /**
+     * One generation of column arrays; replaced wholesale when the table grows
+     */
+    private static final class Columns {
+        final int[] studentIds;
+        final int[] courseIds;
+        final int[] epochDays;
+        final int[] versions;
+        final long[] present;
+        final long[] live;
+
+        Columns(int capacity) {
+            studentIds = new int[capacity];
+            courseIds = new int[capacity];
+            epochDays = new int[capacity];
+            versions = new int[capacity];
+            present = new long[(int) ((capacity + 63L) >>> 6)];
+            live = new long[(int) ((capacity + 63L) >>> 6)];
+        }
+
+        int capacity() {
+            return studentIds.length;
+        }
+
+        /**
+         * @return Columns copied into arrays large enough to hold the row
+         */
+        Columns grow(int row) {
+            if (row >= MAX_CAPACITY) {
+                throw new IllegalArgumentException("Columnar table cannot hold row " + row);
+            }
+            int capacity = capacity();
+            while (capacity <= row) {
+                capacity = capacity > MAX_CAPACITY / 2 ? MAX_CAPACITY : capacity << 1;
+            }
+            Columns grown = new Columns(capacity);
+            System.arraycopy(studentIds, 0, grown.studentIds, 0, studentIds.length);
+            System.arraycopy(courseIds, 0, grown.courseIds, 0, courseIds.length);
+            System.arraycopy(epochDays, 0, grown.epochDays, 0, epochDays.length);
+            System.arraycopy(versions, 0, grown.versions, 0, versions.length);
+            System.arraycopy(present, 0, grown.present, 0, present.length);
+            System.arraycopy(live, 0, grown.live, 0, live.length);
+            return grown;
+        }
+
+        boolean isLive(int row) {
+            return row >= 0 && row < capacity() && (live[row >>> 6] & (1L << row)) != 0;
+        }
+    }
+
+    private volatile Columns columns = new Columns(INITIAL_CAPACITY);
+    private final StampedLock lock = new StampedLock();
+    private volatile int size;
+    private volatile int highestRow = -1;
+
+    @Override
+    public AttendanceRecord get(int id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            Columns c = columns;
+            AttendanceRecord record = c.isLive(id) ? materialise(c, id) : null;
+            if (lock.validate(stamp)) {
+                return record;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            Columns c = columns;
+            return c.isLive(id) ? materialise(c, id) : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public AttendanceRecord put(AttendanceRecord record) {
+        int row = record.getId();
+        if (row < 0) {
+            throw new IllegalArgumentException("Columnar table requires non-negative IDs: " + row);
+        }
+        AttendanceRecord previous = get(row);
+
+        long stamp = lock.writeLock();
+        try {
+            Columns c = columns;
+            if (row >= c.capacity()) {
+                c = c.grow(row);
+                columns = c;
+            }
+            c.studentIds[row] = record.getStudentId();
+            c.courseIds[row] = record.getCourseId();
+            c.epochDays[row] = record.getDate() != null ? (int) record.getDate().toEpochDay() : NULL_DATE;
+            c.versions[row] = record.getVersion();
+            if (record.isPresent()) {
+                c.present[row >>> 6] |= 1L << row;
+            } else {
+                c.present[row >>> 6] &= ~(1L << row);
+            }
+            c.live[row >>> 6] |= 1L << row;
+            if (previous == null) {
+                size++;
+            }
+            highestRow = Math.max(highestRow, row);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return previous;
+    }
+
+    @Override
+    public AttendanceRecord remove(int id) {
+        AttendanceRecord previous = get(id);
+        if (previous == null) {
+            return null;
+        }
+        long stamp = lock.writeLock();
+        try {
+            columns.live[id >>> 6] &= ~(1L << id);
+            size--;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<AttendanceRecord> values() {
+        List<AttendanceRecord> result = new ArrayList<>(size);
+        forEach((id, studentId, courseId, epochDay, present, version) -> result.add(record(id, studentId,
+                courseId, epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null, present, version)));
+        return result;
+    }
+
+    @Override
+    public void forEach(RowVisitor visitor) {
+        Columns c = columns;
+        int end = Math.min(highestRow + 1, c.capacity());
+        scan(c, 0, (end + 63) >>> 6, end, visitor);
+    }
+
+    /**
+     * Split on 64-row word boundaries of the live bitset
+     */
+    @Override
+    public List<RowScan> split(int parts) {
+        Columns c = columns;
+        int end = Math.min(highestRow + 1, c.capacity());
+        int words = (end + 63) >>> 6;
+        int wordsPerPart = Math.max(1, (words + parts - 1) / parts);
+        List<RowScan> scans = new ArrayList<>();
+        for (int from = 0; from < words; from += wordsPerPart) {
+            int fromWord = from;
+            int toWord = Math.min(words, from + wordsPerPart);
+            scans.add(visitor -> scan(c, fromWord, toWord, end, visitor));
+        }
+        return scans;
+    }
+
+    /**
+     * Visit the live rows below end in a range of bitset words
+     */
+    private static void scan(Columns c, int fromWord, int toWord, int end, RowVisitor visitor) {
+        // Walk the live bitset a word at a time so deleted ranges are skipped cheaply
+        for (int word = fromWord; word < toWord; word++) {
+            long bits = c.live[word];
+            while (bits != 0) {
+                int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (row >= end) {
+                    break;
+                }
+                int epochDay = c.epochDays[row];
+                visitor.visit(row, c.studentIds[row], c.courseIds[row],
+                        epochDay != NULL_DATE ? epochDay : NO_DATE,
+                        (c.present[row >>> 6] & (1L << row)) != 0, c.versions[row]);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            columns = new Columns(INITIAL_CAPACITY);
+            size = 0;
+            highestRow = -1;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static AttendanceRecord materialise(Columns c, int row) {
+        int epochDay = c.epochDays[row];
+        return record(row, c.studentIds[row], c.courseIds[row],
+                epochDay != NULL_DATE ? LocalDate.ofEpochDay(epochDay) : null,
+                (c.present[row >>> 6] & (1L << row)) != 0, c.versions[row]);
+    }
+
+    private static AttendanceRecord record(int id, int studentId, int courseId, LocalDate date, boolean present,
+            int version) {
+        AttendanceRecord record = new AttendanceRecord(id, studentId, courseId, date, present);
+        record.setVersion(version);
+        return record;
+    }
+}
@@ -0,0 +1,471 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable compressed set of non-negative ints (a small roaring bitmap).
+ * Values are split by their high 16 bits into containers. A container with
+ * up to 4096 values is a sorted char array (2 bytes per value); a denser one
+ * is a fixed 8 KB bitset. Student IDs are dense, so a class of a few
+ * hundred students costs well under a kilobyte.
+ *
+ * with()/without() copy only the one container they touch, so the index
+ * can publish a new bitmap per write while readers keep using the old one.
+ */
+final class CompressedBitmap {
+    static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Container[0]);
+
+    // Containers with more values than this are stored as bitsets
+    private static final int ARRAY_LIMIT = 4096;
+
+    private final char[] keys; // high 16 bits, ascending
+    private final Container[] containers;
+    private final int cardinality;
+
+    private CompressedBitmap(char[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+        int total = 0;
+        for (Container container : containers) {
+            total += container.cardinality();
+        }
+        this.cardinality = total;
+    }
+
+    /**
+     * @return Number of values in the set
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    boolean contains(int value) {
+        int i = Arrays.binarySearch(keys, high(value));
+        return i >= 0 && containers[i].contains(low(value));
+    }
+
+    /**
+     * @return A bitmap that also contains value
+     */
+    CompressedBitmap with(int value) {
+        checkValue(value);
+        int i = Arrays.binarySearch(keys, high(value));
+        if (i >= 0) {
+            Container updated = containers[i].with(low(value));
+            return updated == containers[i] ? this : replace(i, updated);
+        }
+        int insertAt = -i - 1;
+        char[] newKeys = new char[keys.length + 1];
+        Container[] newContainers = new Container[containers.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, insertAt);
+        System.arraycopy(containers, 0, newContainers, 0, insertAt);
+        newKeys[insertAt] = high(value);
+        newContainers[insertAt] = new ArrayContainer(new char[] { low(value) });
+        System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+        System.arraycopy(containers, insertAt, newContainers, insertAt + 1, containers.length - insertAt);
+        return new CompressedBitmap(newKeys, newContainers);
+    }
+
+    /**
+     * @return A bitmap without value
+     */
+    CompressedBitmap without(int value) {
+        int i = Arrays.binarySearch(keys, high(value));
+        if (i < 0) {
+            return this;
+        }
+        Container updated = containers[i].without(low(value));
+        return updated == containers[i] ? this : replace(i, updated);
+    }
+
+    /**
+     * @return Values in both bitmaps
+     */
+    CompressedBitmap and(CompressedBitmap other) {
+        Builder result = new Builder(Math.min(keys.length, other.keys.length));
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.add(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * @return Values in either bitmap
+     */
+    CompressedBitmap or(CompressedBitmap other) {
+        Builder result = new Builder(keys.length + other.keys.length);
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                result.add(keys[i], containers[i]);
+                i++;
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                result.add(other.keys[j], other.containers[j]);
+                j++;
+            } else {
+                result.add(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * @return Values in this bitmap but not in other
+     */
+    CompressedBitmap andNot(CompressedBitmap other) {
+        Builder result = new Builder(keys.length);
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.keys.length && other.keys[j] == keys[i]) {
+                result.add(keys[i], containers[i].andNot(other.containers[j]));
+            } else {
+                result.add(keys[i], containers[i]);
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * Visit every value in ascending order
+     */
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * @return Values in ascending order
+     */
+    int[] toArray() {
+        int[] values = new int[cardinality];
+        int[] position = { 0 };
+        forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    private CompressedBitmap replace(int index, Container container) {
+        if (container == null) {
+            char[] newKeys = new char[keys.length - 1];
+            Container[] newContainers = new Container[containers.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(containers, 0, newContainers, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(containers, index + 1, newContainers, index, containers.length - index - 1);
+            return newKeys.length == 0 ? EMPTY : new CompressedBitmap(newKeys, newContainers);
+        }
+        Container[] newContainers = containers.clone();
+        newContainers[index] = container;
+        return new CompressedBitmap(keys, newContainers);
+    }
+
+    private static char high(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+    }
+
+    /**
+     * Collects non-empty containers in key order
+     */
+    private static final class Builder {
+        private char[] keys;
+        private Container[] containers;
+        private int size;
+
+        Builder(int capacity) {
+            keys = new char[capacity];
+            containers = new Container[capacity];
+        }
+
+        void add(char key, Container container) {
+            if (container != null) {
+                keys[size] = key;
+                containers[size] = container;
+                size++;
+            }
+        }
+
+        CompressedBitmap build() {
+            return size == 0 ? EMPTY
+                    : new CompressedBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size));
+        }
+    }
+
+    /**
+     * The low 16 bits of the values sharing one high half.
+     * Operations return null instead of an empty container.
+     */
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container with(char value);
+
+        abstract Container without(char value);
+
+        abstract void forEach(int base, IntConsumer action);
+
+        abstract long[] toWords();
+
+        Container and(Container other) {
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).filter(other, true);
+            }
+            if (other instanceof ArrayContainer) {
+                return ((ArrayContainer) other).filter(this, true);
+            }
+            long[] words = toWords();
+            long[] otherWords = ((BitmapContainer) other).words;
+            for (int i = 0; i < words.length; i++) {
+                words[i] &= otherWords[i];
+            }
+            return fromWords(words);
+        }
+
+        Container or(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer) {
+                return ((ArrayContainer) this).merge((ArrayContainer) other);
+            }
+            long[] words = toWords();
+            long[] otherWords = other.toWords();
+            for (int i = 0; i < words.length; i++) {
+                words[i] |= otherWords[i];
+            }
+            return fromWords(words);
+        }
+
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).filter(other, false);
+            }
+            long[] words = toWords();
+            long[] otherWords = other.toWords();
+            for (int i = 0; i < words.length; i++) {
+                words[i] &= ~otherWords[i];
+            }
+            return fromWords(words);
+        }
+
+        /**
+         * Pick the smaller representation for a bitset
+         */
+        static Container fromWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality == 0) {
+                return null;
+            }
+            if (cardinality > ARRAY_LIMIT) {
+                return new BitmapContainer(words, cardinality);
+            }
+            char[] values = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[n++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values);
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private final char[] values; // ascending
+
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        @Override
+        Container with(char value) {
+            int i = Arrays.binarySearch(values, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (values.length == ARRAY_LIMIT) {
+                long[] words = toWords();
+                words[value >>> 6] |= 1L << value;
+                return new BitmapContainer(words, ARRAY_LIMIT + 1);
+            }
+            int insertAt = -i - 1;
+            char[] copy = new char[values.length + 1];
+            System.arraycopy(values, 0, copy, 0, insertAt);
+            copy[insertAt] = value;
+            System.arraycopy(values, insertAt, copy, insertAt + 1, values.length - insertAt);
+            return new ArrayContainer(copy);
+        }
+
+        @Override
+        Container without(char value) {
+            int i = Arrays.binarySearch(values, value);
+            if (i < 0) {
+                return this;
+            }
+            if (values.length == 1) {
+                return null;
+            }
+            char[] copy = new char[values.length - 1];
+            System.arraycopy(values, 0, copy, 0, i);
+            System.arraycopy(values, i + 1, copy, i, values.length - i - 1);
+            return new ArrayContainer(copy);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (char value : values) {
+                action.accept(base | value);
+            }
+        }
+
+        @Override
+        long[] toWords() {
+            long[] words = new long[1024];
+            for (char value : values) {
+                words[value >>> 6] |= 1L << value;
+            }
+            return words;
+        }
+
+        /**
+         * Keep the values that are (or, with keep false, are not) in other
+         */
+        Container filter(Container other, boolean keep) {
+            char[] kept = new char[values.length];
+            int n = 0;
+            for (char value : values) {
+                if (other.contains(value) == keep) {
+                    kept[n++] = value;
+                }
+            }
+            if (n == values.length) {
+                return this;
+            }
+            return n == 0 ? null : new ArrayContainer(Arrays.copyOf(kept, n));
+        }
+
+        Container merge(ArrayContainer other) {
+            char[] merged = new char[values.length + other.values.length];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < values.length || j < other.values.length) {
+                if (j == other.values.length || (i < values.length && values[i] < other.values[j])) {
+                    merged[n++] = values[i++];
+                } else if (i == values.length || values[i] > other.values[j]) {
+                    merged[n++] = other.values[j++];
+                } else {
+                    merged[n++] = values[i++];
+                    j++;
+                }
+            }
+            if (n > ARRAY_LIMIT) {
+                return fromWords(new ArrayContainer(Arrays.copyOf(merged, n)).toWords());
+            }
+            return new ArrayContainer(Arrays.copyOf(merged, n));
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words; // 1024 words = 65536 bits
+        private final int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container with(char value) {
+            if (contains(value)) {
+                return this;
+            }
+            long[] copy = words.clone();
+            copy[value >>> 6] |= 1L << value;
+            return new BitmapContainer(copy, cardinality + 1);
+        }
+
+        @Override
+        Container without(char value) {
+            if (!contains(value)) {
+                return this;
+            }
+            long[] copy = words.clone();
+            copy[value >>> 6] &= ~(1L << value);
+            if (cardinality - 1 <= ARRAY_LIMIT) {
+                return fromWords(copy);
+            }
+            return new BitmapContainer(copy, cardinality - 1);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(base | ((i << 6) + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        long[] toWords() {
+            return words.clone();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.AttendanceManagementSystem.storage;
+
+/**
+ * Thrown when a write would break a uniqueness constraint.
+ * Nothing has been written when it is thrown; servlets answer 409 Conflict.
+ */
+public class ConstraintViolationException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int conflictingId;
+
+    /**
+     * @param message       Description of the violated constraint
+     * @param conflictingId ID of the existing entity that holds the value
+     */
+    public ConstraintViolationException(String message, int conflictingId) {
+        super(message);
+        this.conflictingId = conflictingId;
+    }
+
+    /**
+     * @return ID of the existing entity that holds the value
+     */
+    public int getConflictingId() {
+        return conflictingId;
+    }
+}
@@ -0,0 +1,47 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One in-memory counter per entity kind, starting at 1. IDs are only
+ * unique within one store, and start over when it is cleared.
+ */
+final class CounterIdAllocator implements IdAllocator {
+    private final AtomicInteger[] counters = new AtomicInteger[Kind.values().length];
+
+    CounterIdAllocator() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new AtomicInteger(1);
+        }
+    }
+
+    @Override
+    public int next(Kind kind) {
+        return counters[kind.ordinal()].getAndIncrement();
+    }
+
+    @Override
+    public void observe(Kind kind, int id) {
+        AtomicInteger counter = counters[kind.ordinal()];
+        if (counter.get() <= id) {
+            counter.accumulateAndGet(id + 1, Math::max);
+        }
+    }
+
+    @Override
+    public int peek(Kind kind) {
+        return counters[kind.ordinal()].get();
+    }
+
+    @Override
+    public void reset() {
+        for (AtomicInteger counter : counters) {
+            counter.set(1);
+        }
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
@@ -4,45 +4,469 @@ import com.AttendanceManagementSystem.model.AttendanceRecord;
 import com.AttendanceManagementSystem.model.Course;
 import com.AttendanceManagementSystem.model.Student;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * In-memory data store for the Student Attendance Management System.
  * Provides thread-safe CRUD operations.
+ *
+ * Every mutation is first appended to a write-ahead log and then applied
+ * to the in-memory tables (see apply). A background checkpoint periodically
+ * writes a binary snapshot, so a restart loads the latest snapshot and
+ * replays only the log segments written after it.
+ *
+ * Students and courses live in persistent (immutable) maps behind a single
+ * atomic root. Writers build a new root and publish it, so getAllStudents()
+ * and getAllCourses() return point-in-time views in O(1) without copying
+ * and readers never wait for writers.
+ *
+ * Alongside the presence index, AttendanceCounters keeps present and total
+ * counts per student, course and pair, so attendance rates need no scan,
+ * and AttendanceCube keeps them per student, course and week, so reports
+ * by instructor, week, month or term add up cells instead of records.
+ *
+ * Attendance is sharded by course (see AttendancePartitions), so writes to
+ * different courses do not wait for each other. Locks are always taken in
+ * the same order, writeLock before any partition lock:
+ * - student and course writes hold writeLock;
+ * - attendance writes hold the partitions of the courses they touch, and
+ *   check under them that the student and course still exist;
+ * - a course delete also holds its partition; a student delete (whose
+ *   records span courses), a clear and a log roll hold every partition.
+ * Rows of the shared attendance table are written under tableLock, which
+ * is only held for the single row write.
+ *
+ * New IDs come from an IdAllocator, by default one that leases blocks of
+ * IDs in a file (see LeasedIdAllocator), so IDs are never reused and
+ * instances with different attendance.ids.node numbers never collide.
+ *
+ * A batch (executeBatch) holds writeLock and every partition it touches,
+ * validates all of its operations against a staged view of the state and
+ * commits them as one logged mutation. That mutation is applied under
+ * batchGate, and every read validates an optimistic stamp on the gate,
+ * so readers see all of a batch or none of it without ever blocking on
+ * ordinary writes. Reports that scan every record only retry a few times
+ * and then accept what they saw (see readWeakly), so a long scan never
+ * holds batches back.
+ *
+ * Every committed mutation is also published on a ChangeFeed, under the
+ * same locks that ordered it, so subscribers see the changes to one entity
+ * in the order they were made. Log replay publishes nothing.
+ *
+ * With attendance.archive.afterDays set, each checkpoint first moves the
+ * records older than the cutoff out of the attendance table into the
+ * compressed segments of an AttendanceArchive. Lookups fall through to the
+ * archive when the table misses, and queries merge both tiers, so callers
+ * never see where a record lives. Writing an archived record brings it back
+ * into the table. The presence index keeps covering archived records.
+ *
+ * With attendance.replication.role set, a LEADER also hands every committed
+ * mutation to a ReplicationLeader, which streams them to followers on its
+ * loopback port. A FOLLOWER gets its state from the leader instead: its
+ * public write methods throw IllegalStateException, and a
+ * ReplicationFollower commits the leader's mutations through replicate(),
+ * so they are logged, checkpointed and published on the change feed here
+ * as well.
  */
-public class DataStore {
+public class DataStore implements StorageBackend {
     // Single instance across the application
     private static DataStore instance;
+    // Scans of every record a report makes before accepting one that overlapped a batch
+    private static final int REPORT_ATTEMPTS = 3;
 
-    // Thread-safe collections (handles multiple concurrent users)
-    private final ConcurrentHashMap<Integer, Student> students;
-    private final ConcurrentHashMap<Integer, Course> courses;
-    private final ConcurrentHashMap<Integer, AttendanceRecord> attendanceRecords;
+    // Current version of the student and course tables
+    private final AtomicReference<Tables> tables;
+    private final AttendanceTable attendanceRecords;
 
-    // Thread-safe ID generators
-    private final AtomicInteger studentIdCounter;
-    private final AtomicInteger courseIdCounter;
-    private final AtomicInteger attendanceIdCounter;
+    // Normalised email -> student ID, for lookups and the uniqueness check
+    private final ConcurrentHashMap<String, Integer> emailIndex = new ConcurrentHashMap<>();
+
+    // Type-ahead search over student names and course names/instructors
+    private final TrigramIndex studentSearch = new TrigramIndex();
+    private final TrigramIndex courseSearch = new TrigramIndex();
+
+    // Secondary indexes over attendanceRecords, sharded by course with a lock per shard
+    private final AttendancePartitions partitions;
+    // Keyed by (date, course), so each entry is only written under its course's partition lock
+    private final PresenceIndex presenceIndex;
+    // Present/total counts per student, course and pair, for attendance rates
+    private final AttendanceCounters attendanceCounters = new AttendanceCounters();
+    // Present/total counts per (student, course, week), for reports by period and instructor
+    private final AttendanceCube attendanceCube;
+    // Bounded pool for reports that scan every record
+    private final ReportEngine reportEngine;
+
+    // Cold tier: records older than archiveAfterDays, moved out by checkpoints
+    private final AttendanceArchive archive;
+    private final int archiveAfterDays;
+
+    // Records loaded from disk that duplicate an earlier record's student,
+    // course and date; written before uniqueness was enforced, purged at startup
+    private final Set<Integer> loadedDuplicates = new LinkedHashSet<>();
+
+    // Serializes student and course mutations so log order matches the order
+    // they are applied in; attendance mutations lock their partitions instead
+    private final Object writeLock = new Object();
+    // The table engines expect one writer at a time
+    private final Object tableLock = new Object();
+    // Write-locked while a batch is applied; readers retry if one overlapped them
+    private final StampedLock batchGate = new StampedLock();
+
+    // Durability (null when the write-ahead log is disabled)
+    private final WriteAheadLog writeAheadLog;
+    private final File snapshotDirectory;
+    private final ScheduledExecutorService checkpointScheduler;
+    private final Object checkpointLock = new Object();
+    private long lastCheckpointSequence = -1;
+
+    // Committed changes, for subscribers following the store
+    private final ChangeFeed changeFeed = new ChangeFeed();
+
+    // Replication; at most one is set, depending on the configured role
+    private final ReplicationLeader replicationLeader;
+    private final ReplicationFollower replicationFollower;
+
+    // Startup phase -> milliseconds, in the order the phases ran
+    private final Map<String, Long> startupMillis = new LinkedHashMap<>();
+
+    // Hands out the IDs of new students, courses and attendance records
+    private final IdAllocator ids;
 
     /**
      * Private constructor for singleton pattern
+     * 
+     * @param config Storage settings
+     */
+    private DataStore(StorageConfig config) {
+        tables = new AtomicReference<>(Tables.EMPTY);
+        attendanceRecords = createAttendanceTable(config);
+        partitions = new AttendancePartitions(config.getPartitions());
+        presenceIndex = new PresenceIndex();
+        attendanceCube = new AttendanceCube(config.getTermStartMonths());
+        reportEngine = new ReportEngine(config.getReportParallelism());
+        archive = new AttendanceArchive(new File(config.getDirectory(), "archive"), config.getArchiveCacheSegments());
+        // Segments only become durable through a snapshot, so archiving needs the log
+        archiveAfterDays = config.isWalEnabled() ? config.getArchiveAfterDays() : 0;
+
+        ids = createIdAllocator(config);
+
+        long startupStart = System.nanoTime();
+        boolean restored = false;
+        if (config.isWalEnabled()) {
+            snapshotDirectory = new File(config.getDirectory(), "snapshots");
+            long fromGeneration = loadLatestSnapshot();
+            restored = fromGeneration > 0;
+
+            long phaseStart = System.nanoTime();
+            writeAheadLog = openWriteAheadLog(config);
+            startupMillis.put("open log", elapsedMillis(phaseStart));
+
+            phaseStart = System.nanoTime();
+            long replayed;
+            try {
+                replayed = writeAheadLog.replay(fromGeneration, this::apply);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot replay write-ahead log", e);
+            }
+            startupMillis.put("replay " + replayed + " logged mutations", elapsedMillis(phaseStart));
+            restored |= replayed > 0;
+            // Fold a replayed log tail into the next snapshot; otherwise wait for new writes
+            lastCheckpointSequence = replayed > 0 ? -1 : 0;
+
+            if (restored) {
+                phaseStart = System.nanoTime();
+                int purged = purgeOrphans();
+                startupMillis.put("purge " + purged + " orphaned students/courses", elapsedMillis(phaseStart));
+
+                phaseStart = System.nanoTime();
+                purged = purgeDuplicates();
+                startupMillis.put("purge " + purged + " duplicate attendance records", elapsedMillis(phaseStart));
+            }
+
+            checkpointScheduler = startCheckpoints(config.getCheckpointIntervalSeconds());
+        } else {
+            snapshotDirectory = null;
+            writeAheadLog = null;
+            checkpointScheduler = null;
+        }
+
+        // Initialize with some mock data on first start only; a follower gets its data from the leader
+        StorageConfig.ReplicationRole role = config.getReplicationRole();
+        if (!restored && role != StorageConfig.ReplicationRole.FOLLOWER) {
+            long phaseStart = System.nanoTime();
+            initializeSampleData(this);
+            startupMillis.put("sample data", elapsedMillis(phaseStart));
+        }
+
+        replicationLeader = role == StorageConfig.ReplicationRole.LEADER
+                ? startLeader(config.getReplicationPort()) : null;
+        replicationFollower = role == StorageConfig.ReplicationRole.FOLLOWER
+                ? new ReplicationFollower(config.getReplicationLeader(), this::replicate) : null;
+        startupMillis.put("total", elapsedMillis(startupStart));
+    }
+
+    /**
+     * Start serving followers once the state is loaded
+     * 
+     * @param port Loopback port to listen on
+     * @return The running leader
+     */
+    private ReplicationLeader startLeader(int port) {
+        try {
+            return new ReplicationLeader(port, this::dumpState);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot listen for replication followers on port " + port, e);
+        }
+    }
+
+    /**
+     * Load the newest snapshot, if any, into the empty tables
+     * 
+     * @return First log generation to replay after the snapshot (0 if none was loaded)
      */
-    private DataStore() {
-        students = new ConcurrentHashMap<>();
-        courses = new ConcurrentHashMap<>();
-        attendanceRecords = new ConcurrentHashMap<>();
+    private long loadLatestSnapshot() {
+        File snapshot = SnapshotFile.findLatest(snapshotDirectory);
+        if (snapshot == null) {
+            return 0;
+        }
+        long phaseStart = System.nanoTime();
+        SnapshotFile.Loaded loaded;
+        try {
+            loaded = SnapshotFile.load(snapshot,
+                    // Sections decode on separate threads, hence the CAS updates
+                    student -> {
+                        tables.updateAndGet(t -> t.putStudent(student));
+                        indexEmail(null, student);
+                        studentSearch.put(student.getId(), student.getFullName());
+                    },
+                    course -> {
+                        tables.updateAndGet(t -> t.withCourses(t.courses.plus(course.getId(), course)));
+                        courseSearch.put(course.getId(), course.getName(), course.getInstructor());
+                    },
+                    (id, studentId, courseId, epochDay, present, version) -> {
+                        AttendanceRecord record = new AttendanceRecord(id, studentId, courseId,
+                                epochDay != AttendanceTable.NO_DATE ? LocalDate.ofEpochDay(epochDay) : null, present);
+                        record.setVersion(version);
+                        attendanceRecords.put(record);
+                        if (partitions.index(courseId).add(record) != -1) {
+                            loadedDuplicates.add(id);
+                        }
+                        presenceIndex.add(record);
+                        attendanceCounters.add(record);
+                        attendanceCube.add(record);
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load snapshot " + snapshot, e);
+        }
 
-        studentIdCounter = new AtomicInteger(1);
-        courseIdCounter = new AtomicInteger(1);
-        attendanceIdCounter = new AtomicInteger(1);
+        ids.observe(IdAllocator.Kind.STUDENT, loaded.studentIdCounter - 1);
+        ids.observe(IdAllocator.Kind.COURSE, loaded.courseIdCounter - 1);
+        ids.observe(IdAllocator.Kind.ATTENDANCE, loaded.attendanceIdCounter - 1);
+
+        for (Map.Entry<String, Long> section : loaded.sectionMillis.entrySet()) {
+            startupMillis.put("snapshot " + section.getKey(), section.getValue());
+        }
+        startupMillis.put("load snapshot " + snapshot.getName(), elapsedMillis(phaseStart));
+
+        phaseStart = System.nanoTime();
+        try {
+            for (Map.Entry<String, int[]> segment : loaded.archivedSegments.entrySet()) {
+                archive.open(segment.getKey(), segment.getValue(), record -> {
+                    presenceIndex.add(record);
+                    attendanceCounters.add(record);
+                    attendanceCube.add(record);
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open attendance archive", e);
+        }
+        archive.deleteUnreferenced(loaded.archivedSegments.keySet());
+        if (!loaded.archivedSegments.isEmpty()) {
+            startupMillis.put("open " + loaded.archivedSegments.size() + " archive segments", elapsedMillis(phaseStart));
+        }
+        return loaded.generation;
+    }
 
-        // Initialize with some mock data
-        initializeSampleData();
+    /**
+     * Open the write-ahead log in the configured storage directory
+     * 
+     * @param config Storage settings
+     * @return Open log
+     */
+    private static WriteAheadLog openWriteAheadLog(StorageConfig config) {
+        File directory = new File(config.getDirectory(), "wal");
+        try {
+            return new WriteAheadLog(directory, config.getFsyncPolicy(), config.getGroupCommitMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-ahead log in " + directory, e);
+        }
+    }
+
+    /**
+     * Remove attendance and registrations left behind by students and
+     * courses deleted before deletes cascaded. Walks the keys of the student
+     * and course indexes and of the enrollments, not the records, and logs a
+     * delete for each missing owner so the cleanup happens once; deleting a
+     * missing course withdraws the students still registered for it.
+     * 
+     * @return Number of orphaned student and course IDs purged
+     */
+    private int purgeOrphans() {
+        Set<Integer> studentIds = new LinkedHashSet<>();
+        Set<Integer> courseIds = new LinkedHashSet<>();
+        Tables current = tables.get();
+        for (int partition = 0; partition < partitions.count(); partition++) {
+            AttendanceIndex index = partitions.indexAt(partition);
+            for (int studentId : index.studentIds()) {
+                if (!current.students.containsKey(studentId)) {
+                    studentIds.add(studentId);
+                }
+            }
+            for (int courseId : index.courseIds()) {
+                if (!current.courses.containsKey(courseId)) {
+                    courseIds.add(courseId);
+                }
+            }
+        }
+        current.enrollments.forEachKey(courseId -> {
+            if (!current.courses.containsKey(courseId)) {
+                courseIds.add(courseId);
+            }
+        });
+
+        List<Mutation> deletes = new ArrayList<>(studentIds.size() + courseIds.size());
+        for (int studentId : studentIds) {
+            deletes.add(Mutation.deleteStudent(studentId));
+        }
+        for (int courseId : courseIds) {
+            deletes.add(Mutation.deleteCourse(courseId));
+        }
+        commitAll(deletes);
+        return deletes.size();
+    }
+
+    /**
+     * Delete the loaded duplicates that still clash with the record holding
+     * their student, course and date. A duplicate whose original has since
+     * been deleted takes over the key and is kept.
+     * 
+     * @return Number of duplicate records deleted
+     */
+    private int purgeDuplicates() {
+        List<Mutation> deletes = new ArrayList<>();
+        for (int id : loadedDuplicates) {
+            AttendanceRecord record = attendanceRecords.get(id);
+            if (record != null && partitions.index(record.getCourseId()).claimKey(record) != -1) {
+                deletes.add(Mutation.deleteAttendance(id));
+            }
+        }
+        loadedDuplicates.clear();
+        commitAll(deletes);
+        return deletes.size();
+    }
+
+    /**
+     * Commit startup cleanup mutations holding every lock, with one log sync
+     * 
+     * @param mutations Mutations to commit, in order
+     */
+    private void commitAll(List<Mutation> mutations) {
+        if (mutations.isEmpty()) {
+            return;
+        }
+        long sequence = 0;
+        synchronized (writeLock) {
+            int[] locked = partitions.lockAll();
+            try {
+                for (Mutation mutation : mutations) {
+                    sequence = commit(mutation);
+                }
+            } finally {
+                partitions.unlock(locked);
+            }
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Schedule periodic checkpoints on a daemon thread
+     * 
+     * @param intervalSeconds Seconds between checkpoints (0 disables them)
+     * @return Scheduler, or null when disabled
+     */
+    private ScheduledExecutorService startCheckpoints(long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return null;
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attendance-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (RuntimeException e) {
+                System.out.println("DataStore - Checkpoint failed: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        return scheduler;
+    }
+
+    /**
+     * Create the attendance table for the configured engine
+     * 
+     * @param config Storage settings
+     * @return Empty attendance table
+     */
+    private static AttendanceTable createAttendanceTable(StorageConfig config) {
+        switch (config.getEngine()) {
+            case COLUMNAR:
+                return new ColumnarAttendanceTable();
+            case OFFHEAP:
+                return new OffHeapAttendanceTable();
+            case MAPPED:
+                return new OffHeapAttendanceTable(new File(config.getDirectory(), "segments"));
+            case HEAP:
+            default:
+                return new HeapAttendanceTable();
+        }
+    }
+
+    /**
+     * Create the ID allocator for the configured scheme. Leases are only
+     * kept when the log is, since without it nothing else survives a restart.
+     * 
+     * @param config Storage settings
+     * @return ID allocator
+     */
+    private static IdAllocator createIdAllocator(StorageConfig config) {
+        if (config.getIdScheme() == StorageConfig.IdScheme.LEASED && config.isWalEnabled()) {
+            return new LeasedIdAllocator(new File(config.getDirectory(), "ids.lease"), config.getIdNode(),
+                    config.getIdNodes(), config.getIdBlockSize());
+        }
+        return new CounterIdAllocator();
     }
 
     /**
@@ -52,18 +476,30 @@ public class DataStore {
      */
     public static synchronized DataStore getInstance() {
         if (instance == null) {
-            instance = new DataStore();
+            instance = new DataStore(StorageConfig.fromSystemProperties());
         }
         return instance;
     }
 
+    /**
+     * Flush and close the singleton if it was created.
+     * The next getInstance() call reopens it from disk.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
     /**
      * Get all students
      * 
-     * @return List of all students
+     * @return Read-only snapshot of all students
      */
-    public List<Student> getAllStudents() {
-        return new ArrayList<>(students.values());
+    @Override
+    public Collection<Student> getAllStudents() {
+        return read(() -> tables.get().students.values());
     }
 
     /**
@@ -72,8 +508,52 @@ public class DataStore {
      * @param id Student ID
      * @return Student if found, null otherwise
      */
+    @Override
     public Student getStudentById(int id) {
-        return students.get(id);
+        return read(() -> tables.get().students.get(id));
+    }
+
+    /**
+     * Get student by email with a single probe of the email index
+     * 
+     * @param email Email address (case and surrounding whitespace are ignored)
+     * @return Student if found, null otherwise
+     */
+    @Override
+    public Student getStudentByEmail(String email) {
+        String key = Student.normalizeEmail(email);
+        return read(() -> {
+            Integer id = key != null ? emailIndex.get(key) : null;
+            if (id == null) {
+                return null;
+            }
+            // The index and the table are updated one after the other; re-check
+            Student student = tables.get().students.get(id);
+            return student != null && key.equals(Student.normalizeEmail(student.getEmail())) ? student : null;
+        });
+    }
+
+    /**
+     * Search students by name through the trigram index
+     * 
+     * @param query Text to look for (3+ characters match anywhere, shorter
+     *              queries match the start of a word)
+     * @param limit Maximum number of results
+     * @return Matching students
+     */
+    @Override
+    public List<Student> searchStudents(String query, int limit) {
+        return read(() -> {
+            PersistentIntMap<Student> students = tables.get().students;
+            List<Student> result = new ArrayList<>();
+            for (int id : studentSearch.search(query, limit)) {
+                Student student = students.get(id);
+                if (student != null) {
+                    result.add(student);
+                }
+            }
+            return result;
+        });
     }
 
     /**
@@ -82,44 +562,88 @@ public class DataStore {
      * @param student Student to add (ID will be auto-generated)
      * @return Added student with generated ID
      */
+    @Override
     public Student addStudent(Student student) {
-        int newId = studentIdCounter.getAndIncrement();
-        student.setId(newId);
-        students.put(newId, student);
+        checkWritable();
+        long sequence;
+        synchronized (writeLock) {
+            checkEmailUnique(student);
+            checkRegistrations(tables.get(), student);
+            student.setId(ids.next(IdAllocator.Kind.STUDENT));
+            student.setVersion(1);
+            sequence = commit(Mutation.putStudent(student));
+        }
+        awaitDurable(sequence);
         return student;
     }
 
     /**
-     * Update existing student
+     * Update existing student if it is still at the expected version.
+     * A stale version is rejected before the write lock is taken.
      * 
-     * @param student Student to update
+     * @param student         Student to update; its version is set to the new one
+     * @param expectedVersion Version the caller last saw, or ANY_VERSION
      * @return Updated student if found, null otherwise
+     * @throws VersionConflictException if the stored version differs
      */
-    public Student updateStudent(Student student) {
-        if (students.containsKey(student.getId())) {
-            students.put(student.getId(), student);
-            return student;
+    @Override
+    public Student updateStudent(Student student, int expectedVersion) {
+        checkWritable();
+        Student stored = tables.get().students.get(student.getId());
+        if (stored == null) {
+            return null;
         }
-        return null;
+        checkVersion("Student", student.getId(), stored.getVersion(), expectedVersion);
+        long sequence;
+        synchronized (writeLock) {
+            stored = tables.get().students.get(student.getId());
+            if (stored == null) {
+                return null;
+            }
+            checkVersion("Student", student.getId(), stored.getVersion(), expectedVersion);
+            checkEmailUnique(student);
+            checkRegistrations(tables.get(), student);
+            student.setVersion(stored.getVersion() + 1);
+            sequence = commit(Mutation.putStudent(student));
+        }
+        awaitDurable(sequence);
+        return student;
     }
 
     /**
-     * Delete student by ID
+     * Delete student by ID, together with its attendance records
      * 
      * @param id Student ID
      * @return true if deleted, false if not found
      */
+    @Override
     public boolean deleteStudent(int id) {
-        return students.remove(id) != null;
+        checkWritable();
+        long sequence;
+        synchronized (writeLock) {
+            if (!tables.get().students.containsKey(id)) {
+                return false;
+            }
+            // The student's records can be in any partition
+            int[] locked = partitions.lockAll();
+            try {
+                sequence = commit(Mutation.deleteStudent(id));
+            } finally {
+                partitions.unlock(locked);
+            }
+        }
+        awaitDurable(sequence);
+        return true;
     }
 
     /**
      * Get all courses
      * 
-     * @return List of all courses
+     * @return Read-only snapshot of all courses
      */
-    public List<Course> getAllCourses() {
-        return new ArrayList<>(courses.values());
+    @Override
+    public Collection<Course> getAllCourses() {
+        return read(() -> tables.get().courses.values());
     }
 
     /**
@@ -128,8 +652,32 @@ public class DataStore {
      * @param id Course ID
      * @return Course if found, null otherwise
      */
+    @Override
     public Course getCourseById(int id) {
-        return courses.get(id);
+        return read(() -> tables.get().courses.get(id));
+    }
+
+    /**
+     * Search courses by name or instructor through the trigram index
+     * 
+     * @param query Text to look for (3+ characters match anywhere, shorter
+     *              queries match the start of a word)
+     * @param limit Maximum number of results
+     * @return Matching courses
+     */
+    @Override
+    public List<Course> searchCourses(String query, int limit) {
+        return read(() -> {
+            PersistentIntMap<Course> courses = tables.get().courses;
+            List<Course> result = new ArrayList<>();
+            for (int id : courseSearch.search(query, limit)) {
+                Course course = courses.get(id);
+                if (course != null) {
+                    result.add(course);
+                }
+            }
+            return result;
+        });
     }
 
     /**
@@ -138,44 +686,105 @@ public class DataStore {
      * @param course Course to add (ID will be auto-generated)
      * @return Added course with generated ID
      */
+    @Override
     public Course addCourse(Course course) {
-        int newId = courseIdCounter.getAndIncrement();
-        course.setId(newId);
-        courses.put(newId, course);
+        checkWritable();
+        long sequence;
+        synchronized (writeLock) {
+            course.setId(ids.next(IdAllocator.Kind.COURSE));
+            course.setVersion(1);
+            sequence = commit(Mutation.putCourse(course));
+        }
+        awaitDurable(sequence);
         return course;
     }
 
     /**
-     * Update existing course
+     * Update existing course if it is still at the expected version.
+     * A stale version is rejected before the write lock is taken.
      * 
-     * @param course Course to update
+     * @param course          Course to update; its version is set to the new one
+     * @param expectedVersion Version the caller last saw, or ANY_VERSION
      * @return Updated course if found, null otherwise
+     * @throws VersionConflictException if the stored version differs
      */
-    public Course updateCourse(Course course) {
-        if (courses.containsKey(course.getId())) {
-            courses.put(course.getId(), course);
-            return course;
+    @Override
+    public Course updateCourse(Course course, int expectedVersion) {
+        checkWritable();
+        Course stored = tables.get().courses.get(course.getId());
+        if (stored == null) {
+            return null;
+        }
+        checkVersion("Course", course.getId(), stored.getVersion(), expectedVersion);
+        long sequence;
+        synchronized (writeLock) {
+            stored = tables.get().courses.get(course.getId());
+            if (stored == null) {
+                return null;
+            }
+            checkVersion("Course", course.getId(), stored.getVersion(), expectedVersion);
+            course.setVersion(stored.getVersion() + 1);
+            sequence = commit(Mutation.putCourse(course));
         }
-        return null;
+        awaitDurable(sequence);
+        return course;
     }
 
     /**
-     * Delete course by ID
+     * Delete course by ID, together with its attendance records and every
+     * student's registration for it
      * 
      * @param id Course ID
      * @return true if deleted, false if not found
      */
+    @Override
     public boolean deleteCourse(int id) {
-        return courses.remove(id) != null;
+        checkWritable();
+        long sequence;
+        synchronized (writeLock) {
+            if (!tables.get().courses.containsKey(id)) {
+                return false;
+            }
+            int[] locked = partitions.lock(id);
+            try {
+                sequence = commit(Mutation.deleteCourse(id));
+            } finally {
+                partitions.unlock(locked);
+            }
+        }
+        awaitDurable(sequence);
+        return true;
+    }
+
+    /**
+     * Get the students registered for a course, from the enrollment index
+     * 
+     * @param courseId Course ID
+     * @return Students whose registeredCourses contain the course, by ascending ID
+     */
+    @Override
+    public List<Student> getStudentsByCourse(int courseId) {
+        // One root holds both the index and the students
+        Tables current = read(tables::get);
+        CompressedBitmap studentIds = current.enrolledIn(courseId);
+        List<Student> result = new ArrayList<>(studentIds.cardinality());
+        studentIds.forEach(id -> {
+            Student student = current.students.get(id);
+            if (student != null && student.isRegisteredForCourse(courseId)) {
+                result.add(student);
+            }
+        });
+        return result;
     }
 
     /**
      * Get all attendance records
      * 
-     * @return List of all attendance records
+     * @return Read-only collection of all attendance records
      */
-    public List<AttendanceRecord> getAllAttendanceRecords() {
-        return new ArrayList<>(attendanceRecords.values());
+    @Override
+    public Collection<AttendanceRecord> getAllAttendanceRecords() {
+        return read(() -> withArchived(-1, -1, null, null, attendanceRecords::values));
     }
 
     /**
@@ -184,8 +793,9 @@ public class DataStore {
      * @param id Attendance record ID
      * @return AttendanceRecord if found, null otherwise
      */
+    @Override
     public AttendanceRecord getAttendanceRecordById(int id) {
-        return attendanceRecords.get(id);
+        return read(() -> findRecord(id));
     }
 
     /**
@@ -193,13 +803,161 @@ public class DataStore {
      * 
      * @param studentId Student ID (optional, use -1 to ignore)
      * @param courseId  Course ID (optional, use -1 to ignore)
-     * @return List of matching attendance records
+     * @return Matching attendance records
      */
-    public List<AttendanceRecord> getAttendanceRecords(int studentId, int courseId) {
-        return attendanceRecords.values().stream()
-                .filter(record -> (studentId == -1 || record.getStudentId() == studentId))
-                .filter(record -> (courseId == -1 || record.getCourseId() == courseId))
-                .collect(Collectors.toList());
+    public Collection<AttendanceRecord> getAttendanceRecords(int studentId, int courseId) {
+        return getAttendanceRecords(studentId, courseId, null, null);
+    }
+
+    /**
+     * Get attendance records by student, course and date range
+     * 
+     * @param studentId Student ID (optional, use -1 to ignore)
+     * @param courseId  Course ID (optional, use -1 to ignore)
+     * @param from      First date, inclusive (optional, use null to ignore)
+     * @param to        Last date, inclusive (optional, use null to ignore)
+     * @return Matching attendance records
+     */
+    @Override
+    public Collection<AttendanceRecord> getAttendanceRecords(int studentId, int courseId, LocalDate from, LocalDate to) {
+        return read(() -> withArchived(studentId, courseId, from, to,
+                () -> findAttendanceRecords(studentId, courseId, from, to)));
+    }
+
+    private Collection<AttendanceRecord> findAttendanceRecords(int studentId, int courseId, LocalDate from, LocalDate to) {
+        Collection<IntBucket> candidates;
+        if (courseId != -1) {
+            candidates = partitions.index(courseId).lookup(studentId, courseId, from, to);
+        } else {
+            // A student's records, like a date range, span every partition
+            candidates = new ArrayList<>();
+            for (int partition = 0; partition < partitions.count() && candidates != null; partition++) {
+                Collection<IntBucket> found = partitions.indexAt(partition).lookup(studentId, -1, from, to);
+                if (found == null) {
+                    candidates = null;
+                } else {
+                    candidates.addAll(found);
+                }
+            }
+        }
+        if (candidates == null) {
+            return attendanceRecords.values();
+        }
+
+        List<AttendanceRecord> result = new ArrayList<>();
+        for (IntBucket ids : candidates) {
+            ids.forEach(id -> {
+                AttendanceRecord record = attendanceRecords.get(id);
+                // Re-check every filter: the chosen index only covers some of them,
+                // and a concurrent update may have moved the record
+                if (record != null
+                        && (studentId == -1 || record.getStudentId() == studentId)
+                        && (courseId == -1 || record.getCourseId() == courseId)
+                        && (from == null || (record.getDate() != null && !record.getDate().isBefore(from)))
+                        && (to == null || (record.getDate() != null && !record.getDate().isAfter(to)))) {
+                    result.add(record);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Get students marked present (or absent) in a course on a date
+     * 
+     * @param courseId Course ID
+     * @param date     Date
+     * @param present  true for present students, false for absent ones
+     * @return Student IDs in ascending order
+     */
+    @Override
+    public int[] getStudentIdsByPresence(int courseId, LocalDate date, boolean present) {
+        return read(() -> presenceIndex.get(courseId, date.toEpochDay()).get(present).toArray());
+    }
+
+    /**
+     * Count students marked present (or absent) in a course on a date
+     * 
+     * @param courseId Course ID
+     * @param date     Date
+     * @param present  true to count present students, false for absent ones
+     * @return Number of distinct students
+     */
+    @Override
+    public int countByPresence(int courseId, LocalDate date, boolean present) {
+        return read(() -> presenceIndex.get(courseId, date.toEpochDay()).get(present).cardinality());
+    }
+
+    /**
+     * Get students absent from every given course on a date
+     * 
+     * @param date      Date
+     * @param courseIds Courses that must all have the student absent, or null
+     *                  for students absent from every class they had that date
+     * @return Student IDs in ascending order
+     */
+    @Override
+    public int[] getStudentsAbsentFromAll(LocalDate date, int[] courseIds) {
+        return read(() -> presenceIndex.absentFromAll(date.toEpochDay(), courseIds).toArray());
+    }
+
+    /**
+     * Count the records of a student, a course or a student in a course, and
+     * how many are marked present, from counters kept up to date by every
+     * write (archived records included)
+     * 
+     * @param studentId Student ID (optional, use -1 to ignore)
+     * @param courseId  Course ID (optional, use -1 to ignore)
+     * @return Present and total counts; both -1 counts every record
+     */
+    @Override
+    public AttendanceStats getAttendanceStats(int studentId, int courseId) {
+        return read(() -> attendanceCounters.get(studentId, courseId));
+    }
+
+    /**
+     * Roll attendance up from the cube kept up to date by every write
+     * (archived records included); instructors are those of the courses now
+     * 
+     * @param groupBy Dimensions to group by, in key order; empty for one total row
+     * @param filters Value a record must have, per dimension (see ReportDimension)
+     * @return One row per group that has records, sorted by key
+     */
+    @Override
+    public List<ReportRow> getAttendanceReport(List<ReportDimension> groupBy, Map<ReportDimension, String> filters) {
+        return read(() -> {
+            PersistentIntMap<Course> courses = tables.get().courses;
+            return attendanceCube.rollUp(groupBy, filters, courseId -> {
+                Course course = courses.get(courseId);
+                return course != null ? course.getInstructor() : null;
+            });
+        });
+    }
+
+    /**
+     * Scans every record in parallel on the report engine (see countPairs)
+     * 
+     * @param from           First date, inclusive (null for no lower bound)
+     * @param to             Last date, inclusive (null for no upper bound)
+     * @param minAbsenceRate Lowest share of absences, from 0 to 1
+     * @param minRecords     Fewest records in the range a student must have
+     * @return One row per student keyed by student ID, most absent first
+     */
+    @Override
+    public List<ReportRow> getChronicAbsentees(LocalDate from, LocalDate to, double minAbsenceRate, int minRecords) {
+        return countPairs(from, to).chronicAbsentees(minAbsenceRate, minRecords);
+    }
+
+    /**
+     * Scans every record in parallel on the report engine (see countPairs)
+     * 
+     * @param from First date, inclusive (null for no lower bound)
+     * @param to   Last date, inclusive (null for no upper bound)
+     * @return One entry per course with records in the range, by course ID
+     */
+    @Override
+    public List<AbsenceDistribution> getAbsenceDistribution(LocalDate from, LocalDate to) {
+        return countPairs(from, to).absenceDistribution();
     }
 
     /**
@@ -207,26 +965,147 @@ public class DataStore {
      * 
      * @param record AttendanceRecord to add (ID will be auto-generated)
      * @return Added attendance record with generated ID
+     * @throws ConstraintViolationException if the student already has a
+     *                                      record for the course and date, or
+     *                                      the student or course is gone
      */
+    @Override
     public AttendanceRecord addAttendanceRecord(AttendanceRecord record) {
-        int newId = attendanceIdCounter.getAndIncrement();
-        record.setId(newId);
-        attendanceRecords.put(newId, record);
+        checkWritable();
+        long sequence;
+        int[] locked = partitions.lock(record.getCourseId());
+        try {
+            checkReferences(record);
+            checkUnique(record);
+            record.setId(ids.next(IdAllocator.Kind.ATTENDANCE));
+            record.setVersion(1);
+            sequence = commit(Mutation.putAttendance(record));
+        } finally {
+            partitions.unlock(locked);
+        }
+        awaitDurable(sequence);
         return record;
     }
 
     /**
-     * Update existing attendance record
+     * Add several attendance records atomically, holding the partitions of
+     * all their courses and waiting for a single log sync instead of one
+     * per record
      * 
-     * @param record AttendanceRecord to update
+     * @param records AttendanceRecords to add (IDs will be auto-generated)
+     * @return The same records with their generated IDs, in order
+     * @throws ConstraintViolationException if any record duplicates a stored
+     *                                      one or another record in the list,
+     *                                      or its student or course is gone
+     *                                      (nothing is added)
+     */
+    @Override
+    public List<AttendanceRecord> addAttendanceRecords(List<AttendanceRecord> records) {
+        checkWritable();
+        int[] courseIds = new int[records.size()];
+        for (int i = 0; i < courseIds.length; i++) {
+            courseIds[i] = records.get(i).getCourseId();
+        }
+        long sequence = 0;
+        int[] locked = partitions.lock(courseIds);
+        try {
+            Set<AttendanceKey> keys = new HashSet<>();
+            for (AttendanceRecord record : records) {
+                checkReferences(record);
+                checkUnique(record);
+                AttendanceKey key = AttendanceKey.of(record);
+                if (key != null && !keys.add(key)) {
+                    throw new ConstraintViolationException("Duplicate attendance in request for " + key, -1);
+                }
+            }
+            for (AttendanceRecord record : records) {
+                record.setId(ids.next(IdAllocator.Kind.ATTENDANCE));
+                record.setVersion(1);
+                sequence = commit(Mutation.putAttendance(record));
+            }
+        } finally {
+            partitions.unlock(locked);
+        }
+        awaitDurable(sequence);
+        return records;
+    }
+
+    /**
+     * Update existing attendance record if it is still at the expected
+     * version. A stale version is rejected before any lock is taken.
+     * 
+     * @param record          AttendanceRecord to update; its version is set to the new one
+     * @param expectedVersion Version the caller last saw, or ANY_VERSION
      * @return Updated record if found, null otherwise
+     * @throws VersionConflictException     if the stored version differs
+     * @throws ConstraintViolationException if another record already holds
+     *                                      the new student, course and date,
+     *                                      or the student or course is gone
      */
-    public AttendanceRecord updateAttendanceRecord(AttendanceRecord record) {
-        if (attendanceRecords.containsKey(record.getId())) {
-            attendanceRecords.put(record.getId(), record);
+    @Override
+    public AttendanceRecord updateAttendanceRecord(AttendanceRecord record, int expectedVersion) {
+        checkWritable();
+        while (true) {
+            AttendanceRecord stored = findRecord(record.getId());
+            if (stored == null) {
+                return null;
+            }
+            checkVersion("Attendance record", record.getId(), stored.getVersion(), expectedVersion);
+            // Moving the record to another course touches both partitions
+            long sequence;
+            int[] locked = partitions.lock(stored.getCourseId(), record.getCourseId());
+            try {
+                AttendanceRecord current = findRecord(record.getId());
+                if (current == null) {
+                    return null;
+                }
+                if (current.getCourseId() != stored.getCourseId()) {
+                    // Moved by a concurrent update; lock its new partition instead
+                    continue;
+                }
+                checkVersion("Attendance record", record.getId(), current.getVersion(), expectedVersion);
+                checkReferences(record);
+                checkUnique(record);
+                record.setVersion(current.getVersion() + 1);
+                sequence = commit(Mutation.putAttendance(record));
+            } finally {
+                partitions.unlock(locked);
+            }
+            awaitDurable(sequence);
             return record;
         }
-        return null;
+    }
+
+    /**
+     * Insert a record, or overwrite the one that already holds its student,
+     * course and date. The existing record is found through the key index.
+     * 
+     * @param record AttendanceRecord to store (must have a date); its ID and
+     *               version are set to the ones it is stored under
+     * @return The record that was replaced, or null if a new one was added
+     * @throws ConstraintViolationException if the student or course is gone
+     */
+    @Override
+    public AttendanceRecord upsertAttendanceRecord(AttendanceRecord record) {
+        checkWritable();
+        if (record.getDate() == null) {
+            throw new IllegalArgumentException("Upsert needs a date");
+        }
+        AttendanceRecord previous;
+        long sequence;
+        int[] locked = partitions.lock(record.getCourseId());
+        try {
+            checkReferences(record);
+            int existingId = findByKey(record);
+            previous = existingId != -1 ? findRecord(existingId) : null;
+            record.setId(previous != null ? existingId : ids.next(IdAllocator.Kind.ATTENDANCE));
+            record.setVersion(previous != null ? previous.getVersion() + 1 : 1);
+            sequence = commit(Mutation.putAttendance(record));
+        } finally {
+            partitions.unlock(locked);
+        }
+        awaitDurable(sequence);
+        return previous;
     }
 
     /**
@@ -235,18 +1114,174 @@ public class DataStore {
      * @param id Attendance record ID
      * @return true if deleted, false if not found
      */
+    @Override
     public boolean deleteAttendanceRecord(int id) {
-        return attendanceRecords.remove(id) != null;
+        checkWritable();
+        while (true) {
+            AttendanceRecord stored = findRecord(id);
+            if (stored == null) {
+                return false;
+            }
+            long sequence;
+            int[] locked = partitions.lock(stored.getCourseId());
+            try {
+                AttendanceRecord current = findRecord(id);
+                if (current == null) {
+                    return false;
+                }
+                if (current.getCourseId() != stored.getCourseId()) {
+                    // Moved by a concurrent update; lock its new partition instead
+                    continue;
+                }
+                sequence = commit(Mutation.deleteAttendance(id));
+            } finally {
+                partitions.unlock(locked);
+            }
+            awaitDurable(sequence);
+            return true;
+        }
+    }
+
+    /**
+     * Apply writes to students, courses and attendance as one transaction.
+     * Holds writeLock and the partitions the batch touches while every
+     * operation is validated against the state the earlier ones leave
+     * behind (see BatchStage). The batch is then logged as a single entry
+     * and applied under batchGate, so readers see all of it or none of it.
+     * IDs handed out to a batch that fails are not reused.
+     * 
+     * @param operations Writes to apply, in order
+     * @throws ConstraintViolationException if an operation breaks a constraint
+     *                                      or targets a missing entity
+     * @throws VersionConflictException     if an update expects a stale version
+     */
+    @Override
+    public void executeBatch(List<BatchOperation> operations) {
+        checkWritable();
+        if (operations.isEmpty()) {
+            return;
+        }
+        while (true) {
+            long sequence;
+            synchronized (writeLock) {
+                int[] locked = lockPartitions(operations);
+                try {
+                    if (!holdsRecordPartitions(operations, locked)) {
+                        // A record moved by a concurrent update; lock its new partition instead
+                        continue;
+                    }
+                    Mutation batch = Mutation.batch(new BatchStage().stageAll(operations));
+                    long stamp = batchGate.writeLock();
+                    try {
+                        sequence = commit(batch);
+                    } finally {
+                        batchGate.unlockWrite(stamp);
+                    }
+                } finally {
+                    partitions.unlock(locked);
+                }
+            }
+            awaitDurable(sequence);
+            return;
+        }
+    }
+
+    /**
+     * Lock the partitions a batch touches: those of the courses its records
+     * are written to or moved from and of the courses it deletes, or every
+     * partition if it deletes a student. Call under writeLock.
+     * 
+     * @param operations Batch operations
+     * @return Locked partition numbers, to pass to unlock()
+     */
+    private int[] lockPartitions(List<BatchOperation> operations) {
+        int[] courseIds = new int[2 * operations.size()];
+        int count = 0;
+        for (BatchOperation operation : operations) {
+            switch (operation.type) {
+                case DELETE_STUDENT:
+                    return partitions.lockAll();
+                case DELETE_COURSE:
+                    courseIds[count++] = operation.id;
+                    break;
+                case ADD_ATTENDANCE:
+                case UPSERT_ATTENDANCE:
+                    courseIds[count++] = operation.attendanceRecord.getCourseId();
+                    break;
+                case UPDATE_ATTENDANCE:
+                case DELETE_ATTENDANCE: {
+                    if (operation.attendanceRecord != null) {
+                        courseIds[count++] = operation.attendanceRecord.getCourseId();
+                    }
+                    AttendanceRecord stored = findRecord(operation.id);
+                    if (stored != null) {
+                        courseIds[count++] = stored.getCourseId();
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        return partitions.lock(Arrays.copyOf(courseIds, count));
+    }
+
+    /**
+     * Check that every record a batch updates or deletes is still in a
+     * locked partition; records cannot move out of one while it is held
+     * 
+     * @param operations Batch operations
+     * @param locked     Partition numbers returned by lockPartitions, ascending
+     * @return false if a record moved between reading it and locking
+     */
+    private boolean holdsRecordPartitions(List<BatchOperation> operations, int[] locked) {
+        for (BatchOperation operation : operations) {
+            if (operation.type == BatchOperation.Type.UPDATE_ATTENDANCE
+                    || operation.type == BatchOperation.Type.DELETE_ATTENDANCE) {
+                AttendanceRecord stored = findRecord(operation.id);
+                if (stored != null && Arrays.binarySearch(locked, partitions.of(stored.getCourseId())) < 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
     
+    /**
+     * Get the feed every committed mutation is published on
+     * 
+     * @return Change feed of this store
+     */
+    @Override
+    public ChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    /**
+     * Get this instance's part in replication and how far behind it is
+     * 
+     * @return Replication status
+     */
+    @Override
+    public ReplicationStatus getReplicationStatus() {
+        if (replicationLeader != null) {
+            return replicationLeader.status();
+        }
+        if (replicationFollower != null) {
+            return replicationFollower.status();
+        }
+        return ReplicationStatus.standalone();
+    }
+
     /**
      * Check if student exists
      * 
      * @param studentId Student ID
      * @return true if student exists
      */
+    @Override
     public boolean studentExists(int studentId) {
-        return students.containsKey(studentId);
+        return read(() -> tables.get().students.containsKey(studentId));
     }
 
     /**
@@ -255,8 +1290,9 @@ public class DataStore {
      * @param courseId Course ID
      * @return true if course exists
      */
+    @Override
     public boolean courseExists(int courseId) {
-        return courses.containsKey(courseId);
+        return read(() -> tables.get().courses.containsKey(courseId));
     }
 
     /**
@@ -264,41 +1300,1243 @@ public class DataStore {
      * 
      * @return String with current statistics
      */
+    @Override
     public String getStatistics() {
-        return String.format("DataStore Statistics: %d students, %d courses, %d attendance records",
-                students.size(), courses.size(), attendanceRecords.size());
+        return read(() -> {
+            Tables current = tables.get();
+            int archived = archive.size();
+            return String.format("DataStore Statistics: %d students, %d courses, %d attendance records (%d archived)",
+                    current.students.size(), current.courses.size(), attendanceRecords.size() + archived, archived);
+        });
     }
 
     /**
      * Initialize sample data for testing
+     * 
+     * @param store Empty store to fill
      */
-    private void initializeSampleData() {
+    static void initializeSampleData(StorageBackend store) {
         // Mock students
-        addStudent(new Student(0, "Mitsos Karatasou", "mitsos.kara@gmail.com"));
-        addStudent(new Student(0, "Maria Eleutheriou", "maria.ele@email.com"));
-        addStudent(new Student(0, "Arnold Schwarz", "arnie.sch@email.com"));
+        int mitsos = store.addStudent(new Student(0, "Mitsos Karatasou", "mitsos.kara@gmail.com")).getId();
+        int maria = store.addStudent(new Student(0, "Maria Eleutheriou", "maria.ele@email.com")).getId();
+        int arnold = store.addStudent(new Student(0, "Arnold Schwarz", "arnie.sch@email.com")).getId();
 
-        // Mock courses
-        addCourse(new Course(0, "Java Programming", "Dr. John"));
-        addCourse(new Course(0, "Data Structures", "Prof. Davis"));
-        addCourse(new Course(0, "Web Development", "Sir Mathews"));
+        // Mock courses (IDs depend on the allocator, so they are not assumed to start at 1)
+        int java = store.addCourse(new Course(0, "Java Programming", "Dr. John")).getId();
+        int dataStructures = store.addCourse(new Course(0, "Data Structures", "Prof. Davis")).getId();
+        int web = store.addCourse(new Course(0, "Web Development", "Sir Mathews")).getId();
 
         // Mock attendance records
-        addAttendanceRecord(new AttendanceRecord(0, 1, 1, LocalDate.now().minusDays(1), true));
-        addAttendanceRecord(new AttendanceRecord(0, 1, 2, LocalDate.now().minusDays(1), false));
-        addAttendanceRecord(new AttendanceRecord(0, 2, 1, LocalDate.now().minusDays(1), true));
-        addAttendanceRecord(new AttendanceRecord(0, 3, 3, LocalDate.now(), true));
+        store.addAttendanceRecord(new AttendanceRecord(0, mitsos, java, LocalDate.now().minusDays(1), true));
+        store.addAttendanceRecord(new AttendanceRecord(0, mitsos, dataStructures, LocalDate.now().minusDays(1), false));
+        store.addAttendanceRecord(new AttendanceRecord(0, maria, java, LocalDate.now().minusDays(1), true));
+        store.addAttendanceRecord(new AttendanceRecord(0, arnold, web, LocalDate.now(), true));
     }
 
     /**
      * Clear all data (useful for testing)
      */
+    @Override
     public void clearAllData() {
-        students.clear();
-        courses.clear();
-        attendanceRecords.clear();
-        studentIdCounter.set(1);
-        courseIdCounter.set(1);
-        attendanceIdCounter.set(1);
+        checkWritable();
+        long sequence;
+        synchronized (writeLock) {
+            int[] locked = partitions.lockAll();
+            try {
+                sequence = commit(Mutation.clear());
+            } finally {
+                partitions.unlock(locked);
+            }
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Write a snapshot of the current state and drop the log segments it covers.
+     * Writers are only held up while the log switches to a new segment; every
+     * lock is taken then, so no mutation is left logged in the old segment
+     * but not yet applied. The tables are then copied out concurrently with
+     * further writes. Anything
+     * that lands during the copy is also in the new segment, and replaying
+     * it over the snapshot is harmless because mutations are idempotent.
+     * Records past the archive cutoff are archived first (see
+     * archiveOldRecords); the snapshot names the segments it relies on.
+     * 
+     * @return true if a snapshot was written, false if nothing changed since the last one
+     */
+    public boolean checkpoint() {
+        if (writeAheadLog == null) {
+            return false;
+        }
+        synchronized (checkpointLock) {
+            long start = System.nanoTime();
+            int archived = archiveOldRecords();
+            long generation;
+            long sequence;
+            Map<String, int[]> archiveState;
+            synchronized (writeLock) {
+                int[] locked = partitions.lockAll();
+                try {
+                    sequence = writeAheadLog.getAppendedSequence();
+                    if (sequence == lastCheckpointSequence && archived == 0) {
+                        return false;
+                    }
+                    generation = writeAheadLog.roll();
+                    // Dead IDs marked later are logged in the new segment and marked again on replay
+                    archiveState = archive.state();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot roll write-ahead log", e);
+                } finally {
+                    partitions.unlock(locked);
+                }
+            }
+
+            int[] counters = { ids.peek(IdAllocator.Kind.STUDENT), ids.peek(IdAllocator.Kind.COURSE),
+                    ids.peek(IdAllocator.Kind.ATTENDANCE) };
+            Tables current = tables.get();
+            File snapshot;
+            try {
+                snapshot = SnapshotFile.write(snapshotDirectory, generation, counters,
+                        current.students.values(), current.courses.values(), attendanceRecords, archiveState);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write snapshot", e);
+            }
+            SnapshotFile.deleteOlderThan(snapshotDirectory, snapshot);
+            archive.deleteUnreferenced(archiveState.keySet());
+            writeAheadLog.deleteSegmentsBefore(generation);
+            lastCheckpointSequence = sequence;
+
+            System.out.println("DataStore - Checkpoint " + snapshot.getName() + " written in "
+                    + elapsedMillis(start) + " ms (" + getStatistics() + ")");
+            return true;
+        }
+    }
+
+    /**
+     * Move the records dated before the archive cutoff into new archive
+     * segments. The candidates are read and the segments written without
+     * any lock; only the switch-over holds every lock, and it skips records
+     * that changed in the meantime (they stay in the table). Archiving is
+     * not logged: the segments are made durable by the next snapshot, and
+     * until then the older snapshot and the log still describe the records.
+     * 
+     * @return Number of records archived
+     */
+    private int archiveOldRecords() {
+        if (archiveAfterDays <= 0) {
+            return 0;
+        }
+        long cutoff = LocalDate.now().minusDays(archiveAfterDays).toEpochDay();
+        List<AttendanceRecord> candidates = new ArrayList<>();
+        attendanceRecords.forEach((id, studentId, courseId, epochDay, present, version) -> {
+            if (epochDay != AttendanceTable.NO_DATE && epochDay < cutoff) {
+                AttendanceRecord record = new AttendanceRecord(id, studentId, courseId, LocalDate.ofEpochDay(epochDay), present);
+                record.setVersion(version);
+                candidates.add(record);
+            }
+        });
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        List<AttendanceArchive.Segment> segments;
+        try {
+            segments = archive.write(candidates);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write archive segment", e);
+        }
+
+        List<Integer> stale = new ArrayList<>();
+        synchronized (writeLock) {
+            int[] locked = partitions.lockAll();
+            long stamp = batchGate.writeLock();
+            try {
+                Map<Integer, List<AttendanceRecord>> moved = new HashMap<>();
+                for (AttendanceRecord candidate : candidates) {
+                    if (sameRow(attendanceRecords.get(candidate.getId()), candidate)) {
+                        moved.computeIfAbsent(partitions.of(candidate.getCourseId()), p -> new ArrayList<>())
+                                .add(candidate);
+                    } else {
+                        stale.add(candidate.getId());
+                    }
+                }
+                // Published before the rows go, so lookups outside read() never miss both tiers
+                archive.publish(segments, stale);
+                for (Map.Entry<Integer, List<AttendanceRecord>> partition : moved.entrySet()) {
+                    synchronized (tableLock) {
+                        for (AttendanceRecord record : partition.getValue()) {
+                            attendanceRecords.remove(record.getId());
+                        }
+                    }
+                    partitions.indexAt(partition.getKey()).removeAll(partition.getValue());
+                }
+            } finally {
+                batchGate.unlockWrite(stamp);
+                partitions.unlock(locked);
+            }
+        }
+        return candidates.size() - stale.size();
+    }
+
+    private static boolean sameRow(AttendanceRecord stored, AttendanceRecord candidate) {
+        return stored != null && stored.getVersion() == candidate.getVersion()
+                && stored.getStudentId() == candidate.getStudentId()
+                && stored.getCourseId() == candidate.getCourseId()
+                && stored.isPresent() == candidate.isPresent()
+                && candidate.getDate().equals(stored.getDate());
+    }
+
+    /**
+     * Describe how long each startup phase took
+     * 
+     * @return One-line timing breakdown
+     */
+    @Override
+    public String getStartupReport() {
+        StringBuilder report = new StringBuilder("DataStore startup:");
+        String separator = " ";
+        for (Map.Entry<String, Long> phase : startupMillis.entrySet()) {
+            report.append(separator).append(phase.getKey()).append(' ').append(phase.getValue()).append(" ms");
+            separator = ", ";
+        }
+        return report.toString();
+    }
+
+    /**
+     * Flush pending log entries and close the log.
+     * The store must not be modified afterwards.
+     */
+    @Override
+    public void close() {
+        if (replicationFollower != null) {
+            replicationFollower.close();
+        }
+        if (replicationLeader != null) {
+            replicationLeader.close();
+        }
+        if (checkpointScheduler != null) {
+            // Not shutdownNow(): an interrupt would close the log or snapshot channel mid-checkpoint
+            checkpointScheduler.shutdown();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    if (checkpointScheduler.awaitTermination(1, TimeUnit.MINUTES)) {
+                        break;
+                    }
+                    System.out.println("DataStore - Still waiting for a checkpoint to finish");
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        reportEngine.close();
+        ids.close();
+        if (writeAheadLog != null) {
+            try {
+                writeAheadLog.close();
+            } catch (IOException e) {
+                System.out.println("DataStore - Error closing write-ahead log: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Log a mutation, apply it and publish it on the change feed. Caller
+     * must hold the locks of everything the mutation touches (see the class
+     * comment).
+     * 
+     * @param mutation Mutation to commit
+     * @return Log sequence number to wait on (0 when logging is disabled)
+     */
+    private long commit(Mutation mutation) {
+        long sequence = writeAheadLog != null ? writeAheadLog.append(mutation) : 0;
+        List<ChangeEvent> events = new ArrayList<>(mutation.type == Mutation.Type.BATCH ? mutation.batch.size() : 1);
+        applyAndDescribe(mutation, events);
+        changeFeed.publish(events);
+        if (replicationLeader != null) {
+            replicationLeader.publish(mutation);
+        }
+        return sequence;
+    }
+
+    /**
+     * Commit mutations received from the leader, in order, with one log
+     * sync. Each chunk is applied under batchGate, so readers see all of
+     * it or none of it; the leader's state on (re)connecting comes as one
+     * chunk, CLEAR included, so it replaces the previous state at once.
+     * 
+     * @param mutations Leader mutations
+     */
+    private void replicate(List<Mutation> mutations) {
+        long sequence = 0;
+        synchronized (writeLock) {
+            int[] locked = partitions.lockAll();
+            try {
+                long stamp = batchGate.writeLock();
+                try {
+                    for (Mutation mutation : mutations) {
+                        sequence = commit(mutation);
+                    }
+                } finally {
+                    batchGate.unlockWrite(stamp);
+                }
+            } finally {
+                partitions.unlock(locked);
+            }
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Describe the current state as put mutations, for a follower to start
+     * from. Runs while writes continue; see ReplicationLeader.
+     * 
+     * @param sink Receives courses, then students, then attendance records
+     */
+    private void dumpState(Consumer<Mutation> sink) {
+        Tables current = read(tables::get);
+        for (Course course : current.courses.values()) {
+            sink.accept(Mutation.putCourse(course));
+        }
+        for (Student student : current.students.values()) {
+            sink.accept(Mutation.putStudent(student));
+        }
+        for (AttendanceRecord record : getAllAttendanceRecords()) {
+            sink.accept(Mutation.putAttendance(record));
+        }
+    }
+
+    /**
+     * Reject writes on a follower, whose state only comes from its leader
+     * 
+     * @throws IllegalStateException on a follower
+     */
+    private void checkWritable() {
+        if (replicationFollower != null) {
+            throw new IllegalStateException("This instance is a read-only replica; write to the leader");
+        }
+    }
+
+    /**
+     * Apply a mutation part by part, describing each part as change events
+     * 
+     * @param mutation Mutation (a batch is flattened into its parts)
+     * @param events   Receives the events
+     */
+    private void applyAndDescribe(Mutation mutation, List<ChangeEvent> events) {
+        if (mutation.type == Mutation.Type.BATCH) {
+            for (Mutation part : mutation.batch) {
+                applyAndDescribe(part, events);
+            }
+            return;
+        }
+        Tables before = tables.get();
+        apply(mutation);
+        addChangeEvents(mutation, before, tables.get(), events);
+    }
+
+    /**
+     * Describe a mutation that is not a batch as change events. Deleting a
+     * course also rewrites the students registered for it, so each of them
+     * gets a put event after the course's delete event.
+     * 
+     * @param mutation Mutation just applied
+     * @param before   Tables before the mutation
+     * @param after    Tables after the mutation
+     * @param events   Receives the events
+     */
+    private static void addChangeEvents(Mutation mutation, Tables before, Tables after, List<ChangeEvent> events) {
+        switch (mutation.type) {
+            case PUT_STUDENT:
+                events.add(ChangeEvent.put(mutation.student));
+                break;
+            case DELETE_STUDENT:
+                events.add(ChangeEvent.delete(ChangeEvent.Entity.STUDENT, mutation.id));
+                break;
+            case PUT_COURSE:
+                events.add(ChangeEvent.put(mutation.course));
+                break;
+            case DELETE_COURSE:
+                events.add(ChangeEvent.delete(ChangeEvent.Entity.COURSE, mutation.id));
+                for (int studentId : before.enrolledIn(mutation.id).toArray()) {
+                    Student withdrawn = after.students.get(studentId);
+                    if (withdrawn != null) {
+                        events.add(ChangeEvent.put(withdrawn));
+                    }
+                }
+                break;
+            case PUT_ATTENDANCE:
+                events.add(ChangeEvent.put(mutation.attendanceRecord));
+                break;
+            case DELETE_ATTENDANCE:
+                events.add(ChangeEvent.delete(ChangeEvent.Entity.ATTENDANCE, mutation.id));
+                break;
+            case BATCH:
+                throw new IllegalArgumentException("Flatten batches first");
+            case CLEAR:
+                events.add(ChangeEvent.clear());
+                break;
+        }
+    }
+
+    /**
+     * Wait until a committed mutation is durable. Call after releasing the locks.
+     * 
+     * @param sequence Sequence number returned by commit
+     */
+    private void awaitDurable(long sequence) {
+        if (writeAheadLog != null && sequence > 0) {
+            writeAheadLog.awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Apply a mutation to the in-memory tables and indexes.
+     * Used both for live writes and for log replay, so it must not log or
+     * validate; every ID seen is reported to the ID allocator.
+     * 
+     * @param mutation Mutation to apply
+     */
+    private void apply(Mutation mutation) {
+        Tables current = tables.get();
+        switch (mutation.type) {
+            case PUT_STUDENT:
+                indexEmail(current.students.get(mutation.id), mutation.student);
+                studentSearch.put(mutation.id, mutation.student.getFullName());
+                tables.set(current.putStudent(mutation.student));
+                ids.observe(IdAllocator.Kind.STUDENT, mutation.id);
+                break;
+            case DELETE_STUDENT:
+                indexEmail(current.students.get(mutation.id), null);
+                studentSearch.remove(mutation.id);
+                tables.set(current.removeStudent(mutation.id));
+                purgeAttendance(mutation.id, -1);
+                ids.observe(IdAllocator.Kind.STUDENT, mutation.id);
+                break;
+            case PUT_COURSE:
+                courseSearch.put(mutation.id, mutation.course.getName(), mutation.course.getInstructor());
+                tables.set(current.withCourses(current.courses.plus(mutation.id, mutation.course)));
+                ids.observe(IdAllocator.Kind.COURSE, mutation.id);
+                break;
+            case DELETE_COURSE:
+                courseSearch.remove(mutation.id);
+                tables.set(current.removeCourse(mutation.id));
+                purgeAttendance(-1, mutation.id);
+                ids.observe(IdAllocator.Kind.COURSE, mutation.id);
+                break;
+            case PUT_ATTENDANCE: {
+                AttendanceIndex index = partitions.index(mutation.attendanceRecord.getCourseId());
+                AttendanceRecord previous = storeRow(mutation.attendanceRecord);
+                // Stored first, so a reader checking the table after the archive finds the record
+                AttendanceRecord archived = archive.remove(mutation.id);
+                int holder;
+                if (previous == null) {
+                    holder = index.add(mutation.attendanceRecord);
+                } else {
+                    AttendanceIndex previousIndex = partitions.index(previous.getCourseId());
+                    if (previousIndex == index) {
+                        holder = index.update(previous, mutation.attendanceRecord);
+                    } else {
+                        // Moved to a course in another partition
+                        previousIndex.remove(previous);
+                        holder = index.add(mutation.attendanceRecord);
+                    }
+                    unmarkPresence(previous);
+                    attendanceCounters.remove(previous);
+                    attendanceCube.remove(previous);
+                }
+                if (previous == null && archived != null) {
+                    unmarkPresence(archived);
+                    attendanceCounters.remove(archived);
+                    attendanceCube.remove(archived);
+                }
+                if (holder != -1) {
+                    // Only reachable while replaying a log written before the constraint
+                    loadedDuplicates.add(mutation.id);
+                }
+                presenceIndex.add(mutation.attendanceRecord);
+                attendanceCounters.add(mutation.attendanceRecord);
+                attendanceCube.add(mutation.attendanceRecord);
+                ids.observe(IdAllocator.Kind.ATTENDANCE, mutation.id);
+                break;
+            }
+            case DELETE_ATTENDANCE: {
+                AttendanceRecord removed = removeRow(mutation.id);
+                if (removed != null) {
+                    partitions.index(removed.getCourseId()).remove(removed);
+                    unmarkPresence(removed);
+                    attendanceCounters.remove(removed);
+                    attendanceCube.remove(removed);
+                }
+                AttendanceRecord archived = archive.remove(mutation.id);
+                if (archived != null) {
+                    unmarkPresence(archived);
+                    attendanceCounters.remove(archived);
+                    attendanceCube.remove(archived);
+                }
+                ids.observe(IdAllocator.Kind.ATTENDANCE, mutation.id);
+                break;
+            }
+            case BATCH:
+                for (Mutation part : mutation.batch) {
+                    apply(part);
+                }
+                break;
+            case CLEAR:
+                tables.set(Tables.EMPTY);
+                emailIndex.clear();
+                studentSearch.clear();
+                courseSearch.clear();
+                synchronized (tableLock) {
+                    attendanceRecords.clear();
+                }
+                partitions.clear();
+                presenceIndex.clear();
+                attendanceCounters.clear();
+                attendanceCube.clear();
+                archive.clear();
+                ids.reset();
+                break;
+        }
+    }
+
+    /**
+     * Count present and total records per (student, course) pair within a
+     * date range. The attendance table is split into a few parts per report
+     * thread, plus one per archive segment overlapping the range, and the
+     * parts are counted in parallel. Inside readWeakly(), so a batch or
+     * archive move landing during the scan sends it round again a few times,
+     * but never under the gate's read lock.
+     */
+    private PairCounts countPairs(LocalDate from, LocalDate to) {
+        // Records without a date have NO_DATE (Long.MIN_VALUE), so only an open range includes them
+        long fromDay = from != null ? from.toEpochDay() : Long.MIN_VALUE;
+        long toDay = to != null ? to.toEpochDay() : Long.MAX_VALUE;
+        return readWeakly(() -> {
+            List<AttendanceTable.RowScan> scans = new ArrayList<>(
+                    attendanceRecords.split(reportEngine.getParallelism() * 4));
+            if (!archive.isEmpty()) {
+                scans.addAll(archive.split(fromDay, toDay));
+            }
+            return reportEngine.aggregate(scans, new ReportEngine.Aggregation<PairCounts>() {
+                @Override
+                public PairCounts create() {
+                    return new PairCounts();
+                }
+
+                @Override
+                public AttendanceTable.RowVisitor into(PairCounts partial) {
+                    return (id, studentId, courseId, epochDay, present, version) -> {
+                        if (epochDay >= fromDay && epochDay <= toDay) {
+                            partial.add(studentId, courseId, present);
+                        }
+                    };
+                }
+
+                @Override
+                public PairCounts merge(PairCounts left, PairCounts right) {
+                    return left.merge(right);
+                }
+            });
+        });
+    }
+
+    /**
+     * Run a read so that it sees all of a batch or none of it. Outside a
+     * batch this costs an optimistic stamp and its validation; a read that
+     * overlapped a batch being applied runs again under the gate's read lock.
+     * 
+     * @param reader Read to run (may run twice)
+     * @return What the read returned
+     */
+    private <T> T read(Supplier<T> reader) {
+        long stamp = batchGate.tryOptimisticRead();
+        try {
+            T result = reader.get();
+            if (batchGate.validate(stamp)) {
+                return result;
+            }
+        } catch (RuntimeException e) {
+            // A half-applied batch can trip up a read; only report errors from a stable view
+            if (batchGate.validate(stamp)) {
+                throw e;
+            }
+        }
+        stamp = batchGate.readLock();
+        try {
+            return reader.get();
+        } finally {
+            batchGate.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Run a long read without blocking writers. Like read(), but after
+     * REPORT_ATTEMPTS tries that each overlapped a batch, the last one is
+     * returned as it is: weakly consistent, as it may count part of a batch,
+     * but it does not hold every batch and archive move for the length of a
+     * scan the way the gate's read lock would. Only if every try failed with
+     * an error, which a half-applied batch can cause, does a last one run
+     * under the read lock, so errors are still only reported from a stable
+     * view.
+     * 
+     * @param reader Read to run (may run several times)
+     * @return What the read returned
+     */
+    private <T> T readWeakly(Supplier<T> reader) {
+        for (int attempt = 1; attempt <= REPORT_ATTEMPTS; attempt++) {
+            long stamp = batchGate.tryOptimisticRead();
+            try {
+                T result = reader.get();
+                if (batchGate.validate(stamp) || attempt == REPORT_ATTEMPTS) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (batchGate.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+        long stamp = batchGate.readLock();
+        try {
+            return reader.get();
+        } finally {
+            batchGate.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Reject an update made against a version that is no longer stored
+     * 
+     * @param entity          Entity name for the message
+     * @param id              Entity ID
+     * @param storedVersion   Version currently stored
+     * @param expectedVersion Version the caller expects, or ANY_VERSION
+     * @throws VersionConflictException if they differ
+     */
+    private static void checkVersion(String entity, int id, int storedVersion, int expectedVersion) {
+        if (expectedVersion != ANY_VERSION && expectedVersion != storedVersion) {
+            throw new VersionConflictException(entity + " " + id + " is at version " + storedVersion
+                    + ", not " + expectedVersion, storedVersion);
+        }
+    }
+
+    /**
+     * Reject a student whose email belongs to another student. Call under writeLock.
+     * 
+     * @param student Student about to be written
+     * @throws ConstraintViolationException if the email is taken
+     */
+    private void checkEmailUnique(Student student) {
+        String key = Student.normalizeEmail(student.getEmail());
+        Integer holder = key != null ? emailIndex.get(key) : null;
+        if (holder != null && holder != student.getId()) {
+            throw emailTaken(student, holder);
+        }
+    }
+
+    private static ConstraintViolationException emailTaken(Student student, int holder) {
+        return new ConstraintViolationException("Email " + student.getEmail()
+                + " is already used by student with ID: " + holder, holder);
+    }
+
+    /**
+     * Move a student's email index entry from its previous version to the
+     * new one. Students stored before emails were unique may share one;
+     * the first keeps the entry and the others are not found by email.
+     * 
+     * @param previous Stored version (null if new)
+     * @param student  New version (null if deleted)
+     */
+    private void indexEmail(Student previous, Student student) {
+        String oldKey = previous != null ? Student.normalizeEmail(previous.getEmail()) : null;
+        String newKey = student != null ? Student.normalizeEmail(student.getEmail()) : null;
+        if (oldKey != null && !oldKey.equals(newKey)) {
+            emailIndex.remove(oldKey, previous.getId());
+        }
+        if (newKey != null) {
+            Integer holder = emailIndex.putIfAbsent(newKey, student.getId());
+            if (holder != null && holder != student.getId()) {
+                System.out.println("DataStore - Student " + student.getId() + " shares email " + newKey
+                        + " with student " + holder + "; only " + holder + " is found by email");
+            }
+        }
+    }
+
+    /**
+     * Reject a record whose student, course and date are held by another
+     * record. Call under the record's partition lock.
+     * 
+     * @param record Record about to be written
+     * @throws ConstraintViolationException if the key is taken
+     */
+    private void checkUnique(AttendanceRecord record) {
+        if (record.getDate() == null) {
+            return;
+        }
+        int holder = findByKey(record);
+        if (holder != -1 && holder != record.getId()) {
+            throw duplicateAttendance(record, holder);
+        }
+    }
+
+    /**
+     * Find an attendance record by ID in the table or, failing that, in the
+     * archive. The table is checked again last: a record brought back from
+     * the archive is stored in the table before it is marked dead there.
+     * 
+     * @param id Attendance record ID
+     * @return The record, or null if not found
+     */
+    private AttendanceRecord findRecord(int id) {
+        AttendanceRecord record = attendanceRecords.get(id);
+        if (record != null || archive.isEmpty()) {
+            return record;
+        }
+        record = archive.get(id);
+        return record != null ? record : attendanceRecords.get(id);
+    }
+
+    /**
+     * Find the record holding a record's student, course and date, in the
+     * table or the archive. Call under the record's partition lock.
+     * 
+     * @param record Record with a date
+     * @return Holder ID, or -1 if the key is free
+     */
+    private int findByKey(AttendanceRecord record) {
+        int holder = partitions.index(record.getCourseId())
+                .find(record.getStudentId(), record.getCourseId(), record.getDate());
+        return holder != -1 || archive.isEmpty()
+                ? holder : archive.find(record.getStudentId(), record.getCourseId(), record.getDate());
+    }
+
+    /**
+     * Add the matching archived records to a query on the table. The
+     * archive is scanned first: a record brought back from it is stored in
+     * the table before it is marked dead in the archive, so it cannot be
+     * missed by both scans, and the table's copy wins if both have it.
+     * 
+     * @param studentId Student ID (use -1 to ignore)
+     * @param courseId  Course ID (use -1 to ignore)
+     * @param from      First date, inclusive (null to ignore)
+     * @param to        Last date, inclusive (null to ignore)
+     * @param hot       Runs the query on the table
+     * @return Matching records from both tiers
+     */
+    private Collection<AttendanceRecord> withArchived(int studentId, int courseId, LocalDate from, LocalDate to,
+            Supplier<Collection<AttendanceRecord>> hot) {
+        if (archive.isEmpty()) {
+            return hot.get();
+        }
+        List<AttendanceRecord> cold = new ArrayList<>();
+        archive.scan(studentId, courseId, from, to, cold::add);
+        Collection<AttendanceRecord> found = hot.get();
+        if (cold.isEmpty()) {
+            return found;
+        }
+        List<AttendanceRecord> result = new ArrayList<>(found.size() + cold.size());
+        Set<Integer> ids = new HashSet<>();
+        for (AttendanceRecord record : found) {
+            result.add(record);
+            ids.add(record.getId());
+        }
+        for (AttendanceRecord record : cold) {
+            if (!ids.contains(record.getId())) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    private static ConstraintViolationException duplicateAttendance(AttendanceRecord record, int holder) {
+        return new ConstraintViolationException("Attendance for student " + record.getStudentId()
+                + " in course " + record.getCourseId() + " on " + record.getDate()
+                + " already exists with ID: " + holder, holder);
+    }
+
+    /**
+     * Reject a record whose student or course does not exist. Call under the
+     * record's partition lock: deleting either one needs that lock too, so
+     * both still exist when the record is committed.
+     * 
+     * @param record Record about to be written
+     * @throws ConstraintViolationException if the student or course is gone
+     */
+    private void checkReferences(AttendanceRecord record) {
+        checkReferences(tables.get(), record);
+    }
+
+    /**
+     * Reject a student registered for a course that does not exist. Call
+     * under writeLock, which deleting a course needs too.
+     * 
+     * @param current Tables the student is about to be written to
+     * @param student Student about to be written
+     * @throws ConstraintViolationException if a registered course is gone
+     */
+    private static void checkRegistrations(Tables current, Student student) {
+        for (int courseId : student.getRegisteredCourseIds()) {
+            if (!current.courses.containsKey(courseId)) {
+                throw new ConstraintViolationException("Course not found with ID: " + courseId, -1);
+            }
+        }
+    }
+
+    private static void checkReferences(Tables current, AttendanceRecord record) {
+        if (!current.students.containsKey(record.getStudentId())) {
+            throw new ConstraintViolationException("Student not found with ID: " + record.getStudentId(), -1);
+        }
+        if (!current.courses.containsKey(record.getCourseId())) {
+            throw new ConstraintViolationException("Course not found with ID: " + record.getCourseId(), -1);
+        }
+    }
+
+    /**
+     * Write one row of the attendance table
+     * 
+     * @param record Attendance record with its ID set
+     * @return The record previously stored under that ID, or null
+     */
+    private AttendanceRecord storeRow(AttendanceRecord record) {
+        synchronized (tableLock) {
+            return attendanceRecords.put(record);
+        }
+    }
+
+    /**
+     * Remove one row of the attendance table
+     * 
+     * @param id Attendance record ID
+     * @return The removed record, or null if not found
+     */
+    private AttendanceRecord removeRow(int id) {
+        synchronized (tableLock) {
+            return attendanceRecords.remove(id);
+        }
+    }
+
+    /**
+     * Cascade a student or course deletion to its attendance records: one
+     * partition for a course, every partition for a student.
+     * 
+     * @param studentId Deleted student ID (-1 if a course was deleted)
+     * @param courseId  Deleted course ID (-1 if a student was deleted)
+     */
+    private void purgeAttendance(int studentId, int courseId) {
+        if (courseId != -1) {
+            purgeAttendance(partitions.index(courseId), studentId, courseId);
+        } else {
+            for (int partition = 0; partition < partitions.count(); partition++) {
+                purgeAttendance(partitions.indexAt(partition), studentId, courseId);
+            }
+        }
+        if (!archive.isEmpty()) {
+            for (AttendanceRecord record : archive.removeAll(studentId, courseId)) {
+                presenceIndex.remove(record);
+                attendanceCounters.remove(record);
+                attendanceCube.remove(record);
+            }
+        }
+    }
+
+    /**
+     * Cascade a deletion within one partition.
+     * The records come straight from the student or course index bucket,
+     * and every index is updated in bulk, so the cost follows the deleted
+     * entity's own data rather than the size of the table.
+     * 
+     * @param index     Indexes of the partition
+     * @param studentId Deleted student ID (-1 if a course was deleted)
+     * @param courseId  Deleted course ID (-1 if a student was deleted)
+     */
+    private void purgeAttendance(AttendanceIndex index, int studentId, int courseId) {
+        List<AttendanceRecord> removed = new ArrayList<>();
+        synchronized (tableLock) {
+            for (IntBucket ids : index.lookup(studentId, courseId, null, null)) {
+                ids.forEach(id -> {
+                    AttendanceRecord record = attendanceRecords.remove(id);
+                    if (record != null) {
+                        removed.add(record);
+                    }
+                });
+            }
+        }
+        index.removeAll(removed);
+        // Every record sharing a student, course and date with a removed
+        // one is removed too, so no presence bit needs a recheck
+        for (AttendanceRecord record : removed) {
+            presenceIndex.remove(record);
+            attendanceCounters.remove(record);
+            attendanceCube.remove(record);
+        }
+    }
+
+    /**
+     * Remove a replaced or deleted record from the presence index, unless
+     * another record still marks the same student the same way that day.
+     * Call after the partition indexes have been updated.
+     * 
+     * @param old Record as it was before the change
+     */
+    private void unmarkPresence(AttendanceRecord old) {
+        if (old.getDate() == null) {
+            return;
+        }
+        boolean[] stillMarked = { false };
+        AttendanceIndex index = partitions.index(old.getCourseId());
+        for (IntBucket ids : index.lookup(old.getStudentId(), old.getCourseId(), old.getDate(), old.getDate())) {
+            ids.forEach(id -> {
+                AttendanceRecord other = id != old.getId() ? attendanceRecords.get(id) : null;
+                if (other != null && other.isPresent() == old.isPresent() && old.getDate().equals(other.getDate())
+                        && other.getStudentId() == old.getStudentId() && other.getCourseId() == old.getCourseId()) {
+                    stillMarked[0] = true;
+                }
+            });
+        }
+        if (!stillMarked[0]) {
+            presenceIndex.remove(old);
+        }
+    }
+
+    /**
+     * What a batch sees while it is validated: the live state with the
+     * batch's earlier operations layered on top, visible to no one else.
+     * Students and courses are staged in a private copy of the immutable
+     * Tables; emails, attendance rows and attendance keys in overlay maps,
+     * where a null value marks an entry the batch removed. Used under
+     * writeLock and the batch's partition locks.
+     */
+    private final class BatchStage {
+        private Tables staged = tables.get();
+        private final Map<String, Integer> emails = new HashMap<>();
+        private final Map<Integer, AttendanceRecord> rows = new HashMap<>();
+        private final Map<AttendanceKey, Integer> keys = new HashMap<>();
+
+        /**
+         * Validate every operation, in order, and turn it into the mutation
+         * that applies it
+         *
+         * @param operations Batch operations
+         * @return One mutation per operation
+         */
+        List<Mutation> stageAll(List<BatchOperation> operations) {
+            List<Mutation> mutations = new ArrayList<>(operations.size());
+            for (int i = 0; i < operations.size(); i++) {
+                try {
+                    mutations.add(stage(operations.get(i)));
+                } catch (ConstraintViolationException | VersionConflictException | IllegalArgumentException e) {
+                    throw BatchOperation.failedAt(i, e);
+                }
+            }
+            return mutations;
+        }
+
+        private Mutation stage(BatchOperation operation) {
+            switch (operation.type) {
+                case ADD_STUDENT: {
+                    Student student = operation.student;
+                    student.setId(ids.next(IdAllocator.Kind.STUDENT));
+                    checkEmail(student);
+                    checkRegistrations(staged, student);
+                    student.setVersion(1);
+                    putStudent(student);
+                    return Mutation.putStudent(student);
+                }
+                case UPDATE_STUDENT: {
+                    Student stored = existingStudent(operation.id);
+                    checkVersion("Student", operation.id, stored.getVersion(), operation.expectedVersion);
+                    checkEmail(operation.student);
+                    checkRegistrations(staged, operation.student);
+                    operation.student.setVersion(stored.getVersion() + 1);
+                    putStudent(operation.student);
+                    return Mutation.putStudent(operation.student);
+                }
+                case DELETE_STUDENT:
+                    releaseEmail(existingStudent(operation.id));
+                    staged = staged.removeStudent(operation.id);
+                    return Mutation.deleteStudent(operation.id);
+                case ADD_COURSE: {
+                    Course course = operation.course;
+                    course.setId(ids.next(IdAllocator.Kind.COURSE));
+                    course.setVersion(1);
+                    staged = staged.withCourses(staged.courses.plus(course.getId(), course));
+                    return Mutation.putCourse(course);
+                }
+                case UPDATE_COURSE: {
+                    Course stored = existingCourse(operation.id);
+                    checkVersion("Course", operation.id, stored.getVersion(), operation.expectedVersion);
+                    operation.course.setVersion(stored.getVersion() + 1);
+                    staged = staged.withCourses(staged.courses.plus(operation.id, operation.course));
+                    return Mutation.putCourse(operation.course);
+                }
+                case DELETE_COURSE:
+                    existingCourse(operation.id);
+                    staged = staged.removeCourse(operation.id);
+                    return Mutation.deleteCourse(operation.id);
+                case ADD_ATTENDANCE: {
+                    AttendanceRecord record = operation.attendanceRecord;
+                    record.setId(0);
+                    checkReferences(staged, record);
+                    checkKey(record);
+                    record.setId(ids.next(IdAllocator.Kind.ATTENDANCE));
+                    record.setVersion(1);
+                    putRecord(record);
+                    return Mutation.putAttendance(record);
+                }
+                case UPDATE_ATTENDANCE: {
+                    AttendanceRecord record = operation.attendanceRecord;
+                    AttendanceRecord stored = existingRecord(operation.id);
+                    checkVersion("Attendance record", operation.id, stored.getVersion(), operation.expectedVersion);
+                    checkReferences(staged, record);
+                    checkKey(record);
+                    record.setVersion(stored.getVersion() + 1);
+                    putRecord(record);
+                    return Mutation.putAttendance(record);
+                }
+                case UPSERT_ATTENDANCE: {
+                    AttendanceRecord record = operation.attendanceRecord;
+                    if (record.getDate() == null) {
+                        throw new IllegalArgumentException("Upsert needs a date");
+                    }
+                    checkReferences(staged, record);
+                    int holder = keyHolder(record);
+                    AttendanceRecord previous = holder != -1 ? record(holder) : null;
+                    record.setId(previous != null ? holder : ids.next(IdAllocator.Kind.ATTENDANCE));
+                    record.setVersion(previous != null ? previous.getVersion() + 1 : 1);
+                    putRecord(record);
+                    return Mutation.putAttendance(record);
+                }
+                case DELETE_ATTENDANCE: {
+                    AttendanceRecord stored = existingRecord(operation.id);
+                    releaseKey(stored);
+                    rows.put(operation.id, null);
+                    return Mutation.deleteAttendance(operation.id);
+                }
+                default:
+                    throw new IllegalArgumentException("Unsupported batch operation: " + operation.type);
+            }
+        }
+
+        private Student existingStudent(int id) {
+            Student student = staged.students.get(id);
+            if (student == null) {
+                throw new ConstraintViolationException("Student not found with ID: " + id, -1);
+            }
+            return student;
+        }
+
+        private Course existingCourse(int id) {
+            Course course = staged.courses.get(id);
+            if (course == null) {
+                throw new ConstraintViolationException("Course not found with ID: " + id, -1);
+            }
+            return course;
+        }
+
+        private AttendanceRecord existingRecord(int id) {
+            AttendanceRecord record = record(id);
+            if (record == null) {
+                throw new ConstraintViolationException("Attendance record not found with ID: " + id, -1);
+            }
+            return record;
+        }
+
+        /**
+         * @return Staged record, or null if it does not exist or went with a
+         *         student or course the batch deleted
+         */
+        private AttendanceRecord record(int id) {
+            AttendanceRecord record = rows.containsKey(id) ? rows.get(id) : findRecord(id);
+            return record != null && staged.students.containsKey(record.getStudentId())
+                    && staged.courses.containsKey(record.getCourseId()) ? record : null;
+        }
+
+        private void putRecord(AttendanceRecord record) {
+            AttendanceRecord previous = record(record.getId());
+            if (previous != null) {
+                releaseKey(previous);
+            }
+            rows.put(record.getId(), record);
+            AttendanceKey key = AttendanceKey.of(record);
+            if (key != null) {
+                keys.put(key, record.getId());
+            }
+        }
+
+        /**
+         * @return ID of the record holding the record's key, or -1 if it is free
+         */
+        private int keyHolder(AttendanceRecord record) {
+            AttendanceKey key = AttendanceKey.of(record);
+            if (key == null) {
+                return -1;
+            }
+            if (keys.containsKey(key)) {
+                Integer holder = keys.get(key);
+                return holder != null ? holder : -1;
+            }
+            return findByKey(record);
+        }
+
+        private void checkKey(AttendanceRecord record) {
+            int holder = keyHolder(record);
+            if (holder != -1 && holder != record.getId()) {
+                throw duplicateAttendance(record, holder);
+            }
+        }
+
+        private void releaseKey(AttendanceRecord record) {
+            AttendanceKey key = AttendanceKey.of(record);
+            if (key != null && keyHolder(record) == record.getId()) {
+                keys.put(key, null);
+            }
+        }
+
+        private void putStudent(Student student) {
+            Student previous = staged.students.get(student.getId());
+            if (previous != null) {
+                releaseEmail(previous);
+            }
+            String key = Student.normalizeEmail(student.getEmail());
+            if (key != null) {
+                emails.put(key, student.getId());
+            }
+            staged = staged.putStudent(student);
+        }
+
+        private Integer emailHolder(String key) {
+            return emails.containsKey(key) ? emails.get(key) : emailIndex.get(key);
+        }
+
+        private void checkEmail(Student student) {
+            String key = Student.normalizeEmail(student.getEmail());
+            Integer holder = key != null ? emailHolder(key) : null;
+            if (holder != null && holder != student.getId()) {
+                throw emailTaken(student, holder);
+            }
+        }
+
+        private void releaseEmail(Student student) {
+            String key = Student.normalizeEmail(student.getEmail());
+            if (key != null && Integer.valueOf(student.getId()).equals(emailHolder(key))) {
+                emails.put(key, null);
+            }
+        }
+    }
+
+    /**
+     * One immutable version of the student and course tables, plus the
+     * course-to-students enrollment index derived from registeredCourses.
+     * The index lives in the same root as the students, so a reader always
+     * sees the two agree.
+     */
+    private static final class Tables {
+        static final Tables EMPTY = new Tables(PersistentIntMap.<Student>empty(),
+                PersistentIntMap.<Course>empty(), PersistentIntMap.<CompressedBitmap>empty());
+
+        final PersistentIntMap<Student> students;
+        final PersistentIntMap<Course> courses;
+        final PersistentIntMap<CompressedBitmap> enrollments; // course ID -> student IDs
+
+        Tables(PersistentIntMap<Student> students, PersistentIntMap<Course> courses,
+                PersistentIntMap<CompressedBitmap> enrollments) {
+            this.students = students;
+            this.courses = courses;
+            this.enrollments = enrollments;
+        }
+
+        Tables withCourses(PersistentIntMap<Course> courses) {
+            return new Tables(students, courses, enrollments);
+        }
+
+        /**
+         * Add or replace a student and move its enrollments to the new course set
+         */
+        Tables putStudent(Student student) {
+            int studentId = student.getId();
+            PersistentIntMap<CompressedBitmap> updated = enrollments;
+            Student previous = students.get(studentId);
+            if (previous != null) {
+                for (int courseId : previous.getRegisteredCourseIds()) {
+                    if (!student.isRegisteredForCourse(courseId)) {
+                        updated = withdraw(updated, courseId, studentId);
+                    }
+                }
+            }
+            for (int courseId : student.getRegisteredCourseIds()) {
+                updated = enroll(updated, courseId, studentId);
+            }
+            return new Tables(students.plus(studentId, student), courses, updated);
+        }
+
+        /**
+         * Remove a student and its enrollments
+         */
+        Tables removeStudent(int studentId) {
+            Student previous = students.get(studentId);
+            if (previous == null) {
+                return this;
+            }
+            PersistentIntMap<CompressedBitmap> updated = enrollments;
+            for (int courseId : previous.getRegisteredCourseIds()) {
+                updated = withdraw(updated, courseId, studentId);
+            }
+            return new Tables(students.minus(studentId), courses, updated);
+        }
+
+        /**
+         * Remove a course and withdraw every enrolled student from it.
+         * Stored students are shared with readers, so each one is replaced
+         * by a copy without the course, one version newer.
+         */
+        Tables removeCourse(int courseId) {
+            PersistentIntMap<Student> updated = students;
+            CompressedBitmap enrolled = enrollments.get(courseId);
+            if (enrolled != null) {
+                for (int studentId : enrolled.toArray()) {
+                    Student student = updated.get(studentId);
+                    if (student != null) {
+                        Student copy = new Student(studentId, student.getFullName(), student.getEmail(),
+                                student.getRegisteredCourses());
+                        copy.removeCourse(courseId);
+                        copy.setVersion(student.getVersion() + 1);
+                        updated = updated.plus(studentId, copy);
+                    }
+                }
+            }
+            return new Tables(updated, courses.minus(courseId), enrollments.minus(courseId));
+        }
+
+        /**
+         * Get the students enrolled in a course
+         */
+        CompressedBitmap enrolledIn(int courseId) {
+            CompressedBitmap studentIds = enrollments.get(courseId);
+            return studentIds != null ? studentIds : CompressedBitmap.EMPTY;
+        }
+
+        private static PersistentIntMap<CompressedBitmap> enroll(PersistentIntMap<CompressedBitmap> enrollments,
+                int courseId, int studentId) {
+            CompressedBitmap studentIds = enrollments.get(courseId);
+            return enrollments.plus(courseId, (studentIds != null ? studentIds : CompressedBitmap.EMPTY).with(studentId));
+        }
+
+        private static PersistentIntMap<CompressedBitmap> withdraw(PersistentIntMap<CompressedBitmap> enrollments,
+                int courseId, int studentId) {
+            CompressedBitmap studentIds = enrollments.get(courseId);
+            if (studentIds == null) {
+                return enrollments;
+            }
+            studentIds = studentIds.without(studentId);
+            return studentIds.isEmpty() ? enrollments.minus(courseId) : enrollments.plus(courseId, studentIds);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Attendance table that keeps every record as an object in a persistent
+ * int-keyed map. The default engine; simplest, but costs an object graph per row.
+ *
+ * The map is immutable: each write builds a new version and publishes it
+ * through a volatile field, so values() hands out a point-in-time snapshot
+ * without copying and readers never wait for the writer. Mutators are
+ * called under DataStore's table lock, so there is a single writer.
+ */
+class HeapAttendanceTable implements AttendanceTable {
+    private volatile PersistentIntMap<AttendanceRecord> records = PersistentIntMap.empty();
+
+    @Override
+    public AttendanceRecord get(int id) {
+        return records.get(id);
+    }
+
+    @Override
+    public AttendanceRecord put(AttendanceRecord record) {
+        PersistentIntMap<AttendanceRecord> current = records;
+        records = current.plus(record.getId(), record);
+        return current.get(record.getId());
+    }
+
+    @Override
+    public AttendanceRecord remove(int id) {
+        PersistentIntMap<AttendanceRecord> current = records;
+        records = current.minus(id);
+        return current.get(id);
+    }
+
+    @Override
+    public int size() {
+        return records.size();
+    }
+
+    @Override
+    public Collection<AttendanceRecord> values() {
+        return records.values();
+    }
+
+    @Override
+    public void forEach(RowVisitor visitor) {
+        visit(records.values(), visitor);
+    }
+
+    /**
+     * Split one version of the map, so the parts see one point in time
+     */
+    @Override
+    public List<RowScan> split(int parts) {
+        List<RowScan> scans = new ArrayList<>();
+        for (Iterable<AttendanceRecord> part : records.split(parts)) {
+            scans.add(visitor -> visit(part, visitor));
+        }
+        return scans;
+    }
+
+    private static void visit(Iterable<AttendanceRecord> records, RowVisitor visitor) {
+        for (AttendanceRecord record : records) {
+            visitor.visit(record.getId(), record.getStudentId(), record.getCourseId(),
+                    record.getDate() != null ? record.getDate().toEpochDay() : NO_DATE,
+                    record.isPresent(), record.getVersion());
+        }
+    }
+
+    @Override
+    public void clear() {
+        records = PersistentIntMap.empty();
+    }
+}
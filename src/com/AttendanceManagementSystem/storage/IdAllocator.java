@@ -0,0 +1,51 @@
+package com.AttendanceManagementSystem.storage;
+
+/**
+ * Hands out the IDs of new students, courses and attendance records.
+ *
+ * DataStore asks for an ID when it adds an entity and reports every ID it
+ * applies (from live writes, log replay, snapshots and replication) through
+ * observe(), so an allocator never hands out an ID that is already in use.
+ * Implementations must be thread-safe: attendance writers in different
+ * partitions allocate concurrently.
+ */
+interface IdAllocator extends AutoCloseable {
+
+    /**
+     * Entity an ID is allocated for; each has its own ID space
+     */
+    enum Kind {
+        STUDENT,
+        COURSE,
+        ATTENDANCE
+    }
+
+    /**
+     * @param kind Entity kind
+     * @return An ID not handed out or observed before
+     */
+    int next(Kind kind);
+
+    /**
+     * Record an ID that is in use, so it is never handed out
+     *
+     * @param kind Entity kind
+     * @param id   ID in use
+     */
+    void observe(Kind kind, int id);
+
+    /**
+     * @param kind Entity kind
+     * @return An ID above every one handed out or observed so far, for the
+     *         snapshot header
+     */
+    int peek(Kind kind);
+
+    /**
+     * Called when every entity has been deleted
+     */
+    void reset();
+
+    @Override
+    void close();
+}
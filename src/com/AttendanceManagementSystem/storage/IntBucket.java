@@ -0,0 +1,107 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Compact set of record IDs used as an index bucket.
+ * Stores plain ints (4 bytes per entry) instead of boxed Integers in a hash set.
+ *
+ * Single writer, lock-free readers: the contents are published as an
+ * immutable (array, size) pair. Appends write past the published size and
+ * then publish a larger size over the same array, so they are O(1)
+ * amortised; removals copy the array, which keeps readers' views stable.
+ */
+final class IntBucket {
+    private static final int[] EMPTY = new int[0];
+
+    private static final class View {
+        final int[] ids;
+        final int size;
+
+        View(int[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+    }
+
+    private volatile View view = new View(EMPTY, 0);
+
+    /**
+     * Append an ID (callers never add an ID that is already present)
+     * 
+     * @param id Record ID
+     */
+    void add(int id) {
+        View current = view;
+        int[] ids = current.ids;
+        if (current.size == ids.length) {
+            int[] grown = new int[Math.max(4, ids.length + (ids.length >> 1))];
+            System.arraycopy(ids, 0, grown, 0, current.size);
+            ids = grown;
+        }
+        ids[current.size] = id;
+        view = new View(ids, current.size + 1);
+    }
+
+    /**
+     * Remove an ID
+     * 
+     * @param id Record ID
+     * @return true if the ID was present
+     */
+    boolean remove(int id) {
+        View current = view;
+        for (int i = 0; i < current.size; i++) {
+            if (current.ids[i] == id) {
+                int[] ids = new int[current.size - 1];
+                System.arraycopy(current.ids, 0, ids, 0, i);
+                System.arraycopy(current.ids, i + 1, ids, i, current.size - i - 1);
+                view = new View(ids, ids.length);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove every matching ID in one pass over the bucket
+     * 
+     * @param doomed Test for IDs to remove
+     * @return Number of IDs removed
+     */
+    int removeIf(IntPredicate doomed) {
+        View current = view;
+        int[] kept = new int[current.size];
+        int size = 0;
+        for (int i = 0; i < current.size; i++) {
+            if (!doomed.test(current.ids[i])) {
+                kept[size++] = current.ids[i];
+            }
+        }
+        if (size != current.size) {
+            view = new View(kept, size);
+        }
+        return current.size - size;
+    }
+
+    int size() {
+        return view.size;
+    }
+
+    boolean isEmpty() {
+        return view.size == 0;
+    }
+
+    /**
+     * Visit every ID in a consistent point-in-time view
+     * 
+     * @param action Callback per ID
+     */
+    void forEach(IntConsumer action) {
+        View current = view;
+        for (int i = 0; i < current.size; i++) {
+            action.accept(current.ids[i]);
+        }
+    }
+}
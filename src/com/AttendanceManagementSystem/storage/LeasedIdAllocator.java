@@ -0,0 +1,240 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out IDs from blocks leased in a small file, so IDs are never
+ * reused (not after a restart, a clear, or a deleted highest ID) and
+ * instances configured as different nodes never collide.
+ *
+ * Each ID space is cut into blocks of blockSize IDs. Block k belongs to
+ * node k % nodes, so nodes need no coordination: each leases its own
+ * blocks in increasing order. Taking a block writes its end to the lease
+ * file (temp file, fsync, rename) before any of its IDs is handed out;
+ * within a block an ID costs one compare-and-set. A clean close records
+ * where each kind's current block stopped, and the first lease after the
+ * restart continues that block (clearing the record in the file before
+ * handing out an ID), so restarts do not eat into the 32-bit ID space;
+ * only a crash abandons the rest of a block. IDs from one node therefore
+ * increase with insertion time; across nodes they only roughly do.
+ *
+ * File format: magic, version, then per kind the end (exclusive) of the
+ * highest block leased, then per kind the first unused ID of that block
+ * saved by a clean close (0 if none). Version 1 files lack the second
+ * list.
+ */
+final class LeasedIdAllocator implements IdAllocator {
+    private static final int MAGIC = 0x41544944; // "ATID"
+    private static final int VERSION = 2;
+
+    private final File file;
+    private final int node;
+    private final int nodes;
+    private final int blockSize;
+    // Per kind: next ID in the upper and end of the current block in the lower 32 bits
+    private final AtomicLong[] blocks = new AtomicLong[Kind.values().length];
+    // Per kind: highest ID in use
+    private final AtomicInteger[] highest = new AtomicInteger[Kind.values().length];
+    // Per kind: end of the highest block leased, as stored in the file. Guarded by this
+    private final long[] leasedUpTo = new long[Kind.values().length];
+    // Per kind: first unused ID of the highest block, saved by a clean close, or 0. Guarded by this
+    private final long[] resumeFrom = new long[Kind.values().length];
+
+    /**
+     * Open the lease file, if there is one. Nothing is leased until the
+     * first ID is asked for, so an instance that only replicates never
+     * writes the file.
+     *
+     * @param file      Lease file
+     * @param node      This instance's node number, from 0
+     * @param nodes     Number of nodes sharing the ID spaces
+     * @param blockSize IDs per block
+     */
+    LeasedIdAllocator(File file, int node, int nodes, int blockSize) {
+        if (nodes < 1 || node < 0 || node >= nodes) {
+            throw new IllegalArgumentException("ID node must be between 0 and " + (nodes - 1) + ", got " + node);
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("ID block size must be positive, got " + blockSize);
+        }
+        this.file = file;
+        this.node = node;
+        this.nodes = nodes;
+        this.blockSize = blockSize;
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new AtomicLong();
+            highest[i] = new AtomicInteger();
+        }
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                int version = in.readInt() == MAGIC ? in.readInt() : -1;
+                if (version != 1 && version != VERSION) {
+                    throw new IOException("Not an ID lease file: " + file);
+                }
+                for (int i = 0; i < leasedUpTo.length; i++) {
+                    leasedUpTo[i] = in.readLong();
+                }
+                for (int i = 0; i < resumeFrom.length && version >= 2; i++) {
+                    resumeFrom[i] = in.readLong();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read ID leases", e);
+            }
+        }
+    }
+
+    @Override
+    public int next(Kind kind) {
+        AtomicLong block = blocks[kind.ordinal()];
+        while (true) {
+            long current = block.get();
+            int next = (int) (current >>> 32);
+            int end = (int) current;
+            if (next < end) {
+                if (block.compareAndSet(current, pack(next + 1, end))) {
+                    return next;
+                }
+            } else {
+                lease(kind, current);
+            }
+        }
+    }
+
+    @Override
+    public void observe(Kind kind, int id) {
+        AtomicInteger max = highest[kind.ordinal()];
+        if (max.get() < id) {
+            max.accumulateAndGet(id, Math::max);
+        }
+    }
+
+    @Override
+    public int peek(Kind kind) {
+        return highest[kind.ordinal()].get() + 1;
+    }
+
+    @Override
+    public void reset() {
+        // Leased blocks are never given back, so IDs keep growing after a clear
+    }
+
+    /**
+     * Save the unused rest of each current block for the next start. An ID
+     * asked for after this takes the saved rest through lease(), which
+     * clears it in the file first.
+     */
+    @Override
+    public synchronized void close() {
+        boolean saved = false;
+        for (int i = 0; i < blocks.length; i++) {
+            long current = blocks[i].getAndSet(0);
+            int next = (int) (current >>> 32);
+            int end = (int) current;
+            if (next < end && end == leasedUpTo[i]) {
+                resumeFrom[i] = next;
+                saved = true;
+            }
+        }
+        if (!saved) {
+            return;
+        }
+        try {
+            write();
+        } catch (IOException e) {
+            System.out.println("LeasedIdAllocator - Cannot save unused IDs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lease this node's next block above every ID leased or in use, or the
+     * rest of the highest block if a clean close saved it and no ID in it
+     * has been observed since
+     *
+     * @param kind      Entity kind
+     * @param exhausted Block state the caller found used up; if another
+     *                  thread has replaced it meanwhile, nothing is leased
+     */
+    private synchronized void lease(Kind kind, long exhausted) {
+        int i = kind.ordinal();
+        if (blocks[i].get() != exhausted) {
+            return;
+        }
+        long resume = resumeFrom[i];
+        long start;
+        long end;
+        if (resume > highest[i].get() && resume < leasedUpTo[i] && ownsBlockEndingAt(leasedUpTo[i])) {
+            start = resume;
+            end = leasedUpTo[i];
+        } else {
+            long from = Math.max(leasedUpTo[i], (long) highest[i].get() + 1);
+            // First block starting at or after from; block 0 starts at 1, as 0 is never an ID
+            long index = from <= 1 ? 0 : (from + blockSize - 1) / blockSize;
+            index += ((node - index % nodes) + nodes) % nodes;
+            start = Math.max(1, index * blockSize);
+            end = (index + 1) * blockSize;
+            if (end > Integer.MAX_VALUE) {
+                throw new IllegalStateException("No " + kind.name().toLowerCase() + " IDs left to lease");
+            }
+        }
+
+        // A saved rest is used once: a crash after this abandons it
+        long previous = leasedUpTo[i];
+        leasedUpTo[i] = end;
+        resumeFrom[i] = 0;
+        try {
+            write();
+        } catch (IOException e) {
+            leasedUpTo[i] = previous;
+            resumeFrom[i] = resume;
+            throw new UncheckedIOException("Cannot write ID leases", e);
+        }
+        blocks[i].set(pack((int) start, (int) end));
+    }
+
+    /**
+     * Replace the lease file atomically (temp file, fsync, rename)
+     */
+    private void write() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory: " + parent);
+        }
+        File temp = new File(parent, file.getName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (long end : leasedUpTo) {
+                out.writeLong(end);
+            }
+            for (long next : resumeFrom) {
+                out.writeLong(next);
+            }
+            out.flush();
+            stream.getChannel().force(true);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return Whether a block ending at end is one of this node's, with the
+     *         current block size (the configuration may have changed since)
+     */
+    private boolean ownsBlockEndingAt(long end) {
+        return end % blockSize == 0 && (end / blockSize - 1) % nodes == node;
+    }
+
+    private static long pack(int next, int end) {
+        return ((long) next << 32) | (end & 0xffffffffL);
+    }
+}
@@ -0,0 +1,258 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+import com.AttendanceManagementSystem.model.Course;
+import com.AttendanceManagementSystem.model.Student;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single change to the DataStore, in the form written to the write-ahead log.
+ * Puts carry the full entity with its final ID and version, so replaying a
+ * mutation is idempotent: applying the same sequence twice yields the same state.
+ * A BATCH wraps the mutations of one transaction in a single log entry, so
+ * a crash can never leave part of it on disk.
+ */
+final class Mutation {
+
+    /**
+     * Kind of change; the ordinal is not used on disk, the code is
+     */
+    enum Type {
+        PUT_STUDENT(1),
+        DELETE_STUDENT(2),
+        PUT_COURSE(3),
+        DELETE_COURSE(4),
+        PUT_ATTENDANCE(5),
+        DELETE_ATTENDANCE(6),
+        CLEAR(7),
+        BATCH(8);
+
+        final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        static Type fromCode(byte code) throws IOException {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IOException("Unknown mutation type: " + code);
+        }
+    }
+
+    private static final long NULL_DATE = Long.MIN_VALUE;
+    // Set in the type code of puts that carry a version; entries written
+    // before entities had versions lack it and load as version 1
+    private static final int VERSIONED = 0x40;
+    // Tag before each string: null, modified UTF-8 with a 16-bit length
+    // (writeUTF, read only, as it cannot hold 64 KB), or UTF-8 with an int length
+    private static final int NULL_STRING = 0;
+    private static final int SHORT_UTF = 1;
+    private static final int UTF8_STRING = 2;
+
+    final Type type;
+    final int id;
+    final Student student;
+    final Course course;
+    final AttendanceRecord attendanceRecord;
+    final List<Mutation> batch;
+
+    private Mutation(Type type, int id, Student student, Course course, AttendanceRecord attendanceRecord) {
+        this(type, id, student, course, attendanceRecord, null);
+    }
+
+    private Mutation(Type type, int id, Student student, Course course, AttendanceRecord attendanceRecord,
+            List<Mutation> batch) {
+        this.type = type;
+        this.id = id;
+        this.student = student;
+        this.course = course;
+        this.attendanceRecord = attendanceRecord;
+        this.batch = batch;
+    }
+
+    static Mutation putStudent(Student student) {
+        return new Mutation(Type.PUT_STUDENT, student.getId(), student, null, null);
+    }
+
+    static Mutation deleteStudent(int id) {
+        return new Mutation(Type.DELETE_STUDENT, id, null, null, null);
+    }
+
+    static Mutation putCourse(Course course) {
+        return new Mutation(Type.PUT_COURSE, course.getId(), null, course, null);
+    }
+
+    static Mutation deleteCourse(int id) {
+        return new Mutation(Type.DELETE_COURSE, id, null, null, null);
+    }
+
+    static Mutation putAttendance(AttendanceRecord record) {
+        return new Mutation(Type.PUT_ATTENDANCE, record.getId(), null, null, record);
+    }
+
+    static Mutation deleteAttendance(int id) {
+        return new Mutation(Type.DELETE_ATTENDANCE, id, null, null, null);
+    }
+
+    static Mutation clear() {
+        return new Mutation(Type.CLEAR, 0, null, null, null);
+    }
+
+    static Mutation batch(List<Mutation> mutations) {
+        return new Mutation(Type.BATCH, 0, null, null, null, mutations);
+    }
+
+    /**
+     * Serialize this mutation
+     * 
+     * @param out Destination
+     * @throws IOException if writing fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        boolean put = type == Type.PUT_STUDENT || type == Type.PUT_COURSE || type == Type.PUT_ATTENDANCE;
+        out.writeByte(put ? type.code | VERSIONED : type.code);
+        out.writeInt(id);
+        switch (type) {
+            case PUT_STUDENT:
+                out.writeInt(student.getVersion());
+                writeString(out, student.getFullName());
+                writeString(out, student.getEmail());
+                out.writeInt(student.getRegisteredCourseCount());
+                for (int courseId : student.getRegisteredCourseIds()) {
+                    out.writeInt(courseId);
+                }
+                break;
+            case PUT_COURSE:
+                out.writeInt(course.getVersion());
+                writeString(out, course.getName());
+                writeString(out, course.getInstructor());
+                break;
+            case PUT_ATTENDANCE:
+                out.writeInt(attendanceRecord.getVersion());
+                out.writeInt(attendanceRecord.getStudentId());
+                out.writeInt(attendanceRecord.getCourseId());
+                out.writeLong(attendanceRecord.getDate() != null ? attendanceRecord.getDate().toEpochDay() : NULL_DATE);
+                out.writeBoolean(attendanceRecord.isPresent());
+                break;
+            case BATCH:
+                out.writeInt(batch.size());
+                for (Mutation mutation : batch) {
+                    mutation.writeTo(out);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Deserialize a mutation written by writeTo
+     * 
+     * @param in Source
+     * @return Mutation
+     * @throws IOException if reading fails or the data is malformed
+     */
+    static Mutation readFrom(DataInput in) throws IOException {
+        byte code = in.readByte();
+        Type type = Type.fromCode((byte) (code & ~VERSIONED));
+        int id = in.readInt();
+        int version = (code & VERSIONED) != 0 ? in.readInt() : 1;
+        switch (type) {
+            case PUT_STUDENT: {
+                String fullName = readString(in);
+                String email = readString(in);
+                int count = in.readInt();
+                List<Integer> registeredCourses = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    registeredCourses.add(in.readInt());
+                }
+                Student student = new Student(id, fullName, email, registeredCourses);
+                student.setVersion(version);
+                return putStudent(student);
+            }
+            case PUT_COURSE: {
+                Course course = new Course(id, readString(in), readString(in));
+                course.setVersion(version);
+                return putCourse(course);
+            }
+            case PUT_ATTENDANCE: {
+                int studentId = in.readInt();
+                int courseId = in.readInt();
+                long epochDay = in.readLong();
+                boolean present = in.readBoolean();
+                AttendanceRecord record = new AttendanceRecord(id, studentId, courseId,
+                        epochDay != NULL_DATE ? LocalDate.ofEpochDay(epochDay) : null, present);
+                record.setVersion(version);
+                return putAttendance(record);
+            }
+            case DELETE_STUDENT:
+                return deleteStudent(id);
+            case DELETE_COURSE:
+                return deleteCourse(id);
+            case DELETE_ATTENDANCE:
+                return deleteAttendance(id);
+            case BATCH: {
+                int count = in.readInt();
+                List<Mutation> mutations = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    mutations.add(readFrom(in));
+                }
+                return batch(mutations);
+            }
+            case CLEAR:
+            default:
+                return clear();
+        }
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(UTF8_STRING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL_STRING:
+                return null;
+            case SHORT_UTF:
+                return in.readUTF();
+            case UTF8_STRING: {
+                int length = in.readInt();
+                if (length < 0) {
+                    throw new IOException("Negative string length: " + length);
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            default:
+                throw new IOException("Unknown string tag: " + tag);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Mutation{" +
+                "type=" + type +
+                ", id=" + id +
+                '}';
+    }
+}
@@ -0,0 +1,275 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Attendance table that keeps rows outside the Java heap.
+ * Rows are fixed-width 16 byte slots (studentId, courseId, epochDay, flags;
+ * the bits of flags above the live/present bits hold the version)
+ * in segments of 1M rows, either direct ByteBuffers or memory-mapped files
+ * under a directory. As with the columnar engine the record ID is the slot
+ * number, so the only heap cost is the small array of segment buffers and
+ * the GC never has to trace attendance rows.
+ *
+ * Mapped segments are recreated empty on startup; they are backing memory,
+ * not a durable format.
+ *
+ * Same concurrency contract as ColumnarAttendanceTable: one writer under a
+ * StampedLock, get() validated by an optimistic stamp, weakly consistent
+ * scans.
+ */
+class OffHeapAttendanceTable implements AttendanceTable {
+    private static final int SEGMENT_SHIFT = 20;
+    private static final int SEGMENT_ROWS = 1 << SEGMENT_SHIFT;
+    private static final int ROW_MASK = SEGMENT_ROWS - 1;
+
+    private static final int ROW_BYTES = 16;
+    private static final int STUDENT_OFFSET = 0;
+    private static final int COURSE_OFFSET = 4;
+    private static final int DATE_OFFSET = 8;
+    private static final int FLAGS_OFFSET = 12;
+
+    private static final int FLAG_LIVE = 1;
+    private static final int FLAG_PRESENT = 2;
+    private static final int VERSION_SHIFT = 2;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+
+    private final File directory; // null for anonymous direct buffers
+    private volatile ByteBuffer[] segments = new ByteBuffer[0];
+    private final StampedLock lock = new StampedLock();
+    private volatile int size;
+
+    /**
+     * Create a table backed by direct (anonymous off-heap) buffers
+     */
+    OffHeapAttendanceTable() {
+        this.directory = null;
+    }
+
+    /**
+     * Create a table backed by memory-mapped segment files
+     * 
+     * @param directory Directory for segment files (created if missing)
+     */
+    OffHeapAttendanceTable(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Cannot create attendance segment directory: " + directory);
+        }
+        this.directory = directory;
+    }
+
+    @Override
+    public AttendanceRecord get(int id) {
+        if (id < 0) {
+            return null;
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            AttendanceRecord record = read(segments, id);
+            if (lock.validate(stamp)) {
+                return record;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return read(segments, id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public AttendanceRecord put(AttendanceRecord record) {
+        int id = record.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("Off-heap table requires non-negative IDs: " + id);
+        }
+        AttendanceRecord previous = get(id);
+        ByteBuffer segment = segmentFor(id);
+        int base = (id & ROW_MASK) * ROW_BYTES;
+
+        long stamp = lock.writeLock();
+        try {
+            segment.putInt(base + STUDENT_OFFSET, record.getStudentId());
+            segment.putInt(base + COURSE_OFFSET, record.getCourseId());
+            segment.putInt(base + DATE_OFFSET,
+                    record.getDate() != null ? (int) record.getDate().toEpochDay() : NULL_DATE);
+            segment.putInt(base + FLAGS_OFFSET, FLAG_LIVE | (record.isPresent() ? FLAG_PRESENT : 0)
+                    | record.getVersion() << VERSION_SHIFT);
+            if (previous == null) {
+                size++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return previous;
+    }
+
+    @Override
+    public AttendanceRecord remove(int id) {
+        AttendanceRecord previous = get(id);
+        if (previous == null) {
+            return null;
+        }
+        long stamp = lock.writeLock();
+        try {
+            segments[id >>> SEGMENT_SHIFT].putInt((id & ROW_MASK) * ROW_BYTES + FLAGS_OFFSET, 0);
+            size--;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<AttendanceRecord> values() {
+        List<AttendanceRecord> result = new ArrayList<>(size);
+        forEach((id, studentId, courseId, epochDay, present, version) -> result.add(record(id, studentId,
+                courseId, epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null, present, version)));
+        return result;
+    }
+
+    @Override
+    public void forEach(RowVisitor visitor) {
+        ByteBuffer[] current = segments;
+        scan(current, 0, (long) current.length << SEGMENT_SHIFT, visitor);
+    }
+
+    /**
+     * Split the allocated slots into equal ranges, which may cross segments
+     */
+    @Override
+    public List<RowScan> split(int parts) {
+        ByteBuffer[] current = segments;
+        long slots = (long) current.length << SEGMENT_SHIFT;
+        long slotsPerPart = Math.max(1, (slots + parts - 1) / parts);
+        List<RowScan> scans = new ArrayList<>();
+        for (long from = 0; from < slots; from += slotsPerPart) {
+            long fromSlot = from;
+            long toSlot = Math.min(slots, from + slotsPerPart);
+            scans.add(visitor -> scan(current, fromSlot, toSlot, visitor));
+        }
+        return scans;
+    }
+
+    /**
+     * Visit the live rows in a range of slots (record IDs)
+     */
+    private static void scan(ByteBuffer[] current, long fromSlot, long toSlot, RowVisitor visitor) {
+        for (int s = (int) (fromSlot >>> SEGMENT_SHIFT); s < current.length; s++) {
+            long segmentStart = (long) s << SEGMENT_SHIFT;
+            if (segmentStart >= toSlot) {
+                break;
+            }
+            ByteBuffer segment = current[s];
+            int first = (int) (Math.max(fromSlot, segmentStart) - segmentStart);
+            int last = (int) (Math.min(toSlot, segmentStart + SEGMENT_ROWS) - segmentStart);
+            for (int row = first; row < last; row++) {
+                int base = row * ROW_BYTES;
+                int flags = segment.getInt(base + FLAGS_OFFSET);
+                if ((flags & FLAG_LIVE) != 0) {
+                    int epochDay = segment.getInt(base + DATE_OFFSET);
+                    visitor.visit((s << SEGMENT_SHIFT) | row,
+                            segment.getInt(base + STUDENT_OFFSET),
+                            segment.getInt(base + COURSE_OFFSET),
+                            epochDay != NULL_DATE ? epochDay : NO_DATE,
+                            (flags & FLAG_PRESENT) != 0,
+                            flags >>> VERSION_SHIFT);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            ByteBuffer[] current = segments;
+            for (ByteBuffer segment : current) {
+                for (int base = FLAGS_OFFSET; base < segment.capacity(); base += ROW_BYTES) {
+                    segment.putInt(base, 0);
+                }
+            }
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static AttendanceRecord read(ByteBuffer[] current, int id) {
+        int s = id >>> SEGMENT_SHIFT;
+        if (s >= current.length) {
+            return null;
+        }
+        ByteBuffer segment = current[s];
+        int base = (id & ROW_MASK) * ROW_BYTES;
+        int flags = segment.getInt(base + FLAGS_OFFSET);
+        if ((flags & FLAG_LIVE) == 0) {
+            return null;
+        }
+        int epochDay = segment.getInt(base + DATE_OFFSET);
+        return record(id,
+                segment.getInt(base + STUDENT_OFFSET),
+                segment.getInt(base + COURSE_OFFSET),
+                epochDay != NULL_DATE ? LocalDate.ofEpochDay(epochDay) : null,
+                (flags & FLAG_PRESENT) != 0,
+                flags >>> VERSION_SHIFT);
+    }
+
+    private static AttendanceRecord record(int id, int studentId, int courseId, LocalDate date, boolean present,
+            int version) {
+        AttendanceRecord record = new AttendanceRecord(id, studentId, courseId, date, present);
+        record.setVersion(version);
+        return record;
+    }
+
+    /**
+     * Get the segment holding the given ID, allocating segments up to it if needed
+     */
+    private ByteBuffer segmentFor(int id) {
+        int s = id >>> SEGMENT_SHIFT;
+        ByteBuffer[] current = segments;
+        if (s < current.length) {
+            return current[s];
+        }
+        ByteBuffer[] grown = new ByteBuffer[s + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        for (int i = current.length; i <= s; i++) {
+            grown[i] = allocateSegment(i);
+        }
+        segments = grown;
+        return grown[s];
+    }
+
+    private ByteBuffer allocateSegment(int index) {
+        int bytes = SEGMENT_ROWS * ROW_BYTES;
+        if (directory == null) {
+            return ByteBuffer.allocateDirect(bytes);
+        }
+        File file = new File(directory, String.format("attendance-%06d.seg", index));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // Start from an empty segment: a previous run's rows are not ours to trust
+            raf.setLength(0);
+            raf.setLength(bytes);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map attendance segment " + file, e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Present and total attendance counts per (student, course) pair: the
+ * partial result of one part of a parallel report scan, merged with the
+ * others once every part is done, and the reports worked out from it.
+ *
+ * An open-addressing table of primitive longs, so counting a row allocates
+ * nothing. Keys pack student and course IDs, counts pack present in the
+ * upper and total in the lower 32 bits as in AttendanceCounters; a slot is
+ * empty while its counts are 0. Not thread-safe: each part has its own.
+ */
+final class PairCounts {
+    private static final long PRESENT = 1L << 32;
+    private static final long TOTAL_MASK = 0xffffffffL;
+    private static final int DECILES = 10;
+
+    private long[] keys = new long[64];
+    private long[] counts = new long[64];
+    private int size;
+
+    /**
+     * Count one record
+     */
+    void add(int studentId, int courseId, boolean present) {
+        add(key(studentId, courseId), present ? PRESENT + 1 : 1);
+    }
+
+    /**
+     * Count several records of one pair
+     */
+    void add(int studentId, int courseId, int present, int total) {
+        if (total > 0) {
+            add(key(studentId, courseId), ((long) present << 32) + total);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Add another part's counts to the larger of the two
+     *
+     * @return The merged counts (this or other)
+     */
+    PairCounts merge(PairCounts other) {
+        if (other.size > size) {
+            return other.merge(this);
+        }
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.counts[i] != 0) {
+                add(other.keys[i], other.counts[i]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Students absent from at least a share of their records across every course
+     *
+     * @param minAbsenceRate Lowest share of absences, from 0 to 1
+     * @param minRecords     Fewest records a student must have to be judged
+     * @return One row per student keyed by student ID, most absent first
+     */
+    List<ReportRow> chronicAbsentees(double minAbsenceRate, int minRecords) {
+        Map<Integer, Long> byStudent = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] != 0) {
+                byStudent.merge((int) (keys[i] >> 32), counts[i], Long::sum);
+            }
+        }
+        List<ReportRow> rows = new ArrayList<>();
+        for (Map.Entry<Integer, Long> student : byStudent.entrySet()) {
+            AttendanceStats stats = stats(student.getValue());
+            // Tolerance so e.g. 1 absence in 5 meets a 0.2 threshold despite rounding
+            if (stats.getTotal() >= minRecords && stats.getAbsent() >= minAbsenceRate * stats.getTotal() - 1e-9) {
+                List<String> key = new ArrayList<>(1);
+                key.add(String.valueOf(student.getKey()));
+                rows.add(new ReportRow(key, stats));
+            }
+        }
+        rows.sort((a, b) -> {
+            int result = Double.compare(a.getStats().getRate(), b.getStats().getRate());
+            return result != 0 ? result
+                    : Integer.compare(Integer.parseInt(a.getKeys().get(0)), Integer.parseInt(b.getKeys().get(0)));
+        });
+        return rows;
+    }
+
+    /**
+     * How each course's students spread over absence rates
+     *
+     * @return One entry per course with records, by course ID
+     */
+    List<AbsenceDistribution> absenceDistribution() {
+        Map<Integer, int[]> deciles = new HashMap<>();
+        Map<Integer, Long> byCourse = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] != 0) {
+                int courseId = (int) keys[i];
+                AttendanceStats stats = stats(counts[i]);
+                // An absence rate of exactly 100% goes in the top decile
+                int decile = Math.min(DECILES - 1, (int) (stats.getAbsent() * (long) DECILES / stats.getTotal()));
+                deciles.computeIfAbsent(courseId, c -> new int[DECILES])[decile]++;
+                byCourse.merge(courseId, counts[i], Long::sum);
+            }
+        }
+        List<AbsenceDistribution> result = new ArrayList<>(deciles.size());
+        for (Map.Entry<Integer, int[]> course : deciles.entrySet()) {
+            result.add(new AbsenceDistribution(course.getKey(), course.getValue(),
+                    stats(byCourse.get(course.getKey()))));
+        }
+        result.sort((a, b) -> Integer.compare(a.getCourseId(), b.getCourseId()));
+        return result;
+    }
+
+    private void add(long key, long delta) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask);; i = (i + 1) & mask) {
+            if (counts[i] == 0) {
+                keys[i] = key;
+                counts[i] = delta;
+                size++;
+                return;
+            }
+            if (keys[i] == key) {
+                counts[i] += delta;
+                return;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new long[oldCounts.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldCounts[j] != 0) {
+                int i = slot(oldKeys[j], mask);
+                while (counts[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                counts[i] = oldCounts[j];
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        // Fibonacci hashing spreads dense student/course IDs over the table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private static AttendanceStats stats(long counts) {
+        return new AttendanceStats((int) (counts >>> 32), (int) (counts & TOTAL_MASK));
+    }
+
+    private static long key(int studentId, int courseId) {
+        return ((long) studentId << 32) | (courseId & 0xffffffffL);
+    }
+}
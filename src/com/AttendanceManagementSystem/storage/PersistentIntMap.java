@@ -0,0 +1,380 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable int-keyed hash array mapped trie.
+ * plus() and minus() return a new map that shares every untouched node
+ * with the old one, so a write copies O(log32 n) small arrays and any
+ * reader still holding the old map keeps a stable point-in-time view.
+ *
+ * Keys are primitive ints and are used as their own hash: each level of
+ * the trie consumes the next 5 bits. Two distinct keys always part by the
+ * last level, so there are no collision nodes, and get()/containsKey()
+ * walk the trie without allocating. Dense IDs fill nodes completely.
+ *
+ * Each node keeps its inline entries (int keys plus values) and its child
+ * nodes in separate arrays, selected by two 32-bit bitmaps.
+ *
+ * @param <V> Value type
+ */
+final class PersistentIntMap<V> {
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(Node.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        Node node = root;
+        for (int shift = 0;; shift += 5) {
+            int bit = bitpos(key, shift);
+            if ((node.dataMap & bit) != 0) {
+                int i = index(node.dataMap, bit);
+                return node.keys[i] == key ? (V) node.values[i] : null;
+            }
+            if ((node.nodeMap & bit) == 0) {
+                return null;
+            }
+            node = node.children[index(node.nodeMap, bit)];
+        }
+    }
+
+    boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @param value Value to bind (must not be null)
+     * @return A map with key bound to value
+     */
+    PersistentIntMap<V> plus(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(0, key, value, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentIntMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @return A map without key
+     */
+    PersistentIntMap<V> minus(int key) {
+        Node newRoot = root.remove(0, key);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentIntMap<>(newRoot != null ? newRoot : Node.EMPTY, size - 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Read-only view of the values; O(1) to create, never changes
+     */
+    Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Call an action with every key, in no particular order
+     */
+    void forEachKey(IntConsumer action) {
+        forEachKey(root, action);
+    }
+
+    private static void forEachKey(Node node, IntConsumer action) {
+        for (int key : node.keys) {
+            action.accept(key);
+        }
+        for (Node child : node.children) {
+            forEachKey(child, action);
+        }
+    }
+
+    /**
+     * Split the values into disjoint parts for scanning in parallel. Nodes
+     * are opened breadth first until there are enough parts: each part is
+     * either the inline entries of one node or a whole subtree. Keys are
+     * their own hash, so dense IDs give parts of similar size.
+     * 
+     * @param parts Number of parts wanted
+     * @return Parts that together hold every value once; fewer than asked
+     *         for if the map is small
+     */
+    List<Iterable<V>> split(int parts) {
+        List<Iterable<V>> result = new ArrayList<>();
+        ArrayDeque<Node> subtrees = new ArrayDeque<>();
+        subtrees.add(root);
+        while (!subtrees.isEmpty() && result.size() + subtrees.size() < parts) {
+            Node node = subtrees.poll();
+            if (node.values.length > 0) {
+                result.add(inline(node));
+            }
+            subtrees.addAll(Arrays.asList(node.children));
+        }
+        for (Node subtree : subtrees) {
+            result.add(() -> new ValueIterator<>(subtree));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Iterable<V> inline(Node node) {
+        return (Iterable<V>) Arrays.asList(node.values);
+    }
+
+    private static int bitpos(int key, int shift) {
+        return 1 << ((key >>> shift) & 0x1F);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static final class Node {
+        static final Node EMPTY = new Node(0, 0, new int[0], new Object[0], new Node[0]);
+
+        final int dataMap; // slots holding an inline entry
+        final int nodeMap; // slots holding a child node
+        final int[] keys;
+        final Object[] values;
+        final Node[] children;
+
+        Node(int dataMap, int nodeMap, int[] keys, Object[] values, Node[] children) {
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.keys = keys;
+            this.values = values;
+            this.children = children;
+        }
+
+        Node put(int shift, int key, Object value, boolean[] added) {
+            int bit = bitpos(key, shift);
+            if ((dataMap & bit) != 0) {
+                int i = index(dataMap, bit);
+                if (keys[i] == key) {
+                    if (values[i] == value) {
+                        return this;
+                    }
+                    Object[] newValues = values.clone();
+                    newValues[i] = value;
+                    return new Node(dataMap, nodeMap, keys, newValues, children);
+                }
+                // Slot taken by another key: push both one level down
+                added[0] = true;
+                Node child = pair(shift + 5, keys[i], values[i], key, value);
+                int newNodeMap = nodeMap | bit;
+                return new Node(dataMap ^ bit, newNodeMap, removeInt(keys, i), removeObject(values, i),
+                        insertNode(children, index(newNodeMap, bit), child));
+            }
+            if ((nodeMap & bit) != 0) {
+                int j = index(nodeMap, bit);
+                Node child = children[j].put(shift + 5, key, value, added);
+                if (child == children[j]) {
+                    return this;
+                }
+                Node[] newChildren = children.clone();
+                newChildren[j] = child;
+                return new Node(dataMap, nodeMap, keys, values, newChildren);
+            }
+            added[0] = true;
+            int i = index(dataMap, bit);
+            return new Node(dataMap | bit, nodeMap, insertInt(keys, i, key), insertObject(values, i, value),
+                    children);
+        }
+
+        /**
+         * @return This node if key is absent, the reduced node, or null if it became empty
+         */
+        Node remove(int shift, int key) {
+            int bit = bitpos(key, shift);
+            if ((dataMap & bit) != 0) {
+                int i = index(dataMap, bit);
+                if (keys[i] != key) {
+                    return this;
+                }
+                if (keys.length == 1 && nodeMap == 0) {
+                    return null;
+                }
+                return new Node(dataMap ^ bit, nodeMap, removeInt(keys, i), removeObject(values, i), children);
+            }
+            if ((nodeMap & bit) == 0) {
+                return this;
+            }
+            int j = index(nodeMap, bit);
+            Node child = children[j].remove(shift + 5, key);
+            if (child == children[j]) {
+                return this;
+            }
+            if (child == null) {
+                if (keys.length == 0 && children.length == 1) {
+                    return null;
+                }
+                return new Node(dataMap, nodeMap ^ bit, keys, values, removeNode(children, j));
+            }
+            if (child.nodeMap == 0 && child.keys.length == 1) {
+                // Pull a lone entry back up so the trie stays shallow
+                int i = index(dataMap, bit);
+                return new Node(dataMap | bit, nodeMap ^ bit, insertInt(keys, i, child.keys[0]),
+                        insertObject(values, i, child.values[0]), removeNode(children, j));
+            }
+            Node[] newChildren = children.clone();
+            newChildren[j] = child;
+            return new Node(dataMap, nodeMap, keys, values, newChildren);
+        }
+
+        /**
+         * Node holding two keys that share every slot above this level
+         */
+        private static Node pair(int shift, int key1, Object value1, int key2, Object value2) {
+            int bit1 = bitpos(key1, shift);
+            int bit2 = bitpos(key2, shift);
+            if (bit1 == bit2) {
+                return new Node(0, bit1, new int[0], new Object[0],
+                        new Node[] { pair(shift + 5, key1, value1, key2, value2) });
+            }
+            if (Integer.compareUnsigned(bit1, bit2) < 0) {
+                return new Node(bit1 | bit2, 0, new int[] { key1, key2 }, new Object[] { value1, value2 },
+                        new Node[0]);
+            }
+            return new Node(bit1 | bit2, 0, new int[] { key2, key1 }, new Object[] { value2, value1 }, new Node[0]);
+        }
+    }
+
+    private static int[] insertInt(int[] array, int index, int value) {
+        int[] copy = new int[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = value;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    private static int[] removeInt(int[] array, int index) {
+        int[] copy = new int[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, array.length - index - 1);
+        return copy;
+    }
+
+    private static Object[] insertObject(Object[] array, int index, Object value) {
+        Object[] copy = new Object[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = value;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    private static Object[] removeObject(Object[] array, int index) {
+        Object[] copy = new Object[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, array.length - index - 1);
+        return copy;
+    }
+
+    private static Node[] insertNode(Node[] array, int index, Node value) {
+        Node[] copy = new Node[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = value;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    private static Node[] removeNode(Node[] array, int index) {
+        Node[] copy = new Node[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, array.length - index - 1);
+        return copy;
+    }
+
+    /**
+     * Depth-first walk: a node's inline values, then its children.
+     * The trie is at most 7 levels deep, so fixed-size stacks suffice.
+     */
+    private static final class ValueIterator<V> implements Iterator<V> {
+        private final Node[] nodes = new Node[8];
+        private final int[] positions = new int[8];
+        private int depth;
+        private Object next;
+
+        ValueIterator(Node root) {
+            nodes[0] = root;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                int position = positions[depth]++;
+                if (position < node.values.length) {
+                    next = node.values[position];
+                    return;
+                }
+                int child = position - node.values.length;
+                if (child < node.children.length) {
+                    depth++;
+                    nodes[depth] = node.children[child];
+                    positions[depth] = 0;
+                } else {
+                    nodes[depth] = null;
+                    depth--;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            V value = (V) next;
+            advance();
+            return value;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Who was present and who was absent, per course and date.
+ * Each (date, course) pair maps to two compressed bitmaps of student IDs,
+ * so counts are O(1) and absentee lists and cross-course questions are
+ * bitmap operations instead of scans over attendance records.
+ *
+ * Keys sort by date first, so every course held on one date is a single
+ * contiguous range. Records without a date are not indexed.
+ *
+ * Mutators run under the lock of the course's partition, and a (date,
+ * course) entry belongs to one course, so each entry has a single writer;
+ * each write publishes new immutable bitmaps, so readers never lock.
+ */
+class PresenceIndex {
+
+    /**
+     * Present and absent students of one course on one date
+     */
+    static final class Day {
+        static final Day EMPTY = new Day(CompressedBitmap.EMPTY, CompressedBitmap.EMPTY);
+
+        final CompressedBitmap present;
+        final CompressedBitmap absent;
+
+        Day(CompressedBitmap present, CompressedBitmap absent) {
+            this.present = present;
+            this.absent = absent;
+        }
+
+        CompressedBitmap get(boolean present) {
+            return present ? this.present : absent;
+        }
+
+        Day with(boolean present, CompressedBitmap students) {
+            return present ? new Day(students, absent) : new Day(this.present, students);
+        }
+    }
+
+    private final ConcurrentSkipListMap<Long, Day> byDayAndCourse = new ConcurrentSkipListMap<>();
+
+    /**
+     * Mark the record's student present or absent
+     *
+     * @param record Attendance record
+     */
+    void add(AttendanceRecord record) {
+        if (record.getDate() == null) {
+            return;
+        }
+        long key = key(record.getDate().toEpochDay(), record.getCourseId());
+        Day day = byDayAndCourse.getOrDefault(key, Day.EMPTY);
+        byDayAndCourse.put(key, day.with(record.isPresent(), day.get(record.isPresent()).with(record.getStudentId())));
+    }
+
+    /**
+     * Unmark the record's student. The caller must check that no other
+     * record for the same student, course, date and status remains.
+     *
+     * @param record Attendance record as it was indexed
+     */
+    void remove(AttendanceRecord record) {
+        if (record.getDate() == null) {
+            return;
+        }
+        long key = key(record.getDate().toEpochDay(), record.getCourseId());
+        Day day = byDayAndCourse.get(key);
+        if (day == null) {
+            return;
+        }
+        day = day.with(record.isPresent(), day.get(record.isPresent()).without(record.getStudentId()));
+        if (day.present.isEmpty() && day.absent.isEmpty()) {
+            byDayAndCourse.remove(key);
+        } else {
+            byDayAndCourse.put(key, day);
+        }
+    }
+
+    /**
+     * Get the students of one course on one date
+     *
+     * @param courseId Course ID
+     * @param epochDay Date as epoch day
+     * @return Present and absent students (empty if nothing was recorded)
+     */
+    Day get(int courseId, long epochDay) {
+        return byDayAndCourse.getOrDefault(key(epochDay, courseId), Day.EMPTY);
+    }
+
+    /**
+     * Get students absent from every given course on one date
+     *
+     * @param epochDay  Date as epoch day
+     * @param courseIds Courses to intersect, or null for every course held
+     *                  that date (students absent from all of their classes)
+     * @return Student IDs
+     */
+    CompressedBitmap absentFromAll(long epochDay, int[] courseIds) {
+        if (courseIds != null) {
+            if (courseIds.length == 0) {
+                return CompressedBitmap.EMPTY;
+            }
+            CompressedBitmap result = get(courseIds[0], epochDay).absent;
+            for (int i = 1; i < courseIds.length && !result.isEmpty(); i++) {
+                result = result.and(get(courseIds[i], epochDay).absent);
+            }
+            return result;
+        }
+        CompressedBitmap absent = CompressedBitmap.EMPTY;
+        CompressedBitmap present = CompressedBitmap.EMPTY;
+        for (Day day : byDayAndCourse.subMap(key(epochDay, 0), true, key(epochDay, -1), true).values()) {
+            absent = absent.or(day.absent);
+            present = present.or(day.present);
+        }
+        return absent.andNot(present);
+    }
+
+    /**
+     * Drop every entry
+     */
+    void clear() {
+        byDayAndCourse.clear();
+    }
+
+    private static long key(long epochDay, int courseId) {
+        return (epochDay << 32) | (courseId & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,220 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.storage.StorageConfig.ReplicationRole;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Follower side of replication: keeps a connection to the leader (see
+ * ReplicationLeader) and hands the mutations it receives to the store in
+ * chunks, in the order the leader committed them.
+ *
+ * The leader's state is staged until END_BOOTSTRAP and then handed over as
+ * one chunk, so readers keep seeing the previous state until the new one
+ * replaces it whole, never an empty or half-loaded store.
+ *
+ * Every connection starts from the leader's full state, so a follower that
+ * was disconnected, restarted or dropped for falling behind simply
+ * reconnects; it retries every RETRY_MILLIS while the leader is down.
+ * The leader is presumed gone if nothing, not even a heartbeat, arrives
+ * for TIMEOUT_MILLIS.
+ */
+final class ReplicationFollower implements AutoCloseable {
+    private static final long RETRY_MILLIS = 1000;
+    private static final int TIMEOUT_MILLIS = (int) (5 * ReplicationLeader.HEARTBEAT_MILLIS);
+    // Mutations applied at once while frames keep arriving, once streaming
+    private static final int MAX_CHUNK = 1024;
+
+    private final InetSocketAddress leader;
+    private final Consumer<List<Mutation>> applier;
+    private final Thread thread;
+    private volatile Socket socket;
+    private volatile boolean closed;
+
+    private volatile String state = "connecting";
+    private volatile boolean connected;
+    // Last leader mutation applied, and the latest one received
+    private volatile long appliedSequence;
+    private volatile long leaderSequence;
+    // Leader time of the last mutation or heartbeat applied
+    private volatile long currentAsOfMillis;
+    // Set when a heartbeat confirmed that nothing is outstanding
+    private volatile boolean caughtUp;
+
+    /**
+     * Start following a leader
+     * 
+     * @param leaderAddress Leader's host:port
+     * @param applier       Applies a chunk of mutations to the store
+     */
+    ReplicationFollower(String leaderAddress, Consumer<List<Mutation>> applier) {
+        this.leader = parseAddress(leaderAddress);
+        this.applier = applier;
+        thread = new Thread(this::follow, "attendance-replication-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return Current replication state, as seen from this follower
+     */
+    ReplicationStatus status() {
+        boolean inStep = connected && caughtUp;
+        long lagMillis = inStep || currentAsOfMillis == 0 ? 0
+                : Math.max(0, System.currentTimeMillis() - currentAsOfMillis);
+        return new ReplicationStatus(ReplicationRole.FOLLOWER, state, connected, appliedSequence, leaderSequence,
+                lagMillis,
+                Collections.<ReplicationStatus.Follower>emptyList());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+        // Let a chunk being applied finish before the store closes its log
+        try {
+            thread.join(TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void follow() {
+        while (!closed) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                connection.connect(leader, TIMEOUT_MILLIS);
+                connection.setSoTimeout(TIMEOUT_MILLIS);
+                connection.setTcpNoDelay(true);
+                session(new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16)),
+                        new DataOutputStream(new BufferedOutputStream(connection.getOutputStream())));
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    String reason = e instanceof EOFException ? "closed by the leader" : e.getMessage();
+                    System.out.println("ReplicationFollower - Connection to leader " + leader + " lost: "
+                            + reason + "; retrying");
+                }
+            } finally {
+                connected = false;
+                caughtUp = false;
+                state = "connecting";
+            }
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Follow the leader over one connection until it breaks
+     */
+    private void session(DataInputStream in, DataOutputStream out) throws IOException {
+        out.writeInt(ReplicationLeader.MAGIC);
+        out.writeInt(ReplicationLeader.VERSION);
+        out.flush();
+        if (in.readInt() != ReplicationLeader.MAGIC || in.readInt() != ReplicationLeader.VERSION) {
+            throw new IOException("Not a replication leader");
+        }
+        connected = true;
+        state = "bootstrapping";
+        // Sequences restart with the leader, so nothing carries over from an earlier connection
+        appliedSequence = 0;
+        leaderSequence = 0;
+        System.out.println("ReplicationFollower - Connected to leader " + leader + ", loading its state");
+
+        // The leader's state, from its CLEAR on, until END_BOOTSTRAP
+        List<Mutation> bootstrap = new ArrayList<>();
+        List<Mutation> chunk = new ArrayList<>();
+        // Sequence and leader time of the last frame in the chunk
+        long chunkSequence = 0;
+        long chunkMillis = 0;
+        while (!closed) {
+            byte kind = in.readByte();
+            long sequence = in.readLong();
+            long millis = in.readLong();
+            switch (kind) {
+                case ReplicationLeader.BOOTSTRAP:
+                    if (bootstrap == null) {
+                        throw new IOException("Bootstrap frame after END_BOOTSTRAP");
+                    }
+                    bootstrap.add(Mutation.readFrom(in));
+                    break;
+                case ReplicationLeader.MUTATION:
+                    chunk.add(Mutation.readFrom(in));
+                    break;
+                case ReplicationLeader.END_BOOTSTRAP:
+                    chunk = bootstrap;
+                    bootstrap = null;
+                    System.out.println("ReplicationFollower - Received leader state at sequence " + sequence
+                            + ", " + chunk.size() + " mutations");
+                    break;
+                case ReplicationLeader.HEARTBEAT:
+                    break;
+                default:
+                    throw new IOException("Unknown replication frame " + kind);
+            }
+            // Bootstrap frames carry the sequence the state leads up to
+            if (kind != ReplicationLeader.BOOTSTRAP) {
+                chunkSequence = sequence;
+            }
+            chunkMillis = millis;
+            leaderSequence = sequence;
+            // Heartbeats are only sent once every queued mutation has been
+            boolean idle = kind == ReplicationLeader.HEARTBEAT;
+
+            // Staged, not applied
+            if (kind == ReplicationLeader.BOOTSTRAP) {
+                continue;
+            }
+            if (chunk.size() >= MAX_CHUNK || in.available() == 0 || kind == ReplicationLeader.END_BOOTSTRAP) {
+                if (!chunk.isEmpty()) {
+                    applier.accept(chunk);
+                    chunk = new ArrayList<>();
+                }
+                appliedSequence = chunkSequence;
+                if (kind == ReplicationLeader.END_BOOTSTRAP) {
+                    state = "streaming";
+                }
+                if ("streaming".equals(state)) {
+                    currentAsOfMillis = chunkMillis;
+                    caughtUp = idle;
+                    out.writeLong(chunkSequence);
+                    out.flush();
+                }
+            }
+        }
+    }
+
+    private static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Replication leader must be host:port, got " + address);
+        }
+        try {
+            return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Replication leader must be host:port, got " + address);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.storage.StorageConfig.ReplicationRole;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Leader side of replication: streams every committed mutation, in commit
+ * order, to followers connected over a loopback socket.
+ *
+ * A follower that connects first receives the leader's whole state as
+ * BOOTSTRAP frames (a CLEAR, then a put per entity), then END_BOOTSTRAP,
+ * then every mutation published since it was registered. The state is read
+ * while writes continue, so it may already contain some of those mutations;
+ * applying them again is harmless because mutations are idempotent (the
+ * same reasoning as DataStore.checkpoint). Without new mutations the leader
+ * sends a HEARTBEAT every HEARTBEAT_MILLIS, carrying the sequence the
+ * follower is up to date with. Followers answer every batch of frames with
+ * the last sequence they applied.
+ *
+ * Frames: [kind byte][sequence long][leader commit time long] followed, for
+ * BOOTSTRAP and MUTATION, by the mutation as written to the write-ahead log.
+ *
+ * Each follower has a bounded queue. One that falls MAX_QUEUED mutations
+ * behind is disconnected; it reconnects and bootstraps again.
+ */
+final class ReplicationLeader implements AutoCloseable {
+    static final int MAGIC = 0x4154524c; // "ATRL"
+    static final int VERSION = 2; // 2: strings as UTF-8 with an int length
+
+    static final byte BOOTSTRAP = 1;
+    static final byte END_BOOTSTRAP = 2;
+    static final byte MUTATION = 3;
+    static final byte HEARTBEAT = 4;
+
+    static final long HEARTBEAT_MILLIS = 1000;
+    private static final int MAX_QUEUED = 100_000;
+
+    /**
+     * A published mutation; serialized once, by the first follower to send it
+     */
+    private static final class Entry {
+        final long sequence;
+        final long committedMillis;
+        final Mutation mutation;
+        private byte[] bytes;
+
+        Entry(long sequence, long committedMillis, Mutation mutation) {
+            this.sequence = sequence;
+            this.committedMillis = committedMillis;
+            this.mutation = mutation;
+        }
+
+        synchronized byte[] bytes() throws IOException {
+            if (bytes == null) {
+                bytes = serialize(mutation);
+            }
+            return bytes;
+        }
+    }
+
+    private final ServerSocket server;
+    private final Consumer<Consumer<Mutation>> state;
+    private final List<Link> links = new CopyOnWriteArrayList<>();
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    // Guarded by this
+    private long sequence;
+
+    /**
+     * Start listening for followers
+     * 
+     * @param port  Loopback port to listen on
+     * @param state Passes every entity of the current state, as a put
+     *              mutation, to the consumer it is given
+     * @throws IOException if the port cannot be bound
+     */
+    ReplicationLeader(int port, Consumer<Consumer<Mutation>> state) throws IOException {
+        this.state = state;
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        acceptor = new Thread(this::accept, "attendance-replication-leader");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("ReplicationLeader - Listening for followers on " + server.getLocalSocketAddress());
+    }
+
+    /**
+     * Queue a committed mutation for every follower. Called by DataStore
+     * after applying it, under the locks that ordered it; never blocks.
+     * 
+     * @param mutation Committed mutation
+     */
+    synchronized void publish(Mutation mutation) {
+        Entry entry = new Entry(++sequence, System.currentTimeMillis(), mutation);
+        for (Link link : links) {
+            link.offer(entry);
+        }
+    }
+
+    /**
+     * @return Current replication state, with one entry per follower
+     */
+    ReplicationStatus status() {
+        long latest;
+        synchronized (this) {
+            latest = sequence;
+        }
+        List<ReplicationStatus.Follower> followers = new ArrayList<>();
+        for (Link link : links) {
+            followers.add(new ReplicationStatus.Follower(link.socket.getRemoteSocketAddress().toString(),
+                    link.streaming, link.sentSequence, link.appliedSequence));
+        }
+        return new ReplicationStatus(ReplicationRole.LEADER, null, true, latest, latest, 0, followers);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException e) {
+            System.out.println("ReplicationLeader - Error closing server socket: " + e.getMessage());
+        }
+        for (Link link : links) {
+            link.close();
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                Link link = new Link(socket);
+                // Registered under the publish lock: every later mutation reaches its queue
+                synchronized (this) {
+                    link.startSequence = sequence;
+                    links.add(link);
+                }
+                Thread thread = new Thread(link, "attendance-replication-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.out.println("ReplicationLeader - Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Connection to one follower, served by its own thread
+     */
+    private final class Link implements Runnable {
+        final Socket socket;
+        private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(MAX_QUEUED);
+        long startSequence;
+        volatile boolean streaming;
+        volatile boolean overflowed;
+        volatile long sentSequence;
+        volatile long appliedSequence;
+
+        Link(Socket socket) {
+            this.socket = socket;
+        }
+
+        void offer(Entry entry) {
+            if (!overflowed && !queue.offer(entry)) {
+                overflowed = true;
+                queue.clear();
+            }
+        }
+
+        @Override
+        public void run() {
+            String follower = String.valueOf(socket.getRemoteSocketAddress());
+            try {
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a replication follower");
+                }
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                System.out.println("ReplicationLeader - Follower " + follower + " connected, sending state");
+
+                sendState(out);
+                writeHeader(out, END_BOOTSTRAP, startSequence, System.currentTimeMillis());
+                out.flush();
+                sentSequence = startSequence;
+                streaming = true;
+
+                while (!closed && !overflowed) {
+                    Entry entry = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (entry == null) {
+                        // The follower has everything up to the last mutation sent to it
+                        writeHeader(out, HEARTBEAT, sentSequence, System.currentTimeMillis());
+                    }
+                    while (entry != null) {
+                        writeHeader(out, MUTATION, entry.sequence, entry.committedMillis);
+                        out.write(entry.bytes());
+                        sentSequence = entry.sequence;
+                        entry = queue.poll();
+                    }
+                    out.flush();
+                    readAcknowledgements(in);
+                }
+                if (overflowed) {
+                    System.out.println("ReplicationLeader - Follower " + follower + " fell more than "
+                            + MAX_QUEUED + " mutations behind; disconnecting it");
+                }
+            } catch (IOException | UncheckedIOException e) {
+                if (!closed) {
+                    System.out.println("ReplicationLeader - Follower " + follower + " disconnected: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void sendState(DataOutputStream out) throws IOException {
+            long now = System.currentTimeMillis();
+            writeHeader(out, BOOTSTRAP, startSequence, now);
+            out.write(serialize(Mutation.clear()));
+            try {
+                state.accept(mutation -> {
+                    try {
+                        writeHeader(out, BOOTSTRAP, startSequence, now);
+                        out.write(serialize(mutation));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Take the applied sequences the follower has sent, without blocking
+         */
+        private void readAcknowledgements(DataInputStream in) throws IOException {
+            while (in.available() >= Long.BYTES) {
+                appliedSequence = in.readLong();
+            }
+        }
+
+        void close() {
+            links.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, byte kind, long sequence, long millis) throws IOException {
+        out.writeByte(kind);
+        out.writeLong(sequence);
+        out.writeLong(millis);
+    }
+
+    private static byte[] serialize(Mutation mutation) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        mutation.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+}
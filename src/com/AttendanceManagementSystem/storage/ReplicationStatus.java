@@ -0,0 +1,146 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.storage.StorageConfig.ReplicationRole;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Point-in-time view of an instance's replication state.
+ *
+ * Sequence numbers count the leader's mutations since the leader started.
+ * A follower's lag is how many of them it has not applied yet, and how old
+ * (by the leader's clock, which on one box is the follower's too) the last
+ * one it applied was when it is behind.
+ */
+public final class ReplicationStatus {
+
+    /**
+     * How far one connected follower has got, as seen by the leader
+     */
+    public static final class Follower {
+        private final String address;
+        private final boolean streaming;
+        private final long sentSequence;
+        private final long appliedSequence;
+
+        Follower(String address, boolean streaming, long sentSequence, long appliedSequence) {
+            this.address = address;
+            this.streaming = streaming;
+            this.sentSequence = sentSequence;
+            this.appliedSequence = appliedSequence;
+        }
+
+        /**
+         * @return Follower's socket address
+         */
+        public String getAddress() {
+            return address;
+        }
+
+        /**
+         * @return false while the follower is still receiving the leader's state
+         */
+        public boolean isStreaming() {
+            return streaming;
+        }
+
+        /**
+         * @return Last mutation written to the follower
+         */
+        public long getSentSequence() {
+            return sentSequence;
+        }
+
+        /**
+         * @return Last mutation the follower reported as applied
+         */
+        public long getAppliedSequence() {
+            return appliedSequence;
+        }
+    }
+
+    private static final ReplicationStatus STANDALONE = new ReplicationStatus(ReplicationRole.STANDALONE,
+            null, false, 0, 0, 0, Collections.<Follower>emptyList());
+
+    private final ReplicationRole role;
+    private final String state;
+    private final boolean connected;
+    private final long appliedSequence;
+    private final long leaderSequence;
+    private final long lagMillis;
+    private final List<Follower> followers;
+
+    ReplicationStatus(ReplicationRole role, String state, boolean connected, long appliedSequence,
+            long leaderSequence, long lagMillis, List<Follower> followers) {
+        this.role = role;
+        this.state = state;
+        this.connected = connected;
+        this.appliedSequence = appliedSequence;
+        this.leaderSequence = leaderSequence;
+        this.lagMillis = lagMillis;
+        this.followers = followers;
+    }
+
+    /**
+     * @return Status of an instance that does not replicate
+     */
+    static ReplicationStatus standalone() {
+        return STANDALONE;
+    }
+
+    public ReplicationRole getRole() {
+        return role;
+    }
+
+    /**
+     * @return For a follower: "connecting", "bootstrapping" or "streaming";
+     *         null otherwise
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * @return For a follower: whether it is connected to the leader
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return Last leader mutation applied here (on the leader, its latest)
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * @return Latest leader mutation known here
+     */
+    public long getLeaderSequence() {
+        return leaderSequence;
+    }
+
+    /**
+     * @return Leader mutations not applied here yet
+     */
+    public long getLagMutations() {
+        return leaderSequence - appliedSequence;
+    }
+
+    /**
+     * @return How long ago the leader committed the last mutation applied
+     *         here, or 0 when a heartbeat has confirmed nothing is missing
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * @return For a leader: its connected followers
+     */
+    public List<Follower> getFollowers() {
+        return followers;
+    }
+}
@@ -0,0 +1,16 @@
+package com.AttendanceManagementSystem.storage;
+
+/**
+ * What an attendance report can be grouped by or filtered on.
+ * Values are IDs for STUDENT and COURSE, the instructor's name, and for
+ * periods labels such as 2025-W07 (ISO week), 2025-03 (month) and
+ * 2024-T2 (second term starting in 2024, see StorageConfig).
+ */
+public enum ReportDimension {
+    STUDENT,
+    COURSE,
+    INSTRUCTOR, // the course's current instructor
+    WEEK,
+    MONTH,
+    TERM
+}
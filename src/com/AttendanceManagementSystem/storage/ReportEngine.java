@@ -0,0 +1,112 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs analytical reports over every attendance row in parallel: the rows
+ * are split into parts (see AttendanceTable.split), each part is
+ * aggregated into its own partial result on a fork/join pool, and the
+ * partial results are merged pairwise as the parts finish.
+ *
+ * The pool is bounded by attendance.reports.parallelism, so however many
+ * reports run at once they never take more threads than that from the
+ * ones serving requests. A report blocks its calling thread until done.
+ */
+final class ReportEngine implements AutoCloseable {
+
+    /**
+     * How rows are folded into partial results and how partials combine
+     *
+     * @param <A> Partial result, used by one thread at a time
+     */
+    interface Aggregation<A> {
+        A create();
+
+        /**
+         * @return Visitor adding each row it is given to the partial result
+         */
+        AttendanceTable.RowVisitor into(A partial);
+
+        /**
+         * @return left and right combined; may reuse either
+         */
+        A merge(A left, A right);
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param parallelism Threads reports run on
+     */
+    ReportEngine(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Report parallelism must be positive, got " + parallelism);
+        }
+        pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("attendance-report-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Aggregate every row of the given parts
+     *
+     * @param scans       Disjoint parts of the rows
+     * @param aggregation How rows and partial results are combined
+     * @return The merged result; aggregation.create() if there are no parts
+     */
+    <A> A aggregate(List<AttendanceTable.RowScan> scans, Aggregation<A> aggregation) {
+        if (scans.isEmpty()) {
+            return aggregation.create();
+        }
+        return pool.invoke(new ScanTask<>(scans, 0, scans.size(), aggregation));
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Aggregates parts [from, to): one part directly, more by forking the
+     * left half and merging it with the right
+     */
+    private static final class ScanTask<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<AttendanceTable.RowScan> scans;
+        private final int from;
+        private final int to;
+        private final Aggregation<A> aggregation;
+
+        ScanTask(List<AttendanceTable.RowScan> scans, int from, int to, Aggregation<A> aggregation) {
+            this.scans = scans;
+            this.from = from;
+            this.to = to;
+            this.aggregation = aggregation;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from == 1) {
+                A partial = aggregation.create();
+                scans.get(from).forEach(aggregation.into(partial));
+                return partial;
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask<A> left = new ScanTask<>(scans, from, middle, aggregation);
+            left.fork();
+            A right = new ScanTask<>(scans, middle, to, aggregation).compute();
+            return aggregation.merge(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One group of an attendance report: its value for each grouping
+ * dimension, in the order they were asked for, and its counts.
+ */
+public final class ReportRow {
+    private final List<String> keys;
+    private final AttendanceStats stats;
+
+    ReportRow(List<String> keys, AttendanceStats stats) {
+        this.keys = Collections.unmodifiableList(keys);
+        this.stats = stats;
+    }
+
+    /**
+     * @return Value of each grouping dimension (see ReportDimension)
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return Present and total counts of the group
+     */
+    public AttendanceStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportRow{" +
+                "keys=" + keys +
+                ", stats=" + stats +
+                '}';
+    }
+}
@@ -0,0 +1,400 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.Course;
+import com.AttendanceManagementSystem.model.Student;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Binary checkpoint of the DataStore: the three ID counters plus one
+ * section per table and one naming the archive segments it relies on,
+ * written to snapshot-&lt;generation&gt;.snap.
+ * The generation is the first write-ahead log segment NOT covered by the
+ * snapshot, so startup loads the snapshot and replays only from there.
+ *
+ * Layout (big-endian):
+ *   magic, version, generation, 3 counters,
+ *   4 x (section offset, section length, entry count),
+ *   students section  - Mutation-encoded PUT_STUDENT entries
+ *   courses section   - Mutation-encoded PUT_COURSE entries
+ *   attendance section - fixed 25 byte rows (id, studentId, courseId, epochDay, present, version)
+ *   archive section   - per segment: file name, dead record count, dead record IDs
+ *
+ * Version 1 and 2 files have no archive section (and a 3 section header).
+ * Version 1 files, written before entities had versions, have 21 byte
+ * attendance rows without the version; they still load, as version 1.
+ *
+ * Loading maps the file read-only and decodes the table sections in parallel.
+ */
+final class SnapshotFile {
+    private static final int MAGIC = 0x41545353; // "ATSS"
+    private static final int VERSION = 3;
+    private static final int SECTIONS = 4;
+    private static final int TABLE_SECTIONS = 3;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 3 * 4 + SECTIONS * (8 + 8 + 4);
+    private static final int ATTENDANCE_ROW_BYTES = 4 + 4 + 4 + 8 + 1 + 4;
+    private static final int UNVERSIONED_ATTENDANCE_ROW_BYTES = 4 + 4 + 4 + 8 + 1;
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    /**
+     * What a snapshot held, plus how long each part took to load
+     */
+    static final class Loaded {
+        final long generation;
+        final int studentIdCounter;
+        final int courseIdCounter;
+        final int attendanceIdCounter;
+        // Archive segment file name -> IDs of its dead records
+        final Map<String, int[]> archivedSegments = new LinkedHashMap<>();
+        final Map<String, Long> sectionMillis = new LinkedHashMap<>();
+
+        private Loaded(long generation, int studentIdCounter, int courseIdCounter, int attendanceIdCounter) {
+            this.generation = generation;
+            this.studentIdCounter = studentIdCounter;
+            this.courseIdCounter = courseIdCounter;
+            this.attendanceIdCounter = attendanceIdCounter;
+        }
+    }
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Write a snapshot atomically (temp file, fsync, rename)
+     * 
+     * @param directory   Snapshot directory
+     * @param generation  First log generation not covered by this snapshot
+     * @param counters    Next student, course and attendance IDs
+     * @param students    Students to store
+     * @param courses     Courses to store
+     * @param attendance  Attendance table to store
+     * @param archivedSegments Archive segment file name -> IDs of its dead records
+     * @return The written file
+     * @throws IOException if writing fails
+     */
+    static File write(File directory, long generation, int[] counters, Collection<Student> students,
+            Collection<Course> courses, AttendanceTable attendance, Map<String, int[]> archivedSegments)
+            throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create snapshot directory: " + directory);
+        }
+        File target = fileFor(directory, generation);
+        File temp = new File(directory, target.getName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_BYTES);
+            CountingOutputStream counting = new CountingOutputStream(Channels.newOutputStream(channel));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(counting, 1 << 16));
+            long[] offsets = new long[SECTIONS];
+            long[] lengths = new long[SECTIONS];
+            int[] counts = new int[SECTIONS];
+
+            offsets[0] = HEADER_BYTES;
+            for (Student student : students) {
+                Mutation.putStudent(student).writeTo(out);
+                counts[0]++;
+            }
+            out.flush();
+            lengths[0] = counting.count;
+
+            offsets[1] = HEADER_BYTES + counting.count;
+            for (Course course : courses) {
+                Mutation.putCourse(course).writeTo(out);
+                counts[1]++;
+            }
+            out.flush();
+            lengths[1] = HEADER_BYTES + counting.count - offsets[1];
+
+            offsets[2] = HEADER_BYTES + counting.count;
+            IOException[] failure = new IOException[1];
+            attendance.forEach((id, studentId, courseId, epochDay, present, version) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    out.writeInt(id);
+                    out.writeInt(studentId);
+                    out.writeInt(courseId);
+                    out.writeLong(epochDay);
+                    out.writeBoolean(present);
+                    out.writeInt(version);
+                    counts[2]++;
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.flush();
+            lengths[2] = HEADER_BYTES + counting.count - offsets[2];
+
+            offsets[3] = HEADER_BYTES + counting.count;
+            for (Map.Entry<String, int[]> segment : archivedSegments.entrySet()) {
+                out.writeUTF(segment.getKey());
+                out.writeInt(segment.getValue().length);
+                for (int id : segment.getValue()) {
+                    out.writeInt(id);
+                }
+                counts[3]++;
+            }
+            out.flush();
+            lengths[3] = HEADER_BYTES + counting.count - offsets[3];
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(generation);
+            header.putInt(counters[0]).putInt(counters[1]).putInt(counters[2]);
+            for (int i = 0; i < SECTIONS; i++) {
+                header.putLong(offsets[i]).putLong(lengths[i]).putInt(counts[i]);
+            }
+            header.flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+            channel.force(true);
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    /**
+     * Find the newest snapshot in a directory
+     * 
+     * @param directory Snapshot directory
+     * @return Newest snapshot file, or null if there is none
+     */
+    static File findLatest(File directory) {
+        File latest = null;
+        long latestGeneration = -1;
+        for (File file : list(directory)) {
+            long generation = generationOf(file);
+            if (generation > latestGeneration) {
+                latest = file;
+                latestGeneration = generation;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Delete every snapshot older than the given one
+     * 
+     * @param directory Snapshot directory
+     * @param keep      Snapshot to keep
+     */
+    static void deleteOlderThan(File directory, File keep) {
+        long keepGeneration = generationOf(keep);
+        for (File file : list(directory)) {
+            if (generationOf(file) < keepGeneration && !file.delete()) {
+                System.out.println("SnapshotFile - Could not delete old snapshot " + file);
+            }
+        }
+    }
+
+    /**
+     * Load a snapshot, decoding the three table sections in parallel.
+     * Each callback is only ever called from one thread. The archive
+     * section is returned in Loaded.archivedSegments.
+     * 
+     * @param file       Snapshot file
+     * @param students   Receives every student
+     * @param courses    Receives every course
+     * @param attendance Receives every attendance row
+     * @return Counters, generation and per-section timings
+     * @throws IOException if the file is unreadable or not a snapshot
+     */
+    static Loaded load(File file, Consumer<Student> students, Consumer<Course> courses,
+            AttendanceTable.RowVisitor attendance) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int version = mapped.capacity() >= 8 ? mapped.getInt(4) : -1;
+        int sectionCount = version == VERSION ? SECTIONS : TABLE_SECTIONS;
+        if (mapped.capacity() < 28 + sectionCount * 20 || mapped.getInt(0) != MAGIC || version < 1 || version > VERSION) {
+            throw new IOException("Not a snapshot file: " + file);
+        }
+        boolean versioned = version >= 2;
+        int rowBytes = versioned ? ATTENDANCE_ROW_BYTES : UNVERSIONED_ATTENDANCE_ROW_BYTES;
+        Loaded loaded = new Loaded(mapped.getLong(8), mapped.getInt(16), mapped.getInt(20), mapped.getInt(24));
+        ByteBuffer[] sections = new ByteBuffer[sectionCount];
+        int[] counts = new int[sectionCount];
+        for (int i = 0; i < sectionCount; i++) {
+            int base = 28 + i * 20;
+            ByteBuffer section = mapped.duplicate();
+            section.position((int) mapped.getLong(base));
+            section.limit((int) (mapped.getLong(base) + mapped.getLong(base + 8)));
+            sections[i] = section.slice();
+            counts[i] = mapped.getInt(base + 16);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(TABLE_SECTIONS, runnable -> {
+            Thread thread = new Thread(runnable, "attendance-snapshot-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Long>> timings = new ArrayList<>();
+            timings.add(pool.submit(() -> timed(() -> {
+                DataInputStream in = new DataInputStream(new ByteBufferInputStream(sections[0]));
+                for (int i = 0; i < counts[0]; i++) {
+                    students.accept(Mutation.readFrom(in).student);
+                }
+            })));
+            timings.add(pool.submit(() -> timed(() -> {
+                DataInputStream in = new DataInputStream(new ByteBufferInputStream(sections[1]));
+                for (int i = 0; i < counts[1]; i++) {
+                    courses.accept(Mutation.readFrom(in).course);
+                }
+            })));
+            timings.add(pool.submit(() -> timed(() -> {
+                ByteBuffer rows = sections[2];
+                for (int i = 0, base = 0; i < counts[2]; i++, base += rowBytes) {
+                    attendance.visit(rows.getInt(base), rows.getInt(base + 4), rows.getInt(base + 8),
+                            rows.getLong(base + 12), rows.get(base + 20) != 0,
+                            versioned ? rows.getInt(base + 21) : 1);
+                }
+            })));
+            loaded.sectionMillis.put("students", timings.get(0).get());
+            loaded.sectionMillis.put("courses", timings.get(1).get());
+            loaded.sectionMillis.put("attendance", timings.get(2).get());
+            if (sectionCount > TABLE_SECTIONS) {
+                DataInputStream in = new DataInputStream(new ByteBufferInputStream(sections[3]));
+                for (int i = 0; i < counts[3]; i++) {
+                    String name = in.readUTF();
+                    int[] dead = new int[in.readInt()];
+                    for (int j = 0; j < dead.length; j++) {
+                        dead[j] = in.readInt();
+                    }
+                    loaded.archivedSegments.put(name, dead);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading snapshot " + file, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot load snapshot " + file, e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return loaded;
+    }
+
+    private interface IOTask {
+        void run() throws IOException;
+    }
+
+    private static long timed(IOTask task) throws IOException {
+        long start = System.nanoTime();
+        task.run();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static File fileFor(File directory, long generation) {
+        return new File(directory, String.format("%s%016d%s", PREFIX, generation, SUFFIX));
+    }
+
+    private static long generationOf(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static List<File> list(File directory) {
+        List<File> files = new ArrayList<>();
+        File[] candidates = directory.listFiles();
+        if (candidates != null) {
+            for (File file : candidates) {
+                if (file.getName().startsWith(PREFIX) && file.getName().endsWith(SUFFIX) && generationOf(file) >= 0) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * OutputStream wrapper that counts bytes written through it
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * InputStream over a (mapped) ByteBuffer, so DataInputStream can decode it without copying
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
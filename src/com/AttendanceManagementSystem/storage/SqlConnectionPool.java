@@ -0,0 +1,200 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-size JDBC connection pool.
+ * Connections are opened up front and handed out one request at a time;
+ * each keeps its own cache of prepared statements, so a statement is
+ * parsed and planned once per connection instead of once per call.
+ */
+class SqlConnectionPool implements AutoCloseable {
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final BlockingQueue<PooledConnection> idle;
+    private final List<PooledConnection> all = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Open the pool's connections
+     * 
+     * @param url      JDBC URL
+     * @param user     Database user
+     * @param password Database password
+     * @param size     Number of connections
+     * @throws SQLException if a connection cannot be opened
+     */
+    SqlConnectionPool(String url, String user, String password, int size) throws SQLException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + size);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.idle = new ArrayBlockingQueue<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                PooledConnection connection = open();
+                all.add(connection);
+                idle.add(connection);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Take a connection, waiting if all are in use.
+     * Close the returned connection to hand it back.
+     * 
+     * @return Connection in auto-commit mode
+     * @throws SQLException if none frees up in time or the pool is closed
+     */
+    PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            PooledConnection connection = idle.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (connection == null) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+            return connection;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", e);
+        }
+    }
+
+    /**
+     * Close every connection. Connections still borrowed are closed too.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (PooledConnection connection : all) {
+            connection.closeQuietly();
+        }
+        all.clear();
+        idle.clear();
+    }
+
+    private PooledConnection open() throws SQLException {
+        return new PooledConnection(DriverManager.getConnection(url, user, password));
+    }
+
+    /**
+     * Put a connection back, resetting any open transaction.
+     * A connection that failed is replaced by a fresh one.
+     */
+    private synchronized void release(PooledConnection connection) {
+        if (closed) {
+            connection.closeQuietly();
+            return;
+        }
+        PooledConnection usable = connection;
+        try {
+            if (connection.connection.isClosed()) {
+                throw new SQLException("Connection was closed");
+            }
+            if (!connection.connection.getAutoCommit()) {
+                connection.connection.rollback();
+                connection.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.out.println("SqlConnectionPool - Replacing broken connection: " + e.getMessage());
+            connection.closeQuietly();
+            all.remove(connection);
+            try {
+                usable = open();
+                all.add(usable);
+            } catch (SQLException reopen) {
+                // Shrink the pool rather than hand out a dead connection
+                System.out.println("SqlConnectionPool - Cannot reopen connection: " + reopen.getMessage());
+                return;
+            }
+        }
+        idle.add(usable);
+    }
+
+    /**
+     * Borrowed connection with a per-connection prepared statement cache
+     */
+    final class PooledConnection implements AutoCloseable {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Get the cached statement for sql, preparing it on first use.
+         * Parameters from the previous use are cleared.
+         * 
+         * @param sql SQL text
+         * @return Prepared statement owned by this connection (do not close it)
+         * @throws SQLException if the statement cannot be prepared
+         */
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        /**
+         * Start a transaction; close() rolls it back unless commit() was called
+         */
+        void begin() throws SQLException {
+            connection.setAutoCommit(false);
+        }
+
+        /**
+         * Commit the current transaction and return to auto-commit mode
+         */
+        void commit() throws SQLException {
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
+
+        Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Return the connection to the pool
+         */
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        private void closeQuietly() {
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.out.println("SqlConnectionPool - Error closing connection: " + e.getMessage());
+            }
+        }
+    }
+}
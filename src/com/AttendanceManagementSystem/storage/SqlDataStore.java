@@ -0,0 +1,1407 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+import com.AttendanceManagementSystem.model.Course;
+import com.AttendanceManagementSystem.model.Student;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Storage backend on an embedded, file-based SQL database (H2 by default,
+ * see StorageFactory). The H2 driver is bundled in WEB-INF/lib; nothing
+ * runs outside the Tomcat process.
+ *
+ * Connections come from a small pool, each with its own prepared statement
+ * cache, and addAttendanceRecords() sends JDBC batches. IDs are handed out
+ * from counters seeded with MAX(id) at startup, so batched inserts need no
+ * generated-key round trips; this assumes one application owns the file.
+ *
+ * Each write is published on the change feed once its transaction has
+ * committed. Transactions on different connections can publish in another
+ * order than they committed in; the versions in put events tell which
+ * write is newer.
+ */
+public class SqlDataStore implements StorageBackend {
+    private static final int BATCH_SIZE = 500;
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS students (id INT PRIMARY KEY, full_name VARCHAR(255), email VARCHAR(255))",
+            "CREATE TABLE IF NOT EXISTS student_courses (student_id INT NOT NULL, course_order INT NOT NULL,"
+                    + " course_id INT NOT NULL, PRIMARY KEY (student_id, course_order))",
+            // Normalised email; later students sharing a legacy duplicate keep NULL
+            "ALTER TABLE students ADD COLUMN IF NOT EXISTS email_key VARCHAR(255)",
+            "UPDATE students s SET email_key = LOWER(TRIM(email)) WHERE email_key IS NULL AND TRIM(email) <> ''"
+                    + " AND NOT EXISTS (SELECT 1 FROM students o WHERE LOWER(TRIM(o.email)) = LOWER(TRIM(s.email))"
+                    + " AND o.id < s.id)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS students_email ON students (email_key)",
+            "CREATE TABLE IF NOT EXISTS courses (id INT PRIMARY KEY, name VARCHAR(255), instructor VARCHAR(255))",
+            "CREATE TABLE IF NOT EXISTS attendance (id INT PRIMARY KEY, student_id INT NOT NULL,"
+                    + " course_id INT NOT NULL, attendance_date DATE, present BOOLEAN NOT NULL)",
+            // Optimistic concurrency; rows written before versions existed start at 1
+            "ALTER TABLE students ADD COLUMN IF NOT EXISTS version INT DEFAULT 1 NOT NULL",
+            "ALTER TABLE courses ADD COLUMN IF NOT EXISTS version INT DEFAULT 1 NOT NULL",
+            "ALTER TABLE attendance ADD COLUMN IF NOT EXISTS version INT DEFAULT 1 NOT NULL",
+            "CREATE INDEX IF NOT EXISTS student_courses_course ON student_courses (course_id)",
+            "CREATE INDEX IF NOT EXISTS attendance_student ON attendance (student_id)",
+            "CREATE INDEX IF NOT EXISTS attendance_course ON attendance (course_id)",
+            "CREATE INDEX IF NOT EXISTS attendance_date ON attendance (attendance_date)",
+            // Drop duplicates written before the constraint existed, keeping the oldest
+            "DELETE FROM attendance a WHERE EXISTS (SELECT 1 FROM attendance b WHERE b.student_id = a.student_id"
+                    + " AND b.course_id = a.course_id AND b.attendance_date = a.attendance_date AND b.id < a.id)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS attendance_key ON attendance (student_id, course_id, attendance_date)"
+    };
+
+    private static final String STUDENT_COLUMNS = "SELECT id, full_name, email, version FROM students";
+    private static final String COURSE_COLUMNS = "SELECT id, name, instructor, version FROM courses";
+    private static final String ATTENDANCE_COLUMNS =
+            "SELECT id, student_id, course_id, attendance_date, present, version FROM attendance";
+    private static final String INSERT_ATTENDANCE = "INSERT INTO attendance"
+            + " (id, student_id, course_id, attendance_date, present, version) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String DUPLICATE_KEY_STATE = "23505";
+
+    private final SqlConnectionPool pool;
+    private final String startupReport;
+    private final ChangeFeed changeFeed = new ChangeFeed();
+
+    // Thread-safe ID generators
+    private final AtomicInteger studentIdCounter;
+    private final AtomicInteger courseIdCounter;
+    private final AtomicInteger attendanceIdCounter;
+
+    /**
+     * Open the database, creating the schema (and sample data) on first use
+     *
+     * @param url      JDBC URL
+     * @param user     Database user
+     * @param password Database password
+     * @param poolSize Number of pooled connections
+     */
+    public SqlDataStore(String url, String user, String password, int poolSize) {
+        long start = System.nanoTime();
+        loadDriver(url);
+        try {
+            pool = new SqlConnectionPool(url, user, password, poolSize);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot connect to " + url + ": " + e.getMessage(), e);
+        }
+        long connectMillis = elapsedMillis(start);
+
+        long phaseStart = System.nanoTime();
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow();
+                Statement statement = connection.getConnection().createStatement()) {
+            for (String ddl : SCHEMA) {
+                statement.execute(ddl);
+            }
+        } catch (SQLException e) {
+            pool.close();
+            throw new IllegalStateException("Cannot create schema: " + e.getMessage(), e);
+        }
+        studentIdCounter = new AtomicInteger(nextId("students"));
+        courseIdCounter = new AtomicInteger(nextId("courses"));
+        attendanceIdCounter = new AtomicInteger(nextId("attendance"));
+        long schemaMillis = elapsedMillis(phaseStart);
+
+        // Initialize with some mock data on first start only
+        if (studentIdCounter.get() == 1 && courseIdCounter.get() == 1 && attendanceIdCounter.get() == 1) {
+            DataStore.initializeSampleData(this);
+        }
+        startupReport = "SqlDataStore startup: connect " + connectMillis + " ms, schema " + schemaMillis
+                + " ms, total " + elapsedMillis(start) + " ms";
+    }
+
+    @Override
+    public Collection<Student> getAllStudents() {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            Map<Integer, List<Integer>> registrations = new HashMap<>();
+            try (ResultSet rows = connection.prepare(
+                    "SELECT student_id, course_id FROM student_courses ORDER BY student_id, course_order").executeQuery()) {
+                while (rows.next()) {
+                    registrations.computeIfAbsent(rows.getInt(1), id -> new ArrayList<>()).add(rows.getInt(2));
+                }
+            }
+            List<Student> result = new ArrayList<>();
+            try (ResultSet rows = connection.prepare(STUDENT_COLUMNS).executeQuery()) {
+                while (rows.next()) {
+                    int id = rows.getInt(1);
+                    Student student = new Student(id, rows.getString(2), rows.getString(3), registrations.get(id));
+                    student.setVersion(rows.getInt(4));
+                    result.add(student);
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            throw failure("read students", e);
+        }
+    }
+
+    @Override
+    public Student getStudentById(int id) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            return readStudent(connection, id);
+        } catch (SQLException e) {
+            throw failure("read student " + id, e);
+        }
+    }
+
+    @Override
+    public Student getStudentByEmail(String email) {
+        String key = Student.normalizeEmail(email);
+        if (key == null) {
+            return null;
+        }
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare("SELECT id FROM students WHERE email_key = ?");
+            select.setString(1, key);
+            try (ResultSet rows = select.executeQuery()) {
+                return rows.next() ? readStudent(connection, rows.getInt(1)) : null;
+            }
+        } catch (SQLException e) {
+            throw failure("read student by email", e);
+        }
+    }
+
+    /**
+     * LIKE scan over the names; the memory backend's trigram index has no
+     * portable SQL equivalent
+     */
+    @Override
+    public List<Student> searchStudents(String query, int limit) {
+        String[] patterns = likePatterns(query);
+        List<Student> result = new ArrayList<>();
+        if (patterns == null || limit <= 0) {
+            return result;
+        }
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare("SELECT id FROM students"
+                    + " WHERE LOWER(full_name) LIKE ? ESCAPE '\\' OR LOWER(full_name) LIKE ? ESCAPE '\\'"
+                    + " ORDER BY id LIMIT ?");
+            select.setString(1, patterns[0]);
+            select.setString(2, patterns[1]);
+            select.setInt(3, limit);
+            List<Integer> ids = new ArrayList<>();
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    ids.add(rows.getInt(1));
+                }
+            }
+            for (int id : ids) {
+                Student student = readStudent(connection, id);
+                if (student != null) {
+                    result.add(student);
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            throw failure("search students", e);
+        }
+    }
+
+    @Override
+    public Student addStudent(Student student) {
+        student.setId(studentIdCounter.getAndIncrement());
+        student.setVersion(1);
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            insertStudent(connection, student);
+            connection.commit();
+            changeFeed.publish(ChangeEvent.put(student));
+            return student;
+        } catch (SQLException e) {
+            if (DUPLICATE_KEY_STATE.equals(e.getSQLState())) {
+                throw emailTaken(student);
+            }
+            throw failure("add student", e);
+        }
+    }
+
+    /**
+     * The version check is part of the UPDATE's WHERE clause, so the row is
+     * compared and written in one statement
+     */
+    @Override
+    public Student updateStudent(Student student, int expectedVersion) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            if (!updateStudentRow(connection, student, expectedVersion)) {
+                return null;
+            }
+            connection.commit();
+            changeFeed.publish(ChangeEvent.put(student));
+            return student;
+        } catch (SQLException e) {
+            if (DUPLICATE_KEY_STATE.equals(e.getSQLState())) {
+                throw emailTaken(student);
+            }
+            throw failure("update student " + student.getId(), e);
+        }
+    }
+
+    @Override
+    public boolean deleteStudent(int id) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            boolean deleted = deleteStudentRows(connection, id);
+            connection.commit();
+            if (deleted) {
+                changeFeed.publish(ChangeEvent.delete(ChangeEvent.Entity.STUDENT, id));
+            }
+            return deleted;
+        } catch (SQLException e) {
+            throw failure("delete student " + id, e);
+        }
+    }
+
+    @Override
+    public Collection<Course> getAllCourses() {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow();
+                ResultSet rows = connection.prepare(COURSE_COLUMNS).executeQuery()) {
+            List<Course> result = new ArrayList<>();
+            while (rows.next()) {
+                result.add(readCourse(rows));
+            }
+            return result;
+        } catch (SQLException e) {
+            throw failure("read courses", e);
+        }
+    }
+
+    @Override
+    public Course getCourseById(int id) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare(COURSE_COLUMNS + " WHERE id = ?");
+            select.setInt(1, id);
+            try (ResultSet rows = select.executeQuery()) {
+                return rows.next() ? readCourse(rows) : null;
+            }
+        } catch (SQLException e) {
+            throw failure("read course " + id, e);
+        }
+    }
+
+    @Override
+    public List<Course> searchCourses(String query, int limit) {
+        String[] patterns = likePatterns(query);
+        List<Course> result = new ArrayList<>();
+        if (patterns == null || limit <= 0) {
+            return result;
+        }
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare(COURSE_COLUMNS
+                    + " WHERE LOWER(name) LIKE ? ESCAPE '\\' OR LOWER(name) LIKE ? ESCAPE '\\'"
+                    + " OR LOWER(instructor) LIKE ? ESCAPE '\\' OR LOWER(instructor) LIKE ? ESCAPE '\\'"
+                    + " ORDER BY id LIMIT ?");
+            select.setString(1, patterns[0]);
+            select.setString(2, patterns[1]);
+            select.setString(3, patterns[0]);
+            select.setString(4, patterns[1]);
+            select.setInt(5, limit);
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    result.add(readCourse(rows));
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            throw failure("search courses", e);
+        }
+    }
+
+    @Override
+    public Course addCourse(Course course) {
+        course.setId(courseIdCounter.getAndIncrement());
+        course.setVersion(1);
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            insertCourse(connection, course);
+            changeFeed.publish(ChangeEvent.put(course));
+            return course;
+        } catch (SQLException e) {
+            throw failure("add course", e);
+        }
+    }
+
+    @Override
+    public Course updateCourse(Course course, int expectedVersion) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            if (!updateCourseRow(connection, course, expectedVersion)) {
+                return null;
+            }
+            connection.commit();
+            changeFeed.publish(ChangeEvent.put(course));
+            return course;
+        } catch (SQLException e) {
+            throw failure("update course " + course.getId(), e);
+        }
+    }
+
+    @Override
+    public boolean deleteCourse(int id) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            List<Student> withdrawn = deleteCourseRows(connection, id);
+            connection.commit();
+            if (withdrawn == null) {
+                return false;
+            }
+            List<ChangeEvent> events = new ArrayList<>(withdrawn.size() + 1);
+            events.add(ChangeEvent.delete(ChangeEvent.Entity.COURSE, id));
+            for (Student student : withdrawn) {
+                events.add(ChangeEvent.put(student));
+            }
+            changeFeed.publish(events);
+            return true;
+        } catch (SQLException e) {
+            throw failure("delete course " + id, e);
+        }
+    }
+
+    @Override
+    public List<Student> getStudentsByCourse(int courseId) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement registrations = connection.prepare("SELECT sc.student_id, sc.course_id"
+                    + " FROM student_courses sc JOIN student_courses member ON member.student_id = sc.student_id"
+                    + " WHERE member.course_id = ? ORDER BY sc.student_id, sc.course_order");
+            registrations.setInt(1, courseId);
+            Map<Integer, List<Integer>> courses = new HashMap<>();
+            try (ResultSet rows = registrations.executeQuery()) {
+                while (rows.next()) {
+                    courses.computeIfAbsent(rows.getInt(1), id -> new ArrayList<>()).add(rows.getInt(2));
+                }
+            }
+            PreparedStatement select = connection.prepare("SELECT DISTINCT s.id, s.full_name, s.email, s.version"
+                    + " FROM students s"
+                    + " JOIN student_courses sc ON sc.student_id = s.id WHERE sc.course_id = ? ORDER BY s.id");
+            select.setInt(1, courseId);
+            List<Student> result = new ArrayList<>();
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    int id = rows.getInt(1);
+                    Student student = new Student(id, rows.getString(2), rows.getString(3), courses.get(id));
+                    student.setVersion(rows.getInt(4));
+                    result.add(student);
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            throw failure("read students of course " + courseId, e);
+        }
+    }
+
+    @Override
+    public Collection<AttendanceRecord> getAllAttendanceRecords() {
+        return getAttendanceRecords(-1, -1, null, null);
+    }
+
+    @Override
+    public AttendanceRecord getAttendanceRecordById(int id) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare(ATTENDANCE_COLUMNS + " WHERE id = ?");
+            select.setInt(1, id);
+            try (ResultSet rows = select.executeQuery()) {
+                return rows.next() ? readAttendanceRecord(rows) : null;
+            }
+        } catch (SQLException e) {
+            throw failure("read attendance record " + id, e);
+        }
+    }
+
+    @Override
+    public Collection<AttendanceRecord> getAttendanceRecords(int studentId, int courseId, LocalDate from, LocalDate to) {
+        // At most 16 distinct SQL strings, so each stays in the statement cache
+        StringBuilder sql = new StringBuilder(ATTENDANCE_COLUMNS);
+        String separator = " WHERE ";
+        if (studentId != -1) {
+            sql.append(separator).append("student_id = ?");
+            separator = " AND ";
+        }
+        if (courseId != -1) {
+            sql.append(separator).append("course_id = ?");
+            separator = " AND ";
+        }
+        if (from != null) {
+            sql.append(separator).append("attendance_date >= ?");
+            separator = " AND ";
+        }
+        if (to != null) {
+            sql.append(separator).append("attendance_date <= ?");
+        }
+
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare(sql.toString());
+            int parameter = 1;
+            if (studentId != -1) {
+                select.setInt(parameter++, studentId);
+            }
+            if (courseId != -1) {
+                select.setInt(parameter++, courseId);
+            }
+            if (from != null) {
+                select.setDate(parameter++, Date.valueOf(from));
+            }
+            if (to != null) {
+                select.setDate(parameter, Date.valueOf(to));
+            }
+            List<AttendanceRecord> result = new ArrayList<>();
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    result.add(readAttendanceRecord(rows));
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            throw failure("read attendance records", e);
+        }
+    }
+
+    @Override
+    public int[] getStudentIdsByPresence(int courseId, LocalDate date, boolean present) {
+        return studentsByPresence(courseId, date, present).toArray();
+    }
+
+    @Override
+    public int countByPresence(int courseId, LocalDate date, boolean present) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare("SELECT COUNT(DISTINCT student_id) FROM attendance"
+                    + " WHERE course_id = ? AND attendance_date = ? AND present = ?");
+            select.setInt(1, courseId);
+            select.setDate(2, Date.valueOf(date));
+            select.setBoolean(3, present);
+            try (ResultSet rows = select.executeQuery()) {
+                rows.next();
+                return rows.getInt(1);
+            }
+        } catch (SQLException e) {
+            throw failure("count attendance for course " + courseId, e);
+        }
+    }
+
+    @Override
+    public AttendanceStats getAttendanceStats(int studentId, int courseId) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare("SELECT COUNT(*),"
+                    + " COALESCE(SUM(CASE WHEN present THEN 1 ELSE 0 END), 0) FROM attendance"
+                    + " WHERE (? = -1 OR student_id = ?) AND (? = -1 OR course_id = ?)");
+            select.setInt(1, studentId);
+            select.setInt(2, studentId);
+            select.setInt(3, courseId);
+            select.setInt(4, courseId);
+            try (ResultSet rows = select.executeQuery()) {
+                rows.next();
+                return new AttendanceStats(rows.getInt(2), rows.getInt(1));
+            }
+        } catch (SQLException e) {
+            throw failure("count attendance for student " + studentId + " and course " + courseId, e);
+        }
+    }
+
+    /**
+     * Reads the matching records (narrowed by student and course in SQL) into
+     * a throwaway AttendanceCube and rolls that up, so both backends group by
+     * period and term the same way
+     */
+    @Override
+    public List<ReportRow> getAttendanceReport(List<ReportDimension> groupBy, Map<ReportDimension, String> filters) {
+        int studentId;
+        int courseId;
+        try {
+            studentId = filters.containsKey(ReportDimension.STUDENT)
+                    ? Integer.parseInt(filters.get(ReportDimension.STUDENT)) : -1;
+            courseId = filters.containsKey(ReportDimension.COURSE)
+                    ? Integer.parseInt(filters.get(ReportDimension.COURSE)) : -1;
+        } catch (NumberFormatException e) {
+            return new ArrayList<>();
+        }
+        AttendanceCube cube = new AttendanceCube(StorageConfig.fromSystemProperties().getTermStartMonths());
+        for (AttendanceRecord record : getAttendanceRecords(studentId, courseId, null, null)) {
+            cube.add(record);
+        }
+        Map<Integer, String> instructors = new HashMap<>();
+        for (Course course : getAllCourses()) {
+            instructors.put(course.getId(), course.getInstructor());
+        }
+        return cube.rollUp(groupBy, filters, instructors::get);
+    }
+
+    @Override
+    public List<ReportRow> getChronicAbsentees(LocalDate from, LocalDate to, double minAbsenceRate, int minRecords) {
+        return countPairs(from, to).chronicAbsentees(minAbsenceRate, minRecords);
+    }
+
+    @Override
+    public List<AbsenceDistribution> getAbsenceDistribution(LocalDate from, LocalDate to) {
+        return countPairs(from, to).absenceDistribution();
+    }
+
+    @Override
+    public int[] getStudentsAbsentFromAll(LocalDate date, int[] courseIds) {
+        if (courseIds != null) {
+            // One cached query per course instead of a SQL string per list length
+            CompressedBitmap result = courseIds.length > 0 ? studentsByPresence(courseIds[0], date, false)
+                    : CompressedBitmap.EMPTY;
+            for (int i = 1; i < courseIds.length && !result.isEmpty(); i++) {
+                result = result.and(studentsByPresence(courseIds[i], date, false));
+            }
+            return result.toArray();
+        }
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare("SELECT DISTINCT student_id FROM attendance"
+                    + " WHERE attendance_date = ? AND present = FALSE AND student_id NOT IN"
+                    + " (SELECT student_id FROM attendance WHERE attendance_date = ? AND present = TRUE)"
+                    + " ORDER BY student_id");
+            select.setDate(1, Date.valueOf(date));
+            select.setDate(2, Date.valueOf(date));
+            List<Integer> result = new ArrayList<>();
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    result.add(rows.getInt(1));
+                }
+            }
+            int[] ids = new int[result.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = result.get(i);
+            }
+            return ids;
+        } catch (SQLException e) {
+            throw failure("read absentees for " + date, e);
+        }
+    }
+
+    @Override
+    public AttendanceRecord addAttendanceRecord(AttendanceRecord record) {
+        record.setId(attendanceIdCounter.getAndIncrement());
+        record.setVersion(1);
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            checkReferences(connection, record);
+            insertAttendanceRecord(connection, record);
+            connection.commit();
+            changeFeed.publish(ChangeEvent.put(record));
+            return record;
+        } catch (SQLException e) {
+            if (DUPLICATE_KEY_STATE.equals(e.getSQLState())) {
+                throw duplicate(record);
+            }
+            throw failure("add attendance record", e);
+        }
+    }
+
+    /**
+     * Insert the records in one transaction, BATCH_SIZE rows per JDBC batch
+     */
+    @Override
+    public List<AttendanceRecord> addAttendanceRecords(List<AttendanceRecord> records) {
+        for (AttendanceRecord record : records) {
+            record.setId(attendanceIdCounter.getAndIncrement());
+            record.setVersion(1);
+        }
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            Set<Long> checked = new HashSet<>();
+            for (AttendanceRecord record : records) {
+                if (checked.add(((long) record.getStudentId() << 32) | (record.getCourseId() & 0xffffffffL))) {
+                    checkReferences(connection, record);
+                }
+            }
+            PreparedStatement insert = connection.prepare(INSERT_ATTENDANCE);
+            int pending = 0;
+            for (AttendanceRecord record : records) {
+                bindAttendanceRecord(insert, record);
+                insert.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    insert.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                insert.executeBatch();
+            }
+            connection.commit();
+            List<ChangeEvent> events = new ArrayList<>(records.size());
+            for (AttendanceRecord record : records) {
+                events.add(ChangeEvent.put(record));
+            }
+            changeFeed.publish(events);
+            return records;
+        } catch (SQLException e) {
+            if (DUPLICATE_KEY_STATE.equals(e.getSQLState())) {
+                throw new ConstraintViolationException("Duplicate attendance in batch: " + e.getMessage(), -1);
+            }
+            throw failure("add " + records.size() + " attendance records", e);
+        }
+    }
+
+    @Override
+    public AttendanceRecord updateAttendanceRecord(AttendanceRecord record, int expectedVersion) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            if (versionOf(connection, "attendance", record.getId()) == 0) {
+                return null;
+            }
+            checkReferences(connection, record);
+            if (!updateAttendanceRow(connection, record, expectedVersion)) {
+                return null;
+            }
+            connection.commit();
+            changeFeed.publish(ChangeEvent.put(record));
+            return record;
+        } catch (SQLException e) {
+            if (DUPLICATE_KEY_STATE.equals(e.getSQLState())) {
+                throw duplicate(record);
+            }
+            throw failure("update attendance record " + record.getId(), e);
+        }
+    }
+
+    /**
+     * Select the row holding the key and update it, or insert one. A
+     * concurrent insert of the same key makes the insert fail on the
+     * unique index; the second attempt then finds and updates that row.
+     */
+    @Override
+    public AttendanceRecord upsertAttendanceRecord(AttendanceRecord record) {
+        if (record.getDate() == null) {
+            throw new IllegalArgumentException("Upsert needs a date");
+        }
+        for (int attempt = 1;; attempt++) {
+            try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+                connection.begin();
+                checkReferences(connection, record);
+                AttendanceRecord previous = upsertAttendanceRow(connection, record);
+                connection.commit();
+                changeFeed.publish(ChangeEvent.put(record));
+                return previous;
+            } catch (SQLException e) {
+                if (attempt == 1 && DUPLICATE_KEY_STATE.equals(e.getSQLState())) {
+                    continue;
+                }
+                throw failure("upsert attendance for " + record.getStudentId() + "/" + record.getCourseId()
+                        + "/" + record.getDate(), e);
+            }
+        }
+    }
+
+    @Override
+    public boolean deleteAttendanceRecord(int id) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            boolean deleted = deleteById(connection, "attendance", id);
+            if (deleted) {
+                changeFeed.publish(ChangeEvent.delete(ChangeEvent.Entity.ATTENDANCE, id));
+            }
+            return deleted;
+        } catch (SQLException e) {
+            throw failure("delete attendance record " + id, e);
+        }
+    }
+
+    /**
+     * Run every operation on one connection in a single transaction, so a
+     * failure rolls all of them back and other connections only see the
+     * batch once it has committed
+     */
+    @Override
+    public void executeBatch(List<BatchOperation> operations) {
+        List<ChangeEvent> events = new ArrayList<>(operations.size());
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            for (int i = 0; i < operations.size(); i++) {
+                BatchOperation operation = operations.get(i);
+                try {
+                    execute(connection, operation, events);
+                } catch (ConstraintViolationException | VersionConflictException | IllegalArgumentException e) {
+                    throw BatchOperation.failedAt(i, e);
+                } catch (SQLException e) {
+                    if (DUPLICATE_KEY_STATE.equals(e.getSQLState())) {
+                        throw BatchOperation.failedAt(i, operation.student != null
+                                ? emailTaken(operation.student) : duplicate(operation.attendanceRecord));
+                    }
+                    throw e;
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw failure("run a batch of " + operations.size() + " operations", e);
+        }
+        changeFeed.publish(events);
+    }
+
+    /**
+     * Describe a committed batch operation as a change event
+     */
+    private static ChangeEvent changeEvent(BatchOperation operation) {
+        switch (operation.type) {
+            case ADD_STUDENT:
+            case UPDATE_STUDENT:
+                return ChangeEvent.put(operation.student);
+            case DELETE_STUDENT:
+                return ChangeEvent.delete(ChangeEvent.Entity.STUDENT, operation.id);
+            case ADD_COURSE:
+            case UPDATE_COURSE:
+                return ChangeEvent.put(operation.course);
+            case DELETE_COURSE:
+                return ChangeEvent.delete(ChangeEvent.Entity.COURSE, operation.id);
+            case DELETE_ATTENDANCE:
+                return ChangeEvent.delete(ChangeEvent.Entity.ATTENDANCE, operation.id);
+            default:
+                return ChangeEvent.put(operation.attendanceRecord);
+        }
+    }
+
+    @Override
+    public ChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    @Override
+    public ReplicationStatus getReplicationStatus() {
+        // The database file has a single owner; replication is a DataStore feature
+        return ReplicationStatus.standalone();
+    }
+
+    @Override
+    public boolean studentExists(int studentId) {
+        return exists("students", studentId);
+    }
+
+    @Override
+    public boolean courseExists(int courseId) {
+        return exists("courses", courseId);
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("SqlDataStore Statistics: %d students, %d courses, %d attendance records",
+                count("students"), count("courses"), count("attendance"));
+    }
+
+    @Override
+    public String getStartupReport() {
+        return startupReport;
+    }
+
+    @Override
+    public void clearAllData() {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow();
+                Statement statement = connection.getConnection().createStatement()) {
+            connection.begin();
+            for (String table : new String[] { "attendance", "student_courses", "students", "courses" }) {
+                statement.executeUpdate("DELETE FROM " + table);
+            }
+            connection.commit();
+            studentIdCounter.set(1);
+            courseIdCounter.set(1);
+            attendanceIdCounter.set(1);
+            changeFeed.publish(ChangeEvent.clear());
+        } catch (SQLException e) {
+            throw failure("clear data", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * Register the driver explicitly: drivers in WEB-INF/lib are not always
+     * picked up by DriverManager's service loader inside Tomcat
+     */
+    private static void loadDriver(String url) {
+        if (url.startsWith("jdbc:h2:")) {
+            try {
+                Class.forName("org.h2.Driver");
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("H2 driver not found; put the h2 jar in WEB-INF/lib", e);
+            }
+        }
+    }
+
+    /**
+     * Count present and total records per (student, course) pair within a
+     * date range; the database does the grouping
+     */
+    private PairCounts countPairs(LocalDate from, LocalDate to) {
+        StringBuilder sql = new StringBuilder("SELECT student_id, course_id,"
+                + " SUM(CASE WHEN present THEN 1 ELSE 0 END), COUNT(*) FROM attendance");
+        String separator = " WHERE ";
+        if (from != null) {
+            sql.append(separator).append("attendance_date >= ?");
+            separator = " AND ";
+        }
+        if (to != null) {
+            sql.append(separator).append("attendance_date <= ?");
+        }
+        sql.append(" GROUP BY student_id, course_id");
+
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare(sql.toString());
+            int parameter = 1;
+            if (from != null) {
+                select.setDate(parameter++, Date.valueOf(from));
+            }
+            if (to != null) {
+                select.setDate(parameter, Date.valueOf(to));
+            }
+            PairCounts counts = new PairCounts();
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    counts.add(rows.getInt(1), rows.getInt(2), rows.getInt(3), rows.getInt(4));
+                }
+            }
+            return counts;
+        } catch (SQLException e) {
+            throw failure("count attendance per student and course", e);
+        }
+    }
+
+    private CompressedBitmap studentsByPresence(int courseId, LocalDate date, boolean present) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare("SELECT student_id FROM attendance"
+                    + " WHERE course_id = ? AND attendance_date = ? AND present = ?");
+            select.setInt(1, courseId);
+            select.setDate(2, Date.valueOf(date));
+            select.setBoolean(3, present);
+            CompressedBitmap students = CompressedBitmap.EMPTY;
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    students = students.with(rows.getInt(1));
+                }
+            }
+            return students;
+        } catch (SQLException e) {
+            throw failure("read attendance for course " + courseId, e);
+        }
+    }
+
+    /**
+     * Run one batch operation inside the caller's transaction
+     * 
+     * @param events Receives the change events to publish once the batch commits
+     */
+    private void execute(SqlConnectionPool.PooledConnection connection, BatchOperation operation,
+            List<ChangeEvent> events) throws SQLException {
+        List<Student> withdrawn = Collections.emptyList();
+        switch (operation.type) {
+            case ADD_STUDENT:
+                operation.student.setId(studentIdCounter.getAndIncrement());
+                operation.student.setVersion(1);
+                insertStudent(connection, operation.student);
+                break;
+            case UPDATE_STUDENT:
+                if (!updateStudentRow(connection, operation.student, operation.expectedVersion)) {
+                    throw notFound("Student", operation.id);
+                }
+                break;
+            case DELETE_STUDENT:
+                if (!deleteStudentRows(connection, operation.id)) {
+                    throw notFound("Student", operation.id);
+                }
+                break;
+            case ADD_COURSE:
+                operation.course.setId(courseIdCounter.getAndIncrement());
+                operation.course.setVersion(1);
+                insertCourse(connection, operation.course);
+                break;
+            case UPDATE_COURSE:
+                if (!updateCourseRow(connection, operation.course, operation.expectedVersion)) {
+                    throw notFound("Course", operation.id);
+                }
+                break;
+            case DELETE_COURSE:
+                withdrawn = deleteCourseRows(connection, operation.id);
+                if (withdrawn == null) {
+                    throw notFound("Course", operation.id);
+                }
+                break;
+            case ADD_ATTENDANCE:
+                checkReferences(connection, operation.attendanceRecord);
+                operation.attendanceRecord.setId(attendanceIdCounter.getAndIncrement());
+                operation.attendanceRecord.setVersion(1);
+                insertAttendanceRecord(connection, operation.attendanceRecord);
+                break;
+            case UPDATE_ATTENDANCE:
+                checkReferences(connection, operation.attendanceRecord);
+                if (!updateAttendanceRow(connection, operation.attendanceRecord, operation.expectedVersion)) {
+                    throw notFound("Attendance record", operation.id);
+                }
+                break;
+            case UPSERT_ATTENDANCE:
+                if (operation.attendanceRecord.getDate() == null) {
+                    throw new IllegalArgumentException("Upsert needs a date");
+                }
+                checkReferences(connection, operation.attendanceRecord);
+                upsertAttendanceRow(connection, operation.attendanceRecord);
+                break;
+            case DELETE_ATTENDANCE:
+                if (!deleteById(connection, "attendance", operation.id)) {
+                    throw notFound("Attendance record", operation.id);
+                }
+                break;
+        }
+        events.add(changeEvent(operation));
+        for (Student student : withdrawn) {
+            events.add(ChangeEvent.put(student));
+        }
+    }
+
+    private static void insertStudent(SqlConnectionPool.PooledConnection connection, Student student)
+            throws SQLException {
+        PreparedStatement insert = connection.prepare(
+                "INSERT INTO students (full_name, email, email_key, id) VALUES (?, ?, ?, ?)");
+        bindStudent(insert, student);
+        insert.executeUpdate();
+        writeRegistrations(connection, student);
+    }
+
+    /**
+     * The version check is part of the UPDATE's WHERE clause, so the row is
+     * compared and written in one statement. Caller must be in a transaction.
+     * 
+     * @return false if there is no such student
+     */
+    private static boolean updateStudentRow(SqlConnectionPool.PooledConnection connection, Student student,
+            int expectedVersion) throws SQLException {
+        PreparedStatement update = connection.prepare("UPDATE students SET full_name = ?, email = ?,"
+                + " email_key = ?, version = version + 1 WHERE id = ?" + versionCondition(expectedVersion));
+        bindStudent(update, student);
+        if (expectedVersion != ANY_VERSION) {
+            update.setInt(5, expectedVersion);
+        }
+        if (update.executeUpdate() == 0) {
+            checkVersion(connection, "students", student.getId(), expectedVersion);
+            return false;
+        }
+        student.setVersion(versionOf(connection, "students", student.getId()));
+        writeRegistrations(connection, student);
+        return true;
+    }
+
+    /**
+     * Delete a student with their attendance and registrations. The student
+     * row goes first so attendance writes checking it wait (see
+     * checkReferences). Caller must be in a transaction.
+     */
+    private static boolean deleteStudentRows(SqlConnectionPool.PooledConnection connection, int id)
+            throws SQLException {
+        if (!deleteById(connection, "students", id)) {
+            return false;
+        }
+        deleteWhere(connection, "student_courses", "student_id", id);
+        deleteWhere(connection, "attendance", "student_id", id);
+        return true;
+    }
+
+    private static void insertCourse(SqlConnectionPool.PooledConnection connection, Course course)
+            throws SQLException {
+        PreparedStatement insert = connection.prepare("INSERT INTO courses (name, instructor, id) VALUES (?, ?, ?)");
+        bindCourse(insert, course);
+        insert.executeUpdate();
+    }
+
+    /**
+     * @return false if there is no such course
+     */
+    private static boolean updateCourseRow(SqlConnectionPool.PooledConnection connection, Course course,
+            int expectedVersion) throws SQLException {
+        PreparedStatement update = connection.prepare("UPDATE courses SET name = ?, instructor = ?,"
+                + " version = version + 1 WHERE id = ?" + versionCondition(expectedVersion));
+        bindCourse(update, course);
+        if (expectedVersion != ANY_VERSION) {
+            update.setInt(4, expectedVersion);
+        }
+        if (update.executeUpdate() == 0) {
+            checkVersion(connection, "courses", course.getId(), expectedVersion);
+            return false;
+        }
+        course.setVersion(versionOf(connection, "courses", course.getId()));
+        return true;
+    }
+
+    /**
+     * Delete a course with its attendance and registrations. The course row
+     * goes first, as in deleteStudentRows. Caller must be in a transaction.
+     * 
+     * @return The students withdrawn from the course, as they are now, or
+     *         null if there is no such course
+     */
+    private List<Student> deleteCourseRows(SqlConnectionPool.PooledConnection connection, int id)
+            throws SQLException {
+        if (!deleteById(connection, "courses", id)) {
+            return null;
+        }
+        PreparedStatement enrolled = connection.prepare(
+                "SELECT student_id FROM student_courses WHERE course_id = ? ORDER BY student_id");
+        enrolled.setInt(1, id);
+        List<Integer> studentIds = new ArrayList<>();
+        try (ResultSet rows = enrolled.executeQuery()) {
+            while (rows.next()) {
+                studentIds.add(rows.getInt(1));
+            }
+        }
+        // Withdrawing the enrolled students changes them, like any other write
+        PreparedStatement touch = connection.prepare("UPDATE students SET version = version + 1"
+                + " WHERE id IN (SELECT student_id FROM student_courses WHERE course_id = ?)");
+        touch.setInt(1, id);
+        touch.executeUpdate();
+        deleteWhere(connection, "student_courses", "course_id", id);
+        deleteWhere(connection, "attendance", "course_id", id);
+
+        List<Student> withdrawn = new ArrayList<>(studentIds.size());
+        for (int studentId : studentIds) {
+            Student student = readStudent(connection, studentId);
+            if (student != null) {
+                withdrawn.add(student);
+            }
+        }
+        return withdrawn;
+    }
+
+    private static void insertAttendanceRecord(SqlConnectionPool.PooledConnection connection,
+            AttendanceRecord record) throws SQLException {
+        PreparedStatement insert = connection.prepare(INSERT_ATTENDANCE);
+        bindAttendanceRecord(insert, record);
+        insert.executeUpdate();
+    }
+
+    /**
+     * @return false if there is no such record
+     */
+    private static boolean updateAttendanceRow(SqlConnectionPool.PooledConnection connection,
+            AttendanceRecord record, int expectedVersion) throws SQLException {
+        PreparedStatement update = connection.prepare("UPDATE attendance SET student_id = ?, course_id = ?,"
+                + " attendance_date = ?, present = ?, version = version + 1 WHERE id = ?"
+                + versionCondition(expectedVersion));
+        update.setInt(1, record.getStudentId());
+        update.setInt(2, record.getCourseId());
+        update.setDate(3, record.getDate() != null ? Date.valueOf(record.getDate()) : null);
+        update.setBoolean(4, record.isPresent());
+        update.setInt(5, record.getId());
+        if (expectedVersion != ANY_VERSION) {
+            update.setInt(6, expectedVersion);
+        }
+        if (update.executeUpdate() == 0) {
+            checkVersion(connection, "attendance", record.getId(), expectedVersion);
+            return false;
+        }
+        record.setVersion(versionOf(connection, "attendance", record.getId()));
+        return true;
+    }
+
+    /**
+     * Update the row holding the record's key, or insert one. Caller must be
+     * in a transaction.
+     * 
+     * @return The row that was replaced, or null if one was inserted
+     */
+    private AttendanceRecord upsertAttendanceRow(SqlConnectionPool.PooledConnection connection,
+            AttendanceRecord record) throws SQLException {
+        PreparedStatement select = connection.prepare(ATTENDANCE_COLUMNS
+                + " WHERE student_id = ? AND course_id = ? AND attendance_date = ? FOR UPDATE");
+        select.setInt(1, record.getStudentId());
+        select.setInt(2, record.getCourseId());
+        select.setDate(3, Date.valueOf(record.getDate()));
+        AttendanceRecord previous;
+        try (ResultSet rows = select.executeQuery()) {
+            previous = rows.next() ? readAttendanceRecord(rows) : null;
+        }
+        if (previous != null) {
+            record.setId(previous.getId());
+            record.setVersion(previous.getVersion() + 1);
+            PreparedStatement update = connection.prepare(
+                    "UPDATE attendance SET present = ?, version = version + 1 WHERE id = ?");
+            update.setBoolean(1, record.isPresent());
+            update.setInt(2, record.getId());
+            update.executeUpdate();
+        } else {
+            record.setId(attendanceIdCounter.getAndIncrement());
+            record.setVersion(1);
+            insertAttendanceRecord(connection, record);
+        }
+        return previous;
+    }
+
+    /**
+     * Reject a record whose student or course does not exist. The schema has
+     * no foreign keys, so every attendance write checks first. The rows are
+     * locked until the caller's transaction ends, and deletes remove the
+     * student or course row before its attendance, so a concurrent delete
+     * either waits for this write and then removes it, or wins and makes
+     * this check fail. Caller must be in a transaction.
+     */
+    private static void checkReferences(SqlConnectionPool.PooledConnection connection, AttendanceRecord record)
+            throws SQLException {
+        if (!lockRow(connection, "students", record.getStudentId())) {
+            throw notFound("Student", record.getStudentId());
+        }
+        if (!lockRow(connection, "courses", record.getCourseId())) {
+            throw notFound("Course", record.getCourseId());
+        }
+    }
+
+    private static ConstraintViolationException notFound(String entity, int id) {
+        return new ConstraintViolationException(entity + " not found with ID: " + id, -1);
+    }
+
+    private Student readStudent(SqlConnectionPool.PooledConnection connection, int id) throws SQLException {
+        PreparedStatement select = connection.prepare(STUDENT_COLUMNS + " WHERE id = ?");
+        select.setInt(1, id);
+        Student student;
+        try (ResultSet rows = select.executeQuery()) {
+            if (!rows.next()) {
+                return null;
+            }
+            student = new Student(rows.getInt(1), rows.getString(2), rows.getString(3));
+            student.setVersion(rows.getInt(4));
+        }
+        PreparedStatement registrations = connection.prepare(
+                "SELECT course_id FROM student_courses WHERE student_id = ? ORDER BY course_order");
+        registrations.setInt(1, id);
+        List<Integer> courses = new ArrayList<>();
+        try (ResultSet rows = registrations.executeQuery()) {
+            while (rows.next()) {
+                courses.add(rows.getInt(1));
+            }
+        }
+        student.setRegisteredCourses(courses);
+        return student;
+    }
+
+    /**
+     * Replace a student's registered courses. Each course row is locked
+     * first, as in checkReferences, so a registration for a missing or
+     * concurrently deleted course fails instead of leaving an orphan. Caller
+     * must be in a transaction.
+     */
+    private static void writeRegistrations(SqlConnectionPool.PooledConnection connection, Student student)
+            throws SQLException {
+        for (int courseId : student.getRegisteredCourseIds()) {
+            if (!lockRow(connection, "courses", courseId)) {
+                throw notFound("Course", courseId);
+            }
+        }
+        PreparedStatement delete = connection.prepare("DELETE FROM student_courses WHERE student_id = ?");
+        delete.setInt(1, student.getId());
+        delete.executeUpdate();
+
+        if (student.getRegisteredCourseCount() == 0) {
+            return;
+        }
+        PreparedStatement insert = connection.prepare(
+                "INSERT INTO student_courses (student_id, course_order, course_id) VALUES (?, ?, ?)");
+        int order = 0;
+        for (int courseId : student.getRegisteredCourseIds()) {
+            insert.setInt(1, student.getId());
+            insert.setInt(2, order++);
+            insert.setInt(3, courseId);
+            insert.addBatch();
+        }
+        insert.executeBatch();
+    }
+
+    private static void bindStudent(PreparedStatement statement, Student student) throws SQLException {
+        statement.setString(1, student.getFullName());
+        statement.setString(2, student.getEmail());
+        statement.setString(3, Student.normalizeEmail(student.getEmail()));
+        statement.setInt(4, student.getId());
+    }
+
+    private static void bindCourse(PreparedStatement statement, Course course) throws SQLException {
+        statement.setString(1, course.getName());
+        statement.setString(2, course.getInstructor());
+        statement.setInt(3, course.getId());
+    }
+
+    private static void bindAttendanceRecord(PreparedStatement statement, AttendanceRecord record)
+            throws SQLException {
+        statement.setInt(1, record.getId());
+        statement.setInt(2, record.getStudentId());
+        statement.setInt(3, record.getCourseId());
+        statement.setDate(4, record.getDate() != null ? Date.valueOf(record.getDate()) : null);
+        statement.setBoolean(5, record.isPresent());
+        statement.setInt(6, record.getVersion());
+    }
+
+    private static Course readCourse(ResultSet rows) throws SQLException {
+        Course course = new Course(rows.getInt(1), rows.getString(2), rows.getString(3));
+        course.setVersion(rows.getInt(4));
+        return course;
+    }
+
+    private static AttendanceRecord readAttendanceRecord(ResultSet rows) throws SQLException {
+        Date date = rows.getDate(4);
+        AttendanceRecord record = new AttendanceRecord(rows.getInt(1), rows.getInt(2), rows.getInt(3),
+                date != null ? date.toLocalDate() : null, rows.getBoolean(5));
+        record.setVersion(rows.getInt(6));
+        return record;
+    }
+
+    // Table names below are constants from this class, never user input
+
+    private static boolean deleteById(SqlConnectionPool.PooledConnection connection, String table, int id)
+            throws SQLException {
+        PreparedStatement delete = connection.prepare("DELETE FROM " + table + " WHERE id = ?");
+        delete.setInt(1, id);
+        return delete.executeUpdate() > 0;
+    }
+
+    /**
+     * Delete the rows that reference an ID; the column must be indexed
+     */
+    private static void deleteWhere(SqlConnectionPool.PooledConnection connection, String table, String column,
+            int id) throws SQLException {
+        PreparedStatement delete = connection.prepare("DELETE FROM " + table + " WHERE " + column + " = ?");
+        delete.setInt(1, id);
+        delete.executeUpdate();
+    }
+
+    /**
+     * @return " AND version = ?" for a conditional update, nothing for ANY_VERSION
+     */
+    private static String versionCondition(int expectedVersion) {
+        return expectedVersion != ANY_VERSION ? " AND version = ?" : "";
+    }
+
+    /**
+     * @return Stored version of a row, or 0 if there is no such row
+     */
+    private static int versionOf(SqlConnectionPool.PooledConnection connection, String table, int id)
+            throws SQLException {
+        PreparedStatement select = connection.prepare("SELECT version FROM " + table + " WHERE id = ?");
+        select.setInt(1, id);
+        try (ResultSet rows = select.executeQuery()) {
+            return rows.next() ? rows.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Lock a row until the end of the caller's transaction
+     *
+     * @return false if there is no such row
+     */
+    private static boolean lockRow(SqlConnectionPool.PooledConnection connection, String table, int id)
+            throws SQLException {
+        PreparedStatement select = connection.prepare("SELECT id FROM " + table + " WHERE id = ? FOR UPDATE");
+        select.setInt(1, id);
+        try (ResultSet rows = select.executeQuery()) {
+            return rows.next();
+        }
+    }
+
+    /**
+     * Explain an update that matched no row: a missing row is fine (the
+     * caller returns null), a row at another version is a conflict
+     */
+    private static void checkVersion(SqlConnectionPool.PooledConnection connection, String table, int id,
+            int expectedVersion) throws SQLException {
+        int stored = versionOf(connection, table, id);
+        if (stored != 0) {
+            throw new VersionConflictException("Row " + id + " of " + table + " is at version " + stored
+                    + ", not " + expectedVersion, stored);
+        }
+    }
+
+    private boolean exists(String table, int id) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare("SELECT 1 FROM " + table + " WHERE id = ?");
+            select.setInt(1, id);
+            try (ResultSet rows = select.executeQuery()) {
+                return rows.next();
+            }
+        } catch (SQLException e) {
+            throw failure("check " + table + " " + id, e);
+        }
+    }
+
+    private int count(String table) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow();
+                ResultSet rows = connection.prepare("SELECT COUNT(*) FROM " + table).executeQuery()) {
+            rows.next();
+            return rows.getInt(1);
+        } catch (SQLException e) {
+            throw failure("count " + table, e);
+        }
+    }
+
+    private int nextId(String table) {
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow();
+                ResultSet rows = connection.prepare("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table).executeQuery()) {
+            rows.next();
+            return rows.getInt(1);
+        } catch (SQLException e) {
+            throw failure("read next ID for " + table, e);
+        }
+    }
+
+    /**
+     * LIKE patterns matching the search semantics of TrigramIndex: anywhere
+     * for 3+ characters, at the start of the text or of a word otherwise
+     * 
+     * @return Two patterns to OR together, or null for a blank query
+     */
+    private static String[] likePatterns(String query) {
+        String text = query != null ? query.trim().toLowerCase(Locale.ROOT) : "";
+        if (text.isEmpty()) {
+            return null;
+        }
+        String escaped = text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        if (text.length() >= 3) {
+            return new String[] { "%" + escaped + "%", "%" + escaped + "%" };
+        }
+        return new String[] { escaped + "%", "% " + escaped + "%" };
+    }
+
+    /**
+     * Build the exception for a record rejected by the attendance_key index
+     */
+    private ConstraintViolationException duplicate(AttendanceRecord record) {
+        int holder = -1;
+        try (SqlConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement select = connection.prepare(
+                    "SELECT id FROM attendance WHERE student_id = ? AND course_id = ? AND attendance_date = ?");
+            select.setInt(1, record.getStudentId());
+            select.setInt(2, record.getCourseId());
+            select.setDate(3, Date.valueOf(record.getDate()));
+            try (ResultSet rows = select.executeQuery()) {
+                if (rows.next()) {
+                    holder = rows.getInt(1);
+                }
+            }
+        } catch (SQLException e) {
+            // Report the violation without the holder's ID
+        }
+        return new ConstraintViolationException("Attendance for student " + record.getStudentId() + " in course "
+                + record.getCourseId() + " on " + record.getDate() + " already exists with ID: " + holder, holder);
+    }
+
+    /**
+     * Build the exception for a student rejected by the students_email index
+     */
+    private ConstraintViolationException emailTaken(Student student) {
+        Student holder = getStudentByEmail(student.getEmail());
+        int holderId = holder != null ? holder.getId() : -1;
+        return new ConstraintViolationException("Email " + student.getEmail()
+                + " is already used by student with ID: " + holderId, holderId);
+    }
+
+    private static IllegalStateException failure(String action, SQLException e) {
+        return new IllegalStateException("Cannot " + action + ": " + e.getMessage(), e);
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
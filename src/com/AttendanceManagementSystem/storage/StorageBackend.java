@@ -0,0 +1,372 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+import com.AttendanceManagementSystem.model.Course;
+import com.AttendanceManagementSystem.model.Student;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage operations used by the servlets.
+ * Implemented by the in-memory DataStore and by SqlDataStore; servlets get
+ * the configured implementation from StorageFactory instead of naming one.
+ * Implementations must be thread-safe.
+ *
+ * Every stored entity carries a version that starts at 1 and is
+ * incremented by each write. Updates take the version the caller last saw
+ * and fail with VersionConflictException if it is no longer current, so
+ * concurrent edits cannot silently overwrite each other.
+ */
+public interface StorageBackend {
+
+    // Expected version for an update that overwrites whatever is stored
+    int ANY_VERSION = -1;
+
+    /**
+     * Get all students
+     * 
+     * @return Read-only collection of all students
+     */
+    Collection<Student> getAllStudents();
+
+    /**
+     * Get student by ID
+     * 
+     * @param id Student ID
+     * @return Student if found, null otherwise
+     */
+    Student getStudentById(int id);
+
+    /**
+     * Get student by email, ignoring case and surrounding whitespace
+     * 
+     * @param email Email address
+     * @return Student if found, null otherwise
+     */
+    Student getStudentByEmail(String email);
+
+    /**
+     * Search students by name, ignoring case and punctuation
+     * 
+     * @param query Text to look for (3+ characters match anywhere, shorter
+     *              queries match the start of a word)
+     * @param limit Maximum number of results
+     * @return Matching students
+     */
+    List<Student> searchStudents(String query, int limit);
+
+    /**
+     * Add new student
+     * 
+     * @param student Student to add (ID will be auto-generated)
+     * @return Added student with generated ID
+     * @throws ConstraintViolationException if another student has the email
+     */
+    Student addStudent(Student student);
+
+    /**
+     * Update existing student if it is still at the expected version
+     * 
+     * @param student         Student to update; its version is set to the new one
+     * @param expectedVersion Version the caller last saw, or ANY_VERSION
+     * @return Updated student if found, null otherwise
+     * @throws VersionConflictException     if the stored version differs
+     * @throws ConstraintViolationException if another student has the email
+     */
+    Student updateStudent(Student student, int expectedVersion);
+
+    /**
+     * Delete student by ID
+     * 
+     * @param id Student ID
+     * @return true if deleted, false if not found
+     */
+    boolean deleteStudent(int id);
+
+    /**
+     * Get all courses
+     * 
+     * @return Read-only collection of all courses
+     */
+    Collection<Course> getAllCourses();
+
+    /**
+     * Get course by ID
+     * 
+     * @param id Course ID
+     * @return Course if found, null otherwise
+     */
+    Course getCourseById(int id);
+
+    /**
+     * Search courses by name or instructor, ignoring case and punctuation
+     * 
+     * @param query Text to look for (3+ characters match anywhere, shorter
+     *              queries match the start of a word)
+     * @param limit Maximum number of results
+     * @return Matching courses
+     */
+    List<Course> searchCourses(String query, int limit);
+
+    /**
+     * Add new course
+     * 
+     * @param course Course to add (ID will be auto-generated)
+     * @return Added course with generated ID
+     */
+    Course addCourse(Course course);
+
+    /**
+     * Update existing course if it is still at the expected version
+     * 
+     * @param course          Course to update; its version is set to the new one
+     * @param expectedVersion Version the caller last saw, or ANY_VERSION
+     * @return Updated course if found, null otherwise
+     * @throws VersionConflictException if the stored version differs
+     */
+    Course updateCourse(Course course, int expectedVersion);
+
+    /**
+     * Delete course by ID
+     * 
+     * @param id Course ID
+     * @return true if deleted, false if not found
+     */
+    boolean deleteCourse(int id);
+
+    /**
+     * Get the students registered for a course
+     * 
+     * @param courseId Course ID
+     * @return Students whose registeredCourses contain the course, by ascending ID
+     */
+    List<Student> getStudentsByCourse(int courseId);
+
+    /**
+     * Get all attendance records
+     * 
+     * @return Read-only collection of all attendance records
+     */
+    Collection<AttendanceRecord> getAllAttendanceRecords();
+
+    /**
+     * Get attendance record by ID
+     * 
+     * @param id Attendance record ID
+     * @return AttendanceRecord if found, null otherwise
+     */
+    AttendanceRecord getAttendanceRecordById(int id);
+
+    /**
+     * Get attendance records by student, course and date range
+     * 
+     * @param studentId Student ID (optional, use -1 to ignore)
+     * @param courseId  Course ID (optional, use -1 to ignore)
+     * @param from      First date, inclusive (optional, use null to ignore)
+     * @param to        Last date, inclusive (optional, use null to ignore)
+     * @return Matching attendance records
+     */
+    Collection<AttendanceRecord> getAttendanceRecords(int studentId, int courseId, LocalDate from, LocalDate to);
+
+    /**
+     * Get students marked present (or absent) in a course on a date
+     * 
+     * @param courseId Course ID
+     * @param date     Date
+     * @param present  true for present students, false for absent ones
+     * @return Student IDs in ascending order
+     */
+    int[] getStudentIdsByPresence(int courseId, LocalDate date, boolean present);
+
+    /**
+     * Count students marked present (or absent) in a course on a date
+     * 
+     * @param courseId Course ID
+     * @param date     Date
+     * @param present  true to count present students, false for absent ones
+     * @return Number of distinct students
+     */
+    int countByPresence(int courseId, LocalDate date, boolean present);
+
+    /**
+     * Count attendance records, and those marked present, for a student,
+     * a course, or a student in a course
+     * 
+     * @param studentId Student ID (optional, use -1 to ignore)
+     * @param courseId  Course ID (optional, use -1 to ignore)
+     * @return Present and total counts; both -1 counts every record
+     */
+    AttendanceStats getAttendanceStats(int studentId, int courseId);
+
+    /**
+     * Attendance counts grouped by any of student, course, instructor, ISO
+     * week, month and term, optionally sliced to one value of any of them
+     * (e.g. by course and week for one instructor in one month)
+     * 
+     * @param groupBy Dimensions to group by, in key order; empty for one total row
+     * @param filters Value a record must have, per dimension (see ReportDimension)
+     * @return One row per group that has records, sorted by key
+     */
+    List<ReportRow> getAttendanceReport(List<ReportDimension> groupBy, Map<ReportDimension, String> filters);
+
+    /**
+     * Find students absent from at least a share of their classes across
+     * every course. Weakly consistent on the in-memory store: a scan that
+     * keeps overlapping batches may count part of one (see
+     * DataStore.readWeakly). The SQL store reads one snapshot.
+     * 
+     * @param from           First date, inclusive (null for no lower bound)
+     * @param to             Last date, inclusive (null for no upper bound)
+     * @param minAbsenceRate Lowest share of absences, from 0 to 1
+     * @param minRecords     Fewest records in the range a student must have
+     * @return One row per student keyed by student ID, most absent first
+     */
+    List<ReportRow> getChronicAbsentees(LocalDate from, LocalDate to, double minAbsenceRate, int minRecords);
+
+    /**
+     * Spread each course's students over absence rates in 10% steps.
+     * Weakly consistent like getChronicAbsentees.
+     * 
+     * @param from First date, inclusive (null for no lower bound)
+     * @param to   Last date, inclusive (null for no upper bound)
+     * @return One entry per course with records in the range, by course ID
+     */
+    List<AbsenceDistribution> getAbsenceDistribution(LocalDate from, LocalDate to);
+
+    /**
+     * Get students absent from every given course on a date
+     * 
+     * @param date      Date
+     * @param courseIds Courses that must all have the student absent, or null
+     *                  for students absent from every class they had that date
+     * @return Student IDs in ascending order
+     */
+    int[] getStudentsAbsentFromAll(LocalDate date, int[] courseIds);
+
+    /**
+     * Add new attendance record
+     * 
+     * @param record AttendanceRecord to add (ID will be auto-generated)
+     * @return Added attendance record with generated ID
+     * @throws ConstraintViolationException if the student already has a
+     *                                      record for the course and date
+     */
+    AttendanceRecord addAttendanceRecord(AttendanceRecord record);
+
+    /**
+     * Add several attendance records in one write.
+     * Cheaper than one addAttendanceRecord call per record: the in-memory
+     * store waits for a single log sync, the SQL store sends one JDBC batch.
+     * 
+     * @param records AttendanceRecords to add (IDs will be auto-generated)
+     * @return The same records with their generated IDs, in order
+     * @throws ConstraintViolationException if any record duplicates a stored
+     *                                      one or another record in the list
+     *                                      (nothing is added)
+     */
+    List<AttendanceRecord> addAttendanceRecords(List<AttendanceRecord> records);
+
+    /**
+     * Insert a record, or overwrite the one that already holds its student,
+     * course and date
+     * 
+     * @param record AttendanceRecord to store (must have a date); its ID and
+     *               version are set to the ones it is stored under
+     * @return The record that was replaced, or null if a new one was added
+     */
+    AttendanceRecord upsertAttendanceRecord(AttendanceRecord record);
+
+    /**
+     * Update existing attendance record if it is still at the expected version
+     * 
+     * @param record          AttendanceRecord to update; its version is set to the new one
+     * @param expectedVersion Version the caller last saw, or ANY_VERSION
+     * @return Updated record if found, null otherwise
+     * @throws VersionConflictException     if the stored version differs
+     * @throws ConstraintViolationException if another record already holds
+     *                                      the new student, course and date
+     */
+    AttendanceRecord updateAttendanceRecord(AttendanceRecord record, int expectedVersion);
+
+    /**
+     * Delete attendance record by ID
+     * 
+     * @param id Attendance record ID
+     * @return true if deleted, false if not found
+     */
+    boolean deleteAttendanceRecord(int id);
+
+    /**
+     * Apply writes to students, courses and attendance as one transaction.
+     * Each operation is validated against the state the ones before it
+     * leave behind; if any of them fails, nothing is written. Readers see
+     * either none of the batch or all of it.
+     * 
+     * @param operations Writes to apply, in order; IDs and versions are set
+     *                   on their entities
+     * @throws ConstraintViolationException if an operation breaks a constraint
+     *                                      or targets a missing entity
+     * @throws VersionConflictException     if an update expects a stale version
+     *                                      (both messages start with
+     *                                      "Operation N: ", N counting from 0)
+     */
+    void executeBatch(List<BatchOperation> operations);
+
+    /**
+     * Get the feed every committed change is published on, for clients
+     * that follow changes instead of re-reading whole collections
+     * 
+     * @return Change feed of this store
+     */
+    ChangeFeed getChangeFeed();
+
+    /**
+     * Get this instance's part in replication and how far behind it is
+     * 
+     * @return Replication status (STANDALONE when not replicating)
+     */
+    ReplicationStatus getReplicationStatus();
+
+    /**
+     * Check if student exists
+     * 
+     * @param studentId Student ID
+     * @return true if student exists
+     */
+    boolean studentExists(int studentId);
+
+    /**
+     * Check if course exists
+     * 
+     * @param courseId Course ID
+     * @return true if course exists
+     */
+    boolean courseExists(int courseId);
+
+    /**
+     * Get statistics about the store
+     * 
+     * @return String with current statistics
+     */
+    String getStatistics();
+
+    /**
+     * Describe how long opening the store took
+     * 
+     * @return One-line timing breakdown
+     */
+    String getStartupReport();
+
+    /**
+     * Remove every student, course and attendance record
+     */
+    void clearAllData();
+
+    /**
+     * Release files and connections. The store must not be used afterwards.
+     */
+    void close();
+}
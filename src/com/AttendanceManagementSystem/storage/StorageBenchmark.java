@@ -0,0 +1,158 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.model.AttendanceRecord;
+import com.AttendanceManagementSystem.model.Course;
+import com.AttendanceManagementSystem.model.Student;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Command-line throughput comparison of the storage backends.
+ * Runs the same workload against the in-memory DataStore and SqlDataStore,
+ * each in a fresh temporary directory, and prints operations per second.
+ *
+ * Usage (the bundled H2 jar must be on the classpath for the SQL run):
+ * java -cp WEB-INF/classes:WEB-INF/lib/h2-2.1.214.jar com.AttendanceManagementSystem.storage.StorageBenchmark [records] [memory|sql]...
+ *
+ * The in-memory store honours the usual attendance.* system properties
+ * (engine, fsync policy), so e.g. -Dattendance.wal.fsync=per-op compares
+ * both stores at the same durability.
+ */
+public class StorageBenchmark {
+    private static final int STUDENTS = 1000;
+    private static final int COURSES = 50;
+    private static final int BATCH = 1000;
+    private static final int DAYS = 180;
+    // Distinct (student, course, day) keys, so no record breaks the uniqueness constraint
+    private static final long KEYS = (long) STUDENTS * COURSES * DAYS;
+
+    public static void main(String[] args) throws IOException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<StorageFactory.Backend> backends = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            backends.add(StorageFactory.Backend.valueOf(args[i].toUpperCase()));
+        }
+        if (backends.isEmpty()) {
+            backends.add(StorageFactory.Backend.MEMORY);
+            backends.add(StorageFactory.Backend.SQL);
+        }
+
+        File directory = Files.createTempDirectory("attendance-benchmark").toFile();
+        System.setProperty(StorageConfig.DIRECTORY_PROPERTY, directory.getAbsolutePath());
+        System.setProperty(StorageConfig.CHECKPOINT_INTERVAL_SECONDS_PROPERTY, "0");
+        System.out.println("Benchmark directory: " + directory + ", " + records + " attendance records");
+        System.out.printf("%-8s %14s %14s %14s %14s %14s%n", "backend", "insert/s", "parallel/s", "batch/s",
+                "by-student/s", "by-range/s");
+
+        for (StorageFactory.Backend backend : backends) {
+            StorageBackend store = StorageFactory.create(backend, System::getProperty);
+            try {
+                run(backend, store, records);
+            } finally {
+                if (backend == StorageFactory.Backend.MEMORY) {
+                    DataStore.shutdown();
+                } else {
+                    store.close();
+                }
+            }
+        }
+    }
+
+    private static void run(StorageFactory.Backend backend, StorageBackend store, int records) {
+        store.clearAllData();
+        // IDs are not necessarily 1..N: leased IDs are never reused after a clear
+        int[] studentIds = new int[STUDENTS];
+        for (int i = 0; i < STUDENTS; i++) {
+            studentIds[i] = store.addStudent(new Student(0, "Student " + i, "student" + i + "@example.com")).getId();
+        }
+        int[] courseIds = new int[COURSES];
+        for (int i = 0; i < COURSES; i++) {
+            courseIds[i] = store.addCourse(new Course(0, "Course " + i, "Instructor " + i)).getId();
+        }
+        Random random = new Random(42);
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        AtomicLong keys = new AtomicLong();
+
+        // One write per call
+        long begin = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            store.addAttendanceRecord(nextRecord(keys, random, start, studentIds, courseIds));
+        }
+        double insertRate = rate(records, begin);
+
+        // One write per call from one thread per core, as in a roll-call spike
+        int threads = Runtime.getRuntime().availableProcessors();
+        Thread[] writers = new Thread[threads];
+        begin = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Random threadRandom = new Random(t);
+            int count = records / threads + (t < records % threads ? 1 : 0);
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    store.addAttendanceRecord(nextRecord(keys, threadRandom, start, studentIds, courseIds));
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        double parallelRate = rate(records, begin);
+
+        // BATCH writes per call
+        begin = System.nanoTime();
+        for (int done = 0; done < records; done += BATCH) {
+            List<AttendanceRecord> batch = new ArrayList<>();
+            for (int i = done; i < Math.min(records, done + BATCH); i++) {
+                batch.add(nextRecord(keys, random, start, studentIds, courseIds));
+            }
+            store.addAttendanceRecords(batch);
+        }
+        double batchRate = rate(records, begin);
+
+        int lookups = Math.max(1, records / 100);
+        begin = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            store.getAttendanceRecords(studentIds[random.nextInt(STUDENTS)], -1, null, null);
+        }
+        double studentRate = rate(lookups, begin);
+
+        begin = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            LocalDate from = start.plusDays(random.nextInt(DAYS));
+            store.getAttendanceRecords(-1, courseIds[random.nextInt(COURSES)], from, from.plusDays(6));
+        }
+        double rangeRate = rate(lookups, begin);
+
+        System.out.printf("%-8s %14.0f %14.0f %14.0f %14.0f %14.0f%n", backend.name().toLowerCase(),
+                insertRate, parallelRate, batchRate, studentRate, rangeRate);
+    }
+
+    /**
+     * Record for the next unused key. Keys are visited in a scrambled order
+     * (multiplying by a prime coprime to KEYS is a permutation), so records
+     * still spread over every student, course and day.
+     */
+    private static AttendanceRecord nextRecord(AtomicLong keys, Random random, LocalDate start, int[] studentIds,
+            int[] courseIds) {
+        long key = keys.getAndIncrement() * 1_000_003L % KEYS;
+        return new AttendanceRecord(0, studentIds[(int) (key % STUDENTS)], courseIds[(int) (key / STUDENTS % COURSES)],
+                start.plusDays(key / STUDENTS / COURSES), random.nextBoolean());
+    }
+
+    private static double rate(int operations, long startNanos) {
+        return operations * 1e9 / (System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,316 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Storage settings for the DataStore.
+ * Read from JVM system properties (e.g. -Dattendance.storage.engine=columnar
+ * in CATALINA_OPTS) so they are fixed before the singleton is created.
+ */
+public class StorageConfig {
+    public static final String ENGINE_PROPERTY = "attendance.storage.engine";
+    public static final String DIRECTORY_PROPERTY = "attendance.storage.dir";
+    public static final String WAL_ENABLED_PROPERTY = "attendance.wal.enabled";
+    public static final String WAL_FSYNC_PROPERTY = "attendance.wal.fsync";
+    public static final String WAL_GROUP_COMMIT_MILLIS_PROPERTY = "attendance.wal.groupCommitMillis";
+    public static final String CHECKPOINT_INTERVAL_SECONDS_PROPERTY = "attendance.checkpoint.intervalSeconds";
+    public static final String PARTITIONS_PROPERTY = "attendance.partitions";
+    public static final String ARCHIVE_AFTER_DAYS_PROPERTY = "attendance.archive.afterDays";
+    public static final String ARCHIVE_CACHE_SEGMENTS_PROPERTY = "attendance.archive.cacheSegments";
+    public static final String REPLICATION_ROLE_PROPERTY = "attendance.replication.role";
+    public static final String REPLICATION_PORT_PROPERTY = "attendance.replication.port";
+    public static final String REPLICATION_LEADER_PROPERTY = "attendance.replication.leader";
+    public static final String IDS_SCHEME_PROPERTY = "attendance.ids.scheme";
+    public static final String IDS_NODE_PROPERTY = "attendance.ids.node";
+    public static final String IDS_NODES_PROPERTY = "attendance.ids.nodes";
+    public static final String IDS_BLOCK_SIZE_PROPERTY = "attendance.ids.blockSize";
+    public static final String TERM_START_MONTHS_PROPERTY = "attendance.reports.termStartMonths";
+    public static final String REPORT_PARALLELISM_PROPERTY = "attendance.reports.parallelism";
+
+    /**
+     * Layout used for attendance records
+     */
+    public enum Engine {
+        HEAP, // one object per record in a PersistentIntMap (copy-on-write trie)
+        COLUMNAR, // primitive column arrays, records materialised on read
+        OFFHEAP, // fixed-width rows in direct ByteBuffers outside the heap
+        MAPPED // fixed-width rows in memory-mapped files under the storage directory
+    }
+
+    /**
+     * When write-ahead log entries are forced to disk
+     */
+    public enum FsyncPolicy {
+        PER_OP, // fsync before every write returns
+        GROUP, // one fsync per batch of writes, every groupCommitMillis
+        OS // never fsync explicitly; survives a JVM crash, not a power loss
+    }
+
+    /**
+     * Part an instance plays in replication
+     */
+    public enum ReplicationRole {
+        STANDALONE, // no replication
+        LEADER, // takes writes and streams its mutations to followers
+        FOLLOWER // applies a leader's mutations and serves reads only
+    }
+
+    /**
+     * How IDs of new entities are allocated
+     */
+    public enum IdScheme {
+        COUNTER, // in-memory counters; unique within one store only
+        LEASED // blocks leased in a file per node; never reused, never shared between nodes
+    }
+
+    private final Engine engine;
+    private final File directory;
+    private final boolean walEnabled;
+    private final FsyncPolicy fsyncPolicy;
+    private final long groupCommitMillis;
+    private final long checkpointIntervalSeconds;
+    private final int partitions;
+    private final int archiveAfterDays;
+    private final int archiveCacheSegments;
+    private final ReplicationRole replicationRole;
+    private final int replicationPort;
+    private final String replicationLeader;
+    private final IdScheme idScheme;
+    private final int idNode;
+    private final int idNodes;
+    private final int idBlockSize;
+    private final int[] termStartMonths;
+    private final int reportParallelism;
+
+    /**
+     * Constructor with all fields
+     * 
+     * @param engine            Attendance storage engine
+     * @param directory         Directory for files written by the store
+     * @param walEnabled        Whether mutations are logged and replayed on startup
+     * @param fsyncPolicy       When log entries are forced to disk
+     * @param groupCommitMillis Group commit interval for FsyncPolicy.GROUP
+     * @param checkpointIntervalSeconds Seconds between snapshots (0 disables them)
+     * @param partitions        Number of course partitions attendance is sharded into
+     * @param archiveAfterDays  Age in days after which attendance is archived (0 disables archiving)
+     * @param archiveCacheSegments Archive segments kept decompressed in memory
+     * @param replicationRole   Part played in replication
+     * @param replicationPort   Loopback port a leader listens on for followers
+     * @param replicationLeader host:port a follower connects to
+     * @param idScheme          How IDs of new entities are allocated
+     * @param idNode            This instance's node number for IdScheme.LEASED, from 0
+     * @param idNodes           Number of nodes sharing the ID spaces
+     * @param idBlockSize       IDs leased at a time
+     * @param termStartMonths   Months (1-12) in which terms start, for reports by term
+     * @param reportParallelism Threads analytical reports scan attendance on
+     */
+    public StorageConfig(Engine engine, File directory, boolean walEnabled, FsyncPolicy fsyncPolicy,
+            long groupCommitMillis, long checkpointIntervalSeconds, int partitions, int archiveAfterDays,
+            int archiveCacheSegments, ReplicationRole replicationRole, int replicationPort, String replicationLeader,
+            IdScheme idScheme, int idNode, int idNodes, int idBlockSize, int[] termStartMonths,
+            int reportParallelism) {
+        this.engine = engine;
+        this.directory = directory;
+        this.walEnabled = walEnabled;
+        this.fsyncPolicy = fsyncPolicy;
+        this.groupCommitMillis = groupCommitMillis;
+        this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+        this.partitions = partitions;
+        this.archiveAfterDays = archiveAfterDays;
+        this.archiveCacheSegments = archiveCacheSegments;
+        this.replicationRole = replicationRole;
+        this.replicationPort = replicationPort;
+        this.replicationLeader = replicationLeader;
+        this.idScheme = idScheme;
+        this.idNode = idNode;
+        this.idNodes = idNodes;
+        this.idBlockSize = idBlockSize;
+        this.termStartMonths = termStartMonths.clone();
+        this.reportParallelism = reportParallelism;
+    }
+
+    /**
+     * Build the configuration from system properties, using defaults for anything unset
+     * 
+     * @return StorageConfig instance
+     */
+    public static StorageConfig fromSystemProperties() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        return new StorageConfig(
+                parseEnum(Engine.class, ENGINE_PROPERTY, Engine.HEAP),
+                directory != null && !directory.trim().isEmpty() ? new File(directory.trim()) : defaultDirectory(),
+                Boolean.parseBoolean(System.getProperty(WAL_ENABLED_PROPERTY, "true")),
+                parseEnum(FsyncPolicy.class, WAL_FSYNC_PROPERTY, FsyncPolicy.GROUP),
+                Long.parseLong(System.getProperty(WAL_GROUP_COMMIT_MILLIS_PROPERTY, "5")),
+                Long.parseLong(System.getProperty(CHECKPOINT_INTERVAL_SECONDS_PROPERTY, "300")),
+                Integer.parseInt(System.getProperty(PARTITIONS_PROPERTY, String.valueOf(defaultPartitions()))),
+                Integer.parseInt(System.getProperty(ARCHIVE_AFTER_DAYS_PROPERTY, "0")),
+                Integer.parseInt(System.getProperty(ARCHIVE_CACHE_SEGMENTS_PROPERTY, "4")),
+                parseEnum(ReplicationRole.class, REPLICATION_ROLE_PROPERTY, ReplicationRole.STANDALONE),
+                Integer.parseInt(System.getProperty(REPLICATION_PORT_PROPERTY, "7400")),
+                System.getProperty(REPLICATION_LEADER_PROPERTY, "127.0.0.1:7400").trim(),
+                parseEnum(IdScheme.class, IDS_SCHEME_PROPERTY, IdScheme.LEASED),
+                Integer.parseInt(System.getProperty(IDS_NODE_PROPERTY, "0")),
+                Integer.parseInt(System.getProperty(IDS_NODES_PROPERTY, "1")),
+                Integer.parseInt(System.getProperty(IDS_BLOCK_SIZE_PROPERTY, "1000")),
+                parseMonths(TERM_START_MONTHS_PROPERTY, "2,9"),
+                Integer.parseInt(System.getProperty(REPORT_PARALLELISM_PROPERTY,
+                        String.valueOf(defaultReportParallelism()))));
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public boolean isWalEnabled() {
+        return walEnabled;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public long getGroupCommitMillis() {
+        return groupCommitMillis;
+    }
+
+    public long getCheckpointIntervalSeconds() {
+        return checkpointIntervalSeconds;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public int getArchiveAfterDays() {
+        return archiveAfterDays;
+    }
+
+    public int getArchiveCacheSegments() {
+        return archiveCacheSegments;
+    }
+
+    public ReplicationRole getReplicationRole() {
+        return replicationRole;
+    }
+
+    public int getReplicationPort() {
+        return replicationPort;
+    }
+
+    public String getReplicationLeader() {
+        return replicationLeader;
+    }
+
+    public IdScheme getIdScheme() {
+        return idScheme;
+    }
+
+    public int getIdNode() {
+        return idNode;
+    }
+
+    public int getIdNodes() {
+        return idNodes;
+    }
+
+    public int getIdBlockSize() {
+        return idBlockSize;
+    }
+
+    public int[] getTermStartMonths() {
+        return termStartMonths.clone();
+    }
+
+    public int getReportParallelism() {
+        return reportParallelism;
+    }
+
+    /**
+     * Default storage directory: data/attendance-system under the Tomcat base
+     * (or the working directory outside Tomcat)
+     */
+    private static File defaultDirectory() {
+        return new File(new File(System.getProperty("catalina.base", "."), "data"), "attendance-system");
+    }
+
+    /**
+     * Default partition count: four per core, so courses that hash together
+     * rarely contend even when every core is writing
+     */
+    private static int defaultPartitions() {
+        return 4 * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Default report parallelism: half the cores, so a long report leaves
+     * the other half to requests
+     */
+    private static int defaultReportParallelism() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    /**
+     * Parse an enum property case-insensitively, accepting '-' for '_' (e.g. "per-op")
+     */
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String property, E defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().replace('-', '_').toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + property + ": " + value, e);
+        }
+    }
+
+    /**
+     * Parse a comma-separated list of months, e.g. "2,9"
+     */
+    private static int[] parseMonths(String property, String defaultValue) {
+        String value = System.getProperty(property, defaultValue);
+        String[] parts = value.split(",");
+        int[] months = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                months[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + property + ": " + value, e);
+            }
+            if (months[i] < 1 || months[i] > 12) {
+                throw new IllegalArgumentException("Invalid " + property + ": " + value);
+            }
+        }
+        return months;
+    }
+
+    @Override
+    public String toString() {
+        return "StorageConfig{" +
+                "engine=" + engine +
+                ", directory=" + directory +
+                ", walEnabled=" + walEnabled +
+                ", fsyncPolicy=" + fsyncPolicy +
+                ", groupCommitMillis=" + groupCommitMillis +
+                ", checkpointIntervalSeconds=" + checkpointIntervalSeconds +
+                ", partitions=" + partitions +
+                ", archiveAfterDays=" + archiveAfterDays +
+                ", archiveCacheSegments=" + archiveCacheSegments +
+                ", replicationRole=" + replicationRole +
+                ", replicationPort=" + replicationPort +
+                ", replicationLeader=" + replicationLeader +
+                ", idScheme=" + idScheme +
+                ", idNode=" + idNode +
+                ", idNodes=" + idNodes +
+                ", idBlockSize=" + idBlockSize +
+                ", termStartMonths=" + Arrays.toString(termStartMonths) +
+                ", reportParallelism=" + reportParallelism +
+                '}';
+    }
+}
@@ -0,0 +1,108 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.io.File;
+import java.util.function.Function;
+
+/**
+ * Creates the storage backend selected in web.xml.
+ * Settings are read from context-params so every servlet shares one backend:
+ * 
+ * attendance.storage.backend - memory (default, the DataStore) or sql
+ * attendance.sql.url         - JDBC URL (default: embedded H2 database in
+ *                              the sql folder of attendance.storage.dir)
+ * attendance.sql.user        - Database user (default "sa")
+ * attendance.sql.password    - Database password (default empty)
+ * attendance.sql.poolSize    - Pooled connections (default 8)
+ * 
+ * The in-memory backend keeps reading its own tuning from JVM system
+ * properties (see StorageConfig).
+ */
+public final class StorageFactory {
+    public static final String BACKEND_PARAM = "attendance.storage.backend";
+    public static final String SQL_URL_PARAM = "attendance.sql.url";
+    public static final String SQL_USER_PARAM = "attendance.sql.user";
+    public static final String SQL_PASSWORD_PARAM = "attendance.sql.password";
+    public static final String SQL_POOL_SIZE_PARAM = "attendance.sql.poolSize";
+
+    /**
+     * Available storage implementations
+     */
+    public enum Backend {
+        MEMORY, // DataStore: in-memory tables with write-ahead log and snapshots
+        SQL // SqlDataStore: tables in an embedded SQL database
+    }
+
+    private static StorageBackend instance;
+    private static Backend instanceBackend;
+
+    private StorageFactory() {
+    }
+
+    /**
+     * Get the shared backend, creating it on first use
+     * 
+     * @param parameters Looks up a setting by name (e.g. ServletContext::getInitParameter);
+     *                   returns null when unset
+     * @return Storage backend
+     */
+    public static synchronized StorageBackend getBackend(Function<String, String> parameters) {
+        if (instance == null) {
+            instanceBackend = parseBackend(parameters.apply(BACKEND_PARAM));
+            instance = create(instanceBackend, parameters);
+        }
+        return instance;
+    }
+
+    /**
+     * Close the shared backend if it was created.
+     * The next getBackend() call opens it again.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            if (instanceBackend == Backend.MEMORY) {
+                DataStore.shutdown();
+            } else {
+                instance.close();
+            }
+            instance = null;
+            instanceBackend = null;
+        }
+    }
+
+    /**
+     * Create a backend of the given type
+     * 
+     * @param backend    Storage implementation
+     * @param parameters Setting lookup, as for getBackend
+     * @return New (or, for MEMORY, the singleton) backend
+     */
+    static StorageBackend create(Backend backend, Function<String, String> parameters) {
+        switch (backend) {
+            case SQL:
+                String url = parameters.apply(SQL_URL_PARAM);
+                if (url == null || url.trim().isEmpty()) {
+                    File directory = new File(StorageConfig.fromSystemProperties().getDirectory(), "sql");
+                    url = "jdbc:h2:file:" + new File(directory, "attendance").getAbsolutePath();
+                }
+                String user = parameters.apply(SQL_USER_PARAM);
+                String password = parameters.apply(SQL_PASSWORD_PARAM);
+                String poolSize = parameters.apply(SQL_POOL_SIZE_PARAM);
+                return new SqlDataStore(url.trim(), user != null ? user : "sa", password != null ? password : "",
+                        poolSize != null && !poolSize.trim().isEmpty() ? Integer.parseInt(poolSize.trim()) : 8);
+            case MEMORY:
+            default:
+                return DataStore.getInstance();
+        }
+    }
+
+    private static Backend parseBackend(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Backend.MEMORY;
+        }
+        try {
+            return Backend.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + BACKEND_PARAM + ": " + value, e);
+        }
+    }
+}
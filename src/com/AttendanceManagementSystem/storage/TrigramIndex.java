@@ -0,0 +1,179 @@
+package com.AttendanceManagementSystem.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Substring search over short texts (names), keyed by entity ID.
+ * Every text is normalised (lower case, runs of other characters become
+ * word breaks) and each of its 3-character substrings maps to a bucket of
+ * the IDs that contain it. A query looks up the buckets of its own
+ * trigrams, walks the smallest one and confirms each candidate against the
+ * stored text, stopping once it has enough results.
+ *
+ * Words are padded with two leading spaces, so the first letters of a word
+ * form trigrams of their own ("  m", " ma"). Queries of three or more
+ * characters match anywhere in the text; shorter ones match word prefixes.
+ *
+ * Single writer, lock-free readers, like the other indexes: DataStore
+ * calls put() and remove() while holding its write lock (or from one
+ * loader thread per index during startup).
+ */
+class TrigramIndex {
+    private final ConcurrentHashMap<Long, IntBucket> byTrigram = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> texts = new ConcurrentHashMap<>();
+
+    /**
+     * Index or re-index an entity's text
+     *
+     * @param id    Entity ID
+     * @param parts Searchable fields (null fields are skipped)
+     */
+    void put(int id, String... parts) {
+        StringBuilder text = new StringBuilder();
+        for (String part : parts) {
+            if (part != null) {
+                // A separator no query can contain keeps matches inside one field
+                text.append(text.length() > 0 ? "\u0000" : "").append(pad(part));
+            }
+        }
+        String updated = text.toString();
+        String previous = texts.put(id, updated);
+        if (updated.equals(previous)) {
+            return;
+        }
+        long[] oldTrigrams = previous != null ? trigrams(previous) : new long[0];
+        long[] newTrigrams = trigrams(updated);
+        for (long trigram : oldTrigrams) {
+            if (Arrays.binarySearch(newTrigrams, trigram) < 0) {
+                unbucket(trigram, id);
+            }
+        }
+        for (long trigram : newTrigrams) {
+            if (Arrays.binarySearch(oldTrigrams, trigram) < 0) {
+                byTrigram.computeIfAbsent(trigram, t -> new IntBucket()).add(id);
+            }
+        }
+    }
+
+    /**
+     * Remove an entity's text
+     *
+     * @param id Entity ID
+     */
+    void remove(int id) {
+        String previous = texts.remove(id);
+        if (previous != null) {
+            for (long trigram : trigrams(previous)) {
+                unbucket(trigram, id);
+            }
+        }
+    }
+
+    /**
+     * Find entities whose text contains the query
+     *
+     * @param query Search text (case and punctuation are ignored)
+     * @param limit Maximum number of IDs to return
+     * @return Matching IDs in indexing order (at most limit)
+     */
+    int[] search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+        // Short queries only mean something at the start of a word
+        String pattern = normalized.length() < 3 ? "  " + normalized : normalized.replace(" ", "  ");
+
+        IntBucket smallest = null;
+        for (long trigram : trigrams(pattern)) {
+            IntBucket ids = byTrigram.get(trigram);
+            if (ids == null) {
+                return new int[0];
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        if (smallest == null) {
+            return new int[0];
+        }
+
+        int[] found = new int[Math.min(limit, smallest.size())];
+        int[] count = { 0 };
+        smallest.forEach(id -> {
+            if (count[0] < found.length) {
+                String text = texts.get(id);
+                if (text != null && text.contains(pattern)) {
+                    found[count[0]++] = id;
+                }
+            }
+        });
+        return count[0] == found.length ? found : Arrays.copyOf(found, count[0]);
+    }
+
+    /**
+     * Drop every entry
+     */
+    void clear() {
+        byTrigram.clear();
+        texts.clear();
+    }
+
+    private void unbucket(long trigram, int id) {
+        byTrigram.computeIfPresent(trigram, (t, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Lower-case letters and digits, single spaces between words
+     */
+    private static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean gap = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (gap && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(c));
+                gap = false;
+            } else {
+                gap = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Normalised text with two spaces in front of every word
+     */
+    private static String pad(String text) {
+        String normalized = normalize(text);
+        return normalized.isEmpty() ? "" : "  " + normalized.replace(" ", "  ");
+    }
+
+    /**
+     * @return Distinct trigrams of the text, sorted, each packed as three 16-bit chars
+     */
+    private static long[] trigrams(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] trigrams = new long[text.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (distinct == 0 || trigrams[i] != trigrams[distinct - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+}
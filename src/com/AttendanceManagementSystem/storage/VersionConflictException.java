@@ -0,0 +1,29 @@
+package com.AttendanceManagementSystem.storage;
+
+/**
+ * Thrown when a conditional update expected a version that is no longer
+ * stored, i.e. someone else changed the entity since the caller read it.
+ * Nothing has been written when it is thrown; servlets answer 412
+ * Precondition Failed.
+ */
+public class VersionConflictException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int currentVersion;
+
+    /**
+     * @param message        Description of the conflict
+     * @param currentVersion Version that is actually stored
+     */
+    public VersionConflictException(String message, int currentVersion) {
+        super(message);
+        this.currentVersion = currentVersion;
+    }
+
+    /**
+     * @return Version that is actually stored
+     */
+    public int getCurrentVersion() {
+        return currentVersion;
+    }
+}
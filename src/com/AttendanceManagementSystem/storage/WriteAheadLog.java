@@ -0,0 +1,453 @@
+package com.AttendanceManagementSystem.storage;
+
+import com.AttendanceManagementSystem.storage.StorageConfig.FsyncPolicy;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of DataStore mutations, replayed on startup.
+ *
+ * The log is a series of segment files (wal-&lt;generation&gt;.log) in one
+ * directory. roll() starts a new segment so a checkpoint can record "the
+ * snapshot covers everything before generation N" and older segments can
+ * be deleted once the snapshot is on disk. Sequence numbers continue
+ * across segments.
+ *
+ * Each entry is framed as [length][crc32][payload] so a torn write at the
+ * end of the file (crash mid-append) is detected and cut off on replay.
+ *
+ * When an entry is durable depends on the FsyncPolicy:
+ * PER_OP forces the file on every append; GROUP buffers appends and a
+ * background thread writes and forces them every few milliseconds, so
+ * hundreds of concurrent writers share one fsync; OS writes straight to
+ * the file and leaves flushing to the operating system.
+ *
+ * append() must be called in mutation order for each piece of state
+ * (DataStore calls it under the lock that guards what the mutation
+ * touches; mutations under different locks commute); awaitDurable() should
+ * be called after releasing that lock so group commit can batch the waiters.
+ *
+ * FileChannel is interruptible: an interrupt during a write or force closes
+ * the channel. So the flusher is never interrupted; close() sets closed,
+ * wakes it and waits for it to finish before the final sync.
+ */
+class WriteAheadLog implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final File directory;
+    private final FsyncPolicy policy;
+    private final long groupCommitMillis;
+
+    // Held while moving bytes to the current segment so batches, rolls and
+    // close never interleave; always taken before this
+    private final Object flushLock = new Object();
+
+    // Guarded by this
+    private FileChannel channel;
+    private long generation;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSequence;
+    private long durableSequence;
+    private IOException failure;
+    private boolean closed;
+
+    private final Thread flusher;
+
+    /**
+     * Open the log in a directory, appending to its newest segment
+     * 
+     * @param directory         Segment directory (created if missing)
+     * @param policy            Fsync policy
+     * @param groupCommitMillis Flush interval for GROUP
+     * @throws IOException if the directory or segment cannot be opened
+     */
+    WriteAheadLog(File directory, FsyncPolicy policy, long groupCommitMillis) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create log directory: " + directory);
+        }
+        this.directory = directory;
+        this.policy = policy;
+        this.groupCommitMillis = Math.max(1, groupCommitMillis);
+
+        List<Long> generations = listGenerations();
+        generation = generations.isEmpty() ? 1 : generations.get(generations.size() - 1);
+        channel = openSegment(generation);
+        channel.position(channel.size());
+
+        if (policy == FsyncPolicy.GROUP) {
+            flusher = new Thread(this::runFlusher, "attendance-wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Replay every complete entry in the segments from the given generation
+     * on, truncating a torn tail of the newest segment.
+     * Must be called before the first append.
+     * 
+     * @param fromGeneration First segment to replay
+     * @param consumer       Receives each mutation in log order
+     * @return Number of mutations replayed
+     * @throws IOException if the log cannot be read
+     */
+    synchronized long replay(long fromGeneration, Consumer<Mutation> consumer) throws IOException {
+        long count = 0;
+        for (long segment : listGenerations()) {
+            if (segment < fromGeneration) {
+                continue;
+            }
+            long[] validEnd = new long[1];
+            count += replaySegment(segmentFile(segment), consumer, validEnd);
+
+            if (segment == generation) {
+                // Drop anything after the last complete entry and append from there
+                if (channel.size() > validEnd[0]) {
+                    System.out.println("WriteAheadLog - Truncating torn tail of segment " + segment
+                            + " at byte " + validEnd[0]);
+                    channel.truncate(validEnd[0]);
+                }
+                channel.position(validEnd[0]);
+            } else if (segmentFile(segment).length() > validEnd[0]) {
+                System.out.println("WriteAheadLog - Segment " + segment + " is damaged after byte " + validEnd[0]
+                        + ", continuing with the next segment");
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Append a mutation. It is serialized before the log is touched, so
+     * only a failed write or fsync makes the log unusable.
+     * 
+     * @param mutation Mutation to log
+     * @return Sequence number to pass to awaitDurable
+     */
+    long append(Mutation mutation) {
+        byte[] payload;
+        try {
+            payload = serialize(mutation);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot serialize " + mutation, e);
+        }
+        return append(payload);
+    }
+
+    private synchronized long append(byte[] payload) {
+        checkUsable();
+        try {
+            ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+            frame.putInt(payload.length).putInt(crc(payload)).put(payload);
+
+            long sequence = ++appendedSequence;
+            if (policy == FsyncPolicy.GROUP) {
+                pending.write(frame.array(), 0, frame.capacity());
+            } else {
+                frame.flip();
+                writeFully(channel, frame);
+                if (policy == FsyncPolicy.PER_OP) {
+                    channel.force(false);
+                }
+                durableSequence = sequence;
+            }
+            return sequence;
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Write-ahead log append failed", e);
+        }
+    }
+
+    /**
+     * Block until the entry with the given sequence number is durable
+     * under the configured policy
+     * 
+     * @param sequence Sequence number returned by append
+     */
+    synchronized void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        while (durableSequence < sequence) {
+            if (failure != null) {
+                throw new UncheckedIOException("Write-ahead log flush failed", failure);
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flush everything appended so far and force it to disk
+     * 
+     * @throws IOException if writing fails
+     */
+    void sync() throws IOException {
+        synchronized (flushLock) {
+            ByteArrayOutputStream batch;
+            long batchEnd;
+            FileChannel target;
+            synchronized (this) {
+                batch = pending;
+                batchEnd = appendedSequence;
+                target = channel;
+                pending = new ByteArrayOutputStream();
+            }
+            // Appends keep going into the new pending buffer meanwhile
+            if (batch.size() > 0) {
+                writeFully(target, ByteBuffer.wrap(batch.toByteArray()));
+            }
+            target.force(false);
+            synchronized (this) {
+                durableSequence = Math.max(durableSequence, batchEnd);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Close the current segment and start appending to a new one.
+     * Blocks appends only for the final flush of the old segment.
+     * 
+     * @return Generation of the new segment; every entry appended before
+     *         this call lives in an older segment
+     * @throws IOException if the new segment cannot be created
+     */
+    long roll() throws IOException {
+        synchronized (flushLock) {
+            synchronized (this) {
+                checkUsable();
+                if (pending.size() > 0) {
+                    writeFully(channel, ByteBuffer.wrap(pending.toByteArray()));
+                    pending = new ByteArrayOutputStream();
+                }
+                channel.force(false);
+                channel.close();
+
+                generation++;
+                channel = openSegment(generation);
+                durableSequence = appendedSequence;
+                notifyAll();
+                return generation;
+            }
+        }
+    }
+
+    /**
+     * Delete segments that are fully covered by a snapshot
+     * 
+     * @param generation Oldest generation to keep
+     */
+    void deleteSegmentsBefore(long generation) {
+        for (long segment : listGenerations()) {
+            if (segment < generation && !segmentFile(segment).delete()) {
+                System.out.println("WriteAheadLog - Could not delete old segment " + segmentFile(segment));
+            }
+        }
+    }
+
+    /**
+     * @return Generation of the segment currently appended to
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return Sequence number of the last appended entry
+     */
+    synchronized long getAppendedSequence() {
+        return appendedSequence;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        // An interrupt pending on this thread would close the channel under the final sync
+        boolean interrupted = Thread.interrupted();
+        try {
+            if (flusher != null) {
+                while (true) {
+                    try {
+                        flusher.join();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            sync();
+            synchronized (this) {
+                channel.close();
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            boolean idle;
+            synchronized (this) {
+                // sync() notifies too, so wait out the whole interval unless closed
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(groupCommitMillis);
+                long remaining;
+                while (!closed && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        // Only close() stops the flusher; the interrupt is cleared so sync() is safe
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                idle = durableSequence == appendedSequence;
+            }
+            try {
+                if (!idle) {
+                    sync();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                System.out.println("WriteAheadLog - Group commit failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Read one segment
+     * 
+     * Entries have no size limit; a length running past the end of the file
+     * or a checksum mismatch marks a torn tail.
+     * 
+     * @param validEnd Receives the offset just past the last complete entry
+     * @return Number of mutations read
+     */
+    private static long replaySegment(File file, Consumer<Mutation> consumer, long[] validEnd) throws IOException {
+        long count = 0;
+        long fileLength = file.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > fileLength - validEnd[0] - HEADER_BYTES) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                try {
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (crc(payload) != checksum) {
+                    break;
+                }
+                consumer.accept(Mutation.readFrom(new DataInputStream(new ByteArrayInputStream(payload))));
+                validEnd[0] += HEADER_BYTES + length;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private List<Long> listGenerations() {
+        List<Long> generations = new ArrayList<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        generations.add(Long.parseLong(
+                                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        // Not one of ours
+                    }
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private File segmentFile(long segment) {
+        return new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private FileChannel openSegment(long segment) throws IOException {
+        return FileChannel.open(segmentFile(segment).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log is unusable after an earlier failure", failure);
+        }
+        if (closed) {
+            throw new UncheckedIOException(new InterruptedIOException("Write-ahead log is closed"));
+        }
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static byte[] serialize(Mutation mutation) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        mutation.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+}